@@ -1,17 +1,40 @@
 package com.hillert.image.metadata.config;
 
+import java.time.Duration;
+import java.util.List;
+
+import com.hillert.image.metadata.service.support.ResizeQuality;
+
 import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
 
 @ConfigurationProperties(prefix = "metadata")
 public class MetadataConfigProperties {
 
 	/**
-	 * Do not resize and label returned images.
+	 * Do not resize and label returned images unless a width is requested. Requests with
+	 * an explicit width are always resized.
 	 */
 	private Boolean doNotResize;
 
 	private Ai ai;
 
+	private Cache cache = new Cache();
+
+	private Sidecar sidecar = new Sidecar();
+
+	private Extraction extraction = new Extraction();
+
+	private InPlaceUpdate inPlaceUpdate = new InPlaceUpdate();
+
+	private Batch batch = new Batch();
+
+	private Renditions renditions = new Renditions();
+
+	private Http http = new Http();
+
+	private Codecs codecs = new Codecs();
+
 	public Boolean getDoNotResize() {
 		return this.doNotResize;
 	}
@@ -28,6 +51,70 @@ public class MetadataConfigProperties {
 		this.ai = ai;
 	}
 
+	public Cache getCache() {
+		return this.cache;
+	}
+
+	public void setCache(Cache cache) {
+		this.cache = cache;
+	}
+
+	public Sidecar getSidecar() {
+		return this.sidecar;
+	}
+
+	public void setSidecar(Sidecar sidecar) {
+		this.sidecar = sidecar;
+	}
+
+	public Extraction getExtraction() {
+		return this.extraction;
+	}
+
+	public void setExtraction(Extraction extraction) {
+		this.extraction = extraction;
+	}
+
+	public InPlaceUpdate getInPlaceUpdate() {
+		return this.inPlaceUpdate;
+	}
+
+	public void setInPlaceUpdate(InPlaceUpdate inPlaceUpdate) {
+		this.inPlaceUpdate = inPlaceUpdate;
+	}
+
+	public Batch getBatch() {
+		return this.batch;
+	}
+
+	public void setBatch(Batch batch) {
+		this.batch = batch;
+	}
+
+	public Renditions getRenditions() {
+		return this.renditions;
+	}
+
+	public void setRenditions(Renditions renditions) {
+		this.renditions = renditions;
+	}
+
+	public Http getHttp() {
+		return this.http;
+	}
+
+	public void setHttp(Http http) {
+		this.http = http;
+	}
+
+	public Codecs getCodecs() {
+		return this.codecs;
+	}
+
+	public void setCodecs(Codecs codecs) {
+		this.codecs = codecs;
+	}
+
 	public static class Ai {
 
 		/**
@@ -58,4 +145,453 @@ public class MetadataConfigProperties {
 
 	}
 
+	public static class Cache {
+
+		/**
+		 * If true, cache the extracted metadata of stored images in memory.
+		 */
+		private boolean enabled = true;
+
+		/**
+		 * The maximum (estimated) amount of memory used by cached metadata.
+		 */
+		private DataSize maxSize = DataSize.ofMegabytes(32);
+
+		/**
+		 * The maximum (estimated) amount of memory used by cached, pretty-printed XMP
+		 * data.
+		 */
+		private DataSize xmpMaxSize = DataSize.ofMegabytes(8);
+
+		public boolean isEnabled() {
+			return this.enabled;
+		}
+
+		public void setEnabled(boolean enabled) {
+			this.enabled = enabled;
+		}
+
+		public DataSize getMaxSize() {
+			return this.maxSize;
+		}
+
+		public void setMaxSize(DataSize maxSize) {
+			this.maxSize = maxSize;
+		}
+
+		public DataSize getXmpMaxSize() {
+			return this.xmpMaxSize;
+		}
+
+		public void setXmpMaxSize(DataSize xmpMaxSize) {
+			this.xmpMaxSize = xmpMaxSize;
+		}
+
+	}
+
+	public static class Sidecar {
+
+		/**
+		 * If true, persist the extracted metadata as binary sidecar file next to the
+		 * stored image.
+		 */
+		private boolean enabled = true;
+
+		public boolean isEnabled() {
+			return this.enabled;
+		}
+
+		public void setEnabled(boolean enabled) {
+			this.enabled = enabled;
+		}
+
+	}
+
+	public static class Extraction {
+
+		/**
+		 * If true, the independent metadata families (file attributes, XMP, image info
+		 * and EXIF/IPTC) of an image are extracted concurrently.
+		 */
+		private boolean parallel = false;
+
+		/**
+		 * The number of threads used for parallel metadata extraction.
+		 */
+		private int threads = Runtime.getRuntime().availableProcessors();
+
+		/**
+		 * The maximum time each metadata family may take when extracted in parallel.
+		 */
+		private Duration timeout = Duration.ofSeconds(30);
+
+		public boolean isParallel() {
+			return this.parallel;
+		}
+
+		public void setParallel(boolean parallel) {
+			this.parallel = parallel;
+		}
+
+		public int getThreads() {
+			return this.threads;
+		}
+
+		public void setThreads(int threads) {
+			this.threads = threads;
+		}
+
+		public Duration getTimeout() {
+			return this.timeout;
+		}
+
+		public void setTimeout(Duration timeout) {
+			this.timeout = timeout;
+		}
+
+	}
+
+	public static class InPlaceUpdate {
+
+		/**
+		 * If true, stored JPEG images get a padded EXIF segment, and later EXIF changes
+		 * that fit into the reserved space are written in place instead of rewriting the
+		 * whole file.
+		 */
+		private boolean enabled = false;
+
+		/**
+		 * The amount of space to reserve in the EXIF segment of stored JPEG images.
+		 */
+		private DataSize exifPadding = DataSize.ofKilobytes(4);
+
+		public boolean isEnabled() {
+			return this.enabled;
+		}
+
+		public void setEnabled(boolean enabled) {
+			this.enabled = enabled;
+		}
+
+		public DataSize getExifPadding() {
+			return this.exifPadding;
+		}
+
+		public void setExifPadding(DataSize exifPadding) {
+			this.exifPadding = exifPadding;
+		}
+
+	}
+
+	public static class Batch {
+
+		/**
+		 * The number of threads used to apply metadata patches to stored images. This is
+		 * also the maximum number of images updated concurrently by a single batch job.
+		 */
+		private int threads = 2;
+
+		/**
+		 * The maximum number of batch workers waiting for a free thread. Batch jobs
+		 * submitted while the queue is full are rejected.
+		 */
+		private int queueCapacity = 32;
+
+		/**
+		 * The number of finished batch jobs whose progress can still be retrieved.
+		 */
+		private int retainedJobs = 100;
+
+		public int getThreads() {
+			return this.threads;
+		}
+
+		public void setThreads(int threads) {
+			this.threads = threads;
+		}
+
+		public int getQueueCapacity() {
+			return this.queueCapacity;
+		}
+
+		public void setQueueCapacity(int queueCapacity) {
+			this.queueCapacity = queueCapacity;
+		}
+
+		public int getRetainedJobs() {
+			return this.retainedJobs;
+		}
+
+		public void setRetainedJobs(int retainedJobs) {
+			this.retainedJobs = retainedJobs;
+		}
+
+	}
+
+	public static class Renditions {
+
+		/**
+		 * If true, resized and labeled images returned by the images endpoint are cached.
+		 */
+		private boolean enabled = true;
+
+		/**
+		 * The maximum amount of memory used by cached renditions.
+		 */
+		private DataSize memoryMaxSize = DataSize.ofMegabytes(64);
+
+		/**
+		 * If true, renditions evicted from memory are still available from disk.
+		 */
+		private boolean diskEnabled = true;
+
+		/**
+		 * Folder location for storing cached renditions. Defaults to the
+		 * {@code .rendition-cache} folder inside the storage location.
+		 */
+		private String diskLocation;
+
+		/**
+		 * The maximum amount of disk space used by cached renditions.
+		 */
+		private DataSize diskMaxSize = DataSize.ofGigabytes(1);
+
+		/**
+		 * If true, small renditions of JPEG images are created from the thumbnail
+		 * embedded in the EXIF data, provided it is at least as wide as the rendition.
+		 * Not used for the BEST resize quality and for ladder renditions.
+		 */
+		private boolean exifThumbnails = true;
+
+		/**
+		 * The widths of the renditions generated in the background once an image is
+		 * uploaded. Requested widths are served using the closest larger rendition.
+		 */
+		private List<Integer> ladderWidths = List.of(160, 320, 640, 1280, 2048);
+
+		/**
+		 * The number of threads used to generate rendition ladders.
+		 */
+		private int ladderThreads = 1;
+
+		/**
+		 * The maximum number of images waiting for their rendition ladder. Once the queue
+		 * is full, further images are only resized on request.
+		 */
+		private int ladderQueueCapacity = 100;
+
+		/**
+		 * How images are downscaled if the request does not specify it.
+		 */
+		private ResizeQuality resizeQuality = ResizeQuality.BALANCED;
+
+		public boolean isEnabled() {
+			return this.enabled;
+		}
+
+		public void setEnabled(boolean enabled) {
+			this.enabled = enabled;
+		}
+
+		public DataSize getMemoryMaxSize() {
+			return this.memoryMaxSize;
+		}
+
+		public void setMemoryMaxSize(DataSize memoryMaxSize) {
+			this.memoryMaxSize = memoryMaxSize;
+		}
+
+		public boolean isDiskEnabled() {
+			return this.diskEnabled;
+		}
+
+		public void setDiskEnabled(boolean diskEnabled) {
+			this.diskEnabled = diskEnabled;
+		}
+
+		public String getDiskLocation() {
+			return this.diskLocation;
+		}
+
+		public void setDiskLocation(String diskLocation) {
+			this.diskLocation = diskLocation;
+		}
+
+		public DataSize getDiskMaxSize() {
+			return this.diskMaxSize;
+		}
+
+		public void setDiskMaxSize(DataSize diskMaxSize) {
+			this.diskMaxSize = diskMaxSize;
+		}
+
+		public boolean isExifThumbnails() {
+			return this.exifThumbnails;
+		}
+
+		public void setExifThumbnails(boolean exifThumbnails) {
+			this.exifThumbnails = exifThumbnails;
+		}
+
+		public List<Integer> getLadderWidths() {
+			return this.ladderWidths;
+		}
+
+		public void setLadderWidths(List<Integer> ladderWidths) {
+			this.ladderWidths = ladderWidths;
+		}
+
+		public int getLadderThreads() {
+			return this.ladderThreads;
+		}
+
+		public void setLadderThreads(int ladderThreads) {
+			this.ladderThreads = ladderThreads;
+		}
+
+		public int getLadderQueueCapacity() {
+			return this.ladderQueueCapacity;
+		}
+
+		public void setLadderQueueCapacity(int ladderQueueCapacity) {
+			this.ladderQueueCapacity = ladderQueueCapacity;
+		}
+
+		public ResizeQuality getResizeQuality() {
+			return this.resizeQuality;
+		}
+
+		public void setResizeQuality(ResizeQuality resizeQuality) {
+			this.resizeQuality = resizeQuality;
+		}
+
+	}
+
+	public static class Http {
+
+		/**
+		 * The Cache-Control header of stored images that are returned unchanged. An empty
+		 * value omits the header.
+		 */
+		private String originalCacheControl = "max-age=3600";
+
+		/**
+		 * The Cache-Control header of resized and labeled images. An empty value omits
+		 * the header.
+		 */
+		private String renditionCacheControl = "max-age=86400";
+
+		public String getOriginalCacheControl() {
+			return this.originalCacheControl;
+		}
+
+		public void setOriginalCacheControl(String originalCacheControl) {
+			this.originalCacheControl = originalCacheControl;
+		}
+
+		public String getRenditionCacheControl() {
+			return this.renditionCacheControl;
+		}
+
+		public void setRenditionCacheControl(String renditionCacheControl) {
+			this.renditionCacheControl = renditionCacheControl;
+		}
+
+	}
+
+	public static class Codecs {
+
+		/**
+		 * The maximum number of idle image readers and writers kept per MIME type.
+		 */
+		private int maxIdle = 4;
+
+		/**
+		 * Write parameters of JPEG images.
+		 */
+		private WriteParams jpeg = new WriteParams(0.8f);
+
+		/**
+		 * Write parameters of PNG images.
+		 */
+		private WriteParams png = new WriteParams(null);
+
+		public int getMaxIdle() {
+			return this.maxIdle;
+		}
+
+		public void setMaxIdle(int maxIdle) {
+			this.maxIdle = maxIdle;
+		}
+
+		public WriteParams getJpeg() {
+			return this.jpeg;
+		}
+
+		public void setJpeg(WriteParams jpeg) {
+			this.jpeg = jpeg;
+		}
+
+		public WriteParams getPng() {
+			return this.png;
+		}
+
+		public void setPng(WriteParams png) {
+			this.png = png;
+		}
+
+		public static class WriteParams {
+
+			/**
+			 * The compression quality between 0 and 1. If not set, the default of the
+			 * image writer is used.
+			 */
+			private Float quality;
+
+			/**
+			 * Write progressive (JPEG) or interlaced (PNG) images.
+			 */
+			private boolean progressive;
+
+			/**
+			 * Compute optimized Huffman tables for each JPEG image instead of using the
+			 * standard tables. Results in smaller images at the cost of encoding time.
+			 */
+			private boolean optimizeHuffmanTables;
+
+			public WriteParams() {
+			}
+
+			public WriteParams(Float quality) {
+				this.quality = quality;
+			}
+
+			public Float getQuality() {
+				return this.quality;
+			}
+
+			public void setQuality(Float quality) {
+				this.quality = quality;
+			}
+
+			public boolean isProgressive() {
+				return this.progressive;
+			}
+
+			public void setProgressive(boolean progressive) {
+				this.progressive = progressive;
+			}
+
+			public boolean isOptimizeHuffmanTables() {
+				return this.optimizeHuffmanTables;
+			}
+
+			public void setOptimizeHuffmanTables(boolean optimizeHuffmanTables) {
+				this.optimizeHuffmanTables = optimizeHuffmanTables;
+			}
+
+		}
+
+	}
+
 }
@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2025 Gunnar Hillert.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hillert.image.metadata.controller;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+
+/**
+ * Writes a stored file unchanged to the HTTP response, supporting single byte range
+ * requests. If the servlet container supports it (e.g. Tomcat), the file is sent using
+ * sendfile, otherwise it is transferred via {@link FileChannel#transferTo}, so that the
+ * file content is never copied onto the heap.
+ *
+ * @author Gunnar Hillert
+ */
+final class FileResponseWriter {
+
+	private static final String SENDFILE_SUPPORT_ATTRIBUTE = "org.apache.tomcat.sendfile.support";
+
+	private static final String SENDFILE_FILENAME_ATTRIBUTE = "org.apache.tomcat.sendfile.filename";
+
+	private static final String SENDFILE_START_ATTRIBUTE = "org.apache.tomcat.sendfile.start";
+
+	private static final String SENDFILE_END_ATTRIBUTE = "org.apache.tomcat.sendfile.end";
+
+	private FileResponseWriter() {
+		throw new AssertionError("This is a static utility class.");
+	}
+
+	/**
+	 * Write the provided file to the response. Headers that are not related to the
+	 * content, e.g. the content type, must be set before.
+	 * @param file the file to write
+	 * @param eTag the strong entity tag of the file, used to evaluate the
+	 * {@code If-Range} header
+	 * @param lastModified the last modification time of the file in milliseconds
+	 * @param request the current request, used to evaluate the {@code Range} header
+	 * @param response the response to write to
+	 * @throws IOException in case the file cannot be read or the response cannot be
+	 * written
+	 */
+	static void write(Path file, String eTag, long lastModified, HttpServletRequest request,
+			HttpServletResponse response) throws IOException {
+		final long length = Files.size(file);
+		response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+		long start = 0;
+		long end = length - 1;
+		final HttpRange range = isRangeApplicable(request, eTag, lastModified) ? getRange(request, length) : null;
+		if (range != null) {
+			start = range.getRangeStart(length);
+			end = range.getRangeEnd(length);
+			if (start >= length || start > end) {
+				response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+				response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+				response.setContentLength(0);
+				return;
+			}
+			response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+			response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+		}
+
+		final long count = end - start + 1;
+		response.setContentLengthLong(count);
+		if (count <= 0 || "HEAD".equals(request.getMethod())) {
+			return;
+		}
+
+		if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT_ATTRIBUTE))) {
+			// The container sends the file once the request has been processed.
+			request.setAttribute(SENDFILE_FILENAME_ATTRIBUTE, file.toAbsolutePath().toString());
+			request.setAttribute(SENDFILE_START_ATTRIBUTE, start);
+			request.setAttribute(SENDFILE_END_ATTRIBUTE, end + 1);
+			return;
+		}
+
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			final WritableByteChannel target = Channels.newChannel(response.getOutputStream());
+			long position = start;
+			while (position <= end) {
+				position += channel.transferTo(position, end + 1 - position, target);
+			}
+		}
+	}
+
+	/**
+	 * Evaluate the {@code If-Range} header. A range is only returned if the client's copy
+	 * is still current, i.e. the provided strong entity tag or the exact modification
+	 * date matches. Otherwise, the whole file is returned.
+	 * @param request the current request
+	 * @param eTag the strong entity tag of the file
+	 * @param lastModified the last modification time of the file in milliseconds
+	 * @return true if the {@code Range} header is to be evaluated
+	 */
+	private static boolean isRangeApplicable(HttpServletRequest request, String eTag, long lastModified) {
+		final String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+		if (ifRange == null) {
+			return true;
+		}
+		if (ifRange.startsWith("\"")) {
+			return ifRange.equals(eTag);
+		}
+		try {
+			return request.getDateHeader(HttpHeaders.IF_RANGE) / 1000 == lastModified / 1000;
+		}
+		catch (IllegalArgumentException ex) {
+			return false;
+		}
+	}
+
+	/**
+	 * Return the requested byte range. Requests for multiple ranges are answered with the
+	 * whole file, which is permitted by RFC 9110.
+	 * @param request the current request
+	 * @param length the length of the file
+	 * @return the requested range or null if the whole file is to be returned
+	 */
+	private static HttpRange getRange(HttpServletRequest request, long length) {
+		final String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+		if (rangeHeader == null || length == 0) {
+			return null;
+		}
+		try {
+			final List<HttpRange> ranges = HttpRange.parseRanges(rangeHeader);
+			return (ranges.size() == 1) ? ranges.get(0) : null;
+		}
+		catch (IllegalArgumentException ex) {
+			// Invalid range headers are ignored.
+			return null;
+		}
+	}
+
+}
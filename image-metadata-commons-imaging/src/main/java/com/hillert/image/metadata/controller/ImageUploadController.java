@@ -16,14 +16,21 @@
 package com.hillert.image.metadata.controller;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.EnumSet;
+import java.util.Set;
 
 import com.hillert.image.metadata.controller.form.ImageUploadForm;
 import com.hillert.image.metadata.model.DirectoryType;
+import com.hillert.image.metadata.model.MetadataPatch;
 import com.hillert.image.metadata.service.ImageService;
 import com.hillert.image.metadata.service.MetadataService;
-import com.hillert.image.metadata.service.support.MetadataExtractor;
+import com.hillert.image.metadata.service.RenditionService;
+import com.hillert.image.metadata.service.support.FormatProbe;
+import com.hillert.image.metadata.service.support.FormatProbe.ImageFormat;
 import jakarta.validation.Valid;
-import org.apache.commons.imaging.ImageInfo;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -51,16 +58,30 @@ public class ImageUploadController {
 
 	private static final String INDEX_TEMPLATE = "index";
 
+	/**
+	 * The metadata that is removed from uploaded images if requested. ICC profiles are
+	 * kept, as they are needed to render the colors of the image correctly.
+	 */
+	private static final Set<DirectoryType> PURGED_DIRECTORY_TYPES = EnumSet.of(DirectoryType.EXIF,
+			DirectoryType.IPTC, DirectoryType.XMP);
+
 	private final ImageService imageService;
 
 	private final MetadataService metadataService;
 
 	private final MultipartProperties multipartProperties;
 
-	public ImageUploadController(ImageService imageService, MetadataService metadataService, MultipartProperties multipartProperties) {
+	private final RenditionService renditionService;
+
+	private final FormatProbe formatProbe;
+
+	public ImageUploadController(ImageService imageService, MetadataService metadataService,
+			MultipartProperties multipartProperties, RenditionService renditionService, FormatProbe formatProbe) {
 		this.imageService = imageService;
 		this.metadataService = metadataService;
 		this.multipartProperties = multipartProperties;
+		this.renditionService = renditionService;
+		this.formatProbe = formatProbe;
 	}
 
 	@GetMapping({ "/upload-error" })
@@ -83,25 +104,24 @@ public class ImageUploadController {
 
 		final MultipartFile imageFile = imageUploadForm.getImageFile();
 
-		byte[] imageBytes;
-		try {
-			imageBytes = imageFile.getBytes();
+		final ImageFormat imageFormat;
+		try (InputStream inputStream = imageFile.getInputStream()) {
+			imageFormat = this.formatProbe.probe(inputStream);
 		}
 		catch (IOException ex) {
 			throw new IllegalStateException("Unable to retrieve image data from upload file.", ex);
 		}
-
-		final ImageInfo imageInfo = MetadataExtractor.loadImageInfo(imageBytes);
+		final String verifiedMimeType = (imageFormat != null) ? imageFormat.mimeType() : null;
 		LOGGER.info("File Content-Type - Submitted as '{}' verified as '{}'.", imageFile.getContentType(),
-				imageInfo.getMimeType());
+				verifiedMimeType);
 
 		final String contentType = imageFile.getContentType();
 		if (contentType == null) {
 			result.reject("upload.mime-type.required", null);
 		}
-		else if (!contentType.equalsIgnoreCase(imageInfo.getMimeType())) {
-			result.reject("upload.mime-type.mot.match",
-					new Object[] { imageFile.getContentType(), imageInfo.getMimeType() }, null);
+		else if (!contentType.equalsIgnoreCase(verifiedMimeType)) {
+			result.reject("upload.mime-type.mot.match", new Object[] { imageFile.getContentType(), verifiedMimeType },
+					null);
 		}
 
 		if (result.hasErrors()) {
@@ -110,18 +130,24 @@ public class ImageUploadController {
 			return INDEX_TEMPLATE;
 		}
 
-		if (Boolean.TRUE.equals(imageUploadForm.getRemoveMetadata())) {
-			imageBytes = this.metadataService.purge(imageBytes, DirectoryType.EXIF);
-			imageBytes = this.metadataService.purge(imageBytes, DirectoryType.IPTC);
-			imageBytes = this.metadataService.purge(imageBytes, DirectoryType.XMP);
-		}
-
-		if (imageUploadForm.isUpdateMetadataNeeded()) {
-			imageBytes = this.metadataService.updateMetadata(imageBytes, imageUploadForm.getPopulateWindowsTags(),
-					imageUploadForm.getReferenceId(), imageUploadForm.getTitle());
-		}
-
-		this.imageService.store(imageBytes, imageFile.getOriginalFilename());
+		final Set<DirectoryType> directoryTypesToPurge = Boolean.TRUE.equals(imageUploadForm.getRemoveMetadata())
+				? PURGED_DIRECTORY_TYPES : EnumSet.noneOf(DirectoryType.class);
+		final MetadataPatch patch = imageUploadForm.isUpdateMetadataNeeded()
+				? this.metadataService.createMetadataPatch(imageUploadForm.getPopulateWindowsTags(),
+						imageUploadForm.getReferenceId(), imageUploadForm.getTitle())
+				: new MetadataPatch();
+
+		// Stream the upload into the storage directory, without loading it into memory
+		this.imageService.store(imageFile.getOriginalFilename(), (channel) -> {
+			try (ReadableByteChannel source = Channels.newChannel(imageFile.getInputStream())) {
+				this.metadataService.rewrite(source, channel, directoryTypesToPurge, patch);
+			}
+			catch (IOException ex) {
+				throw new IllegalStateException("Unable to retrieve image data from upload file.", ex);
+			}
+		});
+		this.metadataService.storeMetadataSidecar(this.imageService.loadAsResource(imageFile.getOriginalFilename()));
+		this.renditionService.generateLadder(imageFile.getOriginalFilename());
 
 		redirectAttributes.addFlashAttribute("success",
 				"You successfully uploaded " + imageFile.getOriginalFilename() + "!");
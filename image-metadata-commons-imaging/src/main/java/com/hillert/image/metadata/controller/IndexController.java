@@ -15,30 +15,40 @@
  */
 package com.hillert.image.metadata.controller;
 
-import java.awt.image.BufferedImage;
 import java.io.IOException;
+import java.util.Locale;
 import java.util.TimeZone;
 
+import com.hillert.image.metadata.config.MetadataConfigProperties;
+import com.hillert.image.metadata.config.MetadataConfigProperties.Http;
 import com.hillert.image.metadata.controller.form.ImageUploadForm;
 import com.hillert.image.metadata.model.Metadata;
+import com.hillert.image.metadata.model.Rendition;
 import com.hillert.image.metadata.service.ImageService;
 import com.hillert.image.metadata.service.MetadataService;
+import com.hillert.image.metadata.service.RenditionService;
 import com.hillert.image.metadata.service.support.ImageLoaderType;
-import com.hillert.image.metadata.service.support.MetadataExtractor;
-import org.apache.commons.imaging.ImageInfo;
+import com.hillert.image.metadata.service.support.RenditionCache.SourceImage;
+import com.hillert.image.metadata.service.support.ResizeQuality;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.thymeleaf.context.LazyContextVariable;
 
 import org.springframework.boot.servlet.autoconfigure.MultipartProperties;
-import org.springframework.core.io.ByteArrayResource;
 import org.springframework.core.io.Resource;
+import org.springframework.http.ContentDisposition;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
+import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 /**
@@ -57,11 +67,18 @@ public class IndexController {
 
 	private final MultipartProperties multipartProperties;
 
+	private final RenditionService renditionService;
+
+	private final MetadataConfigProperties metadataConfigProperties;
+
 	public IndexController(ImageService imageService, MetadataService metadataService,
-			MultipartProperties multipartProperties) {
+			MultipartProperties multipartProperties, RenditionService renditionService,
+			MetadataConfigProperties metadataConfigProperties) {
 		this.imageService = imageService;
 		this.metadataService = metadataService;
 		this.multipartProperties = multipartProperties;
+		this.renditionService = renditionService;
+		this.metadataConfigProperties = metadataConfigProperties;
 	}
 
 	@GetMapping({ "/" })
@@ -91,7 +108,13 @@ public class IndexController {
 		model.addAttribute("metadata", metadata.getDirectoriesPerType());
 		model.addAttribute("metadataCount", metadata.getDirectoryCount());
 		model.addAttribute("mapLocation", metadata.getGnssInfo());
-		model.addAttribute("xmpData", metadata.getXmpData());
+		model.addAttribute("hasXmpData", StringUtils.hasText(metadata.getXmpData()));
+		model.addAttribute("xmpData", new LazyContextVariable<String>() {
+			@Override
+			protected String loadValue() {
+				return IndexController.this.metadataService.getFormattedXmpData(metadata);
+			}
+		});
 
 		model.addAttribute("imageDescription", this.metadataService.getImageDescription(imageResource));
 		return "imageDetails";
@@ -99,42 +122,92 @@ public class IndexController {
 
 	@GetMapping("/images/{filename:.+}")
 	@ResponseBody
-	public ResponseEntity<Resource> serveFile(@PathVariable(name = "filename") String filename,
+	public ResponseEntity<StreamingResponseBody> serveFile(@PathVariable(name = "filename") String filename,
 			@RequestParam(name = "width", required = false) Integer width,
 			@RequestParam(name = "addLabel", required = false, defaultValue = "true") boolean addLabel,
 			@RequestParam(name = "imageLoaderType", required = false) ImageLoaderType imageLoaderType,
-			@RequestParam(name = "download", required = false, defaultValue = "false") boolean download)
-			throws IOException {
-		final Resource file = this.imageService.loadAsResource(filename);
-		byte[] imageBytes = null;
-		imageLoaderType = ImageLoaderType.IMAGE_IO;
-		final ImageInfo imageInfo = MetadataExtractor.loadImageInfo(file.getContentAsByteArray());
-
-		final BufferedImage bufferedImage = this.imageService.loadAsBufferedImage(file, imageLoaderType,
-				imageInfo.getMimeType());
-
-		final String label;
+			@RequestParam(name = "resizeQuality", required = false) ResizeQuality resizeQuality,
+			@RequestParam(name = "download", required = false, defaultValue = "false") boolean download,
+			HttpServletRequest request, HttpServletResponse response) throws IOException {
+
+		final SourceImage sourceImage = this.renditionService.getSourceImage(filename);
+		// An explicit width always produces a rendition, metadata.do-not-resize only
+		// applies to requests for the full-size image.
+		final boolean original = width == null
+				&& (Boolean.TRUE.equals(this.metadataConfigProperties.getDoNotResize()) || !addLabel);
+		final Integer renditionWidth = original ? null : this.renditionService.getRenditionWidth(sourceImage, width);
+		final ResizeQuality renditionResizeQuality = (resizeQuality != null) ? resizeQuality
+				: this.metadataConfigProperties.getRenditions().getResizeQuality();
+		final String eTag = original ? getETag(sourceImage)
+				: getETag(sourceImage, renditionWidth, addLabel, renditionResizeQuality);
+
+		final Http http = this.metadataConfigProperties.getHttp();
+		final String cacheControl = original ? http.getOriginalCacheControl() : http.getRenditionCacheControl();
+		if (StringUtils.hasText(cacheControl)) {
+			response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl);
+		}
 
-		if (addLabel) {
-			label = filename;
+		// Sets the ETag and Last-Modified headers and answers conditional requests before
+		// any image is decoded.
+		if (new ServletWebRequest(request, response).checkNotModified(eTag, sourceImage.lastModified())) {
+			return null;
 		}
-		else {
-			label = null;
+
+		if (original) {
+			// Serve the stored file as is, without decoding and re-encoding it.
+			response.setContentType(sourceImage.mimeType());
+			if (download) {
+				response.setHeader(HttpHeaders.CONTENT_DISPOSITION, getContentDisposition(filename));
+			}
+			FileResponseWriter.write(sourceImage.path(), eTag, sourceImage.lastModified(), request, response);
+			return null;
 		}
 
-		imageBytes = this.imageService.resizeImage(bufferedImage, label, width, imageInfo.getMimeType());
+		final Rendition rendition = this.renditionService.getRendition(filename, width, addLabel,
+				renditionResizeQuality, (imageLoaderType != null) ? imageLoaderType : ImageLoaderType.IMAGE_IO);
 
-		final ByteArrayResource byteArrayResource = new ByteArrayResource(imageBytes);
 		if (download) {
-			return ResponseEntity.ok()
-				.header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
-				.body(byteArrayResource);
+			response.setHeader(HttpHeaders.CONTENT_DISPOSITION, getContentDisposition(filename));
 		}
-		else {
-			return ResponseEntity.ok()
-				.contentType(MediaType.parseMediaType(imageInfo.getMimeType()))
-				.body(byteArrayResource);
+		if (rendition.file() != null) {
+			response.setContentType(rendition.mimeType());
+			FileResponseWriter.write(rendition.file(), eTag, sourceImage.lastModified(), request, response);
+			return null;
 		}
+		// The rendition is encoded directly onto the response.
+		return ResponseEntity.ok()
+			.contentType(MediaType.parseMediaType(rendition.mimeType()))
+			.body(rendition::writeTo);
+	}
+
+	/**
+	 * Return the strong entity tag of the stored image, derived from its content.
+	 * @param sourceImage the stored image
+	 * @return the entity tag
+	 */
+	private static String getETag(SourceImage sourceImage) {
+		return "\"" + sourceImage.contentHash() + "\"";
+	}
+
+	/**
+	 * Return the strong entity tag of a rendition, derived from the content of the stored
+	 * image and the parameters the rendition is created with. Renditions are cached, so
+	 * that the same parameters always result in the same bytes.
+	 * @param sourceImage the stored image
+	 * @param renditionWidth the width of the rendition, see
+	 * {@link RenditionService#getRenditionWidth}
+	 * @param addLabel whether the rendition is labeled
+	 * @param resizeQuality how the rendition is downscaled
+	 * @return the entity tag
+	 */
+	private static String getETag(SourceImage sourceImage, Integer renditionWidth, boolean addLabel,
+			ResizeQuality resizeQuality) {
+		return "\"" + sourceImage.contentHash() + "-" + ((renditionWidth != null) ? renditionWidth : "original") + "-"
+				+ (addLabel ? "labeled" : "plain") + "-" + resizeQuality.name().toLowerCase(Locale.ROOT) + "\"";
+	}
+
+	private static String getContentDisposition(String filename) {
+		return ContentDisposition.attachment().filename(filename).build().toString();
 	}
 
 }
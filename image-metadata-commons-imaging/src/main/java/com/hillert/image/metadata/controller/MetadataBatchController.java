@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2025 Gunnar Hillert.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hillert.image.metadata.controller;
+
+import java.net.URI;
+
+import com.hillert.image.metadata.controller.form.MetadataBatchRequest;
+import com.hillert.image.metadata.model.MetadataBatchProgress;
+import com.hillert.image.metadata.model.MetadataPatch;
+import com.hillert.image.metadata.model.MetadataPatch.XmpProperty;
+import com.hillert.image.metadata.service.MetadataBatchService;
+import com.hillert.image.metadata.service.MetadataService;
+import jakarta.validation.Valid;
+import org.apache.commons.imaging.formats.jpeg.iptc.IptcTypes;
+import org.apache.commons.imaging.formats.tiff.constants.MicrosoftTagConstants;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.StringUtils;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * REST endpoints to update the metadata of many stored images at once. Batch jobs run
+ * asynchronously, their progress can be polled and they can be cancelled.
+ *
+ * @author Gunnar Hillert
+ */
+@RestController
+@RequestMapping("/api/metadata/batches")
+public class MetadataBatchController {
+
+	private final MetadataBatchService metadataBatchService;
+
+	private final MetadataService metadataService;
+
+	public MetadataBatchController(MetadataBatchService metadataBatchService, MetadataService metadataService) {
+		this.metadataBatchService = metadataBatchService;
+		this.metadataService = metadataService;
+	}
+
+	@PostMapping
+	public ResponseEntity<MetadataBatchProgress> submit(@Valid @RequestBody MetadataBatchRequest request) {
+		final MetadataPatch patch = createMetadataPatch(request);
+		if (patch.isEmpty()) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "No metadata to update was provided.");
+		}
+
+		final MetadataBatchProgress progress;
+		try {
+			progress = this.metadataBatchService.submit(request.getFilenames(), patch);
+		}
+		catch (IllegalStateException ex) {
+			throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, ex.getMessage(), ex);
+		}
+		return ResponseEntity.accepted().location(URI.create("/api/metadata/batches/" + progress.id())).body(progress);
+	}
+
+	@GetMapping("/{id}")
+	public MetadataBatchProgress getProgress(@PathVariable String id) {
+		return requireJob(this.metadataBatchService.getProgress(id), id);
+	}
+
+	@DeleteMapping("/{id}")
+	public MetadataBatchProgress cancel(@PathVariable String id) {
+		return requireJob(this.metadataBatchService.cancel(id), id);
+	}
+
+	/**
+	 * Map the request to a {@link MetadataPatch}. Title and reference id are stored like
+	 * for uploaded images, see {@link MetadataService#createMetadataPatch}. Subject,
+	 * comment and rating only exist as Microsoft Windows EXIF tags and are therefore
+	 * always stored there.
+	 * @param request the batch request
+	 * @return the metadata patch
+	 */
+	private MetadataPatch createMetadataPatch(MetadataBatchRequest request) {
+		final MetadataPatch patch = this.metadataService.createMetadataPatch(request.isPopulateWindowsTags(),
+				request.getReferenceId(), request.getTitle());
+
+		if (StringUtils.hasText(request.getDescription())) {
+			patch.iptcRecord(IptcTypes.CAPTION_ABSTRACT, request.getDescription());
+			patch.xmpProperty(XmpProperty.DESCRIPTION, request.getDescription());
+		}
+		if (StringUtils.hasText(request.getKeywords())) {
+			patch.xmpProperty(XmpProperty.SUBJECT, request.getKeywords());
+			if (request.isPopulateWindowsTags()) {
+				patch.exifField(MicrosoftTagConstants.EXIF_TAG_XPKEYWORDS, request.getKeywords());
+			}
+		}
+		if (StringUtils.hasText(request.getSubject())) {
+			patch.exifField(MicrosoftTagConstants.EXIF_TAG_XPSUBJECT, request.getSubject());
+		}
+		if (StringUtils.hasText(request.getComment())) {
+			patch.exifField(MicrosoftTagConstants.EXIF_TAG_XPCOMMENT, request.getComment());
+		}
+		if (request.getRating() != null) {
+			patch.exifField(MicrosoftTagConstants.EXIF_TAG_RATING, request.getRating().shortValue());
+		}
+		return patch;
+	}
+
+	private static MetadataBatchProgress requireJob(MetadataBatchProgress progress, String id) {
+		if (progress == null) {
+			throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Unknown batch job " + id);
+		}
+		return progress;
+	}
+
+}
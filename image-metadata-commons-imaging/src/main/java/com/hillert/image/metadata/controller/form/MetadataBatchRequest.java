@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2025 Gunnar Hillert.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hillert.image.metadata.controller.form;
+
+import java.util.List;
+
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotEmpty;
+
+/**
+ * Contains the data of a request to update the metadata of many stored images. Only the
+ * provided values are changed.
+ *
+ * @author Gunnar Hillert
+ */
+public class MetadataBatchRequest {
+
+	@NotEmpty
+	private List<String> filenames;
+
+	private String referenceId;
+
+	private String title;
+
+	private String description;
+
+	/**
+	 * Semicolon-separated keywords.
+	 */
+	private String keywords;
+
+	private String subject;
+
+	private String comment;
+
+	@Min(0)
+	@Max(5)
+	private Integer rating;
+
+	private boolean populateWindowsTags;
+
+	public List<String> getFilenames() {
+		return this.filenames;
+	}
+
+	public void setFilenames(List<String> filenames) {
+		this.filenames = filenames;
+	}
+
+	public String getReferenceId() {
+		return this.referenceId;
+	}
+
+	public void setReferenceId(String referenceId) {
+		this.referenceId = referenceId;
+	}
+
+	public String getTitle() {
+		return this.title;
+	}
+
+	public void setTitle(String title) {
+		this.title = title;
+	}
+
+	public String getDescription() {
+		return this.description;
+	}
+
+	public void setDescription(String description) {
+		this.description = description;
+	}
+
+	public String getKeywords() {
+		return this.keywords;
+	}
+
+	public void setKeywords(String keywords) {
+		this.keywords = keywords;
+	}
+
+	public String getSubject() {
+		return this.subject;
+	}
+
+	public void setSubject(String subject) {
+		this.subject = subject;
+	}
+
+	public String getComment() {
+		return this.comment;
+	}
+
+	public void setComment(String comment) {
+		this.comment = comment;
+	}
+
+	public Integer getRating() {
+		return this.rating;
+	}
+
+	public void setRating(Integer rating) {
+		this.rating = rating;
+	}
+
+	public boolean isPopulateWindowsTags() {
+		return this.populateWindowsTags;
+	}
+
+	public void setPopulateWindowsTags(boolean populateWindowsTags) {
+		this.populateWindowsTags = populateWindowsTags;
+	}
+
+}
@@ -15,6 +15,11 @@
  */
 package com.hillert.image.metadata.controller.validation;
 
+import java.io.IOException;
+import java.io.InputStream;
+
+import com.hillert.image.metadata.service.support.FormatProbe;
+import com.hillert.image.metadata.service.support.FormatProbe.ImageFormat;
 import jakarta.validation.ConstraintValidator;
 import jakarta.validation.ConstraintValidatorContext;
 
@@ -22,17 +27,23 @@ import org.springframework.http.MediaType;
 import org.springframework.web.multipart.MultipartFile;
 
 /**
- * {@link ConstraintValidator} that ensures that a provided file is provided and that only
- * certain filetypes (mime-types) are supported.
+ * {@link ConstraintValidator} that ensures that a file is provided and that only certain
+ * image formats are supported. The format is identified from the image headers using
+ * the {@link FormatProbe}, i.e. the content type submitted by the client is not trusted.
  *
- * IMPORTANT: This is merely a convenience validator in case the mime-type is not
- * supported. If the mime-type is accepted, proper backend validation of the image data
- * shall still be performed.
+ * IMPORTANT: Only the headers of the image are validated. The image data itself may
+ * still be invalid.
  *
  * @author Gunnar Hillert
  */
 public class ImageFileValidator implements ConstraintValidator<ValidImage, MultipartFile> {
 
+	private final FormatProbe formatProbe;
+
+	public ImageFileValidator(FormatProbe formatProbe) {
+		this.formatProbe = formatProbe;
+	}
+
 	@Override
 	public boolean isValid(MultipartFile multipartFile, ConstraintValidatorContext context) {
 
@@ -46,21 +57,15 @@ public class ImageFileValidator implements ConstraintValidator<ValidImage, Multi
 			return result;
 		}
 
-		String contentType = multipartFile.getContentType();
-
-		if (contentType == null) {
-			context.disableDefaultConstraintViolation();
-			context.buildConstraintViolationWithTemplate("Cannot retrieve content-type.").addConstraintViolation();
-
-			result = false;
-			return result;
+		final ImageFormat imageFormat;
+		try (InputStream inputStream = multipartFile.getInputStream()) {
+			imageFormat = this.formatProbe.probe(inputStream);
+		}
+		catch (IOException ex) {
+			throw new IllegalStateException("Unable to retrieve image data from upload file.", ex);
 		}
 
-		/**
-		 * Important: Keep in mind that the contentType can be faked. A deeper validation
-		 * of the uploaded file should be done in the service layer.
-		 */
-		if (!isSupportedContentType(contentType)) {
+		if (imageFormat == null || !isSupportedContentType(imageFormat.mimeType())) {
 			context.disableDefaultConstraintViolation();
 			context.buildConstraintViolationWithTemplate("Only GIF, JPG, PNG images are allowed.")
 				.addConstraintViolation();
@@ -64,6 +64,37 @@ public enum DirectoryType {
 	 */
 	WINDOWS("WINDOWS", "Windows-specific EXIF tags"),
 
+	/**
+	 * GPS-related EXIF tags.
+	 */
+	GPS("GPS", "GPS EXIF tags"),
+
+	/**
+	 * EXIF Interoperability tags.
+	 */
+	INTEROP("INTEROP", "EXIF Interoperability tags"),
+
+	/**
+	 * Camera manufacturer-specific EXIF tags.
+	 */
+	MAKER_NOTE("MAKER_NOTE", "Manufacturer-specific EXIF tags"),
+
+	/**
+	 * Embedded ICC color profiles.
+	 */
+	ICC("ICC", "ICC Color Profile"),
+
+	/**
+	 * Textual comments, e.g. JPEG COM segments, PNG text chunks or GIF comment
+	 * extensions.
+	 */
+	COMMENT("COMMENT", "Image Comments"),
+
+	/**
+	 * Embedded thumbnail (preview) images.
+	 */
+	THUMBNAIL("THUMBNAIL", "Embedded Thumbnails"),
+
 	/**
 	 * Generic (other) metadata.
 	 */
@@ -42,6 +42,14 @@ public class GnssInfo {
 		this.longitude = longitude;
 	}
 
+	public GnssInfo(GnssInfo source) {
+		this.latitude = source.latitude;
+		this.longitude = source.longitude;
+		this.elevation = source.elevation;
+		this.gnssTime = source.gnssTime;
+		this.userTimeZone = source.userTimeZone;
+	}
+
 	public double getLatitude() {
 		return this.latitude;
 	}
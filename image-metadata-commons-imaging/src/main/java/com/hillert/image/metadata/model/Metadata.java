@@ -31,6 +31,20 @@ public class Metadata {
 	private GnssInfo gnssInfo;
 	private String xmpData;
 
+	public Metadata() {
+	}
+
+	/**
+	 * Copy constructor. The {@link GnssInfo} is copied as well, as it holds
+	 * request-specific state (the user's time zone).
+	 * @param source the metadata to copy
+	 */
+	public Metadata(Metadata source) {
+		this.directories.addAll(source.directories);
+		this.gnssInfo = (source.gnssInfo != null) ? new GnssInfo(source.gnssInfo) : null;
+		this.xmpData = source.xmpData;
+	}
+
 	public Iterable<Directory> getDirectories() {
 		return this.directories;
 	}
@@ -82,6 +96,10 @@ public class Metadata {
 		this.xmpData = xmpData;
 	}
 
+	/**
+	 * Returns the raw (unformatted) XMP packet.
+	 * @return the XMP packet or null if the image does not contain XMP data
+	 */
 	public String getXmpData() {
 		return this.xmpData;
 	}
@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2025 Gunnar Hillert.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hillert.image.metadata.model;
+
+import java.util.Map;
+
+/**
+ * Snapshot of the progress of a batch job that applies a {@link MetadataPatch} to many
+ * stored images.
+ *
+ * @param id the id of the batch job
+ * @param status the status of the batch job
+ * @param total the number of images in the batch
+ * @param processed the number of images processed so far, including failed ones
+ * @param failed the number of images that could not be updated
+ * @param failures error messages keyed by image filename. Only the first failures are
+ * reported.
+ * @author Gunnar Hillert
+ */
+public record MetadataBatchProgress(String id, Status status, int total, int processed, int failed,
+		Map<String, String> failures) {
+
+	/**
+	 * The status of a batch job.
+	 */
+	public enum Status {
+
+		/**
+		 * Images are being updated.
+		 */
+		RUNNING,
+
+		/**
+		 * The job was cancelled, but images that were already being updated are still
+		 * being processed.
+		 */
+		CANCELLING,
+
+		/**
+		 * The job was cancelled, remaining images were not updated.
+		 */
+		CANCELLED,
+
+		/**
+		 * All images were processed.
+		 */
+		COMPLETED
+
+	}
+
+}
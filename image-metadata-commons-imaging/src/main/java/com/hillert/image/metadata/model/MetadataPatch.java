@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2025 Gunnar Hillert.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hillert.image.metadata.model;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.commons.imaging.formats.jpeg.iptc.IptcType;
+import org.apache.commons.imaging.formats.tiff.taginfos.TagInfo;
+import org.apache.commons.imaging.formats.tiff.taginfos.TagInfoAscii;
+import org.apache.commons.imaging.formats.tiff.taginfos.TagInfoShort;
+import org.apache.commons.imaging.formats.tiff.taginfos.TagInfoXpString;
+
+import org.springframework.util.Assert;
+
+/**
+ * Describes a set of changes to the EXIF, IPTC and XMP metadata of an image, so that all
+ * of them can be applied in a single pass. Setting a value replaces any existing value
+ * of the same tag, record or property.
+ *
+ * @author Gunnar Hillert
+ */
+public class MetadataPatch {
+
+	private final Map<TagInfo, Object> exifFields = new LinkedHashMap<>();
+
+	private final Map<IptcType, String> iptcRecords = new LinkedHashMap<>();
+
+	private final Map<XmpProperty, String> xmpProperties = new EnumMap<>(XmpProperty.class);
+
+	private int exifPadding;
+
+	/**
+	 * Create an empty patch.
+	 */
+	public MetadataPatch() {
+	}
+
+	/**
+	 * Create a copy of the provided patch.
+	 * @param patch the patch to copy, must not be null
+	 */
+	public MetadataPatch(MetadataPatch patch) {
+		Assert.notNull(patch, "patch must not be null.");
+		this.exifFields.putAll(patch.exifFields);
+		this.iptcRecords.putAll(patch.iptcRecords);
+		this.xmpProperties.putAll(patch.xmpProperties);
+		this.exifPadding = patch.exifPadding;
+	}
+
+	public MetadataPatch exifField(TagInfoAscii tagInfo, String value) {
+		return putExifField(tagInfo, value);
+	}
+
+	public MetadataPatch exifField(TagInfoXpString tagInfo, String value) {
+		return putExifField(tagInfo, value);
+	}
+
+	public MetadataPatch exifField(TagInfoShort tagInfo, short value) {
+		return putExifField(tagInfo, value);
+	}
+
+	public MetadataPatch iptcRecord(IptcType iptcType, String value) {
+		Assert.notNull(iptcType, "iptcType must not be null.");
+		Assert.notNull(value, "value must not be null.");
+		this.iptcRecords.put(iptcType, value);
+		return this;
+	}
+
+	public MetadataPatch xmpProperty(XmpProperty xmpProperty, String value) {
+		Assert.notNull(xmpProperty, "xmpProperty must not be null.");
+		Assert.notNull(value, "value must not be null.");
+		this.xmpProperties.put(xmpProperty, value);
+		return this;
+	}
+
+	/**
+	 * Reserve the provided number of bytes in the EXIF segment, using a padding field,
+	 * so that later changes to the EXIF data can be written in place. Any existing
+	 * padding is replaced.
+	 * @param exifPadding the number of bytes to reserve, 0 to keep the existing padding
+	 * @return this patch
+	 */
+	public MetadataPatch exifPadding(int exifPadding) {
+		Assert.isTrue(exifPadding >= 0, "exifPadding must not be negative.");
+		this.exifPadding = exifPadding;
+		return this;
+	}
+
+	public int getExifPadding() {
+		return this.exifPadding;
+	}
+
+	/**
+	 * Returns the EXIF fields to set. Values are either {@link String}s or
+	 * {@link Short}s, depending on the type of the {@link TagInfo}.
+	 * @return unmodifiable map of EXIF fields
+	 */
+	public Map<TagInfo, Object> getExifFields() {
+		return Collections.unmodifiableMap(this.exifFields);
+	}
+
+	public Map<IptcType, String> getIptcRecords() {
+		return Collections.unmodifiableMap(this.iptcRecords);
+	}
+
+	public Map<XmpProperty, String> getXmpProperties() {
+		return Collections.unmodifiableMap(this.xmpProperties);
+	}
+
+	/**
+	 * Returns whether the patch does not change any metadata values. A requested
+	 * {@link #exifPadding(int) EXIF padding} is not considered a change.
+	 * @return true if no tag, record or property is set
+	 */
+	public boolean isEmpty() {
+		return this.exifFields.isEmpty() && this.iptcRecords.isEmpty() && this.xmpProperties.isEmpty();
+	}
+
+	private MetadataPatch putExifField(TagInfo tagInfo, Object value) {
+		Assert.notNull(tagInfo, "tagInfo must not be null.");
+		Assert.notNull(value, "value must not be null.");
+		this.exifFields.put(tagInfo, value);
+		return this;
+	}
+
+	/**
+	 * The supported XMP (Dublin Core) properties.
+	 */
+	public enum XmpProperty {
+
+		/**
+		 * The title of the image (dc:title).
+		 */
+		TITLE,
+
+		/**
+		 * An unambiguous reference to the image (dc:identifier).
+		 */
+		IDENTIFIER,
+
+		/**
+		 * The description of the image (dc:description).
+		 */
+		DESCRIPTION,
+
+		/**
+		 * Semicolon-separated keywords describing the image (dc:subject).
+		 */
+		SUBJECT
+
+	}
+
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2025 Gunnar Hillert.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hillert.image.metadata.model;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * A possibly resized and labeled version of a stored image. The encoded image is either
+ * available as a cached file, which can be sent without copying it onto the heap, or it
+ * is written on demand, so that it is never buffered as a whole.
+ *
+ * @param mimeType the MIME type of the encoded image
+ * @param file the file containing the encoded image or null
+ * @param contentWriter writes the encoded image if no file is available, may only be
+ * invoked once
+ * @author Gunnar Hillert
+ */
+public record Rendition(String mimeType, Path file, ContentWriter contentWriter) {
+
+	public void writeTo(OutputStream outputStream) throws IOException {
+		if (this.file != null) {
+			Files.copy(this.file, outputStream);
+		}
+		else {
+			this.contentWriter.writeTo(outputStream);
+		}
+	}
+
+	/**
+	 * Writes encoded image data.
+	 */
+	@FunctionalInterface
+	public interface ContentWriter {
+
+		void writeTo(OutputStream outputStream) throws IOException;
+
+	}
+
+}
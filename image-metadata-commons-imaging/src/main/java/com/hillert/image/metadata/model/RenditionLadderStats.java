@@ -0,0 +1,30 @@
+/*
+ * Copyright (c) 2025 Gunnar Hillert.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hillert.image.metadata.model;
+
+/**
+ * Snapshot of the background generation of rendition ladders.
+ *
+ * @param queued the number of images waiting for their rendition ladder
+ * @param active the number of rendition ladders currently being generated
+ * @param completed the number of generated rendition ladders
+ * @param failed the number of rendition ladders that could not be generated
+ * @param rejected the number of images skipped because the queue was full
+ * @author Gunnar Hillert
+ */
+public record RenditionLadderStats(int queued, int active, long completed, long failed, long rejected) {
+
+}
@@ -15,43 +15,43 @@
  */
 package com.hillert.image.metadata.service;
 
-import java.awt.Color;
-import java.awt.Font;
-import java.awt.FontFormatException;
-import java.awt.Graphics;
-import java.awt.Graphics2D;
-import java.awt.RenderingHints;
 import java.awt.image.BufferedImage;
-import java.io.BufferedInputStream;
-import java.io.ByteArrayInputStream;
-import java.io.File;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.MalformedURLException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
 import java.util.stream.Stream;
 
-import javax.swing.JLabel;
-import javax.swing.SwingConstants;
-
 import com.hillert.image.metadata.config.StorageConfigProperties;
 import com.hillert.image.metadata.service.support.CommonUtils;
+import com.hillert.image.metadata.service.support.ImageCodecPool;
 import com.hillert.image.metadata.service.support.ImageIoTools;
 import com.hillert.image.metadata.service.support.ImageLoader;
 import com.hillert.image.metadata.service.support.ImageLoaderType;
+import com.hillert.image.metadata.service.support.LabelRenderer;
+import com.hillert.image.metadata.service.support.MetadataCache;
+import com.hillert.image.metadata.service.support.MetadataSidecar;
+import com.hillert.image.metadata.service.support.RenditionCache;
 import com.hillert.image.metadata.service.support.StorageException;
-import org.apache.commons.io.FileUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.io.ClassPathResource;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.UrlResource;
 import org.springframework.stereotype.Service;
+import org.springframework.util.Assert;
 import org.springframework.util.FileSystemUtils;
 import org.springframework.util.StopWatch;
 import org.springframework.util.StringUtils;
@@ -67,47 +67,90 @@ public class DefaultImageService implements ImageService {
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(DefaultImageService.class);
 
+	private static final String TEMP_FILE_EXTENSION = ".tmp";
+
 	private final Path rootLocation;
 
+	private final MetadataCache metadataCache;
+
+	private final RenditionCache renditionCache;
+
+	private final LabelRenderer labelRenderer;
+
+	private final ImageCodecPool imageCodecPool;
+
 	@Autowired
-	public DefaultImageService(StorageConfigProperties properties) {
+	public DefaultImageService(StorageConfigProperties properties, MetadataCache metadataCache,
+			RenditionCache renditionCache, LabelRenderer labelRenderer, ImageCodecPool imageCodecPool) {
 		this.rootLocation = Paths.get(properties.getLocation());
+		this.metadataCache = metadataCache;
+		this.renditionCache = renditionCache;
+		this.labelRenderer = labelRenderer;
+		this.imageCodecPool = imageCodecPool;
 	}
 
 	@Override
 	public void store(byte[] imageBytes, String originalFilename) {
-		try (InputStream inputStream = new ByteArrayInputStream(imageBytes)) {
-			Path destinationFile = this.rootLocation.resolve(Paths.get(originalFilename)).normalize().toAbsolutePath();
-			Files.copy(inputStream, destinationFile, StandardCopyOption.REPLACE_EXISTING);
-		}
-		catch (IOException ex) {
-			throw new StorageException("Unable to store file " + originalFilename, ex);
-		}
+		store(originalFilename, (channel) -> {
+			try {
+				final ByteBuffer buffer = ByteBuffer.wrap(imageBytes);
+				while (buffer.hasRemaining()) {
+					channel.write(buffer);
+				}
+			}
+			catch (IOException ex) {
+				throw new StorageException("Unable to store file " + originalFilename, ex);
+			}
+		});
 	}
 
 	@Override
 	public void store(MultipartFile file) {
-		try {
-			if (file.isEmpty()) {
-				throw new StorageException("Failed to store empty file.");
+		if (file.isEmpty()) {
+			throw new StorageException("Failed to store empty file.");
+		}
+		store(file.getOriginalFilename(), (channel) -> {
+			try (InputStream inputStream = file.getInputStream()) {
+				inputStream.transferTo(Channels.newOutputStream(channel));
 			}
-			final Path destinationFile = this.rootLocation.resolve(Paths.get(file.getOriginalFilename()))
-				.normalize()
-				.toAbsolutePath();
-			final Path parentPath = destinationFile.getParent();
-
-			if (parentPath == null) {
-				throw new StorageException("Parent path cannot be null.");
+			catch (IOException ex) {
+				throw new StorageException("Failed to store file.", ex);
 			}
-			if (!parentPath.equals(this.rootLocation.toAbsolutePath())) {
-				throw new StorageException("Cannot store file outside current directory.");
+		});
+	}
+
+	@Override
+	public void store(String originalFilename, Consumer<WritableByteChannel> contentWriter) {
+		Assert.hasText(originalFilename, "originalFilename must not be null or empty.");
+		Assert.notNull(contentWriter, "contentWriter must not be null.");
+
+		final Path destinationFile = this.rootLocation.resolve(Paths.get(originalFilename))
+			.normalize()
+			.toAbsolutePath();
+		final Path parentPath = destinationFile.getParent();
+
+		if (parentPath == null) {
+			throw new StorageException("Parent path cannot be null.");
+		}
+		if (!parentPath.equals(this.rootLocation.toAbsolutePath())) {
+			throw new StorageException("Cannot store file outside current directory.");
+		}
+
+		try {
+			final Path tempFile = Files.createTempFile(parentPath, ".upload-", TEMP_FILE_EXTENSION);
+			try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.WRITE)) {
+				contentWriter.accept(channel);
 			}
-			try (InputStream inputStream = file.getInputStream()) {
-				Files.copy(inputStream, destinationFile, StandardCopyOption.REPLACE_EXISTING);
+			catch (IOException | RuntimeException ex) {
+				Files.deleteIfExists(tempFile);
+				throw ex;
 			}
+			Files.move(tempFile, destinationFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			this.metadataCache.invalidate(destinationFile);
+			this.renditionCache.invalidate(destinationFile);
 		}
 		catch (IOException ex) {
-			throw new StorageException("Failed to store file.", ex);
+			throw new StorageException("Unable to store file " + originalFilename, ex);
 		}
 	}
 
@@ -119,17 +162,23 @@ public class DefaultImageService implements ImageService {
 
 	@Override
 	public BufferedImage loadAsBufferedImage(Resource imageResource, ImageLoaderType imageLoaderType, String mimeType) {
+		return loadAsBufferedImage(imageResource, imageLoaderType, mimeType, null);
+	}
+
+	@Override
+	public BufferedImage loadAsBufferedImage(Resource imageResource, ImageLoaderType imageLoaderType, String mimeType,
+			Integer targetWidth) {
 		if (imageLoaderType == null) {
 			imageLoaderType = ImageLoaderType.AWT_TOOLKIT;
 		}
 		final StopWatch stopWatch = new StopWatch();
 		stopWatch.start();
-		final ImageLoader imageLoader = new ImageLoader();
+		final ImageLoader imageLoader = new ImageLoader(this.imageCodecPool);
 		final BufferedImage bufferedImage;
 		final String imageLoaderTypeName = imageLoaderType.name();
 		switch (imageLoaderType) {
 			case IMAGE_IO -> {
-				bufferedImage = imageLoader.loadImageUsingImageIO(imageResource);
+				bufferedImage = imageLoader.loadImageUsingImageIO(imageResource, mimeType, targetWidth);
 			}
 			case AWT_TOOLKIT -> {
 				bufferedImage = imageLoader.loadImageUsingAwtToolkit(imageResource);
@@ -176,6 +225,8 @@ public class DefaultImageService implements ImageService {
 	@Override
 	public void deleteAll() {
 		FileSystemUtils.deleteRecursively(this.rootLocation.toFile());
+		this.metadataCache.invalidateAll();
+		this.renditionCache.invalidateAll();
 	}
 
 	@Override
@@ -183,7 +234,11 @@ public class DefaultImageService implements ImageService {
 		final Resource image = loadAsResource(filename);
 		if (image.exists()) {
 			try {
-				Files.delete(image.getFile().toPath());
+				final Path imagePath = image.getFile().toPath();
+				Files.delete(imagePath);
+				MetadataSidecar.delete(imagePath);
+				this.metadataCache.invalidate(imagePath);
+				this.renditionCache.invalidate(imagePath);
 			}
 			catch (IOException ex) {
 				throw new StorageException("Could not delete file.", ex);
@@ -196,10 +251,16 @@ public class DefaultImageService implements ImageService {
 		try {
 			return Files.walk(this.rootLocation, 1)
 				.filter((path) -> !path.equals(this.rootLocation))
+				// Skips the rendition cache, see RenditionCache#DEFAULT_DISK_LOCATION
+				.filter(Files::isRegularFile)
 				.filter((path) -> {
 					Path fileName = path.getFileName();
-					return fileName == null
-							|| !fileName.toString().toLowerCase().endsWith(".txt");
+					if (fileName == null) {
+						return true;
+					}
+					final String name = fileName.toString().toLowerCase();
+					return !name.endsWith(".txt") && !name.endsWith(MetadataSidecar.FILE_EXTENSION)
+							&& !name.endsWith(TEMP_FILE_EXTENSION);
 				})
 				.map(this.rootLocation::relativize);
 		}
@@ -211,79 +272,28 @@ public class DefaultImageService implements ImageService {
 
 	@Override
 	public byte[] resizeImage(BufferedImage bufferedImage, String label, Integer targetWidth, String mimeType) {
+		return encodeImage(ImageIoTools.resizeImage(bufferedImage, targetWidth), label, mimeType);
+	}
 
-		final BufferedImage outputBufferedImage = ImageIoTools.resizeImage(bufferedImage, targetWidth);
-
-		if (!StringUtils.hasText(label)) {
-			return ImageIoTools.writeImage(outputBufferedImage, mimeType);
-		}
-
-		final String fontName = "Montserrat-SemiBold.ttf";
-		final File tempDirFile;
+	@Override
+	public byte[] encodeImage(BufferedImage outputBufferedImage, String label, String mimeType) {
+		final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
 		try {
-			tempDirFile = Files.createTempDirectory("metadata").toFile();
-		}
-		catch (IOException ex) {
-			throw new IllegalStateException("Cannot create temp directory.", ex);
-		}
-		final String tempDir = tempDirFile.getAbsolutePath();
-		final Resource fontResource = new ClassPathResource("/fonts/" + fontName);
-		final File destinationFontFile = new File(tempDir, fontName);
-		final Font font;
-		final float fontSize = 20f;
-		try (InputStream stream = new BufferedInputStream(fontResource.getInputStream())) {
-			FileUtils.copyInputStreamToFile(stream, destinationFontFile);
-			LOGGER.info("Copied font '{}' to '{}'.", fontName, destinationFontFile.getAbsolutePath());
-			font = Font.createFont(Font.TRUETYPE_FONT, destinationFontFile).deriveFont(fontSize);
-		}
-		catch (FontFormatException ex) {
-			throw new IllegalStateException(
-					"Font file does not contain the required font tables for the specified format.", ex);
+			encodeImage(outputBufferedImage, label, mimeType, outputStream);
 		}
 		catch (IOException ex) {
-			throw new IllegalStateException("Error creating font.", ex);
-		}
-
-		if (outputBufferedImage.getGraphics() instanceof Graphics2D graphics2D) {
-			setGraphicsQuality(graphics2D);
-			render(graphics2D, label, 2, 2 + (int) Math.ceil(fontSize),
-					font, outputBufferedImage.getWidth(), outputBufferedImage.getHeight());
+			throw new IllegalStateException("Unable to create ImageOutputStream.", ex);
 		}
-		else {
-			throw new IllegalStateException(
-					"outputBufferedImage.getGraphics() is not an instance of Graphics2D but was "
-							+ outputBufferedImage.getGraphics().getClass().getSimpleName());
-		}
-
-		return ImageIoTools.writeImage(outputBufferedImage, mimeType);
+		return outputStream.toByteArray();
 	}
 
-	public static void setGraphicsQuality(Graphics2D g2D) {
-		final RenderingHints rh = new RenderingHints(RenderingHints.KEY_TEXT_ANTIALIASING,
-				RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
-		rh.put(RenderingHints.KEY_FRACTIONALMETRICS, RenderingHints.VALUE_FRACTIONALMETRICS_ON);
-		rh.put(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_LCD_HRGB);
-
-		rh.put(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
-		rh.put(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
-
-		g2D.setRenderingHints(rh);
-	}
-
-	private void render(Graphics g, String stringToRender, int x, int y, Font font, int width, int height) {
-		g.setFont(font);
-		g.setColor(Color.green);
-//		g.drawString(stringToRender, x, y);
-
-		final JLabel label = new JLabel();
-		label.setForeground(Color.red);
-		label.setSize(width - (2 * x), height - (2 * y));
-		label.setFont(font);
-		label.setVerticalAlignment(SwingConstants.TOP);
-		label.setText("<html><p style=\"width:" + width + "px\">" + stringToRender + "</p></html>");
-		g.translate(x, y);
-		label.paint(g);
+	@Override
+	public void encodeImage(BufferedImage outputBufferedImage, String label, String mimeType,
+			OutputStream outputStream) throws IOException {
+		if (StringUtils.hasText(label)) {
+			this.labelRenderer.render(outputBufferedImage, label);
+		}
+		this.imageCodecPool.write(outputBufferedImage, mimeType, outputStream);
 	}
 
-
 }
@@ -0,0 +1,303 @@
+/*
+ * Copyright (c) 2025 Gunnar Hillert.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hillert.image.metadata.service;
+
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.hillert.image.metadata.config.MetadataConfigProperties;
+import com.hillert.image.metadata.model.MetadataBatchProgress;
+import com.hillert.image.metadata.model.MetadataBatchProgress.Status;
+import com.hillert.image.metadata.model.MetadataPatch;
+import com.hillert.image.metadata.service.support.StorageException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Service;
+import org.springframework.util.Assert;
+
+/**
+ * Default implementation of the {@link MetadataBatchService}. Batch jobs run on a
+ * bounded thread pool, see {@link MetadataConfigProperties.Batch}. Instead of submitting
+ * one task per image, each job submits up to {@code threads} workers that take the next
+ * image from the job until all images are processed or the job is cancelled. This keeps
+ * the executor queue small even for jobs with many thousands of images. Updates of the
+ * same image are serialized, also across jobs.
+ *
+ * @author Gunnar Hillert
+ */
+@Service
+public class DefaultMetadataBatchService implements MetadataBatchService, DisposableBean {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(DefaultMetadataBatchService.class);
+
+	private static final int MAX_REPORTED_FAILURES = 100;
+
+	private static final int PROGRESS_LOG_INTERVAL = 1000;
+
+	private static final int UPDATE_LOCK_STRIPES = 64;
+
+	private final ImageService imageService;
+
+	private final MetadataService metadataService;
+
+	private final ThreadPoolExecutor executor;
+
+	private final int threads;
+
+	private final int retainedJobs;
+
+	/**
+	 * The known jobs in submission order. Guarded by itself.
+	 */
+	private final Map<String, BatchJob> jobs = new LinkedHashMap<>();
+
+	/**
+	 * Striped locks that serialize updates of the same image across jobs, selected by
+	 * the hash code of the filename.
+	 */
+	private final Object[] updateLocks = new Object[UPDATE_LOCK_STRIPES];
+
+	/**
+	 * Constructor.
+	 * @param metadataConfigProperties the {@link MetadataConfigProperties}
+	 * @param imageService used to resolve the stored images
+	 * @param metadataService used to update a single image
+	 */
+	public DefaultMetadataBatchService(MetadataConfigProperties metadataConfigProperties, ImageService imageService,
+			MetadataService metadataService) {
+		final MetadataConfigProperties.Batch batch = metadataConfigProperties.getBatch();
+		this.imageService = imageService;
+		this.metadataService = metadataService;
+		this.threads = batch.getThreads();
+		this.retainedJobs = batch.getRetainedJobs();
+		for (int i = 0; i < this.updateLocks.length; i++) {
+			this.updateLocks[i] = new Object();
+		}
+		this.executor = new ThreadPoolExecutor(this.threads, this.threads, 0L, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(batch.getQueueCapacity()), new BatchThreadFactory());
+	}
+
+	@Override
+	public MetadataBatchProgress submit(List<String> filenames, MetadataPatch patch) {
+		Assert.notEmpty(filenames, "filenames must not be empty.");
+		Assert.notNull(patch, "patch must not be null.");
+		Assert.isTrue(!patch.isEmpty(), "patch must not be empty.");
+
+		// Each image is updated once, so that workers do not race to rewrite the same file.
+		final List<String> distinctFilenames = List.copyOf(new LinkedHashSet<>(filenames));
+		final BatchJob job = new BatchJob(UUID.randomUUID().toString(), distinctFilenames, new MetadataPatch(patch));
+		final int workers = Math.min(this.threads, job.filenames.size());
+		job.activeWorkers.set(workers);
+
+		for (int i = 0; i < workers; i++) {
+			try {
+				this.executor.execute(() -> runWorker(job));
+			}
+			catch (RejectedExecutionException ex) {
+				// Workers that were already submitted stop before processing any image.
+				job.cancelled = true;
+				job.activeWorkers.addAndGet(i - workers);
+				throw new IllegalStateException("Too many metadata batch jobs are queued, please try again later.",
+						ex);
+			}
+		}
+
+		synchronized (this.jobs) {
+			this.jobs.put(job.id, job);
+			evictFinishedJobs();
+		}
+		LOGGER.info("Submitted metadata batch job {} for {} images.", job.id, job.filenames.size());
+		return job.getProgress();
+	}
+
+	@Override
+	public MetadataBatchProgress getProgress(String id) {
+		final BatchJob job = getJob(id);
+		return (job != null) ? job.getProgress() : null;
+	}
+
+	@Override
+	public MetadataBatchProgress cancel(String id) {
+		final BatchJob job = getJob(id);
+		if (job == null) {
+			return null;
+		}
+		job.cancelled = true;
+		LOGGER.info("Cancelled metadata batch job {}.", id);
+		return job.getProgress();
+	}
+
+	@Override
+	public void destroy() {
+		synchronized (this.jobs) {
+			this.jobs.values().forEach((job) -> job.cancelled = true);
+		}
+		this.executor.shutdownNow();
+	}
+
+	private BatchJob getJob(String id) {
+		synchronized (this.jobs) {
+			return this.jobs.get(id);
+		}
+	}
+
+	private void evictFinishedJobs() {
+		int finishedJobs = (int) this.jobs.values().stream().filter(BatchJob::isFinished).count();
+		final Iterator<BatchJob> iterator = this.jobs.values().iterator();
+		while (finishedJobs > this.retainedJobs && iterator.hasNext()) {
+			if (iterator.next().isFinished()) {
+				iterator.remove();
+				finishedJobs--;
+			}
+		}
+	}
+
+	private void runWorker(BatchJob job) {
+		try {
+			while (!job.cancelled && !Thread.currentThread().isInterrupted()) {
+				final int index = job.nextIndex.getAndIncrement();
+				if (index >= job.filenames.size()) {
+					break;
+				}
+				final String filename = job.filenames.get(index);
+				try {
+					updateMetadata(filename, job.patch);
+				}
+				catch (RuntimeException ex) {
+					LOGGER.warn("Unable to update the metadata of {} in batch job {}.", filename, job.id, ex);
+					job.addFailure(filename, ex.getMessage());
+				}
+				final int processed = job.processed.incrementAndGet();
+				if (processed % PROGRESS_LOG_INTERVAL == 0) {
+					LOGGER.info("Metadata batch job {}: {} of {} images processed.", job.id, processed,
+							job.filenames.size());
+				}
+			}
+		}
+		finally {
+			if (job.activeWorkers.decrementAndGet() == 0) {
+				final MetadataBatchProgress progress = job.getProgress();
+				LOGGER.info("Metadata batch job {} {}: {} of {} images processed, {} failed.", job.id,
+						progress.status().name().toLowerCase(), progress.processed(), progress.total(),
+						progress.failed());
+			}
+		}
+	}
+
+	private void updateMetadata(String filename, MetadataPatch patch) {
+		// Only stored images may be updated, i.e. files directly inside the storage
+		// directory.
+		final Path path = Path.of(filename);
+		if (path.getNameCount() != 1 || path.isAbsolute() || "..".equals(filename)) {
+			throw new StorageException("Invalid filename " + filename);
+		}
+		// Jobs may contain the same image, rewriting it concurrently would lose updates.
+		final Object updateLock = this.updateLocks[Math.floorMod(path.toString().hashCode(),
+				this.updateLocks.length)];
+		synchronized (updateLock) {
+			this.metadataService.updateMetadata(this.imageService.loadAsResource(filename), patch);
+		}
+	}
+
+	/**
+	 * The mutable state of a batch job.
+	 */
+	private static final class BatchJob {
+
+		private final String id;
+
+		private final List<String> filenames;
+
+		private final MetadataPatch patch;
+
+		private final AtomicInteger nextIndex = new AtomicInteger();
+
+		private final AtomicInteger processed = new AtomicInteger();
+
+		private final AtomicInteger failed = new AtomicInteger();
+
+		private final AtomicInteger activeWorkers = new AtomicInteger();
+
+		/**
+		 * The first failures, guarded by itself.
+		 */
+		private final Map<String, String> failures = new LinkedHashMap<>();
+
+		private volatile boolean cancelled;
+
+		BatchJob(String id, List<String> filenames, MetadataPatch patch) {
+			this.id = id;
+			this.filenames = filenames;
+			this.patch = patch;
+		}
+
+		void addFailure(String filename, String message) {
+			this.failed.incrementAndGet();
+			synchronized (this.failures) {
+				if (this.failures.size() < MAX_REPORTED_FAILURES) {
+					this.failures.put(filename, message);
+				}
+			}
+		}
+
+		boolean isFinished() {
+			return this.activeWorkers.get() == 0;
+		}
+
+		MetadataBatchProgress getProgress() {
+			final Status status;
+			if (isFinished()) {
+				status = (this.processed.get() < this.filenames.size()) ? Status.CANCELLED : Status.COMPLETED;
+			}
+			else {
+				status = this.cancelled ? Status.CANCELLING : Status.RUNNING;
+			}
+			synchronized (this.failures) {
+				return new MetadataBatchProgress(this.id, status, this.filenames.size(), this.processed.get(),
+						this.failed.get(), Collections.unmodifiableMap(new LinkedHashMap<>(this.failures)));
+			}
+		}
+
+	}
+
+	private static final class BatchThreadFactory implements ThreadFactory {
+
+		private final AtomicInteger threadNumber = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+			final Thread thread = new Thread(runnable, "metadata-batch-" + this.threadNumber.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+
+	}
+
+}
@@ -19,58 +19,57 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.Files;
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-
-import javax.xml.transform.TransformerConfigurationException;
-import javax.xml.transform.TransformerException;
-import javax.xml.transform.stream.StreamSource;
+import java.util.Set;
+import java.util.concurrent.Callable;
 
 import com.hillert.image.metadata.config.MetadataConfigProperties;
+import com.hillert.image.metadata.model.Directory;
 import com.hillert.image.metadata.model.DirectoryType;
 import com.hillert.image.metadata.model.GnssInfo;
 import com.hillert.image.metadata.model.Metadata;
-import com.hillert.image.metadata.service.support.CommonUtils;
+import com.hillert.image.metadata.model.MetadataPatch;
+import com.hillert.image.metadata.model.MetadataPatch.XmpProperty;
+import com.hillert.image.metadata.service.support.ExifInPlaceUpdater;
+import com.hillert.image.metadata.service.support.ImageFingerprint;
 import com.hillert.image.metadata.service.support.ImageProcessingException;
+import com.hillert.image.metadata.service.support.MetadataCache;
+import com.hillert.image.metadata.service.support.MetadataExtractionContext;
+import com.hillert.image.metadata.service.support.MetadataExtractionExecutor;
 import com.hillert.image.metadata.service.support.MetadataExtractor;
-import org.apache.commons.imaging.Imaging;
-import org.apache.commons.imaging.ImagingException;
+import com.hillert.image.metadata.service.support.MetadataPurger;
+import com.hillert.image.metadata.service.support.MetadataSidecar;
+import com.hillert.image.metadata.service.support.RenditionCache;
+import com.hillert.image.metadata.service.support.StorageException;
+import com.hillert.image.metadata.service.support.StreamingMetadataRewriter;
+import com.hillert.image.metadata.service.support.XmpFormatter;
 import org.apache.commons.imaging.common.GenericImageMetadata;
 import org.apache.commons.imaging.common.ImageMetadata;
 import org.apache.commons.imaging.formats.gif.GifImageMetadata;
 import org.apache.commons.imaging.formats.jpeg.JpegImageMetadata;
-import org.apache.commons.imaging.formats.jpeg.JpegPhotoshopMetadata;
-import org.apache.commons.imaging.formats.jpeg.exif.ExifRewriter;
-import org.apache.commons.imaging.formats.jpeg.iptc.IptcBlock;
-import org.apache.commons.imaging.formats.jpeg.iptc.IptcRecord;
 import org.apache.commons.imaging.formats.jpeg.iptc.IptcTypes;
-import org.apache.commons.imaging.formats.jpeg.iptc.JpegIptcRewriter;
-import org.apache.commons.imaging.formats.jpeg.iptc.PhotoshopApp13Data;
-import org.apache.commons.imaging.formats.jpeg.xmp.JpegXmpRewriter;
-import org.apache.commons.imaging.formats.tiff.TiffImageMetadata;
 import org.apache.commons.imaging.formats.tiff.constants.MicrosoftTagConstants;
 import org.apache.commons.imaging.formats.tiff.constants.TiffTagConstants;
-import org.apache.commons.imaging.formats.tiff.write.TiffOutputDirectory;
-import org.apache.commons.imaging.formats.tiff.write.TiffOutputSet;
-import org.apache.xmlgraphics.xmp.XMPParser;
-import org.apache.xmlgraphics.xmp.XMPSerializer;
-import org.apache.xmlgraphics.xmp.schemas.DublinCoreAdapter;
-import org.apache.xmlgraphics.xmp.schemas.DublinCoreSchema;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.xml.sax.SAXException;
 
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.messages.UserMessage;
 import org.springframework.ai.content.Media;
 import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Service;
+import org.springframework.util.Assert;
 import org.springframework.util.MimeType;
-import org.springframework.util.StreamUtils;
 import org.springframework.util.StringUtils;
 
 /**
@@ -87,52 +86,120 @@ public class DefaultMetadataService implements MetadataService {
 
 	private final ChatClient chatClient;
 
+	private final MetadataCache metadataCache;
+
+	private final MetadataExtractionExecutor metadataExtractionExecutor;
+
+	private final XmpFormatter xmpFormatter;
+
+	private final RenditionCache renditionCache;
+
 	/**
 	 * Constructor.
 	 * @param metadataConfigProperties the {@link MetadataConfigProperties}
 	 * @param chatClientBuilder the ChatClient.Builder used to build the chatClient
+	 * @param metadataCache caches the extracted metadata of stored images
+	 * @param metadataExtractionExecutor executes the metadata extraction steps
+	 * @param xmpFormatter pretty-prints XMP data for display
+	 * @param renditionCache caches the resized images, invalidated on metadata updates
 	 */
-	public DefaultMetadataService(MetadataConfigProperties metadataConfigProperties, ChatClient.Builder chatClientBuilder) {
+	public DefaultMetadataService(MetadataConfigProperties metadataConfigProperties, ChatClient.Builder chatClientBuilder,
+			MetadataCache metadataCache, MetadataExtractionExecutor metadataExtractionExecutor,
+			XmpFormatter xmpFormatter, RenditionCache renditionCache) {
 		this.metadataConfigProperties = metadataConfigProperties;
 		this.chatClient = chatClientBuilder.build();
+		this.metadataCache = metadataCache;
+		this.metadataExtractionExecutor = metadataExtractionExecutor;
+		this.xmpFormatter = xmpFormatter;
+		this.renditionCache = renditionCache;
 	}
 
 	@Override
 	public Metadata getExifData(Resource resource) {
-		final Metadata metadataToReturn = new Metadata();
-
-		metadataToReturn.addDirectories(MetadataExtractor.getFileMetadata(resource));
-		metadataToReturn.addDirectories(MetadataExtractor.getXMPMetadata(resource));
-		metadataToReturn.addDirectories(MetadataExtractor.getImageInfo(resource));
+		return this.metadataCache.get(ImageFingerprint.of(resource), () -> loadMetadata(resource));
+	}
 
-		final ImageMetadata metadata = MetadataExtractor.getImageMetadata(resource);
+	@Override
+	public String getFormattedXmpData(Metadata metadata) {
+		return this.xmpFormatter.format(metadata.getXmpData());
+	}
 
-		if (metadata == null) {
-			return metadataToReturn;
+	@Override
+	public void storeMetadataSidecar(Resource resource) {
+		if (!this.metadataConfigProperties.getSidecar().isEnabled()) {
+			return;
 		}
+		final Metadata metadata = extractMetadata(resource);
+		MetadataSidecar.write(getImagePath(resource), metadata);
+	}
 
-		if (metadata instanceof JpegImageMetadata jpegImageMetadata) {
-			metadataToReturn.addDirectories(MetadataExtractor.getJpegImageMetadata(jpegImageMetadata));
-			final GnssInfo gnssInfo = MetadataExtractor.getGnssMetadata(jpegImageMetadata);
-			metadataToReturn.setGnssInfo(gnssInfo);
+	/**
+	 * Load the metadata from the sidecar file of the image. Falls back to a full
+	 * extraction if the sidecar is missing or stale, and (re-)creates the sidecar
+	 * afterwards.
+	 * @param resource the image resource
+	 * @return the metadata of the image
+	 */
+	private Metadata loadMetadata(Resource resource) {
+		if (!this.metadataConfigProperties.getSidecar().isEnabled() || !resource.isFile()) {
+			return extractMetadata(resource);
 		}
-		else if (metadata instanceof GenericImageMetadata genericImageMetadata) {
-			metadataToReturn.addDirectories(MetadataExtractor.getGenericImageMetadata(genericImageMetadata));
+
+		final Path imagePath = getImagePath(resource);
+		final Metadata sidecarMetadata = MetadataSidecar.read(imagePath);
+
+		if (sidecarMetadata != null) {
+			return sidecarMetadata;
 		}
-		else if (metadata instanceof GifImageMetadata gifImageMetadata) {
-			metadataToReturn.addDirectories(MetadataExtractor.getGifImageMetadata(gifImageMetadata));
+
+		final Metadata metadata = extractMetadata(resource);
+		try {
+			MetadataSidecar.write(imagePath, metadata);
 		}
-		else {
-			throw new IllegalStateException("Unsupported metadata type " + metadata.getClass().getSimpleName());
+		catch (StorageException ex) {
+			LOGGER.warn("Unable to write the metadata sidecar for {}.", resource.getFilename(), ex);
 		}
+		return metadata;
+	}
 
-		final String xmpXmlData;
+	private Path getImagePath(Resource resource) {
 		try {
-			xmpXmlData = this.getXmpXml(StreamUtils.copyToByteArray(resource.getInputStream()));
+			return resource.getFile().toPath();
 		}
 		catch (IOException ex) {
-			throw new ImageProcessingException("Unable to get Inputstream from resource " + resource.getFilename(), ex);
+			throw new ImageProcessingException("Resource is not file-based: " + resource, ex);
+		}
+	}
+
+	private Metadata extractMetadata(Resource resource) {
+		final Metadata metadataToReturn = new Metadata();
+		final MetadataExtractionContext context = new MetadataExtractionContext(resource);
+
+		// Read the image data up-front, so that the families can share it.
+		context.getMetadataBytes();
+
+		final Map<String, Callable<ExtractedFamily>> families = new LinkedHashMap<>();
+		families.put("file", () -> new ExtractedFamily(MetadataExtractor.getFileMetadata(context), null));
+		families.put("xmp",
+				() -> new ExtractedFamily(MetadataExtractor.getXMPMetadata(context), context.getXmpXml()));
+		families.put("imageInfo", () -> new ExtractedFamily(MetadataExtractor.getImageInfo(context), null));
+		families.put("exif", () -> extractImageMetadata(context));
+
+		String xmpXmlData = null;
+
+		for (ExtractedFamily extractedFamily : this.metadataExtractionExecutor.execute(families)) {
+			if (extractedFamily == null) {
+				return metadataToReturn;
+			}
+			metadataToReturn.addDirectories(extractedFamily.directories());
+			if (extractedFamily.gnssInfo() != null) {
+				metadataToReturn.setGnssInfo(extractedFamily.gnssInfo());
+			}
+			if (extractedFamily.xmpData() != null) {
+				xmpXmlData = extractedFamily.xmpData();
+			}
 		}
+
 		if (xmpXmlData != null) {
 			metadataToReturn.setXmpData(xmpXmlData);
 		}
@@ -140,40 +207,46 @@ public class DefaultMetadataService implements MetadataService {
 	}
 
 	/**
-	 * This method will purge the image metadata for the provided metadataType. The
-	 * following 3 types are supported:
-	 * <ul>
-	 * <li>{@link DirectoryType#EXIF}
-	 * <li>{@link DirectoryType#IPTC}
-	 * <li>{@link DirectoryType#XMP}
-	 * </ul>
-	 * See also consider https://issues.apache.org/jira/browse/IMAGING-132.
-	 * @param imageBytes the image data to purge metadata from
-	 * @param metadataType which type of metadata to purge
-	 * @return the modified image data #throws ImageProcessingException in case an
-	 * unsupported {@link DirectoryType} is proided
+	 * Extract the EXIF, IPTC and GNSS metadata.
+	 * @param context the extraction context
+	 * @return the extracted family or null if the image does not contain any metadata
 	 */
-	@Override
-	public byte[] purge(byte[] imageBytes, DirectoryType metadataType) {
-
-		LOGGER.info("Remove metadata for metadataType {}", metadataType.getName());
+	private ExtractedFamily extractImageMetadata(MetadataExtractionContext context) {
+		final ImageMetadata metadata = context.getImageMetadata();
 
-		final byte[] purgedImageData;
+		if (metadata == null) {
+			return null;
+		}
 
-		try (ByteArrayOutputStream os = new ByteArrayOutputStream();) {
-			switch (metadataType) {
-				case EXIF -> new ExifRewriter().removeExifMetadata(imageBytes, os);
-				case IPTC -> new JpegIptcRewriter().removeIptc(imageBytes, os);
-				case XMP -> new JpegXmpRewriter().removeXmpXml(imageBytes, os);
-				default ->
-					throw new ImageProcessingException("Unsupported DirectoryType " + metadataType.getName(), null);
-			}
-			purgedImageData = os.toByteArray();
+		if (metadata instanceof JpegImageMetadata jpegImageMetadata) {
+			return new ExtractedFamily(MetadataExtractor.getJpegImageMetadata(jpegImageMetadata),
+					MetadataExtractor.getGnssMetadata(jpegImageMetadata), null);
 		}
-		catch (IOException ex) {
-			throw new ImageProcessingException("Unable to purge Image metadata for " + metadataType.getName(), ex);
+		else if (metadata instanceof GenericImageMetadata genericImageMetadata) {
+			return new ExtractedFamily(MetadataExtractor.getGenericImageMetadata(genericImageMetadata), null);
+		}
+		else if (metadata instanceof GifImageMetadata gifImageMetadata) {
+			return new ExtractedFamily(MetadataExtractor.getGifImageMetadata(gifImageMetadata), null);
+		}
+		else {
+			throw new IllegalStateException("Unsupported metadata type " + metadata.getClass().getSimpleName());
 		}
-		return purgedImageData;
+	}
+
+	/**
+	 * This method will purge the image metadata for the provided directoryTypes in a
+	 * single pass. JPEG, PNG and GIF images are supported, see {@link MetadataPurger}
+	 * for the supported {@link DirectoryType}s.
+	 * @param imageBytes the image data to purge metadata from
+	 * @param directoryTypes which types of metadata to purge
+	 * @return the modified image data
+	 * @throws ImageProcessingException in case an unsupported {@link DirectoryType} or
+	 * image format is provided
+	 */
+	@Override
+	public byte[] purge(byte[] imageBytes, Set<DirectoryType> directoryTypes) {
+		LOGGER.info("Remove metadata for directoryTypes {}", directoryTypes);
+		return MetadataPurger.purge(imageBytes, directoryTypes);
 	}
 
 	@Override
@@ -181,30 +254,105 @@ public class DefaultMetadataService implements MetadataService {
 
 		LOGGER.info("populateWindowsTags: {}; referenceId: {}; title: {}", populateWindowsTags, referenceId, title);
 
-		final HashMap<String, String> exifTagsToPopulate = new HashMap<>();
-		final HashMap<String, String> iptcTagsToPopulate = new HashMap<>();
-		final HashMap<String, String> xmpTagsToPopulate = new HashMap<>();
+		final MetadataPatch patch = createMetadataPatch(populateWindowsTags, referenceId, title);
+		final ByteArrayOutputStream out = new ByteArrayOutputStream(imageBytes.length + 1024);
+		rewrite(Channels.newChannel(new ByteArrayInputStream(imageBytes)), Channels.newChannel(out), Set.of(), patch);
+		return out.toByteArray();
+	}
+
+	@Override
+	public MetadataPatch createMetadataPatch(boolean populateWindowsTags, String referenceId, String title) {
+		final MetadataPatch patch = new MetadataPatch();
 
 		if (StringUtils.hasText(referenceId)) {
-			iptcTagsToPopulate.put("referenceId", referenceId);
-			xmpTagsToPopulate.put("referenceId", referenceId);
+			patch.iptcRecord(IptcTypes.ORIGINAL_TRANSMISSION_REFERENCE, referenceId);
+			patch.xmpProperty(XmpProperty.IDENTIFIER, referenceId);
 		}
 
 		if (StringUtils.hasText(title)) {
-			exifTagsToPopulate.put("imageDescription", title);
-			iptcTagsToPopulate.put("objectName", title);
-			xmpTagsToPopulate.put("title", title);
+			patch.exifField(TiffTagConstants.TIFF_TAG_IMAGE_DESCRIPTION, title);
+			patch.iptcRecord(IptcTypes.OBJECT_NAME, title);
+			patch.xmpProperty(XmpProperty.TITLE, title);
 
 			if (populateWindowsTags) {
-				exifTagsToPopulate.put("xptitle", title);
+				patch.exifField(MicrosoftTagConstants.EXIF_TAG_XPTITLE, title);
+			}
+		}
+
+		return patch;
+	}
+
+	@Override
+	public void rewrite(ReadableByteChannel source, WritableByteChannel target, Set<DirectoryType> directoryTypesToPurge,
+			MetadataPatch patch) {
+
+		LOGGER.info("Rewrite metadata, purging directoryTypes {}", directoryTypesToPurge);
+
+		try {
+			StreamingMetadataRewriter.rewrite(source, target, directoryTypesToPurge, reserveExifPadding(patch));
+		}
+		catch (IOException ex) {
+			throw new ImageProcessingException("Unable to rewrite the image metadata.", ex);
+		}
+	}
+
+	@Override
+	public void updateMetadata(Resource resource, MetadataPatch patch) {
+		Assert.notNull(resource, "resource must not be null.");
+		Assert.notNull(patch, "patch must not be null.");
+
+		final Path imagePath = getImagePath(resource);
+		try {
+			if (this.metadataConfigProperties.getInPlaceUpdate().isEnabled()
+					&& ExifInPlaceUpdater.update(imagePath, patch)) {
+				LOGGER.info("Updated the metadata of {} in place.", resource.getFilename());
+			}
+			else {
+				rewriteFile(imagePath, patch);
 			}
 		}
+		catch (IOException ex) {
+			throw new ImageProcessingException("Unable to update the metadata of " + resource.getFilename(), ex);
+		}
+		finally {
+			MetadataSidecar.delete(imagePath);
+			this.metadataCache.invalidate(imagePath);
+			this.renditionCache.invalidate(imagePath);
+		}
+	}
 
-		byte[] resultImageBytes = populateExifTags(imageBytes, exifTagsToPopulate);
-		resultImageBytes = populateIptcTags(resultImageBytes, iptcTagsToPopulate);
-		resultImageBytes = populateXmpTags(resultImageBytes, xmpTagsToPopulate);
+	/**
+	 * Rewrite the image file with the provided patch applied. The image is streamed into
+	 * a temporary file in the same directory, which then atomically replaces the image.
+	 * @param imagePath the image file
+	 * @param patch the metadata changes
+	 * @throws IOException in case the image cannot be read or written
+	 */
+	private void rewriteFile(Path imagePath, MetadataPatch patch) throws IOException {
+		final Path tempFile = Files.createTempFile(imagePath.toAbsolutePath().getParent(), ".update-", ".tmp");
+		try (FileChannel source = FileChannel.open(imagePath, StandardOpenOption.READ);
+				FileChannel target = FileChannel.open(tempFile, StandardOpenOption.WRITE)) {
+			StreamingMetadataRewriter.rewrite(source, target, Set.of(), reserveExifPadding(patch));
+		}
+		catch (IOException | RuntimeException ex) {
+			Files.deleteIfExists(tempFile);
+			throw ex;
+		}
+		Files.move(tempFile, imagePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
 
-		return resultImageBytes;
+	/**
+	 * Add the configured EXIF padding to the patch if in-place updates are enabled, so
+	 * that later EXIF changes can be written in place. Only applies to JPEG images.
+	 * @param patch the metadata changes
+	 * @return the patch to apply
+	 */
+	private MetadataPatch reserveExifPadding(MetadataPatch patch) {
+		final MetadataConfigProperties.InPlaceUpdate inPlaceUpdate = this.metadataConfigProperties.getInPlaceUpdate();
+		if (!inPlaceUpdate.isEnabled() || patch.getExifPadding() > 0) {
+			return patch;
+		}
+		return new MetadataPatch(patch).exifPadding((int) inPlaceUpdate.getExifPadding().toBytes());
 	}
 
 	@Override
@@ -262,207 +410,19 @@ public class DefaultMetadataService implements MetadataService {
 		return new File(imageFile.getParentFile(), baseName + ".txt");
 	}
 
-	private byte[] populateExifTags(byte[] imageBytes, HashMap<String, String> exifTagsToPopulate) {
-		LOGGER.info("Populating EXIF Tags.");
-
-		final TiffOutputSet outputSet;
-
-		try {
-			ImageMetadata metadata = Imaging.getMetadata(imageBytes);
-
-			// if file does not contain any exif metadata, we create an empty
-			// set of exif metadata. Otherwise, we keep all of the other
-			// existing tags.
-			if (metadata == null) {
-				outputSet = new TiffOutputSet();
-			}
-			else if (metadata instanceof JpegImageMetadata jpegMetadata) {
-				final TiffImageMetadata exif = jpegMetadata.getExif();
-				if (null != exif) {
-					outputSet = exif.getOutputSet();
-				}
-				else {
-					outputSet = new TiffOutputSet();
-				}
-			}
-			else {
-				LOGGER.warn("Ignoring ImageMetadata {}.", metadata.getClass().getSimpleName());
-				outputSet = new TiffOutputSet();
-			}
-		}
-		catch (ImagingException ex) {
-			throw new ImageProcessingException("Unable to get EXIF Tags.", ex);
-		}
-		catch (IOException ex) {
-			throw new ImageProcessingException("Unable to get Image Metadata.", ex);
-		}
-
-		final byte[] modifiedImageData;
-
-		try (ByteArrayOutputStream os = new ByteArrayOutputStream()) {
-			for (Map.Entry<String, String> tag : exifTagsToPopulate.entrySet()) {
-				if ("imageDescription".equalsIgnoreCase(tag.getKey())) {
-					final TiffOutputDirectory rootDir = outputSet.getOrCreateRootDirectory();
-					rootDir.removeField(TiffTagConstants.TIFF_TAG_IMAGE_DESCRIPTION);
-					rootDir.add(TiffTagConstants.TIFF_TAG_IMAGE_DESCRIPTION, tag.getValue());
-				}
-
-				if ("xptitle".equalsIgnoreCase(tag.getKey())) {
-					final TiffOutputDirectory rootDir = outputSet.getOrCreateRootDirectory();
-					rootDir.removeField(MicrosoftTagConstants.EXIF_TAG_XPTITLE);
-					rootDir.add(MicrosoftTagConstants.EXIF_TAG_XPTITLE, tag.getValue());
-				}
-			}
-
-			// TODO
-			// rootDir.removeField(MicrosoftTagConstants.EXIF_TAG_XPSUBJECT);
-			// rootDir.add(MicrosoftTagConstants.EXIF_TAG_XPSUBJECT, "new subject");
-			//
-			// rootDir.removeField(MicrosoftTagConstants.EXIF_TAG_XPCOMMENT);
-			// rootDir.add(MicrosoftTagConstants.EXIF_TAG_XPCOMMENT, "new comment");
-			//
-			// rootDir.removeField(MicrosoftTagConstants.EXIF_TAG_XPKEYWORDS);
-			// rootDir.add(MicrosoftTagConstants.EXIF_TAG_XPKEYWORDS, "key1;key2");
-			//
-			// rootDir.removeField(MicrosoftTagConstants.EXIF_TAG_RATING);
-			// rootDir.add(MicrosoftTagConstants.EXIF_TAG_RATING, (short) 4);
-
-			new ExifRewriter().updateExifMetadataLossless(imageBytes, os, outputSet);
-			modifiedImageData = os.toByteArray();
-		}
-		catch (IOException ex) {
-			throw new ImageProcessingException("Unable to populate Windows-specific EXIF Tags.", ex);
-		}
-		return modifiedImageData;
-	}
-
-	private byte[] populateIptcTags(byte[] imageBytes, HashMap<String, String> iptcTagsToPopulate) {
-		LOGGER.info("Populating {} IPTC Tags.", iptcTagsToPopulate.size());
-
-		if (iptcTagsToPopulate.isEmpty()) {
-			return imageBytes;
-		}
-
-		final List<IptcBlock> newBlocks;
-		final List<IptcRecord> newRecords;
-
-		try {
-			final ImageMetadata metadata = Imaging.getMetadata(imageBytes);
-			if (metadata == null) {
-				newBlocks = new ArrayList<>();
-				newRecords = new ArrayList<>();
-			}
-			else {
-				final JpegImageMetadata jpegMetadata = (JpegImageMetadata) metadata;
-				final JpegPhotoshopMetadata jpegPhotoshopMetadata = jpegMetadata.getPhotoshop();
-				if (jpegPhotoshopMetadata != null) {
-					newRecords = jpegPhotoshopMetadata.photoshopApp13Data.getRecords();
-					newBlocks = jpegPhotoshopMetadata.photoshopApp13Data.getNonIptcBlocks();
-				}
-				else {
-					newBlocks = new ArrayList<>();
-					newRecords = new ArrayList<>();
-				}
-			}
-		}
-		catch (IOException ex) {
-			throw new ImageProcessingException("Unable to get Image Metadata.", ex);
-		}
-
-		final byte[] modifiedImageData;
-
-		try (ByteArrayOutputStream os = new ByteArrayOutputStream()) {
-			for (Map.Entry<String, String> tag : iptcTagsToPopulate.entrySet()) {
-				if ("referenceId".equalsIgnoreCase(tag.getKey())) {
-					newRecords
-						.removeIf((p) -> p.iptcType.getType() == IptcTypes.ORIGINAL_TRANSMISSION_REFERENCE.getType());
-					newRecords.add(new IptcRecord(IptcTypes.ORIGINAL_TRANSMISSION_REFERENCE, tag.getValue()));
-				}
-				else if ("objectName".equalsIgnoreCase(tag.getKey())) {
-					newRecords
-						.removeIf((p) -> p.iptcType.getType() == IptcTypes.OBJECT_NAME.getType());
-					newRecords.add(new IptcRecord(IptcTypes.OBJECT_NAME, tag.getValue()));
-				}
-			}
-			final PhotoshopApp13Data newData = new PhotoshopApp13Data(newRecords, newBlocks);
-			new JpegIptcRewriter().writeIptc(imageBytes, os, newData);
-			modifiedImageData = os.toByteArray();
-		}
-		catch (IOException ex) {
-			throw new ImageProcessingException("Unable to populate reference id.", ex);
-		}
-		return modifiedImageData;
-	}
-
-	private byte[] populateXmpTags(byte[] imageBytes, HashMap<String, String> xmpTagsToPopulate) {
-
-		if (xmpTagsToPopulate.isEmpty()) {
-			return imageBytes;
-		}
-
-		final String xmpXml = getXmpXml(imageBytes);
-		final org.apache.xmlgraphics.xmp.Metadata xmpMetaData;
-
-		if (xmpXml == null) {
-			xmpMetaData = new org.apache.xmlgraphics.xmp.Metadata();
-		}
-		else {
-			final ByteArrayInputStream input = new ByteArrayInputStream(xmpXml.getBytes(StandardCharsets.UTF_8));
-			try {
-				xmpMetaData = XMPParser.parseXMP(new StreamSource(input));
-			}
-			catch (TransformerException ex) {
-				throw new ImageProcessingException("Unable to parse XMP data.", ex);
-			}
-		}
-		final DublinCoreAdapter dc = DublinCoreSchema.getAdapter(xmpMetaData);
-
-		for (Map.Entry<String, String> entry : xmpTagsToPopulate.entrySet()) {
-			if ("referenceId".equalsIgnoreCase(entry.getKey())) {
-				dc.setIdentifier(entry.getValue());
-			}
-			if ("title".equalsIgnoreCase(entry.getKey())) {
-				dc.setTitle(entry.getValue());
-			}
-		}
-
-		final String xmpAsString;
-
-		try (ByteArrayOutputStream bos = new ByteArrayOutputStream()) {
-			XMPSerializer.writeXMPPacket(xmpMetaData, bos, false);
-			xmpAsString = bos.toString(StandardCharsets.UTF_8);
-		}
-		catch (TransformerConfigurationException | SAXException | IOException ex) {
-			throw new ImageProcessingException("Unable to write XMP data.", ex);
-		}
-
-		final byte[] modifiedImageData;
-		try (ByteArrayOutputStream modifiedImageDataOutputStream = new ByteArrayOutputStream()) {
-			new JpegXmpRewriter().updateXmpXml(imageBytes, modifiedImageDataOutputStream, xmpAsString);
-			modifiedImageData = modifiedImageDataOutputStream.toByteArray();
-		}
-		catch (IOException ex) {
-			throw new ImageProcessingException("Unable to write XMP data to JPG.", ex);
-		}
-		return modifiedImageData;
-	}
+	/**
+	 * The result of extracting a single metadata family.
+	 *
+	 * @param directories the extracted directories
+	 * @param gnssInfo the GNSS information, if any
+	 * @param xmpData the raw XMP data, if any
+	 */
+	private record ExtractedFamily(List<Directory> directories, GnssInfo gnssInfo, String xmpData) {
 
-	private String getXmpXml(byte[] imageBytes) {
-		final String xmpString;
-		try {
-			xmpString = Imaging.getXmpXml(imageBytes);
-		}
-		catch (ImagingException ex) {
-			throw new ImageProcessingException("Unable to parse the image.", ex);
-		}
-		catch (IOException ex) {
-			throw new ImageProcessingException("Unable to read the image data.", ex);
-		}
-		if (xmpString == null) {
-			return null;
+		ExtractedFamily(List<Directory> directories, String xmpData) {
+			this(directories, null, xmpData);
 		}
 
-		return CommonUtils.formatXml(xmpString, false);
 	}
 
 }
@@ -0,0 +1,290 @@
+/*
+ * Copyright (c) 2025 Gunnar Hillert.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hillert.image.metadata.service;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.hillert.image.metadata.config.MetadataConfigProperties;
+import com.hillert.image.metadata.model.Rendition;
+import com.hillert.image.metadata.model.RenditionLadderStats;
+import com.hillert.image.metadata.service.support.ExifThumbnailReader;
+import com.hillert.image.metadata.service.support.ImageIoTools;
+import com.hillert.image.metadata.service.support.ImageLoaderType;
+import com.hillert.image.metadata.service.support.RenditionCache;
+import com.hillert.image.metadata.service.support.RenditionCache.SourceImage;
+import com.hillert.image.metadata.service.support.ResizeQuality;
+import com.hillert.image.metadata.service.support.StorageException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.core.io.Resource;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.util.Assert;
+import org.springframework.util.StopWatch;
+
+/**
+ * Default implementation of the {@link RenditionService}. Rendition ladders are
+ * generated on a bounded thread pool, see {@link MetadataConfigProperties.Renditions}.
+ * Each image is decoded once and then downscaled progressively, from the largest to the
+ * smallest ladder width, using the unsharpened result of the previous step as the source
+ * of the next one. Small renditions of JPEG images that are not cached yet are created
+ * from the embedded EXIF thumbnail where possible, see {@link ExifThumbnailReader}. This
+ * excludes {@link ResizeQuality#BEST} and ladder renditions, as the thumbnail is not part
+ * of the cache key and ETag of a rendition.
+ *
+ * @author Gunnar Hillert
+ */
+@Service
+public class DefaultRenditionService implements RenditionService, DisposableBean {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(DefaultRenditionService.class);
+
+	private final ImageService imageService;
+
+	private final RenditionCache renditionCache;
+
+	/**
+	 * The ladder widths in descending order.
+	 */
+	private final List<Integer> ladderWidths;
+
+	private final boolean exifThumbnails;
+
+	/**
+	 * The resize quality of ladder renditions, i.e. the default resize quality.
+	 */
+	private final ResizeQuality resizeQuality;
+
+	private final ThreadPoolExecutor executor;
+
+	private final AtomicLong completedLadders = new AtomicLong();
+
+	private final AtomicLong failedLadders = new AtomicLong();
+
+	private final AtomicLong rejectedLadders = new AtomicLong();
+
+	/**
+	 * Constructor.
+	 * @param metadataConfigProperties the {@link MetadataConfigProperties}
+	 * @param imageService used to load, resize and encode the stored images
+	 * @param renditionCache caches the renditions
+	 */
+	public DefaultRenditionService(MetadataConfigProperties metadataConfigProperties, ImageService imageService,
+			RenditionCache renditionCache) {
+		final MetadataConfigProperties.Renditions renditions = metadataConfigProperties.getRenditions();
+		this.imageService = imageService;
+		this.renditionCache = renditionCache;
+		this.exifThumbnails = renditions.isExifThumbnails();
+		this.resizeQuality = renditions.getResizeQuality();
+		this.ladderWidths = renditions.getLadderWidths()
+			.stream()
+			.distinct()
+			.sorted(Comparator.reverseOrder())
+			.toList();
+		this.ladderWidths.forEach((width) -> Assert.isTrue(width > 0, "ladderWidths must be positive."));
+		this.executor = (renditionCache.isEnabled() && !this.ladderWidths.isEmpty())
+				? new ThreadPoolExecutor(renditions.getLadderThreads(), renditions.getLadderThreads(), 0L,
+						TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(renditions.getLadderQueueCapacity()),
+						new LadderThreadFactory())
+				: null;
+	}
+
+	@Override
+	public SourceImage getSourceImage(String filename) {
+		return this.renditionCache.describe(getPath(this.imageService.loadAsResource(filename)));
+	}
+
+	@Override
+	public Rendition getRendition(String filename, Integer width, boolean addLabel, ResizeQuality resizeQuality,
+			ImageLoaderType imageLoaderType) {
+		final Resource file = this.imageService.loadAsResource(filename);
+		final SourceImage sourceImage = this.renditionCache.describe(getPath(file));
+		final Integer renditionWidth = getRenditionWidth(sourceImage, width);
+
+		final Rendition cachedRendition = this.renditionCache.find(sourceImage, renditionWidth, addLabel,
+				resizeQuality);
+		if (cachedRendition != null) {
+			return cachedRendition;
+		}
+
+		// Decode and resize right away, so that failures are reported before the response
+		// is committed. Only the encoding is deferred until the response is written.
+		final BufferedImage thumbnail = readExifThumbnail(sourceImage, renditionWidth, resizeQuality);
+		final BufferedImage bufferedImage = (thumbnail != null) ? thumbnail : this.imageService
+			.loadAsBufferedImage(file, imageLoaderType, sourceImage.mimeType(), renditionWidth);
+		final BufferedImage outputBufferedImage = ImageIoTools.resizeImage(bufferedImage, renditionWidth,
+				resizeQuality);
+		final String label = addLabel ? filename : null;
+		return new Rendition(sourceImage.mimeType(), null,
+				(outputStream) -> this.renditionCache.write(sourceImage, renditionWidth, addLabel, resizeQuality,
+						(target) -> this.imageService.encodeImage(outputBufferedImage, label, sourceImage.mimeType(),
+								target),
+						outputStream));
+	}
+
+	@Override
+	public void generateLadder(String filename) {
+		Assert.hasText(filename, "filename must not be null or empty.");
+		if (this.executor == null) {
+			return;
+		}
+		try {
+			this.executor.execute(() -> renderLadder(filename));
+			LOGGER.debug("Queued rendition ladder of {} - {}", filename, getLadderStats());
+		}
+		catch (RejectedExecutionException ex) {
+			this.rejectedLadders.incrementAndGet();
+			LOGGER.warn("Too many queued rendition ladders, {} will only be resized on request.", filename);
+		}
+	}
+
+	@Override
+	public RenditionLadderStats getLadderStats() {
+		if (this.executor == null) {
+			return new RenditionLadderStats(0, 0, 0, 0, 0);
+		}
+		return new RenditionLadderStats(this.executor.getQueue().size(), this.executor.getActiveCount(),
+				this.completedLadders.get(), this.failedLadders.get(), this.rejectedLadders.get());
+	}
+
+	@Override
+	public void destroy() {
+		if (this.executor != null) {
+			this.executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Return the width of the rendition used for the requested width, i.e. the smallest
+	 * ladder width that is at least as large as the requested width. Ladder widths
+	 * larger than the image are never generated, hence not considered.
+	 */
+	@Override
+	public Integer getRenditionWidth(SourceImage sourceImage, Integer width) {
+		if (this.executor == null || width == null) {
+			return width;
+		}
+		Integer renditionWidth = width;
+		for (Integer ladderWidth : this.ladderWidths) {
+			if (ladderWidth >= width && ladderWidth <= sourceImage.width()) {
+				renditionWidth = ladderWidth;
+			}
+		}
+		return renditionWidth;
+	}
+
+	/**
+	 * Read the embedded EXIF thumbnail of the provided image, if it is large enough for
+	 * the provided width. The thumbnail is never used for {@link ResizeQuality#BEST} or
+	 * renditions that are part of the ladder, so that these renditions are always cached
+	 * as decoded from the full image.
+	 * @param sourceImage the image
+	 * @param width the width of the rendition, may be null
+	 * @param resizeQuality how the rendition is downscaled
+	 * @return the thumbnail or null if there is no suitable thumbnail
+	 */
+	private BufferedImage readExifThumbnail(SourceImage sourceImage, Integer width, ResizeQuality resizeQuality) {
+		if (!this.exifThumbnails || width == null || resizeQuality == ResizeQuality.BEST
+				|| !MediaType.IMAGE_JPEG_VALUE.equals(sourceImage.mimeType())) {
+			return null;
+		}
+		if (this.executor != null && resizeQuality == this.resizeQuality && this.ladderWidths.contains(width)) {
+			return null;
+		}
+		return ExifThumbnailReader.read(sourceImage.path(), width);
+	}
+
+	private void renderLadder(String filename) {
+		final StopWatch stopWatch = new StopWatch();
+		stopWatch.start();
+		try {
+			final Resource file = this.imageService.loadAsResource(filename);
+			final SourceImage sourceImage = this.renditionCache.describe(getPath(file));
+			// Decoding only has to provide enough pixels for the largest ladder width.
+			final Integer largestWidth = this.ladderWidths.stream()
+				.filter((width) -> width <= sourceImage.width())
+				.findFirst()
+				.orElse(null);
+			if (largestWidth == null) {
+				this.completedLadders.incrementAndGet();
+				return;
+			}
+			BufferedImage intermediate = this.imageService.loadAsBufferedImage(file, ImageLoaderType.IMAGE_IO,
+					sourceImage.mimeType(), largestWidth);
+
+			for (Integer width : this.ladderWidths) {
+				if (Thread.currentThread().isInterrupted()) {
+					return;
+				}
+				if (width > intermediate.getWidth()) {
+					continue;
+				}
+				intermediate = ImageIoTools.resample(intermediate, width, this.resizeQuality);
+				final BufferedImage output = ImageIoTools.sharpen(intermediate);
+				this.renditionCache.put(sourceImage, width, false, this.resizeQuality,
+						this.imageService.encodeImage(output, null, sourceImage.mimeType()));
+				// Rendering the label modifies the image, hence the unlabeled rendition
+				// is encoded first.
+				this.renditionCache.put(sourceImage, width, true, this.resizeQuality,
+						this.imageService.encodeImage(output, filename, sourceImage.mimeType()));
+			}
+			this.completedLadders.incrementAndGet();
+			stopWatch.stop();
+			LOGGER.info("Generated rendition ladder of {} in {}ms.", filename, stopWatch.getTotalTimeMillis());
+		}
+		catch (RuntimeException ex) {
+			this.failedLadders.incrementAndGet();
+			LOGGER.warn("Unable to generate the rendition ladder of {}.", filename, ex);
+		}
+	}
+
+	private static Path getPath(Resource file) {
+		try {
+			return file.getFile().toPath();
+		}
+		catch (IOException ex) {
+			throw new StorageException("Could not read file: " + file.getFilename(), ex);
+		}
+	}
+
+	private static final class LadderThreadFactory implements ThreadFactory {
+
+		private final AtomicInteger threadNumber = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+			final Thread thread = new Thread(runnable, "rendition-ladder-" + this.threadNumber.incrementAndGet());
+			thread.setDaemon(true);
+			thread.setPriority(Thread.MIN_PRIORITY);
+			return thread;
+		}
+
+	}
+
+}
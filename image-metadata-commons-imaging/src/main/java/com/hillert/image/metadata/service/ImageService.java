@@ -16,9 +16,14 @@
 package com.hillert.image.metadata.service;
 
 import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.Path;
+import java.util.function.Consumer;
 import java.util.stream.Stream;
 
+import com.hillert.image.metadata.service.support.ImageLoader;
 import com.hillert.image.metadata.service.support.ImageLoaderType;
 
 import org.springframework.core.io.Resource;
@@ -52,12 +57,59 @@ public interface ImageService {
 
 	BufferedImage loadAsBufferedImage(Resource imageResource, ImageLoaderType imageLoaderType, String mimeType);
 
+	/**
+	 * Load an image that is going to be downscaled to the provided target width. Loaders
+	 * that support it decode a subsampled image that is still larger than the target
+	 * width, see {@link ImageLoader#loadImageUsingImageIO(Resource, Integer)}.
+	 * @param imageResource the image data, must not be null
+	 * @param imageLoaderType the loader to use, defaults to
+	 * {@link ImageLoaderType#AWT_TOOLKIT}
+	 * @param mimeType the MIME type of the image
+	 * @param targetWidth the target width or null to decode the image at full resolution
+	 * @return the loaded image
+	 */
+	BufferedImage loadAsBufferedImage(Resource imageResource, ImageLoaderType imageLoaderType, String mimeType,
+			Integer targetWidth);
+
 	void deleteAll();
 
 	void delete(String filename);
 
 	void store(byte[] imageBytes, String originalFilename);
 
+	/**
+	 * Store an image by letting the provided content writer stream the image data into a
+	 * temporary file in the storage directory. Once the content writer completes, the
+	 * temporary file is atomically moved to its final location, so that readers never
+	 * see a partially written image.
+	 * @param originalFilename the filename of the image, must not be null
+	 * @param contentWriter writes the image data to the provided channel, must not be
+	 * null
+	 */
+	void store(String originalFilename, Consumer<WritableByteChannel> contentWriter);
+
 	byte[] resizeImage(BufferedImage bufferedImage, String label, Integer targetWidth, String mimeType);
 
+	/**
+	 * Encode the provided image using the provided MIME type. If a label is provided, it
+	 * is rendered onto the image first, i.e. the provided image is modified.
+	 * @param bufferedImage the image to encode, must not be null
+	 * @param label the label to render or null
+	 * @param mimeType the MIME type of the encoded image
+	 * @return the encoded image
+	 */
+	byte[] encodeImage(BufferedImage bufferedImage, String label, String mimeType);
+
+	/**
+	 * Encode the provided image directly onto the provided stream, see
+	 * {@link #encodeImage(BufferedImage, String, String)}.
+	 * @param bufferedImage the image to encode, must not be null
+	 * @param label the label to render or null
+	 * @param mimeType the MIME type of the encoded image
+	 * @param outputStream the stream to write to, is not closed
+	 * @throws IOException in case the stream cannot be written
+	 */
+	void encodeImage(BufferedImage bufferedImage, String label, String mimeType, OutputStream outputStream)
+			throws IOException;
+
 }
@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2025 Gunnar Hillert.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hillert.image.metadata.service;
+
+import java.util.List;
+
+import com.hillert.image.metadata.model.MetadataBatchProgress;
+import com.hillert.image.metadata.model.MetadataPatch;
+
+/**
+ * Applies a {@link MetadataPatch} to many stored images asynchronously.
+ *
+ * @author Gunnar Hillert
+ */
+public interface MetadataBatchService {
+
+	/**
+	 * Submit a batch job that applies the provided patch to the provided stored images.
+	 * Each image is replaced atomically, see
+	 * {@link MetadataService#updateMetadata(org.springframework.core.io.Resource, MetadataPatch)}.
+	 * Images that cannot be updated are reported as failures, but do not stop the job.
+	 * @param filenames the filenames of the stored images. Must not be empty. Duplicates
+	 * are only updated once.
+	 * @param patch the metadata changes. Must not be empty.
+	 * @return the initial progress of the job
+	 * @throws IllegalStateException if the maximum number of queued jobs is reached
+	 */
+	MetadataBatchProgress submit(List<String> filenames, MetadataPatch patch);
+
+	/**
+	 * Retrieve the progress of a batch job.
+	 * @param id the id of the batch job
+	 * @return the progress or null if the job is unknown
+	 */
+	MetadataBatchProgress getProgress(String id);
+
+	/**
+	 * Cancel a batch job. Images that are currently being updated are still completed,
+	 * the remaining images are skipped.
+	 * @param id the id of the batch job
+	 * @return the progress or null if the job is unknown
+	 */
+	MetadataBatchProgress cancel(String id);
+
+}
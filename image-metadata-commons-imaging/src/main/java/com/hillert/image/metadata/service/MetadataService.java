@@ -15,8 +15,13 @@
  */
 package com.hillert.image.metadata.service;
 
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Set;
+
 import com.hillert.image.metadata.model.DirectoryType;
 import com.hillert.image.metadata.model.Metadata;
+import com.hillert.image.metadata.model.MetadataPatch;
 
 import org.springframework.core.io.Resource;
 
@@ -35,12 +40,30 @@ public interface MetadataService {
 	Metadata getExifData(Resource resource);
 
 	/**
-	 * Removes the image metadata of an image.
+	 * Pretty-print the raw XMP data of the provided {@link Metadata} for display.
+	 * Formatted XMP data is cached, so this method is cheap for images that were viewed
+	 * before.
+	 * @param metadata must not be null
+	 * @return the formatted XMP data or null if the metadata does not contain XMP data
+	 */
+	String getFormattedXmpData(Metadata metadata);
+
+	/**
+	 * Extract the metadata for a provided, stored image {@link Resource} and persist it
+	 * as metadata sidecar file next to the image, so that subsequent calls to
+	 * {@link #getExifData(Resource)} do not need to parse the image again. Does nothing
+	 * if sidecar files are disabled.
+	 * @param resource must not be null and must be file-based
+	 */
+	void storeMetadataSidecar(Resource resource);
+
+	/**
+	 * Removes the image metadata of an image in a single pass.
 	 * @param imageBytes the image data. Must not be null.
-	 * @param metadataType for which metadata type shall the image metadata removed?
-	 * @return the image data without the purge metadata
+	 * @param directoryTypes which types of metadata shall be removed?
+	 * @return the image data without the purged metadata
 	 */
-	byte[] purge(byte[] imageBytes, DirectoryType metadataType);
+	byte[] purge(byte[] imageBytes, Set<DirectoryType> directoryTypes);
 
 	/**
 	 * Updating the metadata can get a bit messy, particularly for the caption as we need
@@ -88,6 +111,39 @@ public interface MetadataService {
 	 */
 	byte[] updateMetadata(byte[] imageBytes, boolean populateWindowsTags, String referenceId, String caption);
 
+	/**
+	 * Create the {@link MetadataPatch} that {@link #updateMetadata} applies, so that it
+	 * can be used with {@link #rewrite}.
+	 * @param populateWindowsTags if true, update MS Windows specific metadata tags
+	 * @param referenceId a reference id to tag your image with. Can be null.
+	 * @param caption the title of your image. Can be null.
+	 * @return the metadata patch, never null
+	 */
+	MetadataPatch createMetadataPatch(boolean populateWindowsTags, String referenceId, String caption);
+
+	/**
+	 * Streaming variant of {@link #purge} and {@link #updateMetadata}: copies the image
+	 * from the source to the target channel, purging and updating the metadata on the
+	 * way, without loading the complete image into memory. Neither channel is closed.
+	 * @param source the image data. Must not be null.
+	 * @param target the channel to write the modified image to. Must not be null.
+	 * @param directoryTypesToPurge which types of metadata shall be removed? May be
+	 * empty.
+	 * @param patch the metadata changes to apply after purging. May be empty.
+	 */
+	void rewrite(ReadableByteChannel source, WritableByteChannel target, Set<DirectoryType> directoryTypesToPurge,
+			MetadataPatch patch);
+
+	/**
+	 * Apply the provided patch to a stored image. If in-place updates are enabled and
+	 * the patch only changes EXIF fields that fit into the existing EXIF segment, the
+	 * segment is overwritten in place. Otherwise, the image is rewritten into a
+	 * temporary file that replaces the image afterwards.
+	 * @param resource the stored image. Must not be null and must be file-based.
+	 * @param patch the metadata changes. Must not be null.
+	 */
+	void updateMetadata(Resource resource, MetadataPatch patch);
+
 	/**
 	 * Retrieve the image description for a provided image {@link Resource}.
 	 * The image description will be retrieved using AI and then store as a text file in the same directory as the image
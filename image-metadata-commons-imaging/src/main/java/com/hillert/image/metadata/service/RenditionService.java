@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2025 Gunnar Hillert.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hillert.image.metadata.service;
+
+import com.hillert.image.metadata.model.Rendition;
+import com.hillert.image.metadata.model.RenditionLadderStats;
+import com.hillert.image.metadata.service.support.ImageLoaderType;
+import com.hillert.image.metadata.service.support.RenditionCache.SourceImage;
+import com.hillert.image.metadata.service.support.ResizeQuality;
+
+/**
+ * Creates the resized and labeled versions (renditions) of stored images. Renditions
+ * are cached, see {@link com.hillert.image.metadata.service.support.RenditionCache}.
+ *
+ * @author Gunnar Hillert
+ */
+public interface RenditionService {
+
+	/**
+	 * Describe the provided stored image, e.g. its MIME type and content hash.
+	 * @param filename the filename of the stored image, must not be null
+	 * @return the description of the image
+	 * @throws com.hillert.image.metadata.service.support.StorageException in case the
+	 * image could not be read
+	 */
+	SourceImage getSourceImage(String filename);
+
+	/**
+	 * Return the width of the rendition that {@link #getRendition} returns for the
+	 * requested width.
+	 * @param sourceImage the stored image, see {@link #getSourceImage(String)}
+	 * @param width the requested width, may be null
+	 * @return the width of the rendition or null if the image keeps its width
+	 */
+	Integer getRenditionWidth(SourceImage sourceImage, Integer width);
+
+	/**
+	 * Return a rendition of the provided stored image. If the requested width is
+	 * covered by the configured rendition ladder, the closest larger ladder rendition is
+	 * returned instead of resizing the image to the exact width. Renditions that are
+	 * not cached yet are decoded and resized right away, but only encoded once they are
+	 * written, see {@link Rendition#writeTo}.
+	 * @param filename the filename of the stored image, must not be null
+	 * @param width the requested width or null to keep the width of the image
+	 * @param addLabel whether to render the filename onto the image
+	 * @param resizeQuality how to downscale the image, must not be null
+	 * @param imageLoaderType how to decode the image in case of a cache miss
+	 * @return the rendition
+	 * @throws com.hillert.image.metadata.service.support.StorageException in case the
+	 * image could not be read
+	 */
+	Rendition getRendition(String filename, Integer width, boolean addLabel, ResizeQuality resizeQuality,
+			ImageLoaderType imageLoaderType);
+
+	/**
+	 * Generate the configured rendition ladder of the provided stored image in the
+	 * background. Does nothing if no ladder widths are configured.
+	 * @param filename the filename of the stored image, must not be null
+	 */
+	void generateLadder(String filename);
+
+	/**
+	 * Return the statistics of the background rendition ladder generation.
+	 * @return the statistics
+	 */
+	RenditionLadderStats getLadderStats();
+
+}
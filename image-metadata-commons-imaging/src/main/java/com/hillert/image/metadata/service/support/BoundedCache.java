@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) 2025 Gunnar Hillert.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hillert.image.metadata.service.support;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+
+import org.springframework.util.Assert;
+
+/**
+ * A simple, thread-safe, weight-bounded cache with least-recently-used eviction. Each
+ * value is weighed once when it is added. Once the total weight exceeds the configured
+ * maximum, the least-recently accessed entries are evicted. Hit, miss and eviction
+ * counts are tracked and can be retrieved via {@link #getStats()}.
+ *
+ * @param <K> the type of the cache keys
+ * @param <V> the type of the cached values
+ * @author Gunnar Hillert
+ */
+public class BoundedCache<K, V> {
+
+	private final long maxWeight;
+
+	private final ToLongFunction<V> weigher;
+
+	private final LinkedHashMap<K, Entry<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+	private long weight;
+
+	private long hitCount;
+
+	private long missCount;
+
+	private long evictionCount;
+
+	/**
+	 * Constructor.
+	 * @param maxWeight the maximum total weight of all entries. Must be positive.
+	 * @param weigher calculates the weight of a value. Must not be null.
+	 */
+	public BoundedCache(long maxWeight, ToLongFunction<V> weigher) {
+		Assert.isTrue(maxWeight > 0, "maxWeight must be positive.");
+		Assert.notNull(weigher, "weigher must not be null.");
+		this.maxWeight = maxWeight;
+		this.weigher = weigher;
+	}
+
+	/**
+	 * Return the cached value for the provided key.
+	 * @param key must not be null
+	 * @return the cached value or null if there is no entry for the key
+	 */
+	public synchronized V get(K key) {
+		final Entry<V> entry = this.entries.get(key);
+		if (entry == null) {
+			this.missCount++;
+			return null;
+		}
+		this.hitCount++;
+		return entry.value();
+	}
+
+	/**
+	 * Add a value to the cache. Values that are heavier than the maximum weight of the
+	 * cache are not cached at all.
+	 * @param key must not be null
+	 * @param value must not be null
+	 */
+	public synchronized void put(K key, V value) {
+		Assert.notNull(key, "key must not be null.");
+		Assert.notNull(value, "value must not be null.");
+		final long valueWeight = this.weigher.applyAsLong(value);
+		removeEntry(key);
+		if (valueWeight > this.maxWeight) {
+			return;
+		}
+		this.entries.put(key, new Entry<>(value, valueWeight));
+		this.weight += valueWeight;
+		evict();
+	}
+
+	/**
+	 * Add a value to the cache unless there already is an entry for the provided key.
+	 * Unlike {@link #put(Object, Object)}, a cached value is never replaced.
+	 * @param key must not be null
+	 * @param value must not be null
+	 * @return the cached value if there already is one, otherwise the provided value
+	 */
+	public synchronized V putIfAbsent(K key, V value) {
+		final Entry<V> entry = this.entries.get(key);
+		if (entry != null) {
+			return entry.value();
+		}
+		put(key, value);
+		return value;
+	}
+
+	public synchronized void invalidate(K key) {
+		removeEntry(key);
+	}
+
+	/**
+	 * Remove all entries whose key matches the provided {@link Predicate}.
+	 * @param predicate must not be null
+	 */
+	public synchronized void invalidateIf(Predicate<K> predicate) {
+		for (Iterator<Map.Entry<K, Entry<V>>> it = this.entries.entrySet().iterator(); it.hasNext();) {
+			final Map.Entry<K, Entry<V>> entry = it.next();
+			if (predicate.test(entry.getKey())) {
+				this.weight -= entry.getValue().weight();
+				it.remove();
+			}
+		}
+	}
+
+	public synchronized void invalidateAll() {
+		this.entries.clear();
+		this.weight = 0;
+	}
+
+	public synchronized Stats getStats() {
+		return new Stats(this.hitCount, this.missCount, this.evictionCount, this.entries.size(), this.weight,
+				this.maxWeight);
+	}
+
+	private void removeEntry(K key) {
+		final Entry<V> previous = this.entries.remove(key);
+		if (previous != null) {
+			this.weight -= previous.weight();
+		}
+	}
+
+	private void evict() {
+		final Iterator<Entry<V>> it = this.entries.values().iterator();
+		while (this.weight > this.maxWeight && it.hasNext()) {
+			this.weight -= it.next().weight();
+			it.remove();
+			this.evictionCount++;
+		}
+	}
+
+	private record Entry<V>(V value, long weight) {
+	}
+
+	/**
+	 * Snapshot of the cache statistics.
+	 *
+	 * @param hitCount number of lookups that returned a cached value
+	 * @param missCount number of lookups that did not find a cached value
+	 * @param evictionCount number of entries evicted due to the weight limit
+	 * @param size current number of entries
+	 * @param weight current total weight of all entries
+	 * @param maxWeight the maximum total weight
+	 */
+	public record Stats(long hitCount, long missCount, long evictionCount, int size, long weight, long maxWeight) {
+
+		public double hitRate() {
+			final long requestCount = this.hitCount + this.missCount;
+			return (requestCount == 0) ? 1.0 : (double) this.hitCount / requestCount;
+		}
+
+	}
+
+}
@@ -32,8 +32,6 @@ import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.xml.serialize.OutputFormat;
 import org.apache.xml.serialize.XMLSerializer;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 import org.w3c.dom.Document;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
@@ -49,7 +47,10 @@ import org.springframework.util.StringUtils;
  */
 public final class CommonUtils {
 
-	private static final Logger LOGGER = LoggerFactory.getLogger(CommonUtils.class);
+	private static final DocumentBuilderFactory DOCUMENT_BUILDER_FACTORY = DocumentBuilderFactory.newInstance();
+
+	private static final ThreadLocal<DocumentBuilder> DOCUMENT_BUILDER = ThreadLocal
+		.withInitial(CommonUtils::createDocumentBuilder);
 
 	private CommonUtils() {
 		throw new AssertionError("This is a static utility class.");
@@ -104,18 +105,21 @@ public final class CommonUtils {
 		}
 	}
 
+	/**
+	 * Pretty-print the provided XML document. The {@link DocumentBuilder} used for
+	 * parsing is created once per thread and reused.
+	 * @param xml the XML document to format
+	 * @param ommitXmlDeclaration whether the XML declaration shall be omitted
+	 * @return the formatted XML or an empty String if the provided XML is empty
+	 */
 	public static String formatXml(String xml, Boolean ommitXmlDeclaration) {
 		if (!StringUtils.hasText(xml)) {
 			return "";
 		}
 
-		final DocumentBuilder db;
-		try {
-			db = DocumentBuilderFactory.newInstance().newDocumentBuilder();
-		}
-		catch (ParserConfigurationException ex) {
-			throw new IllegalStateException("Cannot build XML DocumentBuilder.", ex);
-		}
+		final DocumentBuilder db = DOCUMENT_BUILDER.get();
+		db.reset();
+
 		final Document doc;
 		try {
 			doc = db.parse(new InputSource(new StringReader(xml.trim())));
@@ -142,10 +146,16 @@ public final class CommonUtils {
 			throw new IllegalStateException("Cannot serialize DOM document.", ex);
 		}
 
-		final String formattedXml = outXml.toString();
+		return outXml.toString();
+	}
 
-		LOGGER.info("\n-----------\n{}\n-----------\n", formattedXml);
-		return formattedXml;
+	private static DocumentBuilder createDocumentBuilder() {
+		try {
+			return DOCUMENT_BUILDER_FACTORY.newDocumentBuilder();
+		}
+		catch (ParserConfigurationException ex) {
+			throw new IllegalStateException("Cannot build XML DocumentBuilder.", ex);
+		}
 	}
 
 }
@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2025 Gunnar Hillert.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hillert.image.metadata.service.support;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import com.hillert.image.metadata.model.MetadataPatch;
+import com.hillert.image.metadata.service.support.JpegSegmentScanner.JpegHeader;
+import com.hillert.image.metadata.service.support.JpegSegmentScanner.JpegSegment;
+import org.apache.commons.imaging.formats.tiff.write.TiffOutputSet;
+
+import org.springframework.util.Assert;
+
+/**
+ * Updates the EXIF data of a stored JPEG file in place. The patched EXIF data is written
+ * into the existing APP1 segment using positional writes, so that only the segment
+ * itself is read and written, regardless of the size of the image.
+ *
+ * This works whenever the patched EXIF data is not larger than the existing segment,
+ * which is usually the case if space was reserved using the padding tag, see
+ * {@link MetadataPatch#exifPadding(int)}. The remaining space is reserved again using a
+ * padding field, or filled with zeros if that is not possible. Otherwise, the file is
+ * left untouched and the caller has to rewrite it.
+ *
+ * Concurrent readers of the file may observe partially written EXIF data.
+ *
+ * @author Gunnar Hillert
+ */
+public final class ExifInPlaceUpdater {
+
+	/**
+	 * The size of an IFD entry, which is needed in addition to the padding data itself.
+	 */
+	private static final int IFD_ENTRY_LENGTH = 12;
+
+	private ExifInPlaceUpdater() {
+		throw new AssertionError("This is a static utility class.");
+	}
+
+	/**
+	 * Check whether the provided patch can be applied in place at all, i.e. whether it
+	 * only changes EXIF fields.
+	 * @param patch the metadata changes, must not be null
+	 * @return true if the patch only contains EXIF fields
+	 */
+	public static boolean isApplicable(MetadataPatch patch) {
+		Assert.notNull(patch, "patch must not be null.");
+		return !patch.getExifFields().isEmpty() && patch.getIptcRecords().isEmpty()
+				&& patch.getXmpProperties().isEmpty() && patch.getExifPadding() == 0;
+	}
+
+	/**
+	 * Apply the provided patch to the EXIF segment of the JPEG file in place.
+	 * @param imagePath the JPEG file, must not be null
+	 * @param patch the metadata changes, must not be null
+	 * @return true if the file was updated, false if the patch cannot be applied in place,
+	 * in which case the file was not modified
+	 * @throws IOException in case the file cannot be read or written
+	 */
+	public static boolean update(Path imagePath, MetadataPatch patch) throws IOException {
+		Assert.notNull(imagePath, "imagePath must not be null.");
+		if (!isApplicable(patch)) {
+			return false;
+		}
+
+		try (FileChannel channel = FileChannel.open(imagePath, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			final JpegHeader header = JpegSegmentScanner.scan(channel);
+			if (header == null) {
+				return false;
+			}
+			final JpegSegment exifSegment = header.getSegments()
+				.stream()
+				.filter(header::isExifSegment)
+				.findFirst()
+				.orElse(null);
+			if (exifSegment == null) {
+				return false;
+			}
+
+			final byte[] tiff = patchExif(header.getExifPayload(),
+					exifSegment.dataLength() - JpegSegmentScanner.EXIF_IDENTIFIER.length, patch);
+			if (tiff == null) {
+				return false;
+			}
+
+			final ByteBuffer buffer = ByteBuffer.wrap(tiff);
+			long position = exifSegment.dataOffset() + JpegSegmentScanner.EXIF_IDENTIFIER.length;
+			while (buffer.hasRemaining()) {
+				position += channel.write(buffer, position);
+			}
+			channel.force(false);
+			return true;
+		}
+	}
+
+	/**
+	 * Apply the patch to the provided EXIF data, keeping its length.
+	 * @param exifPayload the TIFF structure of the existing EXIF data
+	 * @param capacity the number of bytes available for the patched EXIF data
+	 * @param patch the metadata changes
+	 * @return the patched TIFF structure with exactly {@code capacity} bytes or null if
+	 * it does not fit
+	 * @throws IOException in case the EXIF data cannot be parsed or written
+	 */
+	static byte[] patchExif(byte[] exifPayload, int capacity, MetadataPatch patch) throws IOException {
+		final TiffOutputSet outputSet = MetadataPatchSupport.getOutputSet(exifPayload);
+		if (outputSet == null) {
+			return null;
+		}
+		MetadataPatchSupport.applyExifFields(outputSet, patch);
+		MetadataPatchSupport.setExifPadding(outputSet, 0);
+
+		byte[] tiff = MetadataPatchSupport.writeExif(outputSet, exifPayload);
+		if (tiff.length > capacity) {
+			return null;
+		}
+
+		// Reserve the remaining space again, so that other tools relying on the padding
+		// tag can update the EXIF data in place, too.
+		final int padding = capacity - tiff.length - IFD_ENTRY_LENGTH;
+		if (padding > 0) {
+			MetadataPatchSupport.setExifPadding(outputSet, padding);
+			final byte[] paddedTiff = MetadataPatchSupport.writeExif(outputSet, exifPayload);
+			if (paddedTiff.length <= capacity) {
+				tiff = paddedTiff;
+			}
+		}
+		return Arrays.copyOf(tiff, capacity);
+	}
+
+}
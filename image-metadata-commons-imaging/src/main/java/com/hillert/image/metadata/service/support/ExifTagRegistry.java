@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2025 Gunnar Hillert.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hillert.image.metadata.service.support;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.hillert.image.metadata.model.DirectoryType;
+import org.apache.commons.imaging.formats.tiff.TiffField;
+import org.apache.commons.imaging.formats.tiff.constants.ExifTagConstants;
+import org.apache.commons.imaging.formats.tiff.constants.GpsTagConstants;
+import org.apache.commons.imaging.formats.tiff.constants.MicrosoftTagConstants;
+import org.apache.commons.imaging.formats.tiff.constants.TiffDirectoryType;
+import org.apache.commons.imaging.formats.tiff.taginfos.TagInfo;
+
+import org.springframework.util.Assert;
+
+/**
+ * Immutable registry that classifies EXIF fields into additional {@link DirectoryType}s
+ * (e.g. {@link DirectoryType#WINDOWS} or {@link DirectoryType#GPS}), based on the TIFF
+ * directory and the numeric tag of the field. The registry is backed by an
+ * open-addressing hash table of primitive int keys, so that classifying a field is a
+ * single lookup, regardless of the number of registered tags.
+ *
+ * The {@link #DEFAULT} registry contains the Microsoft, GPS, Interoperability and
+ * MakerNote tags. Custom tags can be added using a {@link Builder}.
+ *
+ * @author Gunnar Hillert
+ */
+public final class ExifTagRegistry {
+
+	/**
+	 * Registry containing the Microsoft, GPS, Interoperability and MakerNote tags.
+	 */
+	public static final ExifTagRegistry DEFAULT = builder().registerDefaults().build();
+
+	private final int[] keys;
+
+	private final DirectoryType[] directoryTypes;
+
+	private final int mask;
+
+	private final int size;
+
+	private ExifTagRegistry(Map<Integer, DirectoryType> entries) {
+		int capacity = Integer.highestOneBit(Math.max(2, entries.size() * 2) - 1) << 1;
+		this.keys = new int[capacity];
+		this.directoryTypes = new DirectoryType[capacity];
+		this.mask = capacity - 1;
+		this.size = entries.size();
+		entries.forEach((key, directoryType) -> {
+			int index = indexOf(key);
+			while (this.directoryTypes[index] != null) {
+				index = (index + 1) & this.mask;
+			}
+			this.keys[index] = key;
+			this.directoryTypes[index] = directoryType;
+		});
+	}
+
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	/**
+	 * Classify the provided {@link TiffField}.
+	 * @param tiffField must not be null
+	 * @return the {@link DirectoryType} or null if the field is not registered
+	 */
+	public DirectoryType classify(TiffField tiffField) {
+		return classify(tiffField.getDirectoryType(), tiffField.getTag());
+	}
+
+	/**
+	 * Classify the field with the provided TIFF directory type and tag.
+	 * @param tiffDirectoryType the numeric TIFF directory type, see
+	 * {@link TiffDirectoryType#directoryType}
+	 * @param tag the numeric tag of the field
+	 * @return the {@link DirectoryType} or null if the field is not registered
+	 */
+	public DirectoryType classify(int tiffDirectoryType, int tag) {
+		final int key = toKey(tiffDirectoryType, tag);
+		int index = indexOf(key);
+		DirectoryType directoryType;
+		while ((directoryType = this.directoryTypes[index]) != null) {
+			if (this.keys[index] == key) {
+				return directoryType;
+			}
+			index = (index + 1) & this.mask;
+		}
+		return null;
+	}
+
+	public int size() {
+		return this.size;
+	}
+
+	private int indexOf(int key) {
+		return (key * 0x9E3779B9 >>> 16) & this.mask;
+	}
+
+	private static int toKey(int tiffDirectoryType, int tag) {
+		return (tiffDirectoryType << 16) | (tag & 0xFFFF);
+	}
+
+	/**
+	 * Builder for {@link ExifTagRegistry} instances.
+	 */
+	public static final class Builder {
+
+		private final Map<Integer, DirectoryType> entries = new LinkedHashMap<>();
+
+		private Builder() {
+		}
+
+		/**
+		 * Register the Microsoft, GPS, Interoperability and MakerNote tags.
+		 * @return this builder
+		 */
+		public Builder registerDefaults() {
+			MicrosoftTagConstants.ALL_MICROSOFT_TAGS.forEach((tagInfo) -> register(tagInfo, DirectoryType.WINDOWS));
+			GpsTagConstants.ALL_GPS_TAGS.forEach((tagInfo) -> register(tagInfo, DirectoryType.GPS));
+			for (TagInfo tagInfo : ExifTagConstants.ALL_EXIF_TAGS) {
+				if (tagInfo.directoryType == TiffDirectoryType.EXIF_DIRECTORY_INTEROP_IFD) {
+					register(tagInfo, DirectoryType.INTEROP);
+				}
+				else if (tagInfo.directoryType == TiffDirectoryType.EXIF_DIRECTORY_MAKER_NOTES) {
+					register(tagInfo, DirectoryType.MAKER_NOTE);
+				}
+			}
+			return register(ExifTagConstants.EXIF_TAG_MAKER_NOTE, DirectoryType.MAKER_NOTE);
+		}
+
+		/**
+		 * Register a tag, using the TIFF directory type of the {@link TagInfo}.
+		 * @param tagInfo must not be null
+		 * @param directoryType must not be null
+		 * @return this builder
+		 */
+		public Builder register(TagInfo tagInfo, DirectoryType directoryType) {
+			Assert.notNull(tagInfo, "tagInfo must not be null.");
+			Assert.notNull(tagInfo.directoryType, "The tagInfo must have a directoryType.");
+			return register(tagInfo.directoryType.directoryType, tagInfo.tag, directoryType);
+		}
+
+		/**
+		 * Register a tag. Registering the same tag twice overrides the previous
+		 * registration.
+		 * @param tiffDirectoryType the numeric TIFF directory type
+		 * @param tag the numeric tag
+		 * @param directoryType must not be null
+		 * @return this builder
+		 */
+		public Builder register(int tiffDirectoryType, int tag, DirectoryType directoryType) {
+			Assert.notNull(directoryType, "directoryType must not be null.");
+			this.entries.put(toKey(tiffDirectoryType, tag), directoryType);
+			return this;
+		}
+
+		public ExifTagRegistry build() {
+			return new ExifTagRegistry(this.entries);
+		}
+
+	}
+
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2025 Gunnar Hillert.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hillert.image.metadata.service.support;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+
+import javax.imageio.ImageIO;
+
+import com.hillert.image.metadata.service.support.JpegSegmentScanner.JpegHeader;
+import org.apache.commons.imaging.bytesource.ByteSource;
+import org.apache.commons.imaging.common.ImageMetadata;
+import org.apache.commons.imaging.formats.tiff.JpegImageData;
+import org.apache.commons.imaging.formats.tiff.TiffImageMetadata;
+import org.apache.commons.imaging.formats.tiff.TiffImageParser;
+import org.apache.commons.imaging.formats.tiff.TiffImagingParameters;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.util.Assert;
+
+/**
+ * Reads the JPEG thumbnail that most cameras embed into the EXIF data (IFD1) of JPEG
+ * images. Only the header segments of the image file are read, the actual image data is
+ * never touched. Small renditions can therefore be created from the thumbnail at a
+ * fraction of the cost of decoding the image.
+ *
+ * @author Gunnar Hillert
+ */
+public final class ExifThumbnailReader {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(ExifThumbnailReader.class);
+
+	/**
+	 * The maximum relative difference between the aspect ratios of the thumbnail and
+	 * the image. Some cameras add black bars to thumbnails with a different aspect
+	 * ratio, such thumbnails are not used.
+	 */
+	private static final double MAX_ASPECT_RATIO_DIFFERENCE = 0.02;
+
+	private ExifThumbnailReader() {
+		throw new AssertionError("This is a static utility class.");
+	}
+
+	/**
+	 * Read the embedded EXIF thumbnail of the provided JPEG file, if it is at least as
+	 * wide as the provided width and has the same aspect ratio as the image.
+	 * @param path the image file, must not be null
+	 * @param minWidth the minimum width of the thumbnail
+	 * @return the decoded thumbnail or null if there is no suitable thumbnail
+	 */
+	public static BufferedImage read(Path path, int minWidth) {
+		Assert.notNull(path, "path must not be null.");
+
+		final JpegHeader header = JpegSegmentScanner.scan(path);
+		final byte[] exifPayload = (header != null) ? header.getExifPayload() : null;
+		if (exifPayload == null || header.getWidth() <= 0 || header.getHeight() <= 0) {
+			return null;
+		}
+
+		try {
+			final byte[] thumbnailData = getThumbnailData(exifPayload);
+			if (thumbnailData == null) {
+				return null;
+			}
+			final BufferedImage thumbnail = ImageIO.read(new ByteArrayInputStream(thumbnailData));
+			if (thumbnail == null || thumbnail.getWidth() < minWidth
+					|| !hasAspectRatio(thumbnail, header.getWidth(), header.getHeight())) {
+				return null;
+			}
+			LOGGER.debug("Using the {}x{} EXIF thumbnail of '{}'.", thumbnail.getWidth(), thumbnail.getHeight(),
+					path);
+			return thumbnail;
+		}
+		catch (IOException | RuntimeException ex) {
+			// A broken thumbnail must not prevent rendering the actual image.
+			LOGGER.debug("Unable to read the EXIF thumbnail of '{}'.", path, ex);
+			return null;
+		}
+	}
+
+	private static byte[] getThumbnailData(byte[] exifPayload) throws IOException {
+		final TiffImagingParameters params = new TiffImagingParameters();
+		params.setReadThumbnails(true);
+		final ImageMetadata metadata = new TiffImageParser().getMetadata(ByteSource.array(exifPayload), params);
+		if (metadata instanceof TiffImageMetadata tiffMetadata) {
+			for (ImageMetadata.ImageMetadataItem item : tiffMetadata.getDirectories()) {
+				if (item instanceof TiffImageMetadata.Directory directory) {
+					final JpegImageData jpegImageData = directory.getJpegImageData();
+					if (jpegImageData != null) {
+						return jpegImageData.getData();
+					}
+				}
+			}
+		}
+		return null;
+	}
+
+	private static boolean hasAspectRatio(BufferedImage thumbnail, int width, int height) {
+		final double thumbnailAspectRatio = (double) thumbnail.getWidth() / thumbnail.getHeight();
+		final double aspectRatio = (double) width / height;
+		return Math.abs(thumbnailAspectRatio - aspectRatio) / aspectRatio <= MAX_ASPECT_RATIO_DIFFERENCE;
+	}
+
+}
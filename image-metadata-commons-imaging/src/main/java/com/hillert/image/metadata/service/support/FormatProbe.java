@@ -0,0 +1,332 @@
+/*
+ * Copyright (c) 2025 Gunnar Hillert.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hillert.image.metadata.service.support;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.apache.commons.imaging.ImageInfo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+
+/**
+ * Identifies the format, dimensions, bit depth and frame count of an image by only
+ * reading its headers: the magic bytes, the JPEG start of frame segment, the PNG IHDR
+ * (and APNG acTL) chunk and the GIF logical screen descriptor. Segments and chunks
+ * preceding these headers, e.g. large EXIF segments, are skipped instead of read. For
+ * GIF images, the data blocks are skipped as well to count the frames.
+ *
+ * Results for stored files are cached per {@link ImageFingerprint}.
+ *
+ * @author Gunnar Hillert
+ */
+@Component
+public class FormatProbe {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(FormatProbe.class);
+
+	private static final byte[] PNG_SIGNATURE = { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n' };
+
+	private static final String GIF87A_SIGNATURE = "GIF87a";
+
+	private static final String GIF89A_SIGNATURE = "GIF89a";
+
+	private static final int SIGNATURE_LENGTH = PNG_SIGNATURE.length;
+
+	/**
+	 * Rough weight in bytes of a cached {@link ImageFormat}.
+	 */
+	private static final long IMAGE_FORMAT_WEIGHT = 128;
+
+	/**
+	 * Maximum weight of the cached {@link ImageFormat}s, i.e. about 8000 images.
+	 */
+	private static final long IMAGE_FORMATS_MAX_WEIGHT = 1024L * 1024;
+
+	private final BoundedCache<ImageFingerprint, ImageFormat> imageFormats = new BoundedCache<>(
+			IMAGE_FORMATS_MAX_WEIGHT, (imageFormat) -> IMAGE_FORMAT_WEIGHT);
+
+	/**
+	 * Identify the provided stored image file. Formats not covered by the header
+	 * parsers, e.g. TIFF or BMP, are identified using Commons Imaging instead. The result
+	 * is cached until the file changes.
+	 * @param path the path of the image file, must not be null
+	 * @return the image format
+	 * @throws StorageException in case the file cannot be read
+	 */
+	public ImageFormat probe(Path path) {
+		final ImageFingerprint fingerprint = ImageFingerprint.of(path);
+		final ImageFormat cachedImageFormat = this.imageFormats.get(fingerprint);
+		if (cachedImageFormat != null) {
+			return cachedImageFormat;
+		}
+
+		ImageFormat imageFormat;
+		try (InputStream inputStream = Files.newInputStream(fingerprint.path())) {
+			imageFormat = probe(inputStream);
+		}
+		catch (IOException ex) {
+			throw new StorageException("Unable to read " + path, ex);
+		}
+		if (imageFormat == null) {
+			LOGGER.debug("Unable to identify {} by its headers, falling back to Commons Imaging.", path);
+			imageFormat = loadImageFormat(fingerprint.path());
+		}
+		this.imageFormats.put(fingerprint, imageFormat);
+		return imageFormat;
+	}
+
+	/**
+	 * Identify a JPEG, PNG or GIF image from the provided stream. Only the headers are
+	 * read, except for GIF images.
+	 * @param inputStream the image data, must not be null. Not closed.
+	 * @return the image format or null if the data is not a (valid) JPEG, PNG or GIF
+	 * image
+	 * @throws IOException in case the stream cannot be read
+	 */
+	public ImageFormat probe(InputStream inputStream) throws IOException {
+		final DataInputStream input = new DataInputStream(new BufferedInputStream(inputStream));
+		input.mark(SIGNATURE_LENGTH);
+		final byte[] signature = input.readNBytes(SIGNATURE_LENGTH);
+		input.reset();
+		try {
+			if (isJpeg(signature)) {
+				return probeJpeg(input);
+			}
+			if (Arrays.equals(signature, PNG_SIGNATURE)) {
+				return probePng(input);
+			}
+			if (isGif(signature)) {
+				return probeGif(input);
+			}
+		}
+		catch (EOFException ex) {
+			// Truncated image data
+		}
+		return null;
+	}
+
+	private static boolean isJpeg(byte[] signature) {
+		return signature.length >= 3 && (signature[0] & 0xFF) == 0xFF && (signature[1] & 0xFF) == 0xD8
+				&& (signature[2] & 0xFF) == 0xFF;
+	}
+
+	private static boolean isGif(byte[] signature) {
+		final String header = new String(signature, 0, Math.min(signature.length, GIF89A_SIGNATURE.length()),
+				StandardCharsets.US_ASCII);
+		return GIF87A_SIGNATURE.equals(header) || GIF89A_SIGNATURE.equals(header);
+	}
+
+	/**
+	 * Read the dimensions from the start of frame segment, skipping all segments before.
+	 * @param input the image data, positioned at the start
+	 * @return the image format or null if no start of frame segment precedes the image
+	 * data
+	 * @throws IOException in case the stream cannot be read
+	 */
+	private static ImageFormat probeJpeg(DataInputStream input) throws IOException {
+		input.skipNBytes(2);
+		while (true) {
+			if (input.readUnsignedByte() != 0xFF) {
+				return null;
+			}
+			int marker = input.readUnsignedByte();
+			while (marker == 0xFF) {
+				// Fill bytes
+				marker = input.readUnsignedByte();
+			}
+			if (marker == 0x01 || (marker >= 0xD0 && marker <= 0xD8)) {
+				// Markers without segment data
+				continue;
+			}
+			if (marker == 0xD9 || marker == 0xDA) {
+				// End of image or start of scan
+				return null;
+			}
+			final int segmentLength = input.readUnsignedShort();
+			if (isStartOfFrame(marker)) {
+				final int precision = input.readUnsignedByte();
+				final int height = input.readUnsignedShort();
+				final int width = input.readUnsignedShort();
+				final int components = input.readUnsignedByte();
+				return new ImageFormat(MediaType.IMAGE_JPEG_VALUE, width, height, precision * components, 1);
+			}
+			input.skipNBytes(segmentLength - 2);
+		}
+	}
+
+	private static boolean isStartOfFrame(int marker) {
+		// DHT, JPG and DAC share the range of the SOF markers
+		return marker >= 0xC0 && marker <= 0xCF && marker != 0xC4 && marker != 0xC8 && marker != 0xCC;
+	}
+
+	/**
+	 * Read the IHDR chunk and, for animated PNG images, the acTL chunk. Chunks are read
+	 * up to the first IDAT chunk, which has to follow both.
+	 * @param input the image data, positioned at the start
+	 * @return the image format or null if the first chunk is not an IHDR chunk
+	 * @throws IOException in case the stream cannot be read
+	 */
+	private static ImageFormat probePng(DataInputStream input) throws IOException {
+		input.skipNBytes(PNG_SIGNATURE.length);
+		if (input.readInt() != 13 || !"IHDR".equals(readChunkType(input))) {
+			return null;
+		}
+		final int width = input.readInt();
+		final int height = input.readInt();
+		final int bitDepth = input.readUnsignedByte();
+		final int colorType = input.readUnsignedByte();
+		// Compression, filter and interlace method, CRC
+		input.skipNBytes(3 + 4);
+
+		final int channels = switch (colorType) {
+			case 2 -> 3;
+			case 4 -> 2;
+			case 6 -> 4;
+			default -> 1;
+		};
+
+		int frameCount = 1;
+		try {
+			while (true) {
+				final long chunkLength = Integer.toUnsignedLong(input.readInt());
+				final String chunkType = readChunkType(input);
+				if ("IDAT".equals(chunkType) || "IEND".equals(chunkType)) {
+					break;
+				}
+				if ("acTL".equals(chunkType)) {
+					frameCount = input.readInt();
+					// Number of plays and CRC
+					input.skipNBytes(chunkLength);
+				}
+				else {
+					// Chunk data and CRC
+					input.skipNBytes(chunkLength + 4);
+				}
+			}
+		}
+		catch (EOFException ex) {
+			// The header is complete, the image data is truncated though.
+		}
+		return new ImageFormat(MediaType.IMAGE_PNG_VALUE, width, height, bitDepth * channels, frameCount);
+	}
+
+	private static String readChunkType(DataInputStream input) throws IOException {
+		final byte[] chunkType = new byte[4];
+		input.readFully(chunkType);
+		return new String(chunkType, StandardCharsets.US_ASCII);
+	}
+
+	/**
+	 * Read the logical screen descriptor and count the frames by skipping the data
+	 * blocks.
+	 * @param input the image data, positioned at the start
+	 * @return the image format
+	 * @throws IOException in case the stream cannot be read
+	 */
+	private static ImageFormat probeGif(DataInputStream input) throws IOException {
+		input.skipNBytes(GIF89A_SIGNATURE.length());
+		final int width = readUnsignedShortLittleEndian(input);
+		final int height = readUnsignedShortLittleEndian(input);
+		final int packedFields = input.readUnsignedByte();
+		// Background color index and pixel aspect ratio
+		input.skipNBytes(2);
+		final int bitsPerPixel = (packedFields & 0x07) + 1;
+		skipColorTable(input, packedFields);
+
+		int frameCount = 0;
+		try {
+			int blockType = input.read();
+			while (blockType != -1 && blockType != 0x3B) {
+				if (blockType == 0x2C) {
+					frameCount++;
+					// Position and dimensions of the frame
+					input.skipNBytes(8);
+					skipColorTable(input, input.readUnsignedByte());
+					// LZW minimum code size
+					input.skipNBytes(1);
+				}
+				else if (blockType == 0x21) {
+					// Extension label
+					input.skipNBytes(1);
+				}
+				else {
+					break;
+				}
+				skipSubBlocks(input);
+				blockType = input.read();
+			}
+		}
+		catch (EOFException ex) {
+			// Truncated image data, count the frames read so far.
+		}
+		return new ImageFormat(MediaType.IMAGE_GIF_VALUE, width, height, bitsPerPixel, frameCount);
+	}
+
+	private static void skipColorTable(DataInputStream input, int packedFields) throws IOException {
+		if ((packedFields & 0x80) != 0) {
+			input.skipNBytes(3L * (1 << ((packedFields & 0x07) + 1)));
+		}
+	}
+
+	private static void skipSubBlocks(DataInputStream input) throws IOException {
+		int blockSize = input.readUnsignedByte();
+		while (blockSize > 0) {
+			input.skipNBytes(blockSize);
+			blockSize = input.readUnsignedByte();
+		}
+	}
+
+	private static int readUnsignedShortLittleEndian(DataInputStream input) throws IOException {
+		final int low = input.readUnsignedByte();
+		return low | (input.readUnsignedByte() << 8);
+	}
+
+	private static ImageFormat loadImageFormat(Path path) {
+		final ImageInfo imageInfo;
+		try (InputStream inputStream = new BufferedInputStream(Files.newInputStream(path))) {
+			imageInfo = MetadataExtractor.loadImageInfo(inputStream, path.getFileName().toString());
+		}
+		catch (IOException ex) {
+			throw new StorageException("Unable to read " + path, ex);
+		}
+		return new ImageFormat(imageInfo.getMimeType(), imageInfo.getWidth(), imageInfo.getHeight(),
+				imageInfo.getBitsPerPixel(), imageInfo.getNumberOfImages());
+	}
+
+	/**
+	 * The format of an image.
+	 *
+	 * @param mimeType the MIME type of the image
+	 * @param width the width of the image in pixels
+	 * @param height the height of the image in pixels
+	 * @param bitsPerPixel the number of bits per pixel over all channels
+	 * @param frameCount the number of frames, e.g. of animated images
+	 */
+	public record ImageFormat(String mimeType, int width, int height, int bitsPerPixel, int frameCount) {
+	}
+
+}
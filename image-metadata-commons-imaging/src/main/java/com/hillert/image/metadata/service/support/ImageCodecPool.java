@@ -0,0 +1,241 @@
+/*
+ * Copyright (c) 2025 Gunnar Hillert.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hillert.image.metadata.service.support;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.plugins.jpeg.JPEGImageWriteParam;
+import javax.imageio.stream.ImageOutputStream;
+
+import com.hillert.image.metadata.config.MetadataConfigProperties;
+import com.hillert.image.metadata.config.MetadataConfigProperties.Codecs.WriteParams;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.util.Assert;
+
+/**
+ * Pools {@link ImageReader} and {@link ImageWriter} instances per MIME type. Looking up
+ * readers and writers iterates the ImageIO service registry and creating them allocates
+ * native codec state, e.g. for JPEG, which is only released once the instance is
+ * disposed. Borrowed instances are used by a single thread at a time and must be
+ * released once done. Released instances are reset and kept for reuse; instances
+ * exceeding the configured number of idle instances per MIME type are disposed.
+ *
+ * @author Gunnar Hillert
+ */
+@Component
+public class ImageCodecPool implements DisposableBean {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(ImageCodecPool.class);
+
+	private final MetadataConfigProperties.Codecs codecs;
+
+	private final Map<String, BlockingQueue<ImageReader>> idleReaders = new ConcurrentHashMap<>();
+
+	private final Map<String, BlockingQueue<ImageWriter>> idleWriters = new ConcurrentHashMap<>();
+
+	private final AtomicLong createdCount = new AtomicLong();
+
+	private final AtomicLong reusedCount = new AtomicLong();
+
+	private final AtomicLong disposedCount = new AtomicLong();
+
+	public ImageCodecPool(MetadataConfigProperties metadataConfigProperties) {
+		this.codecs = metadataConfigProperties.getCodecs();
+		Assert.isTrue(this.codecs.getMaxIdle() > 0, "metadata.codecs.max-idle must be positive.");
+	}
+
+	/**
+	 * Borrow an image reader for the provided MIME type. The reader must be released
+	 * via {@link #releaseReader(String, ImageReader)} once done.
+	 * @param mimeType the MIME type of the image to read
+	 * @return the image reader or null if no reader supports the MIME type
+	 */
+	public ImageReader borrowReader(String mimeType) {
+		final ImageReader idleReader = getIdleQueue(this.idleReaders, mimeType).poll();
+		if (idleReader != null) {
+			this.reusedCount.incrementAndGet();
+			return idleReader;
+		}
+		final Iterator<ImageReader> imageReaders = ImageIO.getImageReadersByMIMEType(mimeType);
+		if (!imageReaders.hasNext()) {
+			return null;
+		}
+		this.createdCount.incrementAndGet();
+		LOGGER.debug("Created ImageReader for {} - {}", mimeType, getStats());
+		return imageReaders.next();
+	}
+
+	/**
+	 * Return a borrowed image reader to the pool. Its input is reset, hence the input
+	 * stream must be closed by the caller.
+	 * @param mimeType the MIME type the reader was borrowed for
+	 * @param imageReader the image reader
+	 */
+	public void releaseReader(String mimeType, ImageReader imageReader) {
+		imageReader.reset();
+		if (!getIdleQueue(this.idleReaders, mimeType).offer(imageReader)) {
+			imageReader.dispose();
+			this.disposedCount.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Borrow an image writer for the provided MIME type. The writer must be released
+	 * via {@link #releaseWriter(String, ImageWriter)} once done.
+	 * @param mimeType the MIME type of the image to write
+	 * @return the image writer
+	 * @throws IllegalArgumentException if no writer supports the MIME type
+	 */
+	public ImageWriter borrowWriter(String mimeType) {
+		final ImageWriter idleWriter = getIdleQueue(this.idleWriters, mimeType).poll();
+		if (idleWriter != null) {
+			this.reusedCount.incrementAndGet();
+			return idleWriter;
+		}
+		final Iterator<ImageWriter> imageWriters = ImageIO.getImageWritersByMIMEType(mimeType);
+		if (!imageWriters.hasNext()) {
+			throw new IllegalArgumentException("No ImageWriter found for MIME type " + mimeType);
+		}
+		this.createdCount.incrementAndGet();
+		LOGGER.debug("Created ImageWriter for {} - {}", mimeType, getStats());
+		return imageWriters.next();
+	}
+
+	/**
+	 * Return a borrowed image writer to the pool. Its output is reset, hence the output
+	 * stream must be closed by the caller.
+	 * @param mimeType the MIME type the writer was borrowed for
+	 * @param imageWriter the image writer
+	 */
+	public void releaseWriter(String mimeType, ImageWriter imageWriter) {
+		imageWriter.reset();
+		if (!getIdleQueue(this.idleWriters, mimeType).offer(imageWriter)) {
+			imageWriter.dispose();
+			this.disposedCount.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Create the write parameters of the provided writer using the configured write
+	 * parameters of the MIME type. Settings the writer does not support are ignored.
+	 * @param imageWriter the image writer
+	 * @param mimeType the MIME type of the image to write
+	 * @return the write parameters
+	 */
+	public ImageWriteParam createWriteParam(ImageWriter imageWriter, String mimeType) {
+		final ImageWriteParam imageWriteParam = imageWriter.getDefaultWriteParam();
+		final WriteParams writeParams = switch (mimeType) {
+			case MediaType.IMAGE_JPEG_VALUE -> this.codecs.getJpeg();
+			case MediaType.IMAGE_PNG_VALUE -> this.codecs.getPng();
+			default -> null;
+		};
+		if (writeParams == null) {
+			return imageWriteParam;
+		}
+		if (writeParams.getQuality() != null && imageWriteParam.canWriteCompressed()) {
+			imageWriteParam.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+			if (imageWriteParam.getCompressionType() == null) {
+				imageWriteParam.setCompressionType(imageWriteParam.getCompressionTypes()[0]);
+			}
+			imageWriteParam.setCompressionQuality(writeParams.getQuality());
+		}
+		if (writeParams.isProgressive() && imageWriteParam.canWriteProgressive()) {
+			imageWriteParam.setProgressiveMode(ImageWriteParam.MODE_DEFAULT);
+		}
+		if (writeParams.isOptimizeHuffmanTables() && imageWriteParam instanceof JPEGImageWriteParam jpegWriteParam) {
+			jpegWriteParam.setOptimizeHuffmanTables(true);
+		}
+		return imageWriteParam;
+	}
+
+	/**
+	 * Encode the provided image onto the provided stream using a pooled writer and the
+	 * configured write parameters.
+	 * @param bufferedImage the image to encode, must not be null
+	 * @param mimeType the MIME type of the encoded image
+	 * @param outputStream the stream to write to, is not closed
+	 * @throws IOException in case the stream cannot be written
+	 */
+	public void write(BufferedImage bufferedImage, String mimeType, OutputStream outputStream) throws IOException {
+		final ImageWriter imageWriter = borrowWriter(mimeType);
+		try (ImageOutputStream ios = ImageIO.createImageOutputStream(outputStream)) {
+			imageWriter.setOutput(ios);
+			imageWriter.write(null, new IIOImage(bufferedImage, null, null),
+					createWriteParam(imageWriter, mimeType));
+		}
+		finally {
+			releaseWriter(mimeType, imageWriter);
+		}
+	}
+
+	public Stats getStats() {
+		final int idleCount = this.idleReaders.values().stream().mapToInt(BlockingQueue::size).sum()
+				+ this.idleWriters.values().stream().mapToInt(BlockingQueue::size).sum();
+		return new Stats(this.createdCount.get(), this.reusedCount.get(), this.disposedCount.get(), idleCount);
+	}
+
+	@Override
+	public void destroy() {
+		this.idleReaders.values().forEach((queue) -> {
+			for (ImageReader imageReader = queue.poll(); imageReader != null; imageReader = queue.poll()) {
+				imageReader.dispose();
+				this.disposedCount.incrementAndGet();
+			}
+		});
+		this.idleWriters.values().forEach((queue) -> {
+			for (ImageWriter imageWriter = queue.poll(); imageWriter != null; imageWriter = queue.poll()) {
+				imageWriter.dispose();
+				this.disposedCount.incrementAndGet();
+			}
+		});
+		LOGGER.debug("Disposed pooled image codecs - {}", getStats());
+	}
+
+	private <T> BlockingQueue<T> getIdleQueue(Map<String, BlockingQueue<T>> idleQueues, String mimeType) {
+		return idleQueues.computeIfAbsent(mimeType, (key) -> new ArrayBlockingQueue<>(this.codecs.getMaxIdle()));
+	}
+
+	/**
+	 * Statistics of the pool.
+	 *
+	 * @param createdCount the number of readers and writers created
+	 * @param reusedCount the number of times an idle reader or writer was reused
+	 * @param disposedCount the number of readers and writers disposed
+	 * @param idleCount the number of idle readers and writers currently pooled
+	 */
+	public record Stats(long createdCount, long reusedCount, long disposedCount, int idleCount) {
+
+	}
+
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2025 Gunnar Hillert.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hillert.image.metadata.service.support;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+
+import org.springframework.core.io.Resource;
+
+/**
+ * Identifies a specific version of a stored image file by its path, size and last
+ * modification time. Used as cache key, so that cached data derived from an image file
+ * is never returned once the file has changed.
+ *
+ * @param path the normalized, absolute path of the file
+ * @param size the file size in bytes
+ * @param lastModified the last modification time in milliseconds since the epoch
+ * @author Gunnar Hillert
+ */
+public record ImageFingerprint(Path path, long size, long lastModified) {
+
+	public static ImageFingerprint of(Path path) {
+		final Path normalizedPath = path.toAbsolutePath().normalize();
+		try {
+			final BasicFileAttributes attributes = Files.readAttributes(normalizedPath, BasicFileAttributes.class);
+			return new ImageFingerprint(normalizedPath, attributes.size(), attributes.lastModifiedTime().toMillis());
+		}
+		catch (IOException ex) {
+			throw new StorageException("Unable to read the file attributes of " + path, ex);
+		}
+	}
+
+	/**
+	 * Create an {@link ImageFingerprint} for a file-based {@link Resource}.
+	 * @param resource must not be null
+	 * @return the fingerprint or null if the resource is not backed by a file
+	 */
+	public static ImageFingerprint of(Resource resource) {
+		if (!resource.isFile()) {
+			return null;
+		}
+		try {
+			return of(resource.getFile().toPath());
+		}
+		catch (IOException ex) {
+			return null;
+		}
+	}
+
+	/**
+	 * Check whether this fingerprint belongs to the provided file, regardless of its
+	 * version.
+	 * @param otherPath the path to compare to
+	 * @return true if both paths point to the same file
+	 */
+	public boolean isFor(Path otherPath) {
+		return this.path.equals(otherPath.toAbsolutePath().normalize());
+	}
+
+}
@@ -15,24 +15,17 @@
  */
 package com.hillert.image.metadata.service.support;
 
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
 import java.awt.image.BufferedImage;
 import java.awt.image.BufferedImageOp;
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
-
-import javax.imageio.IIOImage;
-import javax.imageio.ImageIO;
-import javax.imageio.ImageWriteParam;
-import javax.imageio.ImageWriter;
-import javax.imageio.stream.ImageOutputStream;
 
 import com.hillert.image.metadata.filter.UnsharpFilter;
 import com.twelvemonkeys.image.ResampleOp;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import org.springframework.http.MediaType;
-
 /**
  * Contains common utilities for the project.
  *
@@ -47,6 +40,35 @@ public final class ImageIoTools {
 	}
 
 	public static BufferedImage resizeImage(BufferedImage bufferedImage, Integer targetWidth) {
+		return resizeImage(bufferedImage, targetWidth, ResizeQuality.BEST);
+	}
+
+	/**
+	 * Resize the provided image to the target width, keeping the aspect ratio, and
+	 * sharpen the result.
+	 * @param bufferedImage the image to resize, must not be null
+	 * @param targetWidth the target width or null to keep the current width
+	 * @param resizeQuality how to downscale the image, must not be null
+	 * @return the resized image
+	 */
+	public static BufferedImage resizeImage(BufferedImage bufferedImage, Integer targetWidth,
+			ResizeQuality resizeQuality) {
+		return sharpen(resample(bufferedImage, targetWidth, resizeQuality));
+	}
+
+	/**
+	 * Resample the provided image to the target width, keeping the aspect ratio. Except
+	 * for {@link ResizeQuality#BEST}, the image is first halved repeatedly, so that the
+	 * final resampling step only has to cover a small reduction ratio. Unlike
+	 * {@link #resizeImage(BufferedImage, Integer, ResizeQuality)}, the result is not
+	 * sharpened, so that it can be used as source for further downscaling.
+	 * @param bufferedImage the image to resample, must not be null
+	 * @param targetWidth the target width or null to keep the current width
+	 * @param resizeQuality how to downscale the image, must not be null
+	 * @return the resampled image
+	 */
+	public static BufferedImage resample(BufferedImage bufferedImage, Integer targetWidth,
+			ResizeQuality resizeQuality) {
 
 		if (targetWidth == null) {
 			targetWidth = bufferedImage.getWidth();
@@ -56,42 +78,66 @@ public final class ImageIoTools {
 		final int currentHeight = bufferedImage.getHeight();
 		final int targetHeight = (int) (((double) targetWidth / currentWidth) * currentHeight);
 
-		LOGGER.info("Current Width: {} - Target Width: {}.", currentWidth, targetWidth);
+		LOGGER.info("Current Width: {} - Target Width: {} - Quality: {}.", currentWidth, targetWidth, resizeQuality);
 
+		final BufferedImage intermediate = halveForQuality(bufferedImage, targetWidth, resizeQuality);
 		final BufferedImageOp resampler = new ResampleOp(targetWidth, targetHeight, ResampleOp.FILTER_LANCZOS);
-		BufferedImage outputBufferedImage = resampler.filter(bufferedImage, null);
-
-		final UnsharpFilter unsharpFilter = new UnsharpFilter();
-		unsharpFilter.setRadius(2.0f);
-		unsharpFilter.setAmount(0.5f);
-		outputBufferedImage = unsharpFilter.filter(outputBufferedImage, null);
-
-		return outputBufferedImage;
+		return resampler.filter(intermediate, null);
 	}
 
-	public static byte[] writeImage(BufferedImage bufferedImage, String mimeType) {
-		final ImageWriter imageWriter = ImageIO.getImageWritersByMIMEType(mimeType).next();
-		final ImageWriteParam imageWriteParam = imageWriter.getDefaultWriteParam();
-
-		switch (mimeType) {
-			case MediaType.IMAGE_JPEG_VALUE -> {
-				imageWriteParam.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
-				imageWriteParam.setCompressionQuality(0.8f);
+	/**
+	 * Halve the provided image as often as the {@link ResizeQuality} permits before the
+	 * final resampling step to the target width.
+	 * @param bufferedImage the image to halve, must not be null
+	 * @param targetWidth the target width of the final resampling step
+	 * @param resizeQuality how to downscale the image, must not be null
+	 * @return the halved image or the provided image if no halving step applies
+	 */
+	static BufferedImage halveForQuality(BufferedImage bufferedImage, int targetWidth, ResizeQuality resizeQuality) {
+		BufferedImage intermediate = bufferedImage;
+		if (resizeQuality != ResizeQuality.BEST) {
+			final int minimumWidth = (resizeQuality == ResizeQuality.FAST) ? targetWidth : targetWidth * 2;
+			while (intermediate.getWidth() / 2 >= minimumWidth && intermediate.getHeight() / 2 >= 1) {
+				intermediate = halve(intermediate);
 			}
 		}
+		return intermediate;
+	}
 
-		final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-
-		try (ImageOutputStream ios = ImageIO.createImageOutputStream(outputStream)) {
-			imageWriter.setOutput(ios);
-			imageWriter.write(null, new IIOImage(bufferedImage, null, null), imageWriteParam);
+	/**
+	 * Halve the provided image. Using bilinear interpolation, each 2x2 pixel block is
+	 * averaged, i.e. this is equivalent to a box filter.
+	 * @param bufferedImage the image to halve
+	 * @return the halved image
+	 */
+	static BufferedImage halve(BufferedImage bufferedImage) {
+		final int width = bufferedImage.getWidth() / 2;
+		final int height = bufferedImage.getHeight() / 2;
+		final int imageType = bufferedImage.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB
+				: BufferedImage.TYPE_INT_RGB;
+		final BufferedImage halvedImage = new BufferedImage(width, height, imageType);
+		final Graphics2D graphics = halvedImage.createGraphics();
+		try {
+			graphics.setComposite(AlphaComposite.Src);
+			graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+			graphics.drawImage(bufferedImage, 0, 0, width, height, null);
 		}
-		catch (IOException ex) {
-			throw new IllegalStateException("Unable to create ImageOutputStream.", ex);
+		finally {
+			graphics.dispose();
 		}
+		return halvedImage;
+	}
 
-		return outputStream.toByteArray();
-
+	/**
+	 * Apply the unsharp mask used for resized images.
+	 * @param bufferedImage the image to sharpen, must not be null
+	 * @return a new, sharpened image
+	 */
+	public static BufferedImage sharpen(BufferedImage bufferedImage) {
+		final UnsharpFilter unsharpFilter = new UnsharpFilter();
+		unsharpFilter.setRadius(2.0f);
+		unsharpFilter.setAmount(0.5f);
+		return unsharpFilter.filter(bufferedImage, null);
 	}
 
 }
@@ -24,8 +24,12 @@ import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
+import java.util.Iterator;
 
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -49,6 +53,27 @@ public class ImageLoader extends Component {
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(ImageLoader.class);
 
+	/**
+	 * The minimum ratio between the width of a subsampled image and its target width.
+	 * Subsampling drops pixels without filtering, hence the final resampling step needs
+	 * some headroom to avoid aliasing.
+	 */
+	private static final int SUBSAMPLING_OVERSIZE = 2;
+
+	private final transient ImageCodecPool imageCodecPool;
+
+	public ImageLoader() {
+		this(null);
+	}
+
+	/**
+	 * Create an image loader borrowing its ImageIO readers from the provided pool.
+	 * @param imageCodecPool the pool of image readers, may be null
+	 */
+	public ImageLoader(ImageCodecPool imageCodecPool) {
+		this.imageCodecPool = imageCodecPool;
+	}
+
 	public BufferedImage loadImageUsingImageIO(Resource imageResource) {
 		Assert.notNull(imageResource, "imageResource must not be null.");
 		LOGGER.debug("Using ImageIO to load image: '{}'.", imageResource);
@@ -64,6 +89,89 @@ public class ImageLoader extends Component {
 		return bufferedImage;
 	}
 
+	/**
+	 * Load an image using ImageIO that is going to be downscaled to the provided target
+	 * width. Instead of decoding the image at full resolution, the decoder skips pixels
+	 * (subsampling), so that the returned image is between 2 and 4 times as wide as the
+	 * target width. The final resampling step then only has to refine this intermediate
+	 * image, which reduces decode time and memory considerably for small target widths.
+	 * @param imageResource the image data. Must not be null.
+	 * @param targetWidth the width the image is going to be downscaled to. If null, the
+	 * image is decoded at full resolution.
+	 * @return the loaded BufferedImage
+	 * @throws StorageException in case the image could not be loaded
+	 */
+	public BufferedImage loadImageUsingImageIO(Resource imageResource, Integer targetWidth) {
+		return loadImageUsingImageIO(imageResource, null, targetWidth);
+	}
+
+	/**
+	 * Load an image using ImageIO, see {@link #loadImageUsingImageIO(Resource, Integer)}.
+	 * If the MIME type of the image is known and an {@link ImageCodecPool} is available,
+	 * a pooled reader is used instead of detecting the format of the image data.
+	 * @param imageResource the image data. Must not be null.
+	 * @param mimeType the MIME type of the image, may be null
+	 * @param targetWidth the width the image is going to be downscaled to. If null, the
+	 * image is decoded at full resolution.
+	 * @return the loaded BufferedImage
+	 * @throws StorageException in case the image could not be loaded
+	 */
+	public BufferedImage loadImageUsingImageIO(Resource imageResource, String mimeType, Integer targetWidth) {
+		final boolean pooled = this.imageCodecPool != null && mimeType != null;
+		if (targetWidth == null && !pooled) {
+			return loadImageUsingImageIO(imageResource);
+		}
+		Assert.notNull(imageResource, "imageResource must not be null.");
+		Assert.isTrue(targetWidth == null || targetWidth > 0, "targetWidth must be positive.");
+
+		ImageIO.setUseCache(false);
+		try (InputStream inputStream = imageResource.getInputStream();
+				ImageInputStream imageInputStream = ImageIO.createImageInputStream(inputStream)) {
+			final ImageReader imageReader = pooled ? this.imageCodecPool.borrowReader(mimeType)
+					: getImageReader(imageInputStream);
+			if (imageReader == null) {
+				throw new StorageException("No ImageReader found for image " + imageResource.getFilename());
+			}
+			try {
+				imageReader.setInput(imageInputStream, true, true);
+				final int subsampling = (targetWidth != null) ? getSubsampling(imageReader.getWidth(0), targetWidth)
+						: 1;
+				LOGGER.debug("Using ImageIO to load image '{}' with subsampling {}.", imageResource, subsampling);
+
+				final ImageReadParam imageReadParam = imageReader.getDefaultReadParam();
+				imageReadParam.setSourceSubsampling(subsampling, subsampling, 0, 0);
+				return imageReader.read(0, imageReadParam);
+			}
+			finally {
+				if (pooled) {
+					this.imageCodecPool.releaseReader(mimeType, imageReader);
+				}
+				else {
+					imageReader.dispose();
+				}
+			}
+		}
+		catch (IOException ex) {
+			throw new StorageException("Unable to read image.", ex);
+		}
+	}
+
+	private static ImageReader getImageReader(ImageInputStream imageInputStream) {
+		final Iterator<ImageReader> imageReaders = ImageIO.getImageReaders(imageInputStream);
+		return imageReaders.hasNext() ? imageReaders.next() : null;
+	}
+
+	/**
+	 * Return the subsampling factor, so that the subsampled image is at least
+	 * {@link #SUBSAMPLING_OVERSIZE} times as wide as the target width.
+	 * @param width the width of the image
+	 * @param targetWidth the target width
+	 * @return the subsampling factor, 1 means no subsampling
+	 */
+	static int getSubsampling(int width, int targetWidth) {
+		return Math.max(1, width / (targetWidth * SUBSAMPLING_OVERSIZE));
+	}
+
 	/**
 	 * This method will load an image using the rather old AwtToolkit. The benefit is that
 	 * it is noticeably fast than loading an image using ImageIO.
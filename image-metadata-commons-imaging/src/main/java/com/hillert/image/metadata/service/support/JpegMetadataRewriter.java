@@ -0,0 +1,258 @@
+/*
+ * Copyright (c) 2025 Gunnar Hillert.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hillert.image.metadata.service.support;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import com.hillert.image.metadata.model.MetadataPatch;
+import com.hillert.image.metadata.service.support.JpegSegmentScanner.JpegHeader;
+import com.hillert.image.metadata.service.support.JpegSegmentScanner.JpegSegment;
+import org.apache.commons.imaging.Imaging;
+import org.apache.commons.imaging.ImagingException;
+import org.apache.commons.imaging.common.ImageMetadata;
+import org.apache.commons.imaging.formats.jpeg.JpegImageMetadata;
+import org.apache.commons.imaging.formats.jpeg.JpegPhotoshopMetadata;
+import org.apache.commons.imaging.formats.jpeg.iptc.IptcBlock;
+import org.apache.commons.imaging.formats.jpeg.iptc.IptcConstants;
+import org.apache.commons.imaging.formats.jpeg.iptc.IptcParser;
+import org.apache.commons.imaging.formats.jpeg.iptc.IptcRecord;
+import org.apache.commons.imaging.formats.jpeg.iptc.IptcType;
+import org.apache.commons.imaging.formats.jpeg.iptc.PhotoshopApp13Data;
+import org.apache.commons.imaging.formats.tiff.TiffImageMetadata;
+import org.apache.commons.imaging.formats.tiff.write.TiffOutputSet;
+
+import org.springframework.util.Assert;
+
+/**
+ * Applies a {@link MetadataPatch} to a JPEG image in a single pass. The image header is
+ * scanned and parsed once, the EXIF (APP1), XMP (APP1) and IPTC (APP13) segments are
+ * rebuilt as needed, and all other segments as well as the entropy-coded image data are
+ * copied through untouched. Segments of metadata families that are not affected by the
+ * patch are copied as is, too.
+ *
+ * Missing segments are inserted after the leading APP0 and APP1 segments.
+ *
+ * @author Gunnar Hillert
+ */
+public final class JpegMetadataRewriter {
+
+	private static final int MAX_SEGMENT_DATA_LENGTH = 0xFFFF - 2;
+
+	private JpegMetadataRewriter() {
+		throw new AssertionError("This is a static utility class.");
+	}
+
+	/**
+	 * Apply the provided patch to the JPEG image data.
+	 * @param imageBytes the JPEG image data, must not be null
+	 * @param patch the metadata changes, must not be null
+	 * @return the modified image data or the provided image data if the patch is empty
+	 */
+	public static byte[] rewrite(byte[] imageBytes, MetadataPatch patch) {
+		Assert.notNull(imageBytes, "imageBytes must not be null.");
+		Assert.notNull(patch, "patch must not be null.");
+
+		if (patch.isEmpty() && patch.getExifPadding() == 0) {
+			return imageBytes;
+		}
+
+		final JpegHeader header = JpegSegmentScanner.scan(imageBytes);
+		if (header == null) {
+			throw new ImageProcessingException("Metadata can only be updated for JPEG images.");
+		}
+
+		final int headerLength = header.getHeaderBytes().length;
+		try (ByteArrayOutputStream os = new ByteArrayOutputStream(imageBytes.length + 1024)) {
+			writeHeader(header, patch, os);
+			os.write(imageBytes, headerLength, imageBytes.length - headerLength);
+			return os.toByteArray();
+		}
+		catch (IOException ex) {
+			throw new ImageProcessingException("Unable to update the image metadata.", ex);
+		}
+	}
+
+	/**
+	 * Write the header of the JPEG image with the provided patch applied, i.e. all
+	 * segments from the start-of-image marker up to and including the start-of-scan
+	 * segment. The caller is expected to copy the remainder of the original image,
+	 * starting at {@code header.getHeaderBytes().length}, afterwards.
+	 * @param header the scanned header of the original image, must not be null
+	 * @param patch the metadata changes, must not be null
+	 * @param os the stream to write the header to
+	 * @throws IOException in case the header cannot be written
+	 */
+	public static void writeHeader(JpegHeader header, MetadataPatch patch, OutputStream os) throws IOException {
+		Assert.notNull(header, "header must not be null.");
+		Assert.notNull(patch, "patch must not be null.");
+
+		final boolean exifChanged = !patch.getExifFields().isEmpty() || patch.getExifPadding() > 0;
+		final ImageMetadata metadata = (exifChanged || !patch.getIptcRecords().isEmpty()) ? getMetadata(header)
+				: null;
+		final JpegImageMetadata jpegMetadata = (metadata instanceof JpegImageMetadata jpeg) ? jpeg : null;
+
+		final byte[] exifSegment = exifChanged ? createExifSegment(header, jpegMetadata, patch) : null;
+		final byte[] xmpSegment = patch.getXmpProperties().isEmpty() ? null : createXmpSegment(header, patch);
+		final byte[] iptcSegment = patch.getIptcRecords().isEmpty() ? null : createIptcSegment(jpegMetadata, patch);
+
+		final byte[] headerBytes = header.getHeaderBytes();
+		final List<JpegSegment> segments = header.getSegments();
+
+		boolean hasExif = false;
+		boolean hasXmp = false;
+		boolean hasIptc = false;
+		for (JpegSegment segment : segments) {
+			hasExif |= header.isExifSegment(segment);
+			hasXmp |= header.isXmpSegment(segment);
+			hasIptc |= header.isPhotoshopSegment(segment);
+		}
+
+		int insertionIndex = 0;
+		while (insertionIndex < segments.size() && (segments.get(insertionIndex).marker() == JpegSegmentScanner.MARKER_APP0
+				|| segments.get(insertionIndex).marker() == JpegSegmentScanner.MARKER_APP1)) {
+			insertionIndex++;
+		}
+
+		os.write(0xFF);
+		os.write(JpegSegmentScanner.MARKER_SOI);
+
+		// Replaced segments are written in place of the first existing segment of their
+		// kind, further segments of the same kind are dropped.
+		boolean exifWritten = false;
+		boolean xmpWritten = false;
+		boolean iptcWritten = false;
+
+		for (int i = 0; i < segments.size(); i++) {
+			final JpegSegment segment = segments.get(i);
+
+			if (i == insertionIndex) {
+				if (exifSegment != null && !hasExif) {
+					os.write(exifSegment);
+				}
+				if (xmpSegment != null && !hasXmp) {
+					os.write(xmpSegment);
+				}
+				if (iptcSegment != null && !hasIptc) {
+					os.write(iptcSegment);
+				}
+			}
+
+			if (exifSegment != null && header.isExifSegment(segment)) {
+				if (!exifWritten) {
+					os.write(exifSegment);
+					exifWritten = true;
+				}
+			}
+			else if (xmpSegment != null && header.isXmpSegment(segment)) {
+				if (!xmpWritten) {
+					os.write(xmpSegment);
+					xmpWritten = true;
+				}
+			}
+			else if (iptcSegment != null && header.isPhotoshopSegment(segment)) {
+				if (!iptcWritten) {
+					os.write(iptcSegment);
+					iptcWritten = true;
+				}
+			}
+			else {
+				os.write(headerBytes, segment.offset(), segment.length() + 2);
+			}
+		}
+	}
+
+	private static ImageMetadata getMetadata(JpegHeader header) {
+		try {
+			return Imaging.getMetadata(header.getHeaderBytes());
+		}
+		catch (ImagingException ex) {
+			throw new ImageProcessingException("Unable to parse the image metadata.", ex);
+		}
+		catch (IOException ex) {
+			throw new ImageProcessingException("Unable to read the image metadata.", ex);
+		}
+	}
+
+	private static byte[] createExifSegment(JpegHeader header, JpegImageMetadata jpegMetadata, MetadataPatch patch)
+			throws IOException {
+		final TiffImageMetadata exif = (jpegMetadata != null) ? jpegMetadata.getExif() : null;
+		final TiffOutputSet outputSet = (exif != null) ? exif.getOutputSet() : new TiffOutputSet();
+		MetadataPatchSupport.applyExifFields(outputSet, patch);
+		if (patch.getExifPadding() > 0) {
+			MetadataPatchSupport.setExifPadding(outputSet, patch.getExifPadding());
+		}
+		byte[] tiff = MetadataPatchSupport.writeExif(outputSet, header.getExifPayload());
+		if (patch.getExifPadding() > 0
+				&& JpegSegmentScanner.EXIF_IDENTIFIER.length + tiff.length > MAX_SEGMENT_DATA_LENGTH) {
+			// The padding is only a reservation, drop it rather than failing
+			MetadataPatchSupport.setExifPadding(outputSet, 0);
+			tiff = MetadataPatchSupport.writeExif(outputSet, header.getExifPayload());
+		}
+		return toSegment(JpegSegmentScanner.MARKER_APP1, JpegSegmentScanner.EXIF_IDENTIFIER, tiff);
+	}
+
+	private static byte[] createIptcSegment(JpegImageMetadata jpegMetadata, MetadataPatch patch) throws IOException {
+		final JpegPhotoshopMetadata photoshop = (jpegMetadata != null) ? jpegMetadata.getPhotoshop() : null;
+
+		final List<IptcRecord> records = new ArrayList<>();
+		final List<IptcBlock> blocks = new ArrayList<>();
+		if (photoshop != null) {
+			records.addAll(photoshop.photoshopApp13Data.getRecords());
+			blocks.addAll(photoshop.photoshopApp13Data.getNonIptcBlocks());
+		}
+
+		for (Map.Entry<IptcType, String> record : patch.getIptcRecords().entrySet()) {
+			final int type = record.getKey().getType();
+			records.removeIf((existing) -> existing.iptcType.getType() == type);
+			records.add(new IptcRecord(record.getKey(), record.getValue()));
+		}
+
+		final IptcParser iptcParser = new IptcParser();
+		blocks.add(new IptcBlock(IptcConstants.IMAGE_RESOURCE_BLOCK_IPTC_DATA, new byte[0],
+				iptcParser.writeIptcBlock(records)));
+
+		// The Photoshop identifier is already part of the written data.
+		final byte[] data = iptcParser.writePhotoshopApp13Segment(new PhotoshopApp13Data(records, blocks));
+		return toSegment(JpegSegmentScanner.MARKER_APP13, new byte[0], data);
+	}
+
+	private static byte[] createXmpSegment(JpegHeader header, MetadataPatch patch) {
+		return toSegment(JpegSegmentScanner.MARKER_APP1, JpegSegmentScanner.XMP_IDENTIFIER,
+				MetadataPatchSupport.writeXmp(header.getXmpXml(), patch));
+	}
+
+	private static byte[] toSegment(int marker, byte[] identifier, byte[] data) {
+		final int dataLength = identifier.length + data.length;
+		if (dataLength > MAX_SEGMENT_DATA_LENGTH) {
+			throw new ImageProcessingException(String.format(
+					"The metadata segment 0x%X exceeds the maximum segment size (%d bytes).", marker, dataLength));
+		}
+		final byte[] segment = new byte[4 + dataLength];
+		segment[0] = (byte) 0xFF;
+		segment[1] = (byte) marker;
+		segment[2] = (byte) ((dataLength + 2) >> 8);
+		segment[3] = (byte) (dataLength + 2);
+		System.arraycopy(identifier, 0, segment, 4, identifier.length);
+		System.arraycopy(data, 0, segment, 4 + identifier.length, data.length);
+		return segment;
+	}
+
+}
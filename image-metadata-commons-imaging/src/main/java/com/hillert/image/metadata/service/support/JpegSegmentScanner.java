@@ -0,0 +1,459 @@
+/*
+ * Copyright (c) 2025 Gunnar Hillert.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hillert.image.metadata.service.support;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.springframework.util.Assert;
+
+/**
+ * Marker-level scanner for JPEG files. Walks the segments of a JPEG file and stops at
+ * the start-of-scan (SOS) marker, as all metadata (EXIF, XMP, ICC, IPTC) is stored in
+ * segments before the entropy-coded image data. For files, only the header is read,
+ * using positional reads on a {@link FileChannel}, which for large images is a few KB
+ * of I/O instead of the entire file.
+ *
+ * The returned {@link JpegHeader} contains the raw header bytes (which Commons Imaging
+ * can parse like a complete JPEG file), the individual segments and the image
+ * dimensions from the start-of-frame (SOF) segment.
+ *
+ * @author Gunnar Hillert
+ */
+public final class JpegSegmentScanner {
+
+	/**
+	 * Start-of-image marker.
+	 */
+	public static final int MARKER_SOI = 0xD8;
+
+	/**
+	 * End-of-image marker.
+	 */
+	public static final int MARKER_EOI = 0xD9;
+
+	/**
+	 * Start-of-scan marker.
+	 */
+	public static final int MARKER_SOS = 0xDA;
+
+	/**
+	 * APP0 marker, used for JFIF.
+	 */
+	public static final int MARKER_APP0 = 0xE0;
+
+	/**
+	 * APP1 marker, used for EXIF and XMP.
+	 */
+	public static final int MARKER_APP1 = 0xE1;
+
+	/**
+	 * APP2 marker, used for ICC profiles.
+	 */
+	public static final int MARKER_APP2 = 0xE2;
+
+	/**
+	 * APP13 marker, used for Photoshop image resources (IPTC).
+	 */
+	public static final int MARKER_APP13 = 0xED;
+
+	/**
+	 * Comment marker.
+	 */
+	public static final int MARKER_COM = 0xFE;
+
+	static final byte[] EXIF_IDENTIFIER = "Exif\0\0".getBytes(StandardCharsets.US_ASCII);
+
+	static final byte[] XMP_IDENTIFIER = "http://ns.adobe.com/xap/1.0/\0".getBytes(StandardCharsets.US_ASCII);
+
+	static final byte[] ICC_IDENTIFIER = "ICC_PROFILE\0".getBytes(StandardCharsets.US_ASCII);
+
+	static final byte[] PHOTOSHOP_IDENTIFIER = "Photoshop 3.0\0".getBytes(StandardCharsets.US_ASCII);
+
+	private static final int READ_BLOCK_SIZE = 8 * 1024;
+
+	private JpegSegmentScanner() {
+		throw new AssertionError("This is a static utility class.");
+	}
+
+	/**
+	 * Check whether the provided data starts with the JPEG start-of-image marker.
+	 * @param data the (beginning of the) image data
+	 * @return true if the data looks like a JPEG image
+	 */
+	public static boolean isJpeg(byte[] data) {
+		return data != null && data.length >= 2 && (data[0] & 0xFF) == 0xFF && (data[1] & 0xFF) == MARKER_SOI;
+	}
+
+	/**
+	 * Scan the header of the provided JPEG file.
+	 * @param path the image file, must not be null
+	 * @return the JPEG header or null if the file is not a JPEG file or does not contain
+	 * a start-of-scan marker
+	 */
+	public static JpegHeader scan(Path path) {
+		Assert.notNull(path, "path must not be null.");
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			return scan(new HeaderBuffer(channel));
+		}
+		catch (IOException ex) {
+			throw new StorageException("Unable to read the JPEG header of " + path, ex);
+		}
+	}
+
+	/**
+	 * Scan the header of the JPEG file behind the provided channel, using positional
+	 * reads. The position of the channel is not changed.
+	 * @param channel the channel of the image file, must not be null
+	 * @return the JPEG header or null if the file is not a JPEG file or does not contain
+	 * a start-of-scan marker
+	 * @throws IOException in case the header cannot be read
+	 */
+	static JpegHeader scan(FileChannel channel) throws IOException {
+		Assert.notNull(channel, "channel must not be null.");
+		return scan(new HeaderBuffer(channel));
+	}
+
+	/**
+	 * Scan the header of the provided JPEG image data.
+	 * @param imageBytes the image data, must not be null
+	 * @return the JPEG header or null if the data is not a JPEG image or does not contain
+	 * a start-of-scan marker
+	 */
+	public static JpegHeader scan(byte[] imageBytes) {
+		Assert.notNull(imageBytes, "imageBytes must not be null.");
+		try {
+			return scan(new HeaderBuffer(imageBytes));
+		}
+		catch (IOException ex) {
+			throw new ImageProcessingException("Unable to read the JPEG header.", ex);
+		}
+	}
+
+	private static JpegHeader scan(HeaderBuffer buffer) throws IOException {
+		if (!buffer.ensure(2) || buffer.unsignedByte(0) != 0xFF || buffer.unsignedByte(1) != MARKER_SOI) {
+			return null;
+		}
+
+		final List<JpegSegment> segments = new ArrayList<>();
+		int width = -1;
+		int height = -1;
+		int position = 2;
+
+		while (true) {
+			// Markers may be preceded by any number of 0xFF fill bytes.
+			if (!buffer.ensure(position + 2) || buffer.unsignedByte(position) != 0xFF) {
+				return null;
+			}
+			while (buffer.unsignedByte(position + 1) == 0xFF) {
+				position++;
+				if (!buffer.ensure(position + 2)) {
+					return null;
+				}
+			}
+
+			final int marker = buffer.unsignedByte(position + 1);
+
+			if (marker == MARKER_EOI) {
+				return null;
+			}
+			if (isStandalone(marker)) {
+				position += 2;
+				continue;
+			}
+			if (!buffer.ensure(position + 4)) {
+				return null;
+			}
+
+			final int length = buffer.unsignedShort(position + 2);
+			final int segmentEnd = position + 2 + length;
+
+			if (length < 2 || !buffer.ensure(segmentEnd)) {
+				return null;
+			}
+
+			segments.add(new JpegSegment(marker, position, length));
+
+			if (isStartOfFrame(marker) && length >= 7) {
+				height = buffer.unsignedShort(position + 5);
+				width = buffer.unsignedShort(position + 7);
+			}
+
+			if (marker == MARKER_SOS) {
+				return new JpegHeader(buffer.toByteArray(segmentEnd), segments, width, height);
+			}
+
+			position = segmentEnd;
+		}
+	}
+
+	private static boolean isStandalone(int marker) {
+		return marker == 0x01 || (marker >= 0xD0 && marker <= 0xD7);
+	}
+
+	private static boolean isStartOfFrame(int marker) {
+		return marker >= 0xC0 && marker <= 0xCF && marker != 0xC4 && marker != 0xC8 && marker != 0xCC;
+	}
+
+	/**
+	 * The header of a JPEG file, i.e. all segments up to and including the start-of-scan
+	 * segment.
+	 */
+	public static final class JpegHeader {
+
+		private final byte[] headerBytes;
+
+		private final List<JpegSegment> segments;
+
+		private final int width;
+
+		private final int height;
+
+		JpegHeader(byte[] headerBytes, List<JpegSegment> segments, int width, int height) {
+			this.headerBytes = headerBytes;
+			this.segments = Collections.unmodifiableList(segments);
+			this.width = width;
+			this.height = height;
+		}
+
+		/**
+		 * Returns the raw bytes of the header, starting with the start-of-image marker
+		 * and ending with the start-of-scan segment. Commons Imaging can read the image
+		 * info and metadata from these bytes as it would from the complete file.
+		 * @return the header bytes, must not be modified
+		 */
+		public byte[] getHeaderBytes() {
+			return this.headerBytes;
+		}
+
+		public List<JpegSegment> getSegments() {
+			return this.segments;
+		}
+
+		/**
+		 * Returns the image width as stored in the start-of-frame segment.
+		 * @return the width or -1 if there is no start-of-frame segment
+		 */
+		public int getWidth() {
+			return this.width;
+		}
+
+		/**
+		 * Returns the image height as stored in the start-of-frame segment.
+		 * @return the height or -1 if there is no start-of-frame segment
+		 */
+		public int getHeight() {
+			return this.height;
+		}
+
+		/**
+		 * Returns the offset of the start-of-scan marker, which is also the length of the
+		 * metadata part of the file.
+		 * @return the offset of the start-of-scan marker
+		 */
+		public int getStartOfScanOffset() {
+			return this.segments.get(this.segments.size() - 1).offset();
+		}
+
+		/**
+		 * Returns the payload (without marker, length and identifier) of the EXIF APP1
+		 * segment.
+		 * @return the TIFF-structured EXIF data or null if there is none
+		 */
+		public byte[] getExifPayload() {
+			return findPayload(MARKER_APP1, EXIF_IDENTIFIER);
+		}
+
+		/**
+		 * Returns the payload (without marker, length and identifier) of the XMP APP1
+		 * segment.
+		 * @return the XMP XML data or null if there is none
+		 */
+		public String getXmpXml() {
+			final byte[] payload = findPayload(MARKER_APP1, XMP_IDENTIFIER);
+			return (payload != null) ? new String(payload, StandardCharsets.UTF_8) : null;
+		}
+
+		/**
+		 * Returns the ICC profile, which may be split across multiple APP2 segments.
+		 * @return the ICC profile data or null if there is none
+		 */
+		public byte[] getIccProfile() {
+			final List<byte[]> chunks = new ArrayList<>();
+			int size = 0;
+			for (JpegSegment segment : this.segments) {
+				if (segment.marker() == MARKER_APP2 && hasIdentifier(segment, ICC_IDENTIFIER)) {
+					// The identifier is followed by the chunk sequence number and the chunk count
+					final byte[] chunk = getPayload(segment, ICC_IDENTIFIER.length + 2);
+					chunks.add(chunk);
+					size += chunk.length;
+				}
+			}
+			if (chunks.isEmpty()) {
+				return null;
+			}
+			final ByteBuffer profile = ByteBuffer.allocate(size);
+			chunks.forEach(profile::put);
+			return profile.array();
+		}
+
+		/**
+		 * Returns the payload (without marker, length and identifier) of the Photoshop
+		 * APP13 segment, which contains the IPTC data.
+		 * @return the Photoshop image resource blocks or null if there are none
+		 */
+		public byte[] getPhotoshopPayload() {
+			return findPayload(MARKER_APP13, PHOTOSHOP_IDENTIFIER);
+		}
+
+		public boolean isExifSegment(JpegSegment segment) {
+			return segment.marker() == MARKER_APP1 && hasIdentifier(segment, EXIF_IDENTIFIER);
+		}
+
+		public boolean isXmpSegment(JpegSegment segment) {
+			return segment.marker() == MARKER_APP1 && hasIdentifier(segment, XMP_IDENTIFIER);
+		}
+
+		public boolean isIccSegment(JpegSegment segment) {
+			return segment.marker() == MARKER_APP2 && hasIdentifier(segment, ICC_IDENTIFIER);
+		}
+
+		public boolean isPhotoshopSegment(JpegSegment segment) {
+			return segment.marker() == MARKER_APP13 && hasIdentifier(segment, PHOTOSHOP_IDENTIFIER);
+		}
+
+		private byte[] findPayload(int marker, byte[] identifier) {
+			for (JpegSegment segment : this.segments) {
+				if (segment.marker() == marker && hasIdentifier(segment, identifier)) {
+					return getPayload(segment, identifier.length);
+				}
+			}
+			return null;
+		}
+
+		private boolean hasIdentifier(JpegSegment segment, byte[] identifier) {
+			final int dataOffset = segment.dataOffset();
+			if (segment.dataLength() < identifier.length) {
+				return false;
+			}
+			return Arrays.equals(this.headerBytes, dataOffset, dataOffset + identifier.length, identifier, 0,
+					identifier.length);
+		}
+
+		private byte[] getPayload(JpegSegment segment, int skip) {
+			final int start = segment.dataOffset() + Math.min(skip, segment.dataLength());
+			return Arrays.copyOfRange(this.headerBytes, start, segment.dataOffset() + segment.dataLength());
+		}
+
+	}
+
+	/**
+	 * A single JPEG marker segment.
+	 *
+	 * @param marker the marker code without the leading 0xFF, e.g. 0xE1 for APP1
+	 * @param offset the offset of the marker within the file
+	 * @param length the segment length as stored in the file (including the two length
+	 * bytes)
+	 */
+	public record JpegSegment(int marker, int offset, int length) {
+
+		public int dataOffset() {
+			return this.offset + 4;
+		}
+
+		public int dataLength() {
+			return this.length - 2;
+		}
+
+	}
+
+	/**
+	 * Growable buffer over the beginning of the image data. When backed by a
+	 * {@link FileChannel}, data is read on demand in blocks using positional reads.
+	 */
+	private static final class HeaderBuffer {
+
+		private final FileChannel channel;
+
+		private byte[] data;
+
+		private int length;
+
+		HeaderBuffer(FileChannel channel) {
+			this.channel = channel;
+			this.data = new byte[READ_BLOCK_SIZE];
+		}
+
+		HeaderBuffer(byte[] data) {
+			this.channel = null;
+			this.data = data;
+			this.length = data.length;
+		}
+
+		/**
+		 * Make sure that the first {@code end} bytes are available.
+		 * @param end the exclusive end position
+		 * @return false if the data ends before the provided position
+		 */
+		boolean ensure(int end) throws IOException {
+			if (end <= this.length) {
+				return true;
+			}
+			if (this.channel == null) {
+				return false;
+			}
+			if (end > this.data.length) {
+				this.data = Arrays.copyOf(this.data, Math.max(end, this.data.length * 2));
+			}
+			final int target = Math.min(this.data.length, Math.max(end, this.length + READ_BLOCK_SIZE));
+			final ByteBuffer byteBuffer = ByteBuffer.wrap(this.data, this.length, target - this.length);
+			while (this.length < end) {
+				final int read = this.channel.read(byteBuffer, this.length);
+				if (read < 0) {
+					return false;
+				}
+				this.length += read;
+			}
+			return true;
+		}
+
+		int unsignedByte(int position) {
+			return this.data[position] & 0xFF;
+		}
+
+		int unsignedShort(int position) throws EOFException {
+			if (position + 2 > this.length) {
+				throw new EOFException();
+			}
+			return ((this.data[position] & 0xFF) << 8) | (this.data[position + 1] & 0xFF);
+		}
+
+		byte[] toByteArray(int end) {
+			return Arrays.copyOf(this.data, end);
+		}
+
+	}
+
+}
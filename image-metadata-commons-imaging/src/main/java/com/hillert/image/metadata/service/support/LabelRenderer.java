@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2025 Gunnar Hillert.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hillert.image.metadata.service.support;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontFormatException;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.font.FontRenderContext;
+import java.awt.font.LineBreakMeasurer;
+import java.awt.font.TextAttribute;
+import java.awt.font.TextLayout;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.text.AttributedString;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Component;
+import org.springframework.util.Assert;
+
+/**
+ * Renders text labels onto images. The label font is loaded once, and the rendered
+ * labels are cached as transparent sprites keyed by their text and maximum width, so that
+ * labeling an image only requires compositing the sprite onto it. Labels that are wider
+ * than the image are wrapped.
+ *
+ * @author Gunnar Hillert
+ */
+@Component
+public class LabelRenderer {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(LabelRenderer.class);
+
+	private static final String FONT_NAME = "Montserrat-SemiBold.ttf";
+
+	private static final float FONT_SIZE = 20f;
+
+	private static final Color LABEL_COLOR = Color.RED;
+
+	/**
+	 * The horizontal offset of the label from the left edge of the image.
+	 */
+	private static final int LABEL_X = 2;
+
+	/**
+	 * The vertical offset of the label from the top edge of the image.
+	 */
+	private static final int LABEL_Y = 2 + (int) Math.ceil(FONT_SIZE);
+
+	/**
+	 * The maximum amount of memory used by cached label sprites.
+	 */
+	private static final long SPRITES_MAX_SIZE = 16L * 1024 * 1024;
+
+	private static final FontRenderContext FONT_RENDER_CONTEXT = new FontRenderContext(null, true, true);
+
+	private final Font font;
+
+	private final BoundedCache<SpriteKey, BufferedImage> sprites = new BoundedCache<>(SPRITES_MAX_SIZE,
+			(sprite) -> 4L * sprite.getWidth() * sprite.getHeight());
+
+	public LabelRenderer() {
+		try (InputStream inputStream = new ClassPathResource("/fonts/" + FONT_NAME).getInputStream()) {
+			this.font = Font.createFont(Font.TRUETYPE_FONT, inputStream).deriveFont(FONT_SIZE);
+		}
+		catch (FontFormatException ex) {
+			throw new IllegalStateException(
+					"Font file does not contain the required font tables for the specified format.", ex);
+		}
+		catch (IOException ex) {
+			throw new IllegalStateException("Error creating font.", ex);
+		}
+		LOGGER.info("Loaded label font '{}'.", FONT_NAME);
+	}
+
+	/**
+	 * Render the provided label onto the top left corner of the provided image.
+	 * @param image the image to modify, must not be null
+	 * @param label the label, must not be empty
+	 */
+	public void render(BufferedImage image, String label) {
+		Assert.notNull(image, "image must not be null.");
+		Assert.hasText(label, "label must not be null or empty.");
+
+		final int maxWidth = image.getWidth() - (2 * LABEL_X);
+		if (maxWidth <= 0 || image.getHeight() <= LABEL_Y) {
+			return;
+		}
+
+		final SpriteKey key = new SpriteKey(label, maxWidth);
+		BufferedImage sprite = this.sprites.get(key);
+		if (sprite == null) {
+			sprite = createSprite(label, maxWidth);
+			this.sprites.put(key, sprite);
+		}
+
+		final Graphics2D graphics = image.createGraphics();
+		try {
+			graphics.drawImage(sprite, LABEL_X, LABEL_Y, null);
+		}
+		finally {
+			graphics.dispose();
+		}
+	}
+
+	/**
+	 * Return the statistics of the label sprite cache.
+	 * @return the cache statistics
+	 */
+	BoundedCache.Stats getStats() {
+		return this.sprites.getStats();
+	}
+
+	private BufferedImage createSprite(String label, int maxWidth) {
+		final AttributedString attributedLabel = new AttributedString(label);
+		attributedLabel.addAttribute(TextAttribute.FONT, this.font);
+		final LineBreakMeasurer lineBreakMeasurer = new LineBreakMeasurer(attributedLabel.getIterator(),
+				FONT_RENDER_CONTEXT);
+
+		final List<TextLayout> lines = new ArrayList<>();
+		float width = 0;
+		float height = 0;
+		while (lineBreakMeasurer.getPosition() < label.length()) {
+			final TextLayout line = lineBreakMeasurer.nextLayout(maxWidth);
+			lines.add(line);
+			width = Math.max(width, line.getAdvance());
+			height += line.getAscent() + line.getDescent() + line.getLeading();
+		}
+
+		final BufferedImage sprite = new BufferedImage(Math.max(1, (int) Math.ceil(width)),
+				Math.max(1, (int) Math.ceil(height)), BufferedImage.TYPE_INT_ARGB);
+		final Graphics2D graphics = sprite.createGraphics();
+		try {
+			graphics.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+			graphics.setRenderingHint(RenderingHints.KEY_FRACTIONALMETRICS, RenderingHints.VALUE_FRACTIONALMETRICS_ON);
+			graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+			graphics.setColor(LABEL_COLOR);
+			float y = 0;
+			for (TextLayout line : lines) {
+				y += line.getAscent();
+				line.draw(graphics, 0, y);
+				y += line.getDescent() + line.getLeading();
+			}
+		}
+		finally {
+			graphics.dispose();
+		}
+		return sprite;
+	}
+
+	private record SpriteKey(String label, int maxWidth) {
+	}
+
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2025 Gunnar Hillert.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hillert.image.metadata.service.support;
+
+import java.nio.file.Path;
+import java.util.function.Supplier;
+
+import com.hillert.image.metadata.config.MetadataConfigProperties;
+import com.hillert.image.metadata.model.Directory;
+import com.hillert.image.metadata.model.Metadata;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * In-memory cache of extracted {@link Metadata}, keyed by the {@link ImageFingerprint} of
+ * the image file. As the fingerprint contains the file size and modification time, a
+ * changed file never returns stale metadata. Nevertheless, entries of stored or deleted
+ * files should be removed explicitly via {@link #invalidate(Path)} to free up memory.
+ *
+ * As {@link Metadata} is mutable, the cache only ever hands out copies.
+ *
+ * @author Gunnar Hillert
+ */
+@Component
+public class MetadataCache {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(MetadataCache.class);
+
+	/**
+	 * Rough per-object overhead in bytes used when estimating the weight of an entry.
+	 */
+	private static final int OBJECT_OVERHEAD = 48;
+
+	private final BoundedCache<ImageFingerprint, Metadata> cache;
+
+	public MetadataCache(MetadataConfigProperties metadataConfigProperties) {
+		final MetadataConfigProperties.Cache cacheProperties = metadataConfigProperties.getCache();
+		this.cache = cacheProperties.isEnabled()
+				? new BoundedCache<>(cacheProperties.getMaxSize().toBytes(), MetadataCache::estimateSize) : null;
+	}
+
+	/**
+	 * Return the cached {@link Metadata} for the provided fingerprint or compute (and
+	 * cache) it using the provided {@link Supplier}.
+	 * @param fingerprint the fingerprint of the image file. If null, the metadata is not
+	 * cached.
+	 * @param metadataSupplier computes the metadata in case of a cache miss
+	 * @return a copy of the (cached) metadata
+	 */
+	public Metadata get(ImageFingerprint fingerprint, Supplier<Metadata> metadataSupplier) {
+		if (this.cache == null || fingerprint == null) {
+			return metadataSupplier.get();
+		}
+
+		final Metadata cachedMetadata = this.cache.get(fingerprint);
+
+		if (cachedMetadata != null) {
+			LOGGER.debug("Metadata cache hit for '{}'.", fingerprint.path());
+			return new Metadata(cachedMetadata);
+		}
+
+		final Metadata metadata = metadataSupplier.get();
+		this.cache.put(fingerprint, new Metadata(metadata));
+		LOGGER.debug("Metadata cache miss for '{}' - {}", fingerprint.path(), this.cache.getStats());
+		return metadata;
+	}
+
+	/**
+	 * Remove all cached metadata of the provided image file.
+	 * @param path the path of the image file
+	 */
+	public void invalidate(Path path) {
+		if (this.cache != null) {
+			this.cache.invalidateIf((fingerprint) -> fingerprint.isFor(path));
+		}
+	}
+
+	public void invalidateAll() {
+		if (this.cache != null) {
+			this.cache.invalidateAll();
+		}
+	}
+
+	/**
+	 * Return the statistics of the cache.
+	 * @return the cache statistics or null if caching is disabled
+	 */
+	public BoundedCache.Stats getStats() {
+		return (this.cache != null) ? this.cache.getStats() : null;
+	}
+
+	static long estimateSize(Metadata metadata) {
+		long size = OBJECT_OVERHEAD;
+		for (Directory directory : metadata.getDirectories()) {
+			size += OBJECT_OVERHEAD + stringSize(directory.getPropertyName()) + stringSize(directory.getPropertyValue());
+		}
+		if (metadata.getGnssInfo() != null) {
+			size += OBJECT_OVERHEAD;
+		}
+		return size + stringSize(metadata.getXmpData());
+	}
+
+	private static long stringSize(String value) {
+		return (value != null) ? OBJECT_OVERHEAD + value.length() : 0;
+	}
+
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright (c) 2025 Gunnar Hillert.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hillert.image.metadata.service.support;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+
+import org.apache.commons.imaging.ImageInfo;
+import org.apache.commons.imaging.Imaging;
+import org.apache.commons.imaging.ImagingException;
+import org.apache.commons.imaging.common.ImageMetadata;
+
+import org.springframework.core.io.Resource;
+import org.springframework.util.Assert;
+
+/**
+ * Holds the state of a single metadata extraction run. The image data of the provided
+ * {@link Resource} is read exactly once and the results of the (expensive) Commons
+ * Imaging parsing steps ({@link ImageInfo}, {@link ImageMetadata} and the XMP XML) are
+ * computed lazily and memoized, so that all extractors in {@link MetadataExtractor} can
+ * share them.
+ *
+ * For JPEG files only the header up to the start-of-scan marker is read (see
+ * {@link JpegSegmentScanner}), as the image data itself is not needed for the metadata.
+ *
+ * Instances are meant to be used for a single extraction only and are not thread-safe
+ * in general. However, once {@link #getMetadataBytes()} has been called, the file
+ * attributes, the image info, the image metadata and the XMP data may each be requested
+ * from a different thread, as they are computed independently of each other (see
+ * {@link MetadataExtractionExecutor}).
+ *
+ * @author Gunnar Hillert
+ * @see MetadataExtractor
+ */
+public final class MetadataExtractionContext {
+
+	private final Resource resource;
+
+	private byte[] imageBytes;
+
+	private JpegSegmentScanner.JpegHeader jpegHeader;
+
+	private boolean jpegHeaderLoaded;
+
+	private BasicFileAttributes fileAttributes;
+
+	private boolean fileAttributesLoaded;
+
+	private ImageInfo imageInfo;
+
+	private ImageMetadata imageMetadata;
+
+	private boolean imageMetadataLoaded;
+
+	private String xmpXml;
+
+	private boolean xmpXmlLoaded;
+
+	public MetadataExtractionContext(Resource resource) {
+		Assert.notNull(resource, "resource must not be null.");
+		this.resource = resource;
+	}
+
+	public Resource getResource() {
+		return this.resource;
+	}
+
+	public String getFilename() {
+		return this.resource.getFilename();
+	}
+
+	/**
+	 * Returns the image data. For file-based resources the file is read with a single
+	 * bulk read, otherwise the {@link Resource}'s input stream is consumed once.
+	 * @return the image data, never null
+	 */
+	public byte[] getImageBytes() {
+		if (this.imageBytes == null) {
+			final Path path = getFilePath();
+			if (path == null) {
+				this.imageBytes = CommonUtils.resourceToBytes(this.resource);
+			}
+			else {
+				try {
+					this.imageBytes = Files.readAllBytes(path);
+				}
+				catch (IOException ex) {
+					throw new ImageProcessingException("Unable to read image file " + getFilename(), ex);
+				}
+			}
+		}
+		return this.imageBytes;
+	}
+
+	/**
+	 * Returns the header of the JPEG file, scanned with positional reads, so that the
+	 * (potentially large) image data does not need to be read.
+	 * @return the JPEG header or null if the resource is not a JPEG file
+	 */
+	public JpegSegmentScanner.JpegHeader getJpegHeader() {
+		if (!this.jpegHeaderLoaded) {
+			final Path path = getFilePath();
+			if (path != null && this.imageBytes == null) {
+				this.jpegHeader = JpegSegmentScanner.scan(path);
+			}
+			else {
+				this.jpegHeader = JpegSegmentScanner.scan(getImageBytes());
+			}
+			this.jpegHeaderLoaded = true;
+		}
+		return this.jpegHeader;
+	}
+
+	/**
+	 * Returns the image data required for parsing the metadata. For JPEG files, this is
+	 * only the header up to the start-of-scan marker, otherwise the complete image data.
+	 * @return the image data to parse the metadata from, never null
+	 */
+	public byte[] getMetadataBytes() {
+		final JpegSegmentScanner.JpegHeader header = getJpegHeader();
+		return (header != null) ? header.getHeaderBytes() : getImageBytes();
+	}
+
+	/**
+	 * Returns the {@link BasicFileAttributes} of the underlying file.
+	 * @return the file attributes or null if the resource is not backed by a file
+	 */
+	public BasicFileAttributes getFileAttributes() {
+		if (!this.fileAttributesLoaded) {
+			final Path path = getFilePath();
+			if (path != null) {
+				try {
+					this.fileAttributes = Files.readAttributes(path, BasicFileAttributes.class);
+				}
+				catch (IOException ex) {
+					throw new IllegalStateException(
+							"An I/O error occurred while retrieving the file attributes for file " + getFilename(), ex);
+				}
+			}
+			this.fileAttributesLoaded = true;
+		}
+		return this.fileAttributes;
+	}
+
+	public ImageInfo getImageInfo() {
+		if (this.imageInfo == null) {
+			this.imageInfo = MetadataExtractor.loadImageInfo(getMetadataBytes());
+		}
+		return this.imageInfo;
+	}
+
+	/**
+	 * Returns the parsed {@link ImageMetadata}.
+	 * @return the image metadata or null if the image does not contain any metadata
+	 */
+	public ImageMetadata getImageMetadata() {
+		if (!this.imageMetadataLoaded) {
+			try {
+				this.imageMetadata = Imaging.getMetadata(getMetadataBytes());
+			}
+			catch (IOException ex) {
+				throw new IllegalStateException("Unable to parse the metadata of image file " + getFilename(), ex);
+			}
+			this.imageMetadataLoaded = true;
+		}
+		return this.imageMetadata;
+	}
+
+	/**
+	 * Returns the raw (unformatted) XMP XML data.
+	 * @return the XMP XML or null if the image does not contain XMP data
+	 */
+	public String getXmpXml() {
+		if (!this.xmpXmlLoaded) {
+			try {
+				this.xmpXml = Imaging.getXmpXml(getMetadataBytes());
+			}
+			catch (ImagingException ex) {
+				throw new ImageProcessingException("Unable to parse the image.", ex);
+			}
+			catch (IOException ex) {
+				throw new ImageProcessingException("Unable to read the image data.", ex);
+			}
+			this.xmpXmlLoaded = true;
+		}
+		return this.xmpXml;
+	}
+
+	private Path getFilePath() {
+		if (!this.resource.isFile()) {
+			return null;
+		}
+		try {
+			return this.resource.getFile().toPath();
+		}
+		catch (IOException ex) {
+			return null;
+		}
+	}
+
+}
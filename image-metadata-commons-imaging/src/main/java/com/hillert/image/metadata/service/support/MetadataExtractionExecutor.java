@@ -0,0 +1,199 @@
+/*
+ * Copyright (c) 2025 Gunnar Hillert.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hillert.image.metadata.service.support;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.hillert.image.metadata.config.MetadataConfigProperties;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Component;
+
+/**
+ * Runs the independent metadata extraction steps (the "directory families", e.g. file
+ * attributes, XMP, image info and EXIF/IPTC) of a single image. If parallel extraction
+ * is enabled via {@link MetadataConfigProperties.Extraction#isParallel()}, the families
+ * are executed concurrently on a dedicated thread pool, otherwise they are executed
+ * sequentially on the calling thread. Either way, the results are returned in the order
+ * the families were provided, so that the merged metadata is deterministic.
+ *
+ * @author Gunnar Hillert
+ */
+@Component
+public class MetadataExtractionExecutor implements DisposableBean {
+
+	private final ExecutorService executorService;
+
+	private final Duration timeout;
+
+	public MetadataExtractionExecutor(MetadataConfigProperties metadataConfigProperties) {
+		final MetadataConfigProperties.Extraction extraction = metadataConfigProperties.getExtraction();
+		this.executorService = extraction.isParallel()
+				? Executors.newFixedThreadPool(extraction.getThreads(), new ExtractionThreadFactory()) : null;
+		this.timeout = extraction.getTimeout();
+	}
+
+	/**
+	 * Execute the provided extraction families.
+	 * @param <T> the result type of the families
+	 * @param families the families to execute, keyed by their name. The name is only
+	 * used for error messages.
+	 * @return the results in the iteration order of the provided map
+	 * @throws ImageProcessingException if a family does not complete within the
+	 * configured timeout
+	 */
+	public <T> List<T> execute(Map<String, Callable<T>> families) {
+		if (this.executorService == null) {
+			final List<T> results = new ArrayList<>(families.size());
+			for (Map.Entry<String, Callable<T>> family : families.entrySet()) {
+				results.add(call(family.getKey(), family.getValue()));
+			}
+			return results;
+		}
+
+		final Map<String, TimedFamily<T>> timedFamilies = new LinkedHashMap<>();
+		families.forEach((name, family) -> timedFamilies.put(name, new TimedFamily<>(family)));
+		final Map<String, Future<T>> futures = new LinkedHashMap<>();
+		timedFamilies.forEach((name, family) -> futures.put(name, this.executorService.submit(family)));
+
+		try {
+			final List<T> results = new ArrayList<>(futures.size());
+			for (Map.Entry<String, Future<T>> future : futures.entrySet()) {
+				results.add(await(future.getKey(), timedFamilies.get(future.getKey()), future.getValue()));
+			}
+			return results;
+		}
+		finally {
+			futures.values().forEach((future) -> future.cancel(true));
+		}
+	}
+
+	@Override
+	public void destroy() {
+		if (this.executorService != null) {
+			this.executorService.shutdownNow();
+		}
+	}
+
+	/**
+	 * Wait for the result of a family. Each family gets the full timeout from the moment
+	 * it starts running, so that families queued behind slow ones are not penalized. A
+	 * family that does not even start within the timeout fails as well.
+	 * @param <T> the result type of the family
+	 * @param name the name of the family
+	 * @param family the family
+	 * @param future the future of the family
+	 * @return the result of the family
+	 */
+	private <T> T await(String name, TimedFamily<T> family, Future<T> future) {
+		final long waitStart = System.nanoTime();
+		try {
+			while (true) {
+				final boolean started = family.started;
+				final long deadline = (started ? family.startTime : waitStart) + this.timeout.toNanos();
+				try {
+					return future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+				}
+				catch (TimeoutException ex) {
+					if (started || !family.started) {
+						throw new ImageProcessingException("Metadata extraction of '" + name
+								+ "' did not complete within " + this.timeout + ".", ex);
+					}
+					// The family only started while waiting, wait for its own deadline.
+				}
+			}
+		}
+		catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new ImageProcessingException("Interrupted while extracting '" + name + "' metadata.", ex);
+		}
+		catch (ExecutionException ex) {
+			if (ex.getCause() instanceof RuntimeException runtimeException) {
+				throw runtimeException;
+			}
+			throw new ImageProcessingException("Unable to extract '" + name + "' metadata.", ex.getCause());
+		}
+	}
+
+	private static <T> T call(String name, Callable<T> family) {
+		try {
+			return family.call();
+		}
+		catch (RuntimeException ex) {
+			throw ex;
+		}
+		catch (Exception ex) {
+			throw new ImageProcessingException("Unable to extract '" + name + "' metadata.", ex);
+		}
+	}
+
+	/**
+	 * Records when a family starts running on the thread pool.
+	 *
+	 * @param <T> the result type of the family
+	 */
+	private static final class TimedFamily<T> implements Callable<T> {
+
+		private final Callable<T> family;
+
+		private volatile long startTime;
+
+		/**
+		 * Written after {@link #startTime}, so that reading true guarantees a valid start
+		 * time.
+		 */
+		private volatile boolean started;
+
+		TimedFamily(Callable<T> family) {
+			this.family = family;
+		}
+
+		@Override
+		public T call() throws Exception {
+			this.startTime = System.nanoTime();
+			this.started = true;
+			return this.family.call();
+		}
+
+	}
+
+	private static final class ExtractionThreadFactory implements ThreadFactory {
+
+		private final AtomicInteger threadNumber = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+			final Thread thread = new Thread(runnable, "metadata-extraction-" + this.threadNumber.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+
+	}
+
+}
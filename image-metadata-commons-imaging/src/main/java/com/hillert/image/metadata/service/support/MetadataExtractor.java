@@ -15,10 +15,8 @@
  */
 package com.hillert.image.metadata.service.support;
 
-import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.StringReader;
-import java.nio.file.Files;
+import java.io.InputStream;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
@@ -30,13 +28,9 @@ import java.time.format.DateTimeFormatterBuilder;
 import java.time.format.SignStyle;
 import java.time.temporal.ChronoField;
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 
-import javax.xml.transform.TransformerException;
-import javax.xml.transform.stream.StreamSource;
-
 import com.hillert.image.metadata.model.Directory;
 import com.hillert.image.metadata.model.DirectoryType;
 import com.hillert.image.metadata.model.GnssInfo;
@@ -52,11 +46,6 @@ import org.apache.commons.imaging.formats.jpeg.JpegPhotoshopMetadata;
 import org.apache.commons.imaging.formats.tiff.TiffField;
 import org.apache.commons.imaging.formats.tiff.TiffImageMetadata;
 import org.apache.commons.imaging.formats.tiff.constants.GpsTagConstants;
-import org.apache.commons.imaging.formats.tiff.constants.MicrosoftTagConstants;
-import org.apache.commons.imaging.formats.tiff.taginfos.TagInfo;
-import org.apache.xmlgraphics.util.QName;
-import org.apache.xmlgraphics.xmp.XMPParser;
-import org.apache.xmlgraphics.xmp.XMPProperty;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -78,41 +67,42 @@ public final class MetadataExtractor {
 	}
 
 	public static List<Directory> getFileMetadata(Resource resource) {
+		return getFileMetadata(new MetadataExtractionContext(resource));
+	}
+
+	public static List<Directory> getFileMetadata(MetadataExtractionContext context) {
 
 		final List<Directory> directories = new ArrayList<>();
 
-		try {
-			BasicFileAttributes attr = Files.readAttributes(resource.getFile().toPath(), BasicFileAttributes.class);
-			directories.add(new Directory(DirectoryType.FILE, "File Name", resource.getFilename()));
-			directories.add(new Directory(DirectoryType.FILE, "File Size",
-					String.valueOf(CommonUtils.humanReadableByteCountSI(attr.size()))));
-			directories.add(new Directory(DirectoryType.FILE, "File Modification Date/Time",
-					String.valueOf(attr.creationTime())));
-			directories.add(new Directory(DirectoryType.FILE, "File Creation Date/Time",
-					String.valueOf(attr.lastModifiedTime())));
-		}
-		catch (FileNotFoundException ex) {
+		final BasicFileAttributes attr = context.getFileAttributes();
+
+		if (attr == null) {
 			return directories;
 		}
-		catch (IOException ex) {
-			throw new IllegalStateException(
-					"An I/O error occurred while retrieving the file attributes for file " + resource.getFilename(),
-					ex);
-		}
+
+		directories.add(new Directory(DirectoryType.FILE, "File Name", context.getFilename()));
+		directories.add(new Directory(DirectoryType.FILE, "File Size",
+				String.valueOf(CommonUtils.humanReadableByteCountSI(attr.size()))));
+		directories.add(new Directory(DirectoryType.FILE, "File Modification Date/Time",
+				String.valueOf(attr.creationTime())));
+		directories.add(new Directory(DirectoryType.FILE, "File Creation Date/Time",
+				String.valueOf(attr.lastModifiedTime())));
 		return directories;
 	}
 
 	public static List<Directory> getXMPMetadata(Resource resource) {
+		return getXMPMetadata(new MetadataExtractionContext(resource));
+	}
 
-		final String xmpString = getXMPMetadataAsString(resource);
-		final List<Directory> directories = new ArrayList<>();
+	public static List<Directory> getXMPMetadata(MetadataExtractionContext context) {
 
+		final String xmpString = context.getXmpXml();
 
 		if (!StringUtils.hasText(xmpString)) {
-			return directories;
+			return new ArrayList<>();
 		}
 
-		LOGGER.info(xmpString);
+		LOGGER.debug(xmpString);
 
 		return getXMPMetadata(xmpString);
 
@@ -134,31 +124,8 @@ public final class MetadataExtractor {
 
 	public static List<Directory> getXMPMetadata(String xmpString) {
 		Assert.hasText(xmpString, "xmpString must not be null or empty.");
-		final List<Directory> directories = new ArrayList<>();
-
-		try {
-
-			org.apache.xmlgraphics.xmp.Metadata xmpMetaData = XMPParser
-					.parseXMP(new StreamSource(new StringReader(xmpString)));
-
-			for (Iterator<?> it = xmpMetaData.iterator(); it.hasNext();) {
-				QName key = (QName) it.next();
-				XMPProperty property = xmpMetaData.getProperty(key);
-				final String propertyValue;
-				if (property.isArray()) {
-					propertyValue = (property.getArrayValue().getSimpleValue() != null)
-							? property.getArrayValue().getSimpleValue().toString() : "N/A";
-				}
-				else {
-					propertyValue = property.getValue().toString();
-				}
-				directories.add(new Directory(DirectoryType.XMP, property.getName().getLocalName(), propertyValue));
-			}
-			LOGGER.info("XMP Property Count: {}", xmpMetaData.getPropertyCount());
-		}
-		catch (TransformerException ex) {
-			throw new ImageProcessingException("Unable to parse XMP XML data.", ex);
-		}
+		final List<Directory> directories = XmpReader.read(xmpString);
+		LOGGER.debug("XMP Property Count: {}", directories.size());
 		return directories;
 	}
 
@@ -174,8 +141,28 @@ public final class MetadataExtractor {
 		return imageInfo;
 	}
 
+	/**
+	 * Load the {@link ImageInfo} from the provided stream. For JPEG images, only the
+	 * header is read.
+	 * @param inputStream the image data, must not be null
+	 * @param filename the name of the image, used as format hint
+	 * @return the image info
+	 */
+	public static ImageInfo loadImageInfo(InputStream inputStream, String filename) {
+		try {
+			return Imaging.getImageInfo(inputStream, filename);
+		}
+		catch (IOException ex) {
+			throw new IllegalStateException("Unable to read 'image info' of the provided image data.", ex);
+		}
+	}
+
 	public static List<Directory> getImageInfo(Resource resource) {
-		final ImageInfo imageInfo = MetadataExtractor.loadImageInfo(CommonUtils.resourceToBytes(resource));
+		return getImageInfo(new MetadataExtractionContext(resource));
+	}
+
+	public static List<Directory> getImageInfo(MetadataExtractionContext context) {
+		final ImageInfo imageInfo = context.getImageInfo();
 
 		final List<Directory> directories = new ArrayList<>();
 
@@ -220,14 +207,7 @@ public final class MetadataExtractor {
 	}
 
 	public static ImageMetadata getImageMetadata(Resource resource) {
-		final ImageMetadata metadata;
-		try {
-			metadata = Imaging.getMetadata(resource.getInputStream(), resource.getFilename());
-		}
-		catch (IOException ex) {
-			throw new IllegalStateException("Unable to parse the metadata of image file " + resource.getFilename(), ex);
-		}
-		return metadata;
+		return new MetadataExtractionContext(resource).getImageMetadata();
 	}
 
 	private static final DateTimeFormatter GPS_LOCAL_DATE = new DateTimeFormatterBuilder()
@@ -259,10 +239,9 @@ public final class MetadataExtractor {
 				LOGGER.debug("Exif Property '{}': {}.", propertyName, propertyValue);
 				directories.add(new Directory(DirectoryType.EXIF, propertyName, propertyValue));
 
-				for (TagInfo tagInfo : MicrosoftTagConstants.ALL_MICROSOFT_TAGS) {
-					if (tagInfo.equals(tiffMetadataItem.getTiffField().getTagInfo())) {
-						directories.add(new Directory(DirectoryType.WINDOWS, propertyName, propertyValue));
-					}
+				final DirectoryType directoryType = ExifTagRegistry.DEFAULT.classify(tiffMetadataItem.getTiffField());
+				if (directoryType != null) {
+					directories.add(new Directory(directoryType, propertyName, propertyValue));
 				}
 			}
 		}
@@ -285,15 +264,6 @@ public final class MetadataExtractor {
 			}
 		}
 
-		final TiffImageMetadata exif = jpegImageMetadata.getExif();
-		if (exif == null) {
-			return directories;
-		}
-
-		for (TiffField tiffField : exif.getAllFields()) {
-			LOGGER.info("TIFF field tag name: {}", tiffField.getTagName());
-		}
-
 		return directories;
 	}
 
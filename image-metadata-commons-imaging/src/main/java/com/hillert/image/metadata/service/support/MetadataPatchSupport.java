@@ -0,0 +1,208 @@
+/*
+ * Copyright (c) 2025 Gunnar Hillert.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hillert.image.metadata.service.support;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.stream.StreamSource;
+
+import com.hillert.image.metadata.model.MetadataPatch;
+import com.hillert.image.metadata.model.MetadataPatch.XmpProperty;
+import org.apache.commons.imaging.ImagingException;
+import org.apache.commons.imaging.bytesource.ByteSource;
+import org.apache.commons.imaging.common.ImageMetadata;
+import org.apache.commons.imaging.formats.tiff.TiffImageMetadata;
+import org.apache.commons.imaging.formats.tiff.TiffImageParser;
+import org.apache.commons.imaging.formats.tiff.TiffImagingParameters;
+import org.apache.commons.imaging.formats.tiff.constants.TiffDirectoryType;
+import org.apache.commons.imaging.formats.tiff.taginfos.TagInfo;
+import org.apache.commons.imaging.formats.tiff.taginfos.TagInfoAscii;
+import org.apache.commons.imaging.formats.tiff.taginfos.TagInfoShort;
+import org.apache.commons.imaging.formats.tiff.taginfos.TagInfoUndefineds;
+import org.apache.commons.imaging.formats.tiff.taginfos.TagInfoXpString;
+import org.apache.commons.imaging.formats.tiff.write.AbstractTiffImageWriter;
+import org.apache.commons.imaging.formats.tiff.write.TiffImageWriterLossless;
+import org.apache.commons.imaging.formats.tiff.write.TiffImageWriterLossy;
+import org.apache.commons.imaging.formats.tiff.write.TiffOutputDirectory;
+import org.apache.commons.imaging.formats.tiff.write.TiffOutputSet;
+import org.apache.xmlgraphics.util.QName;
+import org.apache.xmlgraphics.xmp.XMPParser;
+import org.apache.xmlgraphics.xmp.XMPSerializer;
+import org.apache.xmlgraphics.xmp.schemas.DublinCoreAdapter;
+import org.apache.xmlgraphics.xmp.schemas.DublinCoreSchema;
+import org.xml.sax.SAXException;
+
+/**
+ * Applies the EXIF and XMP parts of a {@link MetadataPatch} independently of the
+ * container format, so that they can be shared by the format-specific rewriters.
+ *
+ * @author Gunnar Hillert
+ */
+final class MetadataPatchSupport {
+
+	/**
+	 * The padding tag (0xEA1C) as written by Microsoft Windows, used to reserve space in
+	 * the EXIF segment for later in-place updates. Commons Imaging does not define it.
+	 */
+	static final TagInfoUndefineds EXIF_TAG_PADDING = new TagInfoUndefineds("Padding", 0xEA1C, -1,
+			TiffDirectoryType.TIFF_DIRECTORY_IFD0);
+
+	private MetadataPatchSupport() {
+		throw new AssertionError("This is a static utility class.");
+	}
+
+	/**
+	 * Parse the provided TIFF structure, e.g. the payload of an EXIF segment or chunk.
+	 * @param tiff the TIFF structure
+	 * @return the parsed data as output set or null if it does not contain TIFF
+	 * metadata
+	 * @throws IOException in case the data cannot be read
+	 */
+	static TiffOutputSet getOutputSet(byte[] tiff) throws IOException {
+		try {
+			final ImageMetadata metadata = new TiffImageParser().getMetadata(ByteSource.array(tiff),
+					new TiffImagingParameters());
+			return (metadata instanceof TiffImageMetadata tiffMetadata) ? tiffMetadata.getOutputSet() : null;
+		}
+		catch (ImagingException ex) {
+			throw new ImageProcessingException("Unable to parse the EXIF data.", ex);
+		}
+	}
+
+	/**
+	 * Set the EXIF fields of the patch in the provided output set, replacing existing
+	 * fields with the same tag.
+	 * @param outputSet the EXIF data to modify
+	 * @param patch the metadata changes
+	 * @throws ImagingException in case a field cannot be added
+	 */
+	static void applyExifFields(TiffOutputSet outputSet, MetadataPatch patch) throws ImagingException {
+		for (Map.Entry<TagInfo, Object> field : patch.getExifFields().entrySet()) {
+			final TiffOutputDirectory directory = getOrCreateDirectory(outputSet, field.getKey());
+			directory.removeField(field.getKey());
+			if (field.getKey() instanceof TagInfoShort tagInfo) {
+				directory.add(tagInfo, (Short) field.getValue());
+			}
+			else if (field.getKey() instanceof TagInfoXpString tagInfo) {
+				directory.add(tagInfo, (String) field.getValue());
+			}
+			else {
+				directory.add((TagInfoAscii) field.getKey(), (String) field.getValue());
+			}
+		}
+	}
+
+	/**
+	 * Replace any existing padding of the EXIF data with a padding field of the provided
+	 * size in the root directory.
+	 * @param outputSet the EXIF data to modify
+	 * @param padding the number of bytes to reserve, 0 to only remove existing padding
+	 * @throws ImagingException in case the padding field cannot be added
+	 */
+	static void setExifPadding(TiffOutputSet outputSet, int padding) throws ImagingException {
+		for (TiffOutputDirectory directory : outputSet.getDirectories()) {
+			directory.removeField(EXIF_TAG_PADDING.tag);
+		}
+		if (padding > 0) {
+			outputSet.getOrCreateRootDirectory().add(EXIF_TAG_PADDING, new byte[padding]);
+		}
+	}
+
+	/**
+	 * Write the EXIF data. If the original EXIF data is provided, it is updated
+	 * losslessly, i.e. without moving maker notes and other data with offsets that are
+	 * unknown to Commons Imaging.
+	 * @param outputSet the EXIF data to write
+	 * @param exifPayload the original EXIF data (TIFF structure) or null
+	 * @return the TIFF structure
+	 * @throws IOException in case the EXIF data cannot be written
+	 */
+	static byte[] writeExif(TiffOutputSet outputSet, byte[] exifPayload) throws IOException {
+		final AbstractTiffImageWriter writer = (exifPayload != null)
+				? new TiffImageWriterLossless(outputSet.byteOrder, exifPayload)
+				: new TiffImageWriterLossy(outputSet.byteOrder);
+
+		final ByteArrayOutputStream tiff = new ByteArrayOutputStream();
+		writer.write(tiff, outputSet);
+		return tiff.toByteArray();
+	}
+
+	private static TiffOutputDirectory getOrCreateDirectory(TiffOutputSet outputSet, TagInfo tagInfo)
+			throws ImagingException {
+		if (tagInfo.directoryType == TiffDirectoryType.EXIF_DIRECTORY_EXIF_IFD) {
+			return outputSet.getOrCreateExifDirectory();
+		}
+		if (tagInfo.directoryType == TiffDirectoryType.EXIF_DIRECTORY_GPS) {
+			return outputSet.getOrCreateGpsDirectory();
+		}
+		return outputSet.getOrCreateRootDirectory();
+	}
+
+	/**
+	 * Apply the XMP properties of the patch to the provided XMP packet.
+	 * @param xmpXml the existing XMP packet or null
+	 * @param patch the metadata changes
+	 * @return the serialized XMP packet
+	 */
+	static byte[] writeXmp(String xmpXml, MetadataPatch patch) {
+		final org.apache.xmlgraphics.xmp.Metadata xmpMetadata;
+
+		if (xmpXml == null) {
+			xmpMetadata = new org.apache.xmlgraphics.xmp.Metadata();
+		}
+		else {
+			try {
+				xmpMetadata = XMPParser
+					.parseXMP(new StreamSource(new ByteArrayInputStream(xmpXml.trim().getBytes(StandardCharsets.UTF_8))));
+			}
+			catch (TransformerException ex) {
+				throw new ImageProcessingException("Unable to parse XMP data.", ex);
+			}
+		}
+
+		final DublinCoreAdapter dc = DublinCoreSchema.getAdapter(xmpMetadata);
+		for (Map.Entry<XmpProperty, String> property : patch.getXmpProperties().entrySet()) {
+			switch (property.getKey()) {
+				case TITLE -> dc.setTitle(property.getValue());
+				case IDENTIFIER -> dc.setIdentifier(property.getValue());
+				case DESCRIPTION -> dc.setDescription(null, property.getValue());
+				case SUBJECT -> {
+					xmpMetadata.removeProperty(new QName(DublinCoreSchema.NAMESPACE, "subject"));
+					for (String subject : property.getValue().split(";")) {
+						if (!subject.isBlank()) {
+							dc.addSubject(subject.trim());
+						}
+					}
+				}
+			}
+		}
+
+		final ByteArrayOutputStream xmp = new ByteArrayOutputStream();
+		try {
+			XMPSerializer.writeXMPPacket(xmpMetadata, xmp, false);
+		}
+		catch (TransformerException | SAXException ex) {
+			throw new ImageProcessingException("Unable to write XMP data.", ex);
+		}
+		return xmp.toByteArray();
+	}
+
+}
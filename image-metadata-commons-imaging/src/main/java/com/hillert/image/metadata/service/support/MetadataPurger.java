@@ -0,0 +1,644 @@
+/*
+ * Copyright (c) 2025 Gunnar Hillert.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hillert.image.metadata.service.support;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Set;
+
+import com.hillert.image.metadata.model.DirectoryType;
+
+import org.springframework.util.Assert;
+
+/**
+ * Removes metadata from JPEG, PNG and GIF images in a single streaming pass. The image
+ * is walked segment by segment (JPEG), chunk by chunk (PNG) or block by block (GIF), and
+ * every unit that carries one of the requested {@link DirectoryType}s is dropped, while
+ * everything else, in particular the image data itself, is copied through untouched.
+ *
+ * <ul>
+ * <li>{@link DirectoryType#EXIF}: JPEG EXIF APP1 segments, PNG {@code eXIf} chunks and
+ * raw EXIF profiles in PNG text chunks.
+ * <li>{@link DirectoryType#IPTC}: the IPTC block of JPEG Photoshop APP13 segments (other
+ * Photoshop resources are kept) and raw IPTC profiles in PNG text chunks.
+ * <li>{@link DirectoryType#XMP}: JPEG XMP APP1 segments (including extended XMP), the PNG
+ * XMP {@code iTXt} chunk and the GIF XMP application extension.
+ * <li>{@link DirectoryType#ICC}: JPEG ICC APP2 segments, PNG {@code iCCP} chunks and the
+ * GIF ICC application extension.
+ * <li>{@link DirectoryType#COMMENT}: JPEG COM segments, all other PNG text chunks and GIF
+ * comment extensions.
+ * <li>{@link DirectoryType#THUMBNAIL}: the EXIF thumbnail (IFD1), JFIF and JFXX
+ * thumbnails, FlashPix APP2 segments and Photoshop thumbnail resources of JPEG images.
+ * The EXIF thumbnail is unlinked and overwritten with zeros in place, so that the
+ * remaining EXIF data, including maker notes, keeps its offsets. PNG and GIF images do
+ * not contain thumbnails.
+ * </ul>
+ *
+ * @author Gunnar Hillert
+ */
+public final class MetadataPurger {
+
+	/**
+	 * The {@link DirectoryType}s that can be purged.
+	 */
+	public static final Set<DirectoryType> SUPPORTED_DIRECTORY_TYPES = EnumSet.of(DirectoryType.EXIF,
+			DirectoryType.IPTC, DirectoryType.XMP, DirectoryType.ICC, DirectoryType.COMMENT, DirectoryType.THUMBNAIL);
+
+	static final byte[] PNG_SIGNATURE = { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n' };
+
+	private static final byte[] GIF_SIGNATURE = "GIF8".getBytes(StandardCharsets.US_ASCII);
+
+	private static final byte[] XMP_EXTENSION_IDENTIFIER = "http://ns.adobe.com/xmp/extension/\0"
+		.getBytes(StandardCharsets.US_ASCII);
+
+	private static final byte[] JFIF_IDENTIFIER = "JFIF\0".getBytes(StandardCharsets.US_ASCII);
+
+	private static final byte[] JFXX_IDENTIFIER = "JFXX\0".getBytes(StandardCharsets.US_ASCII);
+
+	private static final byte[] FLASHPIX_IDENTIFIER = "FPXR\0".getBytes(StandardCharsets.US_ASCII);
+
+	private static final byte[] PHOTOSHOP_RESOURCE_SIGNATURE = "8BIM".getBytes(StandardCharsets.US_ASCII);
+
+	private static final short TIFF_MAGIC_NUMBER = 42;
+
+	private static final int IFD_ENTRY_LENGTH = 12;
+
+	private static final int MAX_THUMBNAIL_IFDS = 8;
+
+	private static final int TIFF_TYPE_SHORT = 3;
+
+	private static final int TIFF_TYPE_LONG = 4;
+
+	private static final int TIFF_TAG_STRIP_OFFSETS = 0x0111;
+
+	private static final int TIFF_TAG_STRIP_BYTE_COUNTS = 0x0117;
+
+	private static final int TIFF_TAG_JPEG_INTERCHANGE_FORMAT = 0x0201;
+
+	private static final int TIFF_TAG_JPEG_INTERCHANGE_FORMAT_LENGTH = 0x0202;
+
+	private static final int JFIF_LENGTH_WITHOUT_THUMBNAIL = 14;
+
+	private static final int PHOTOSHOP_IPTC_RESOURCE = 0x0404;
+
+	private static final int PHOTOSHOP_THUMBNAIL_RESOURCE = 0x040C;
+
+	private static final int PHOTOSHOP_LEGACY_THUMBNAIL_RESOURCE = 0x0409;
+
+	static final String PNG_XMP_KEYWORD = "XML:com.adobe.xmp";
+
+	private static final String PNG_RAW_PROFILE_PREFIX = "Raw profile type ";
+
+	/**
+	 * The maximum length of the keyword of a PNG text chunk, excluding its null separator.
+	 */
+	private static final int PNG_MAX_KEYWORD_LENGTH = 79;
+
+	private static final String GIF_XMP_APPLICATION = "XMP DataXMP";
+
+	private static final String GIF_ICC_APPLICATION = "ICCRGBG1012";
+
+	private MetadataPurger() {
+		throw new AssertionError("This is a static utility class.");
+	}
+
+	/**
+	 * Remove the provided metadata types from the image.
+	 * @param imageBytes the JPEG, PNG or GIF image data, must not be null
+	 * @param directoryTypes the metadata types to remove, see
+	 * {@link #SUPPORTED_DIRECTORY_TYPES}
+	 * @return the image data without the purged metadata
+	 */
+	public static byte[] purge(byte[] imageBytes, Set<DirectoryType> directoryTypes) {
+		Assert.notNull(imageBytes, "imageBytes must not be null.");
+		final ByteArrayOutputStream os = new ByteArrayOutputStream(imageBytes.length);
+		try {
+			purge(new ByteArrayInputStream(imageBytes), os, directoryTypes);
+		}
+		catch (IOException ex) {
+			throw new ImageProcessingException("Unable to purge the image metadata.", ex);
+		}
+		return os.toByteArray();
+	}
+
+	/**
+	 * Remove the provided metadata types while copying the image from the provided
+	 * {@link InputStream} to the provided {@link OutputStream}. Neither stream is closed.
+	 * @param inputStream the JPEG, PNG or GIF image data, must not be null
+	 * @param outputStream the stream to write the purged image to, must not be null
+	 * @param directoryTypes the metadata types to remove, see
+	 * {@link #SUPPORTED_DIRECTORY_TYPES}
+	 * @throws IOException in case the image cannot be read or written
+	 */
+	public static void purge(InputStream inputStream, OutputStream outputStream, Set<DirectoryType> directoryTypes)
+			throws IOException {
+		Assert.notNull(inputStream, "inputStream must not be null.");
+		Assert.notNull(outputStream, "outputStream must not be null.");
+		Assert.notNull(directoryTypes, "directoryTypes must not be null.");
+
+		for (DirectoryType directoryType : directoryTypes) {
+			if (!SUPPORTED_DIRECTORY_TYPES.contains(directoryType)) {
+				throw new ImageProcessingException("Unsupported DirectoryType " + directoryType.getName());
+			}
+		}
+
+		final DataInputStream in = new DataInputStream(new BufferedInputStream(inputStream));
+		in.mark(PNG_SIGNATURE.length);
+		final byte[] signature = in.readNBytes(PNG_SIGNATURE.length);
+		in.reset();
+
+		if (JpegSegmentScanner.isJpeg(signature)) {
+			purgeJpeg(in, outputStream, directoryTypes);
+		}
+		else if (Arrays.equals(signature, PNG_SIGNATURE)) {
+			purgePng(in, outputStream, directoryTypes);
+		}
+		else if (startsWith(signature, 0, GIF_SIGNATURE)) {
+			purgeGif(in, outputStream, directoryTypes);
+		}
+		else {
+			throw new ImageProcessingException("Purging metadata is only supported for JPEG, PNG and GIF images.");
+		}
+	}
+
+	private static void purgeJpeg(DataInputStream in, OutputStream out, Set<DirectoryType> directoryTypes)
+			throws IOException {
+		out.write(in.readNBytes(2));
+
+		while (true) {
+			if (in.readUnsignedByte() != 0xFF) {
+				throw new ImageProcessingException("Invalid JPEG marker.");
+			}
+			int marker;
+			while ((marker = in.readUnsignedByte()) == 0xFF) {
+				// Skip fill bytes
+			}
+
+			if (marker == 0x01 || (marker >= 0xD0 && marker <= 0xD7) || marker == JpegSegmentScanner.MARKER_EOI) {
+				out.write(0xFF);
+				out.write(marker);
+				if (marker == JpegSegmentScanner.MARKER_EOI) {
+					in.transferTo(out);
+					return;
+				}
+				continue;
+			}
+
+			final int length = in.readUnsignedShort();
+			if (length < 2) {
+				throw new ImageProcessingException("Invalid JPEG segment length.");
+			}
+			final byte[] data = new byte[length - 2];
+			in.readFully(data);
+
+			final byte[] purgedData = (marker != JpegSegmentScanner.MARKER_SOS)
+					? purgeJpegSegment(marker, data, directoryTypes) : data;
+			if (purgedData != null) {
+				out.write(0xFF);
+				out.write(marker);
+				out.write((purgedData.length + 2) >> 8);
+				out.write(purgedData.length + 2);
+				out.write(purgedData);
+			}
+
+			if (marker == JpegSegmentScanner.MARKER_SOS) {
+				// Everything after the start-of-scan segment is entropy-coded image data.
+				in.transferTo(out);
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Purge the provided JPEG segment.
+	 * @param marker the segment marker
+	 * @param data the segment data (without marker and length)
+	 * @param directoryTypes the metadata types to remove
+	 * @return the data to write, or null if the segment shall be dropped
+	 */
+	private static byte[] purgeJpegSegment(int marker, byte[] data, Set<DirectoryType> directoryTypes) {
+		final boolean purgeThumbnails = directoryTypes.contains(DirectoryType.THUMBNAIL);
+
+		switch (marker) {
+			case JpegSegmentScanner.MARKER_APP0 -> {
+				if (purgeThumbnails && startsWith(data, 0, JFXX_IDENTIFIER)) {
+					return null;
+				}
+				if (purgeThumbnails && startsWith(data, 0, JFIF_IDENTIFIER) && data.length > JFIF_LENGTH_WITHOUT_THUMBNAIL) {
+					final byte[] jfif = Arrays.copyOf(data, JFIF_LENGTH_WITHOUT_THUMBNAIL);
+					jfif[12] = 0;
+					jfif[13] = 0;
+					return jfif;
+				}
+			}
+			case JpegSegmentScanner.MARKER_APP1 -> {
+				if (startsWith(data, 0, JpegSegmentScanner.EXIF_IDENTIFIER)) {
+					if (directoryTypes.contains(DirectoryType.EXIF)) {
+						return null;
+					}
+					return purgeThumbnails ? removeExifThumbnail(data) : data;
+				}
+				if (directoryTypes.contains(DirectoryType.XMP) && (startsWith(data, 0, JpegSegmentScanner.XMP_IDENTIFIER)
+						|| startsWith(data, 0, XMP_EXTENSION_IDENTIFIER))) {
+					return null;
+				}
+			}
+			case JpegSegmentScanner.MARKER_APP2 -> {
+				if (directoryTypes.contains(DirectoryType.ICC)
+						&& startsWith(data, 0, JpegSegmentScanner.ICC_IDENTIFIER)) {
+					return null;
+				}
+				if (purgeThumbnails && startsWith(data, 0, FLASHPIX_IDENTIFIER)) {
+					return null;
+				}
+			}
+			case JpegSegmentScanner.MARKER_APP13 -> {
+				if (startsWith(data, 0, JpegSegmentScanner.PHOTOSHOP_IDENTIFIER)) {
+					return purgePhotoshopResources(data, directoryTypes);
+				}
+			}
+			case JpegSegmentScanner.MARKER_COM -> {
+				if (directoryTypes.contains(DirectoryType.COMMENT)) {
+					return null;
+				}
+			}
+			default -> {
+				// Not a metadata segment
+			}
+		}
+		return data;
+	}
+
+	/**
+	 * Remove the IPTC and/or thumbnail resources from a Photoshop APP13 segment.
+	 * @param data the segment data, starting with the Photoshop identifier
+	 * @param directoryTypes the metadata types to remove
+	 * @return the remaining data, or null if no resources are left
+	 */
+	private static byte[] purgePhotoshopResources(byte[] data, Set<DirectoryType> directoryTypes) {
+		final boolean purgeIptc = directoryTypes.contains(DirectoryType.IPTC);
+		final boolean purgeThumbnails = directoryTypes.contains(DirectoryType.THUMBNAIL);
+		if (!purgeIptc && !purgeThumbnails) {
+			return data;
+		}
+
+		final ByteArrayOutputStream resources = new ByteArrayOutputStream(data.length);
+		int position = JpegSegmentScanner.PHOTOSHOP_IDENTIFIER.length;
+
+		while (position + 12 <= data.length && startsWith(data, position, PHOTOSHOP_RESOURCE_SIGNATURE)) {
+			final int type = ((data[position + 4] & 0xFF) << 8) | (data[position + 5] & 0xFF);
+			// Pascal string, padded to an even length
+			final int nameLength = data[position + 6] & 0xFF;
+			final int sizePosition = position + 6 + ((nameLength + 2) & ~1);
+			if (sizePosition + 4 > data.length) {
+				break;
+			}
+			final long size = ((data[sizePosition] & 0xFFL) << 24) | ((data[sizePosition + 1] & 0xFF) << 16)
+					| ((data[sizePosition + 2] & 0xFF) << 8) | (data[sizePosition + 3] & 0xFF);
+			final long end = sizePosition + 4 + size + (size & 1);
+			if (end > data.length) {
+				break;
+			}
+
+			final boolean purge = (purgeIptc && type == PHOTOSHOP_IPTC_RESOURCE) || (purgeThumbnails
+					&& (type == PHOTOSHOP_THUMBNAIL_RESOURCE || type == PHOTOSHOP_LEGACY_THUMBNAIL_RESOURCE));
+			if (!purge) {
+				resources.write(data, position, (int) end - position);
+			}
+			position = (int) end;
+		}
+		// Keep anything that could not be parsed as is
+		resources.write(data, position, data.length - position);
+
+		if (resources.size() == 0) {
+			return null;
+		}
+		final byte[] purgedData = new byte[JpegSegmentScanner.PHOTOSHOP_IDENTIFIER.length + resources.size()];
+		System.arraycopy(data, 0, purgedData, 0, JpegSegmentScanner.PHOTOSHOP_IDENTIFIER.length);
+		System.arraycopy(resources.toByteArray(), 0, purgedData, JpegSegmentScanner.PHOTOSHOP_IDENTIFIER.length,
+				resources.size());
+		return purgedData;
+	}
+
+	/**
+	 * Remove the thumbnail (IFD1 and any following IFDs) from an EXIF APP1 segment. The
+	 * TIFF structure is not re-serialized, since that would move offset-based data such
+	 * as vendor maker notes. Instead, the link from IFD0 to IFD1 is cleared and the
+	 * thumbnail IFDs and the image data they reference are overwritten with zeros, so
+	 * that all other fields keep their offsets.
+	 * @param data the segment data, starting with the EXIF identifier
+	 * @return the segment data without thumbnail
+	 */
+	private static byte[] removeExifThumbnail(byte[] data) {
+		final int tiffOffset = JpegSegmentScanner.EXIF_IDENTIFIER.length;
+		final ByteBuffer tiff = ByteBuffer.wrap(Arrays.copyOfRange(data, tiffOffset, data.length));
+		if (tiff.remaining() < 8) {
+			return data;
+		}
+		if (tiff.get(0) == 'I' && tiff.get(1) == 'I') {
+			tiff.order(ByteOrder.LITTLE_ENDIAN);
+		}
+		else if (tiff.get(0) != 'M' || tiff.get(1) != 'M') {
+			return data;
+		}
+		if (tiff.getShort(2) != TIFF_MAGIC_NUMBER) {
+			return data;
+		}
+
+		final int rootIfdOffset = tiff.getInt(4);
+		final int linkPosition = getNextIfdLinkPosition(tiff, rootIfdOffset);
+		if (linkPosition < 0) {
+			return data;
+		}
+		int ifdOffset = tiff.getInt(linkPosition);
+		tiff.putInt(linkPosition, 0);
+
+		// Guard against IFD chains that loop
+		for (int i = 0; i < MAX_THUMBNAIL_IFDS && ifdOffset != 0; i++) {
+			final int nextLinkPosition = getNextIfdLinkPosition(tiff, ifdOffset);
+			if (nextLinkPosition < 0 || (ifdOffset >= rootIfdOffset && ifdOffset < linkPosition + 4)) {
+				break;
+			}
+			final int nextIfdOffset = tiff.getInt(nextLinkPosition);
+			clearThumbnailData(tiff, ifdOffset);
+			clear(tiff, ifdOffset, nextLinkPosition + 4 - ifdOffset);
+			ifdOffset = nextIfdOffset;
+		}
+
+		final byte[] purgedData = Arrays.copyOf(data, data.length);
+		System.arraycopy(tiff.array(), 0, purgedData, tiffOffset, tiff.capacity());
+		return purgedData;
+	}
+
+	/**
+	 * Return the position of the link to the next IFD of the provided IFD.
+	 * @param tiff the TIFF structure
+	 * @param ifdOffset the offset of the IFD
+	 * @return the position or -1 if the IFD is out of bounds
+	 */
+	private static int getNextIfdLinkPosition(ByteBuffer tiff, int ifdOffset) {
+		if (ifdOffset < 8 || ifdOffset > tiff.capacity() - 2) {
+			return -1;
+		}
+		final int linkPosition = ifdOffset + 2 + (tiff.getShort(ifdOffset) & 0xFFFF) * IFD_ENTRY_LENGTH;
+		return (linkPosition <= tiff.capacity() - 4) ? linkPosition : -1;
+	}
+
+	/**
+	 * Overwrite the image data referenced by a thumbnail IFD with zeros. Both JPEG
+	 * thumbnails and single-strip uncompressed thumbnails are supported.
+	 * @param tiff the TIFF structure
+	 * @param ifdOffset the offset of the thumbnail IFD
+	 */
+	private static void clearThumbnailData(ByteBuffer tiff, int ifdOffset) {
+		long offset = -1;
+		long length = -1;
+		final int entryCount = tiff.getShort(ifdOffset) & 0xFFFF;
+		for (int i = 0; i < entryCount; i++) {
+			final int entry = ifdOffset + 2 + i * IFD_ENTRY_LENGTH;
+			final int tag = tiff.getShort(entry) & 0xFFFF;
+			final int type = tiff.getShort(entry + 2) & 0xFFFF;
+			if (tiff.getInt(entry + 4) != 1 || (type != TIFF_TYPE_SHORT && type != TIFF_TYPE_LONG)) {
+				continue;
+			}
+			final long value = (type == TIFF_TYPE_SHORT) ? tiff.getShort(entry + 8) & 0xFFFF
+					: tiff.getInt(entry + 8) & 0xFFFFFFFFL;
+			switch (tag) {
+				case TIFF_TAG_JPEG_INTERCHANGE_FORMAT, TIFF_TAG_STRIP_OFFSETS -> offset = value;
+				case TIFF_TAG_JPEG_INTERCHANGE_FORMAT_LENGTH, TIFF_TAG_STRIP_BYTE_COUNTS -> length = value;
+				default -> {
+					// Not a reference to thumbnail data
+				}
+			}
+		}
+		if (offset >= 8 && length > 0 && offset + length <= tiff.capacity()) {
+			clear(tiff, (int) offset, (int) length);
+		}
+	}
+
+	private static void clear(ByteBuffer buffer, int offset, int length) {
+		Arrays.fill(buffer.array(), offset, offset + length, (byte) 0);
+	}
+
+	private static void purgePng(DataInputStream in, OutputStream out, Set<DirectoryType> directoryTypes)
+			throws IOException {
+		out.write(in.readNBytes(PNG_SIGNATURE.length));
+
+		while (true) {
+			final byte[] lengthAndType = in.readNBytes(8);
+			if (lengthAndType.length == 0) {
+				return;
+			}
+			if (lengthAndType.length < 8) {
+				throw new ImageProcessingException("Truncated PNG chunk.");
+			}
+			final int length = ((lengthAndType[0] & 0xFF) << 24) | ((lengthAndType[1] & 0xFF) << 16)
+					| ((lengthAndType[2] & 0xFF) << 8) | (lengthAndType[3] & 0xFF);
+			if (length < 0) {
+				throw new ImageProcessingException("Invalid PNG chunk length.");
+			}
+			final String type = new String(lengthAndType, 4, 4, StandardCharsets.US_ASCII);
+
+			// Chunks are copied including their CRC, which covers type and data only.
+			switch (type) {
+				case "eXIf" -> copyOrSkip(in, out, lengthAndType, length, directoryTypes.contains(DirectoryType.EXIF));
+				case "iCCP" -> copyOrSkip(in, out, lengthAndType, length, directoryTypes.contains(DirectoryType.ICC));
+				case "tEXt", "zTXt", "iTXt" -> {
+					// Only the keyword is read up front, as the declared length is untrusted.
+					final byte[] keyword = new byte[Math.min(length, PNG_MAX_KEYWORD_LENGTH + 1)];
+					in.readFully(keyword);
+					final long remaining = length + 4L - keyword.length;
+					if (directoryTypes.contains(getPngTextDirectoryType(keyword, keyword.length))) {
+						in.skipNBytes(remaining);
+					}
+					else {
+						out.write(lengthAndType);
+						out.write(keyword);
+						copy(in, out, remaining);
+					}
+				}
+				case "IEND" -> {
+					out.write(lengthAndType);
+					in.transferTo(out);
+					return;
+				}
+				default -> copyOrSkip(in, out, lengthAndType, length, false);
+			}
+		}
+	}
+
+	static DirectoryType getPngTextDirectoryType(byte[] data) {
+		return getPngTextDirectoryType(data, data.length - 4);
+	}
+
+	/**
+	 * Determine the metadata type of a PNG text chunk by its keyword.
+	 * @param data the chunk data, at least the keyword and its null separator
+	 * @param length the number of bytes of the chunk data to consider
+	 * @return the metadata type
+	 */
+	static DirectoryType getPngTextDirectoryType(byte[] data, int length) {
+		int keywordLength = 0;
+		while (keywordLength < length && data[keywordLength] != 0) {
+			keywordLength++;
+		}
+		final String keyword = new String(data, 0, keywordLength, StandardCharsets.ISO_8859_1);
+
+		if (PNG_XMP_KEYWORD.equals(keyword)) {
+			return DirectoryType.XMP;
+		}
+		if (keyword.startsWith(PNG_RAW_PROFILE_PREFIX)) {
+			return switch (keyword.substring(PNG_RAW_PROFILE_PREFIX.length())) {
+				case "exif", "APP1" -> DirectoryType.EXIF;
+				case "iptc", "8bim" -> DirectoryType.IPTC;
+				case "xmp" -> DirectoryType.XMP;
+				case "icc", "icm" -> DirectoryType.ICC;
+				default -> DirectoryType.COMMENT;
+			};
+		}
+		return DirectoryType.COMMENT;
+	}
+
+	private static void copyOrSkip(DataInputStream in, OutputStream out, byte[] lengthAndType, int length,
+			boolean skip) throws IOException {
+		final long remaining = length + 4L;
+		if (skip) {
+			in.skipNBytes(remaining);
+			return;
+		}
+		out.write(lengthAndType);
+		copy(in, out, remaining);
+	}
+
+	private static void purgeGif(DataInputStream in, OutputStream out, Set<DirectoryType> directoryTypes)
+			throws IOException {
+		// Header and logical screen descriptor
+		final byte[] header = new byte[13];
+		in.readFully(header);
+		out.write(header);
+		if ((header[10] & 0x80) != 0) {
+			copy(in, out, 3L << ((header[10] & 0x07) + 1));
+		}
+
+		while (true) {
+			final int introducer = in.read();
+			if (introducer == -1) {
+				return;
+			}
+			switch (introducer) {
+				case 0x3B -> {
+					out.write(introducer);
+					in.transferTo(out);
+					return;
+				}
+				case 0x2C -> {
+					final byte[] descriptor = new byte[9];
+					in.readFully(descriptor);
+					out.write(introducer);
+					out.write(descriptor);
+					if ((descriptor[8] & 0x80) != 0) {
+						copy(in, out, 3L << ((descriptor[8] & 0x07) + 1));
+					}
+					// LZW minimum code size
+					out.write(in.readUnsignedByte());
+					copySubBlocks(in, out);
+				}
+				case 0x21 -> purgeGifExtension(in, out, directoryTypes);
+				default -> throw new ImageProcessingException("Invalid GIF block.");
+			}
+		}
+	}
+
+	private static void purgeGifExtension(DataInputStream in, OutputStream out, Set<DirectoryType> directoryTypes)
+			throws IOException {
+		final int label = in.readUnsignedByte();
+
+		if (label == 0xFE && directoryTypes.contains(DirectoryType.COMMENT)) {
+			skipSubBlocks(in);
+			return;
+		}
+		if (label != 0xFF) {
+			out.write(0x21);
+			out.write(label);
+			copySubBlocks(in, out);
+			return;
+		}
+
+		// Application extension: the first sub-block contains the application identifier
+		final int size = in.readUnsignedByte();
+		final byte[] identifier = new byte[size];
+		in.readFully(identifier);
+		final String application = new String(identifier, StandardCharsets.US_ASCII);
+
+		// The XMP packet is followed by a "magic trailer", so it can be skipped as
+		// sub-blocks.
+		if ((GIF_XMP_APPLICATION.equals(application) && directoryTypes.contains(DirectoryType.XMP))
+				|| (GIF_ICC_APPLICATION.equals(application) && directoryTypes.contains(DirectoryType.ICC))) {
+			skipSubBlocks(in);
+			return;
+		}
+		out.write(0x21);
+		out.write(label);
+		out.write(size);
+		out.write(identifier);
+		copySubBlocks(in, out);
+	}
+
+	private static void copySubBlocks(DataInputStream in, OutputStream out) throws IOException {
+		int size;
+		while ((size = in.readUnsignedByte()) != 0) {
+			out.write(size);
+			copy(in, out, size);
+		}
+		out.write(0);
+	}
+
+	private static void skipSubBlocks(DataInputStream in) throws IOException {
+		int size;
+		while ((size = in.readUnsignedByte()) != 0) {
+			in.skipNBytes(size);
+		}
+	}
+
+	static void copy(InputStream in, OutputStream out, long length) throws IOException {
+		final byte[] buffer = new byte[(int) Math.min(length, 8192)];
+		long remaining = length;
+		while (remaining > 0) {
+			final int read = in.read(buffer, 0, (int) Math.min(remaining, buffer.length));
+			if (read == -1) {
+				throw new ImageProcessingException("Unexpected end of image data.");
+			}
+			out.write(buffer, 0, read);
+			remaining -= read;
+		}
+	}
+
+	private static boolean startsWith(byte[] data, int offset, byte[] prefix) {
+		return data.length - offset >= prefix.length
+				&& Arrays.equals(data, offset, offset + prefix.length, prefix, 0, prefix.length);
+	}
+
+}
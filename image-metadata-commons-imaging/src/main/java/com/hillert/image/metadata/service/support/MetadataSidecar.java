@@ -0,0 +1,230 @@
+/*
+ * Copyright (c) 2025 Gunnar Hillert.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hillert.image.metadata.service.support;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.hillert.image.metadata.model.Directory;
+import com.hillert.image.metadata.model.DirectoryType;
+import com.hillert.image.metadata.model.GnssInfo;
+import com.hillert.image.metadata.model.Metadata;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Persists extracted {@link Metadata} as a compact binary sidecar file next to the image
+ * file, e.g. {@code image.jpg.metadata}. The sidecar records the size and modification
+ * time of the image it was created from, so that stale sidecars are detected and
+ * ignored.
+ *
+ * The format is versioned. Sidecars with an unknown magic number or version are ignored
+ * as well, which simply results in a full metadata extraction.
+ *
+ * @author Gunnar Hillert
+ */
+public final class MetadataSidecar {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(MetadataSidecar.class);
+
+	/**
+	 * File extension of sidecar files.
+	 */
+	public static final String FILE_EXTENSION = ".metadata";
+
+	private static final int MAGIC = 0x494D4453;
+
+	private static final short VERSION = 3;
+
+	private MetadataSidecar() {
+		throw new AssertionError("This is a static utility class.");
+	}
+
+	public static Path getSidecarPath(Path imagePath) {
+		return imagePath.resolveSibling(imagePath.getFileName() + FILE_EXTENSION);
+	}
+
+	/**
+	 * Write the sidecar file for the provided image file. The sidecar is written to a
+	 * temporary file first and then moved into place, so that readers never see a
+	 * partially written sidecar.
+	 * @param imagePath the image file the metadata was extracted from
+	 * @param metadata the extracted metadata
+	 */
+	public static void write(Path imagePath, Metadata metadata) {
+		final ImageFingerprint fingerprint = ImageFingerprint.of(imagePath);
+		final Path sidecarPath = getSidecarPath(fingerprint.path());
+
+		try {
+			final Path tempFile = Files.createTempFile(sidecarPath.getParent(), ".sidecar-", ".tmp");
+			try (DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+				out.writeInt(MAGIC);
+				out.writeShort(VERSION);
+				out.writeLong(fingerprint.size());
+				out.writeLong(fingerprint.lastModified());
+				writeMetadata(out, metadata);
+			}
+			catch (IOException ex) {
+				Files.deleteIfExists(tempFile);
+				throw ex;
+			}
+			Files.move(tempFile, sidecarPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+		catch (IOException ex) {
+			throw new StorageException("Unable to write metadata sidecar " + sidecarPath, ex);
+		}
+	}
+
+	/**
+	 * Read the sidecar file for the provided image file.
+	 * @param imagePath the image file
+	 * @return the metadata or null if there is no (valid) sidecar or if the sidecar is
+	 * stale
+	 */
+	public static Metadata read(Path imagePath) {
+		final ImageFingerprint fingerprint = ImageFingerprint.of(imagePath);
+		final Path sidecarPath = getSidecarPath(fingerprint.path());
+
+		// Sidecars are small, reading them at once allows to validate lengths read from
+		// the file against the remaining data.
+		try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(Files.readAllBytes(sidecarPath)))) {
+			if (in.readInt() != MAGIC || in.readShort() != VERSION) {
+				LOGGER.info("Ignoring sidecar '{}' with unsupported format.", sidecarPath);
+				return null;
+			}
+			if (in.readLong() != fingerprint.size() || in.readLong() != fingerprint.lastModified()) {
+				LOGGER.debug("Ignoring stale sidecar '{}'.", sidecarPath);
+				return null;
+			}
+			return readMetadata(in);
+		}
+		catch (NoSuchFileException ex) {
+			return null;
+		}
+		catch (IOException | RuntimeException ex) {
+			// Corrupt or truncated sidecars are treated like missing ones.
+			LOGGER.warn("Ignoring unreadable sidecar '{}'.", sidecarPath, ex);
+			return null;
+		}
+	}
+
+	/**
+	 * Delete the sidecar file of the provided image file, if it exists.
+	 * @param imagePath the image file
+	 */
+	public static void delete(Path imagePath) {
+		try {
+			Files.deleteIfExists(getSidecarPath(imagePath));
+		}
+		catch (IOException ex) {
+			throw new StorageException("Unable to delete metadata sidecar of " + imagePath, ex);
+		}
+	}
+
+	private static void writeMetadata(DataOutputStream out, Metadata metadata) throws IOException {
+		out.writeInt(metadata.getDirectoryCount());
+		for (Directory directory : metadata.getDirectories()) {
+			writeString(out, directory.getDirectoryType().name());
+			writeString(out, directory.getPropertyName());
+			writeString(out, directory.getPropertyValue());
+		}
+
+		final GnssInfo gnssInfo = metadata.getGnssInfo();
+		out.writeBoolean(gnssInfo != null);
+		if (gnssInfo != null) {
+			out.writeDouble(gnssInfo.getLatitude());
+			out.writeDouble(gnssInfo.getLongitude());
+			out.writeDouble(gnssInfo.getElevation());
+			final ZonedDateTime gnssTime = gnssInfo.getGnssTime();
+			out.writeBoolean(gnssTime != null);
+			if (gnssTime != null) {
+				out.writeLong(gnssTime.toEpochSecond());
+				out.writeInt(gnssTime.getNano());
+				writeString(out, gnssTime.getZone().getId());
+			}
+		}
+
+		writeString(out, metadata.getXmpData());
+	}
+
+	private static Metadata readMetadata(DataInputStream in) throws IOException {
+		final Metadata metadata = new Metadata();
+
+		final int directoryCount = in.readInt();
+		// Each directory takes at least the lengths of its three strings.
+		if (directoryCount < 0 || directoryCount > in.available() / (3 * Integer.BYTES)) {
+			throw new IOException("Invalid directory count " + directoryCount);
+		}
+		final List<Directory> directories = new ArrayList<>(directoryCount);
+		for (int i = 0; i < directoryCount; i++) {
+			final DirectoryType directoryType = DirectoryType.valueOf(readString(in));
+			directories.add(new Directory(directoryType, readString(in), readString(in)));
+		}
+		metadata.addDirectories(directories);
+
+		if (in.readBoolean()) {
+			final GnssInfo gnssInfo = new GnssInfo(in.readDouble(), in.readDouble());
+			gnssInfo.setElevation(in.readDouble());
+			if (in.readBoolean()) {
+				final Instant instant = Instant.ofEpochSecond(in.readLong(), in.readInt());
+				gnssInfo.setGnssTime(ZonedDateTime.ofInstant(instant, ZoneId.of(readString(in))));
+			}
+			metadata.setGnssInfo(gnssInfo);
+		}
+
+		metadata.setXmpData(readString(in));
+		return metadata;
+	}
+
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+		if (value == null) {
+			out.writeInt(-1);
+			return;
+		}
+		final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		final int length = in.readInt();
+		if (length < 0) {
+			return null;
+		}
+		if (length > in.available()) {
+			throw new EOFException("Truncated string of length " + length);
+		}
+		final byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+}
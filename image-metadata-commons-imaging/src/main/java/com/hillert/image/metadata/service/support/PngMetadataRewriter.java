@@ -0,0 +1,275 @@
+/*
+ * Copyright (c) 2025 Gunnar Hillert.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hillert.image.metadata.service.support;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.InflaterInputStream;
+
+import com.hillert.image.metadata.model.DirectoryType;
+import com.hillert.image.metadata.model.MetadataPatch;
+import org.apache.commons.imaging.formats.tiff.write.TiffOutputSet;
+
+import org.springframework.util.Assert;
+
+/**
+ * Applies a {@link MetadataPatch} to a PNG image on chunk level, without decoding the
+ * image. EXIF fields are written to the {@code eXIf} chunk and XMP properties to the
+ * {@code iTXt} chunk with the {@code XML:com.adobe.xmp} keyword. Replaced chunks are
+ * written in place of the image data's first {@code IDAT} chunk, existing chunks of the
+ * same kind are dropped. All other chunks, including the image data, are copied through
+ * unchanged with their original CRC, so only the CRCs of the written chunks are
+ * computed.
+ *
+ * PNG has no standard container for IPTC records, which are therefore ignored. The
+ * same information is usually available via XMP.
+ *
+ * @author Gunnar Hillert
+ */
+public final class PngMetadataRewriter {
+
+	private static final byte[] XMP_KEYWORD = (MetadataPurger.PNG_XMP_KEYWORD + "\0")
+		.getBytes(StandardCharsets.ISO_8859_1);
+
+	private PngMetadataRewriter() {
+		throw new AssertionError("This is a static utility class.");
+	}
+
+	/**
+	 * Apply the provided patch to the PNG image data.
+	 * @param imageBytes the PNG image data, must not be null
+	 * @param patch the metadata changes, must not be null
+	 * @return the modified image data
+	 */
+	public static byte[] rewrite(byte[] imageBytes, MetadataPatch patch) {
+		Assert.notNull(imageBytes, "imageBytes must not be null.");
+		final ByteArrayOutputStream os = new ByteArrayOutputStream(imageBytes.length + 1024);
+		try {
+			rewrite(new ByteArrayInputStream(imageBytes), os, Set.of(), patch);
+		}
+		catch (IOException ex) {
+			throw new ImageProcessingException("Unable to update the image metadata.", ex);
+		}
+		return os.toByteArray();
+	}
+
+	/**
+	 * Purge and update the metadata while copying the PNG image from the provided
+	 * {@link InputStream} to the provided {@link OutputStream}. Neither stream is closed.
+	 * @param inputStream the PNG image data, must not be null
+	 * @param outputStream the stream to write the modified image to, must not be null
+	 * @param directoryTypesToPurge the metadata types to remove, see
+	 * {@link MetadataPurger#SUPPORTED_DIRECTORY_TYPES}
+	 * @param patch the metadata changes to apply after purging, must not be null
+	 * @throws IOException in case the image cannot be read or written
+	 */
+	public static void rewrite(InputStream inputStream, OutputStream outputStream,
+			Set<DirectoryType> directoryTypesToPurge, MetadataPatch patch) throws IOException {
+		Assert.notNull(inputStream, "inputStream must not be null.");
+		Assert.notNull(outputStream, "outputStream must not be null.");
+		Assert.notNull(directoryTypesToPurge, "directoryTypesToPurge must not be null.");
+		Assert.notNull(patch, "patch must not be null.");
+
+		for (DirectoryType directoryType : directoryTypesToPurge) {
+			if (!MetadataPurger.SUPPORTED_DIRECTORY_TYPES.contains(directoryType)) {
+				throw new ImageProcessingException("Unsupported DirectoryType " + directoryType.getName());
+			}
+		}
+
+		final DataInputStream in = new DataInputStream(new BufferedInputStream(inputStream));
+		final byte[] signature = in.readNBytes(MetadataPurger.PNG_SIGNATURE.length);
+		if (!Arrays.equals(signature, MetadataPurger.PNG_SIGNATURE)) {
+			throw new ImageProcessingException("Metadata can only be updated for PNG images.");
+		}
+		outputStream.write(signature);
+
+		final boolean patchExif = !patch.getExifFields().isEmpty();
+		final boolean patchXmp = !patch.getXmpProperties().isEmpty();
+
+		// The existing data is merged into the new chunks, which are written before the
+		// image data. Chunks of the same kind after the image data are dropped.
+		byte[] exifPayload = null;
+		String xmpXml = null;
+		boolean patchWritten = false;
+
+		while (true) {
+			final byte[] lengthAndType = in.readNBytes(8);
+			if (lengthAndType.length == 0) {
+				return;
+			}
+			if (lengthAndType.length < 8) {
+				throw new ImageProcessingException("Truncated PNG chunk.");
+			}
+			final int length = ByteBuffer.wrap(lengthAndType).getInt();
+			if (length < 0) {
+				throw new ImageProcessingException("Invalid PNG chunk length.");
+			}
+			final String type = new String(lengthAndType, 4, 4, StandardCharsets.US_ASCII);
+
+			switch (type) {
+				case "eXIf" -> {
+					final byte[] data = readChunkData(in, length);
+					if (directoryTypesToPurge.contains(DirectoryType.EXIF)) {
+						continue;
+					}
+					if (patchExif) {
+						if (!patchWritten) {
+							exifPayload = getExifPayload(data, length);
+						}
+						continue;
+					}
+					outputStream.write(lengthAndType);
+					outputStream.write(data);
+				}
+				case "tEXt", "zTXt", "iTXt" -> {
+					final byte[] data = readChunkData(in, length);
+					if (directoryTypesToPurge.contains(MetadataPurger.getPngTextDirectoryType(data))) {
+						continue;
+					}
+					if (patchXmp && "iTXt".equals(type) && startsWith(data, XMP_KEYWORD)) {
+						if (!patchWritten) {
+							xmpXml = getXmpXml(data, length);
+						}
+						continue;
+					}
+					outputStream.write(lengthAndType);
+					outputStream.write(data);
+				}
+				case "iCCP" -> {
+					if (directoryTypesToPurge.contains(DirectoryType.ICC)) {
+						in.skipNBytes(length + 4L);
+						continue;
+					}
+					outputStream.write(lengthAndType);
+					MetadataPurger.copy(in, outputStream, length + 4L);
+				}
+				case "IDAT", "IEND" -> {
+					if (!patchWritten) {
+						if (patchExif) {
+							writeChunk(outputStream, "eXIf", createExifPayload(exifPayload, patch));
+						}
+						if (patchXmp) {
+							writeChunk(outputStream, "iTXt", createXmpData(xmpXml, patch));
+						}
+						patchWritten = true;
+					}
+					outputStream.write(lengthAndType);
+					if ("IEND".equals(type)) {
+						in.transferTo(outputStream);
+						return;
+					}
+					MetadataPurger.copy(in, outputStream, length + 4L);
+				}
+				default -> {
+					outputStream.write(lengthAndType);
+					MetadataPurger.copy(in, outputStream, length + 4L);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Read the chunk data including the trailing CRC.
+	 * @param in the stream positioned after the chunk type
+	 * @param length the length of the chunk data
+	 * @return the chunk data followed by the CRC
+	 * @throws IOException in case the chunk cannot be read
+	 */
+	private static byte[] readChunkData(DataInputStream in, int length) throws IOException {
+		final byte[] data = new byte[length + 4];
+		in.readFully(data);
+		return data;
+	}
+
+	private static byte[] getExifPayload(byte[] data, int length) {
+		// Some writers include the JPEG identifier, which is not part of the PNG chunk.
+		final int offset = startsWith(data, JpegSegmentScanner.EXIF_IDENTIFIER)
+				? JpegSegmentScanner.EXIF_IDENTIFIER.length : 0;
+		return Arrays.copyOfRange(data, offset, length);
+	}
+
+	/**
+	 * Extract the text of an international text chunk.
+	 * @param data the chunk data (keyword, compression flag and method, language tag,
+	 * translated keyword, text)
+	 * @param length the length of the chunk data without the CRC
+	 * @return the text
+	 * @throws IOException in case compressed text cannot be inflated
+	 */
+	private static String getXmpXml(byte[] data, int length) throws IOException {
+		final int compressionFlagOffset = XMP_KEYWORD.length;
+		int textOffset = compressionFlagOffset + 2;
+		for (int i = 0; i < 2; i++) {
+			while (textOffset < length && data[textOffset] != 0) {
+				textOffset++;
+			}
+			textOffset++;
+		}
+		if (textOffset > length) {
+			throw new ImageProcessingException("Invalid PNG iTXt chunk.");
+		}
+
+		final InputStream text = new ByteArrayInputStream(data, textOffset, length - textOffset);
+		final byte[] xmp = (data[compressionFlagOffset] != 0) ? new InflaterInputStream(text).readAllBytes()
+				: text.readAllBytes();
+		return new String(xmp, StandardCharsets.UTF_8);
+	}
+
+	private static byte[] createExifPayload(byte[] exifPayload, MetadataPatch patch) throws IOException {
+		TiffOutputSet outputSet = (exifPayload != null) ? MetadataPatchSupport.getOutputSet(exifPayload) : null;
+		if (outputSet == null) {
+			outputSet = new TiffOutputSet();
+			exifPayload = null;
+		}
+		MetadataPatchSupport.applyExifFields(outputSet, patch);
+		return MetadataPatchSupport.writeExif(outputSet, exifPayload);
+	}
+
+	private static byte[] createXmpData(String xmpXml, MetadataPatch patch) {
+		final byte[] xmp = MetadataPatchSupport.writeXmp(xmpXml, patch);
+		// Uncompressed, without language tag and translated keyword
+		return ByteBuffer.allocate(XMP_KEYWORD.length + 4 + xmp.length)
+			.put(XMP_KEYWORD)
+			.put(new byte[4])
+			.put(xmp)
+			.array();
+	}
+
+	private static void writeChunk(OutputStream out, String type, byte[] data) throws IOException {
+		final byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+		final CRC32 crc = new CRC32();
+		crc.update(typeBytes);
+		crc.update(data);
+		out.write(ByteBuffer.allocate(8).putInt(data.length).put(typeBytes).array());
+		out.write(data);
+		out.write(ByteBuffer.allocate(4).putInt((int) crc.getValue()).array());
+	}
+
+	private static boolean startsWith(byte[] data, byte[] prefix) {
+		return data.length >= prefix.length && Arrays.equals(data, 0, prefix.length, prefix, 0, prefix.length);
+	}
+
+}
@@ -0,0 +1,706 @@
+/*
+ * Copyright (c) 2025 Gunnar Hillert.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hillert.image.metadata.service.support;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+import com.hillert.image.metadata.config.MetadataConfigProperties;
+import com.hillert.image.metadata.config.StorageConfigProperties;
+import com.hillert.image.metadata.model.Rendition;
+import com.hillert.image.metadata.service.support.FormatProbe.ImageFormat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.stereotype.Component;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.util.StringUtils;
+
+/**
+ * Two-tier cache of image renditions, i.e. the resized, optionally labeled and re-encoded
+ * images returned by the images endpoint. The first tier keeps requested renditions in
+ * memory up to a configurable amount of bytes. They are added when they are written and
+ * when they are read from disk. The second tier stores renditions on disk up to a
+ * configurable size, so that they survive both memory eviction and restarts. Renditions
+ * that are pre-rendered via {@link #put} only go to disk, if the disk tier is enabled.
+ * Both tiers evict the least-recently used renditions first. Cached renditions are never
+ * replaced, so that an ETag keeps referring to the same bytes.
+ *
+ * Renditions are keyed by the SHA-256 hash of the source image content, the target
+ * width, whether a label was added, the resize quality and the output MIME type. As the
+ * label is the filename of the image, the path of the source image is part of the key as
+ * well. The content hash of an image is only calculated once per
+ * {@link ImageFingerprint}. Renditions of stored or deleted images must be removed via {@link #invalidate(Path)}.
+ *
+ * @author Gunnar Hillert
+ */
+@Component
+public class RenditionCache {
+
+	/**
+	 * The folder inside the storage location used if no disk location is configured.
+	 */
+	public static final String DEFAULT_DISK_LOCATION = ".rendition-cache";
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(RenditionCache.class);
+
+	private static final String TEMP_FILE_EXTENSION = ".tmp";
+
+	/**
+	 * Rough weight in bytes of a cached {@link SourceImage}.
+	 */
+	private static final long SOURCE_IMAGE_WEIGHT = 512;
+
+	/**
+	 * Maximum weight of the cached {@link SourceImage}s, i.e. about 8000 images.
+	 */
+	private static final long SOURCE_IMAGES_MAX_WEIGHT = 4L * 1024 * 1024;
+
+	/**
+	 * Number of hex characters of the path hash used as directory name on disk.
+	 */
+	private static final int SOURCE_DIRECTORY_NAME_LENGTH = 32;
+
+	private final BoundedCache<ImageFingerprint, SourceImage> sourceImages = new BoundedCache<>(
+			SOURCE_IMAGES_MAX_WEIGHT, (sourceImage) -> SOURCE_IMAGE_WEIGHT);
+
+	private final BoundedCache<RenditionKey, byte[]> memoryCache;
+
+	private final long memoryMaxSize;
+
+	private final FormatProbe formatProbe;
+
+	private final Path diskLocation;
+
+	private final long diskMaxSize;
+
+	/**
+	 * The sizes of the renditions stored on disk in access order. Guarded by itself.
+	 */
+	private final LinkedHashMap<Path, Long> diskEntries = new LinkedHashMap<>(16, 0.75f, true);
+
+	/**
+	 * The total size of the renditions stored on disk. Guarded by {@link #diskEntries}.
+	 */
+	private long diskSize;
+
+	public RenditionCache(MetadataConfigProperties metadataConfigProperties,
+			StorageConfigProperties storageConfigProperties, FormatProbe formatProbe) {
+		this.formatProbe = formatProbe;
+		final MetadataConfigProperties.Renditions renditions = metadataConfigProperties.getRenditions();
+		this.memoryCache = renditions.isEnabled()
+				? new BoundedCache<>(renditions.getMemoryMaxSize().toBytes(), (bytes) -> bytes.length) : null;
+		this.memoryMaxSize = renditions.getMemoryMaxSize().toBytes();
+		final Path configuredDiskLocation = StringUtils.hasText(renditions.getDiskLocation())
+				? Paths.get(renditions.getDiskLocation())
+				: Paths.get(storageConfigProperties.getLocation()).resolve(DEFAULT_DISK_LOCATION);
+		this.diskLocation = (renditions.isEnabled() && renditions.isDiskEnabled())
+				? configuredDiskLocation.toAbsolutePath().normalize() : null;
+		this.diskMaxSize = renditions.getDiskMaxSize().toBytes();
+		if (this.diskLocation != null) {
+			initDiskTier();
+		}
+	}
+
+	/**
+	 * Describe the provided source image. The result is cached until the image file
+	 * changes. Otherwise, e.g. for the first request of an image after a restart, the
+	 * whole image file is read to calculate its content hash.
+	 * @param path the path of the image file, must not be null
+	 * @return the description of the source image
+	 */
+	public SourceImage describe(Path path) {
+		final ImageFingerprint fingerprint = ImageFingerprint.of(path);
+		final SourceImage cachedSourceImage = this.sourceImages.get(fingerprint);
+		if (cachedSourceImage != null) {
+			return cachedSourceImage;
+		}
+		final ImageFormat imageFormat = this.formatProbe.probe(fingerprint.path());
+		final SourceImage sourceImage = new SourceImage(fingerprint.path(), calculateContentHash(fingerprint.path()),
+				imageFormat.mimeType(), imageFormat.width(), fingerprint.lastModified());
+		this.sourceImages.put(fingerprint, sourceImage);
+		return sourceImage;
+	}
+
+	/**
+	 * Add a pre-rendered rendition of the provided source image, unless the rendition is
+	 * already cached. If the disk tier is enabled, the rendition is only stored on disk,
+	 * so that pre-rendered renditions do not evict renditions that were actually
+	 * requested from memory.
+	 * @param sourceImage the source image, see {@link #describe(Path)}
+	 * @param width the width of the rendition
+	 * @param label whether the rendition is labeled with the filename of the image
+	 * @param resizeQuality how the rendition is downscaled
+	 * @param rendition the encoded rendition using the MIME type of the source image
+	 */
+	public void put(SourceImage sourceImage, Integer width, boolean label, ResizeQuality resizeQuality,
+			byte[] rendition) {
+		if (this.memoryCache == null) {
+			return;
+		}
+		final RenditionKey key = new RenditionKey(sourceImage.path(), sourceImage.contentHash(), width, label,
+				resizeQuality, sourceImage.mimeType());
+		if (this.diskLocation != null) {
+			synchronized (this.diskEntries) {
+				if (this.diskEntries.containsKey(getDiskFile(key))) {
+					// Keep handing out the same bytes for the same rendition.
+					return;
+				}
+			}
+			writeToDisk(key, rendition);
+		}
+		else {
+			this.memoryCache.putIfAbsent(key, rendition);
+		}
+	}
+
+	/**
+	 * Return the cached rendition of the provided source image. Renditions found on disk
+	 * are added to the memory tier if they fit into it. Otherwise, they are returned as
+	 * file, so that they can be sent without reading them onto the heap.
+	 * @param sourceImage the source image, see {@link #describe(Path)}
+	 * @param width the target width or null if the image keeps its width
+	 * @param label whether the rendition is labeled with the filename of the image
+	 * @param resizeQuality how the rendition is downscaled
+	 * @return the cached rendition or null
+	 */
+	public Rendition find(SourceImage sourceImage, Integer width, boolean label, ResizeQuality resizeQuality) {
+		if (this.memoryCache == null) {
+			return null;
+		}
+		final RenditionKey key = new RenditionKey(sourceImage.path(), sourceImage.contentHash(), width, label,
+				resizeQuality, sourceImage.mimeType());
+
+		final byte[] cachedRendition = this.memoryCache.get(key);
+		if (cachedRendition != null) {
+			LOGGER.debug("Rendition memory cache hit for '{}'.", key);
+			return toRendition(key, cachedRendition);
+		}
+		final Path file = findOnDisk(key);
+		if (file == null) {
+			return null;
+		}
+		LOGGER.debug("Rendition disk cache hit for '{}'.", key);
+		return readFromDisk(key, file);
+	}
+
+	/**
+	 * Write a rendition of the provided source image to the provided stream while adding
+	 * it to the cache. The rendition is copied into memory as it is written, unless it
+	 * exceeds the size of the memory tier, and to a cache file if the disk tier is
+	 * enabled. Failing to cache the rendition does not affect the provided stream.
+	 * @param sourceImage the source image, see {@link #describe(Path)}
+	 * @param width the target width or null if the image keeps its width
+	 * @param label whether the rendition is labeled with the filename of the image
+	 * @param resizeQuality how the rendition is downscaled
+	 * @param encoder encodes the rendition using the MIME type of the source image
+	 * @param outputStream the stream to write to, e.g. the HTTP response
+	 * @throws IOException in case the provided stream cannot be written
+	 */
+	public void write(SourceImage sourceImage, Integer width, boolean label, ResizeQuality resizeQuality,
+			Rendition.ContentWriter encoder, OutputStream outputStream) throws IOException {
+		if (this.memoryCache == null) {
+			encoder.writeTo(outputStream);
+			return;
+		}
+		final RenditionKey key = new RenditionKey(sourceImage.path(), sourceImage.contentHash(), width, label,
+				resizeQuality, sourceImage.mimeType());
+		final MemoryCopyOutputStream memoryCopy = new MemoryCopyOutputStream(this.memoryMaxSize);
+
+		if (this.diskLocation == null) {
+			encoder.writeTo(new CopyingOutputStream(outputStream, memoryCopy));
+			if (!memoryCopy.isTruncated()) {
+				this.memoryCache.putIfAbsent(key, memoryCopy.toByteArray());
+			}
+			return;
+		}
+
+		final Path file = getDiskFile(key);
+		final Path tempFile;
+		try {
+			tempFile = createTempFile(file);
+		}
+		catch (IOException ex) {
+			LOGGER.warn("Unable to cache rendition {}.", file, ex);
+			encoder.writeTo(outputStream);
+			return;
+		}
+		try {
+			final CopyingOutputStream copyingOutputStream;
+			try (OutputStream fileCopy = new BufferedOutputStream(Files.newOutputStream(tempFile))) {
+				// A failing cache file stops the memory copy as well.
+				copyingOutputStream = new CopyingOutputStream(outputStream,
+						new CopyingOutputStream(fileCopy, memoryCopy));
+				encoder.writeTo(copyingOutputStream);
+			}
+			if (copyingOutputStream.copyFailure != null) {
+				LOGGER.warn("Unable to cache rendition {}.", file, copyingOutputStream.copyFailure);
+			}
+			else if (!moveToDisk(tempFile, file)) {
+				LOGGER.debug("Rendition {} was cached concurrently.", file);
+			}
+			else if (!memoryCopy.isTruncated()) {
+				// Only the writer whose copy ended up on disk fills the memory tier, so
+				// that both tiers hold the same bytes.
+				this.memoryCache.putIfAbsent(key, memoryCopy.toByteArray());
+			}
+		}
+		finally {
+			deleteFiles(List.of(tempFile));
+		}
+	}
+
+	public boolean isEnabled() {
+		return this.memoryCache != null;
+	}
+
+	/**
+	 * Remove all cached renditions of the provided image file from memory and disk.
+	 * @param path the path of the image file
+	 */
+	public void invalidate(Path path) {
+		final Path normalizedPath = path.toAbsolutePath().normalize();
+		this.sourceImages.invalidateIf((fingerprint) -> fingerprint.isFor(normalizedPath));
+		if (this.memoryCache != null) {
+			this.memoryCache.invalidateIf((key) -> key.path().equals(normalizedPath));
+		}
+		if (this.diskLocation != null) {
+			final Path sourceDirectory = getSourceDirectory(normalizedPath);
+			synchronized (this.diskEntries) {
+				removeDiskEntries((file) -> file.getParent().equals(sourceDirectory));
+			}
+			deleteRecursively(sourceDirectory);
+		}
+	}
+
+	public void invalidateAll() {
+		this.sourceImages.invalidateAll();
+		if (this.memoryCache != null) {
+			this.memoryCache.invalidateAll();
+		}
+		if (this.diskLocation != null) {
+			synchronized (this.diskEntries) {
+				removeDiskEntries((file) -> true);
+			}
+			try (Stream<Path> sourceDirectories = Files.list(this.diskLocation)) {
+				sourceDirectories.forEach(this::deleteRecursively);
+			}
+			catch (IOException ex) {
+				LOGGER.warn("Unable to clear the rendition cache directory {}.", this.diskLocation, ex);
+			}
+		}
+	}
+
+	/**
+	 * Return the statistics of the in-memory tier.
+	 * @return the cache statistics or null if caching is disabled
+	 */
+	public BoundedCache.Stats getStats() {
+		return (this.memoryCache != null) ? this.memoryCache.getStats() : null;
+	}
+
+	/**
+	 * Return the total size of the renditions stored on disk.
+	 * @return the size in bytes
+	 */
+	public long getDiskSize() {
+		synchronized (this.diskEntries) {
+			return this.diskSize;
+		}
+	}
+
+	private void initDiskTier() {
+		final List<Path> files = new ArrayList<>();
+		try {
+			Files.createDirectories(this.diskLocation);
+			try (Stream<Path> paths = Files.walk(this.diskLocation, 2)) {
+				paths.filter(Files::isRegularFile).forEach(files::add);
+			}
+		}
+		catch (IOException ex) {
+			throw new StorageException("Could not initialize the rendition cache in " + this.diskLocation, ex);
+		}
+
+		final Map<Path, BasicFileAttributes> attributes = new LinkedHashMap<>();
+		for (Path file : files) {
+			try {
+				if (file.getFileName().toString().endsWith(TEMP_FILE_EXTENSION)) {
+					Files.delete(file);
+				}
+				else {
+					attributes.put(file, Files.readAttributes(file, BasicFileAttributes.class));
+				}
+			}
+			catch (IOException ex) {
+				LOGGER.warn("Unable to read cached rendition {}.", file, ex);
+			}
+		}
+
+		synchronized (this.diskEntries) {
+			attributes.entrySet()
+				.stream()
+				.sorted(Comparator.comparing((entry) -> entry.getValue().lastModifiedTime()))
+				.forEach((entry) -> addDiskEntry(entry.getKey(), entry.getValue().size()));
+		}
+		deleteFiles(evictFromDisk());
+		LOGGER.info("Found {} cached renditions using {} in {}.", attributes.size(),
+				CommonUtils.humanReadableByteCountSI(getDiskSize()), this.diskLocation);
+	}
+
+	/**
+	 * Read a rendition cached on disk into the memory tier, if it fits into it.
+	 * @param key the rendition key
+	 * @param file the cache file, see {@link #findOnDisk(RenditionKey)}
+	 * @return the rendition or null if the cache file was deleted concurrently
+	 */
+	private Rendition readFromDisk(RenditionKey key, Path file) {
+		final Long size;
+		synchronized (this.diskEntries) {
+			size = this.diskEntries.get(file);
+		}
+		if (size == null) {
+			return null;
+		}
+		if (size > this.memoryMaxSize) {
+			return new Rendition(key.mimeType(), file, null);
+		}
+		try {
+			return toRendition(key, this.memoryCache.putIfAbsent(key, Files.readAllBytes(file)));
+		}
+		catch (NoSuchFileException ex) {
+			synchronized (this.diskEntries) {
+				removeDiskEntries(file::equals);
+			}
+			return null;
+		}
+		catch (IOException ex) {
+			LOGGER.warn("Unable to read cached rendition {}.", file, ex);
+			return new Rendition(key.mimeType(), file, null);
+		}
+	}
+
+	private static Rendition toRendition(RenditionKey key, byte[] rendition) {
+		return new Rendition(key.mimeType(), null, (outputStream) -> outputStream.write(rendition));
+	}
+
+	/**
+	 * Return the cache file of the provided rendition and mark it as recently used.
+	 * @param key the rendition key
+	 * @return the cache file or null if the rendition is not cached on disk
+	 */
+	private Path findOnDisk(RenditionKey key) {
+		if (this.diskLocation == null) {
+			return null;
+		}
+		final Path file = getDiskFile(key);
+		synchronized (this.diskEntries) {
+			if (this.diskEntries.get(file) == null) {
+				return null;
+			}
+		}
+		try {
+			// Keeps the eviction order across restarts.
+			Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+			return file;
+		}
+		catch (NoSuchFileException ex) {
+			synchronized (this.diskEntries) {
+				removeDiskEntries(file::equals);
+			}
+			return null;
+		}
+		catch (IOException ex) {
+			LOGGER.warn("Unable to read cached rendition {}.", file, ex);
+			return null;
+		}
+	}
+
+	private void writeToDisk(RenditionKey key, byte[] rendition) {
+		if (this.diskLocation == null || rendition.length > this.diskMaxSize) {
+			return;
+		}
+		final Path file = getDiskFile(key);
+		try {
+			final Path tempFile = createTempFile(file);
+			try {
+				Files.write(tempFile, rendition);
+				moveToDisk(tempFile, file);
+			}
+			finally {
+				Files.deleteIfExists(tempFile);
+			}
+		}
+		catch (IOException ex) {
+			// The image was probably stored or deleted concurrently.
+			LOGGER.warn("Unable to cache rendition {}.", file, ex);
+		}
+	}
+
+	private Path createTempFile(Path file) throws IOException {
+		Files.createDirectories(file.getParent());
+		return Files.createTempFile(file.getParent(), ".rendition-", TEMP_FILE_EXTENSION);
+	}
+
+	/**
+	 * Move a completely written rendition to its cache file and evict renditions if the
+	 * disk size limit is exceeded. An existing cache file is never replaced, so that the
+	 * bytes served for an ETag do not change. The temporary file is left to the caller.
+	 * @param tempFile the temporary file containing the rendition
+	 * @param file the cache file
+	 * @return whether the rendition was moved to its cache file
+	 * @throws IOException in case the file cannot be moved
+	 */
+	private boolean moveToDisk(Path tempFile, Path file) throws IOException {
+		final long size = Files.size(tempFile);
+		if (size > this.diskMaxSize) {
+			return false;
+		}
+		final List<Path> evictedFiles;
+		synchronized (this.diskEntries) {
+			if (this.diskEntries.containsKey(file)) {
+				return false;
+			}
+			try {
+				// No ATOMIC_MOVE, as it replaces existing files on POSIX file systems. Moving
+				// within the same directory is a rename nonetheless.
+				Files.move(tempFile, file);
+			}
+			catch (FileAlreadyExistsException ex) {
+				return false;
+			}
+			addDiskEntry(file, size);
+			evictedFiles = evictFromDisk();
+		}
+		deleteFiles(evictedFiles);
+		return true;
+	}
+
+	private void addDiskEntry(Path file, long size) {
+		final Long previousSize = this.diskEntries.put(file, size);
+		this.diskSize += size - ((previousSize != null) ? previousSize : 0);
+	}
+
+	private void removeDiskEntries(Predicate<Path> predicate) {
+		for (Iterator<Map.Entry<Path, Long>> it = this.diskEntries.entrySet().iterator(); it.hasNext();) {
+			final Map.Entry<Path, Long> entry = it.next();
+			if (predicate.test(entry.getKey())) {
+				this.diskSize -= entry.getValue();
+				it.remove();
+			}
+		}
+	}
+
+	/**
+	 * Remove the least-recently used renditions from the disk index until the disk size
+	 * limit is met. Must be called while holding the lock on {@link #diskEntries}.
+	 * @return the files to delete
+	 */
+	private List<Path> evictFromDisk() {
+		final List<Path> evictedFiles = new ArrayList<>();
+		final Iterator<Map.Entry<Path, Long>> it = this.diskEntries.entrySet().iterator();
+		while (this.diskSize > this.diskMaxSize && it.hasNext()) {
+			final Map.Entry<Path, Long> entry = it.next();
+			this.diskSize -= entry.getValue();
+			evictedFiles.add(entry.getKey());
+			it.remove();
+		}
+		return evictedFiles;
+	}
+
+	private void deleteFiles(List<Path> files) {
+		for (Path file : files) {
+			try {
+				Files.deleteIfExists(file);
+			}
+			catch (IOException ex) {
+				LOGGER.warn("Unable to delete cached rendition {}.", file, ex);
+			}
+		}
+	}
+
+	private void deleteRecursively(Path path) {
+		try {
+			FileSystemUtils.deleteRecursively(path);
+		}
+		catch (IOException ex) {
+			LOGGER.warn("Unable to delete cached renditions in {}.", path, ex);
+		}
+	}
+
+	private Path getSourceDirectory(Path sourcePath) {
+		final String pathHash = HexFormat.of()
+			.formatHex(createMessageDigest().digest(sourcePath.toString().getBytes(StandardCharsets.UTF_8)));
+		return this.diskLocation.resolve(pathHash.substring(0, SOURCE_DIRECTORY_NAME_LENGTH));
+	}
+
+	private Path getDiskFile(RenditionKey key) {
+		final String mimeSubtype = key.mimeType().substring(key.mimeType().indexOf('/') + 1);
+		final String filename = key.contentHash() + "-" + ((key.width() != null) ? key.width() : "original") + "-"
+				+ (key.label() ? "labeled" : "plain") + "-" + key.resizeQuality().name().toLowerCase(Locale.ROOT) + "."
+				+ mimeSubtype.replaceAll("[^A-Za-z0-9]", "_");
+		return getSourceDirectory(key.path()).resolve(filename);
+	}
+
+	private static String calculateContentHash(Path path) {
+		final MessageDigest messageDigest = createMessageDigest();
+		try (InputStream inputStream = new DigestInputStream(Files.newInputStream(path), messageDigest)) {
+			inputStream.transferTo(OutputStream.nullOutputStream());
+		}
+		catch (IOException ex) {
+			throw new StorageException("Unable to read " + path, ex);
+		}
+		return HexFormat.of().formatHex(messageDigest.digest());
+	}
+
+	private static MessageDigest createMessageDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		}
+		catch (NoSuchAlgorithmException ex) {
+			throw new IllegalStateException("SHA-256 is not supported.", ex);
+		}
+	}
+
+	/**
+	 * Describes a source image of renditions.
+	 *
+	 * @param path the normalized, absolute path of the image file
+	 * @param contentHash the hex-encoded SHA-256 hash of the image file
+	 * @param mimeType the MIME type of the image
+	 * @param width the width of the image in pixels
+	 * @param lastModified the last modification time of the image file in milliseconds
+	 * since the epoch
+	 */
+	public record SourceImage(Path path, String contentHash, String mimeType, int width, long lastModified) {
+	}
+
+	/**
+	 * Copies everything written to the target stream to a second stream. Failures of the
+	 * second stream are recorded and stop the copying, but are not propagated.
+	 */
+	private static final class CopyingOutputStream extends FilterOutputStream {
+
+		private final OutputStream copy;
+
+		private IOException copyFailure;
+
+		CopyingOutputStream(OutputStream target, OutputStream copy) {
+			super(target);
+			this.copy = copy;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			this.out.write(b);
+			if (this.copyFailure == null) {
+				try {
+					this.copy.write(b);
+				}
+				catch (IOException ex) {
+					this.copyFailure = ex;
+				}
+			}
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			this.out.write(b, off, len);
+			if (this.copyFailure == null) {
+				try {
+					this.copy.write(b, off, len);
+				}
+				catch (IOException ex) {
+					this.copyFailure = ex;
+				}
+			}
+		}
+
+		@Override
+		public void close() {
+			// Neither stream is owned by this stream.
+		}
+
+	}
+
+	/**
+	 * Copies a rendition into memory up to a maximum size. Larger renditions are
+	 * discarded, so that they are not kept on the heap while they are written.
+	 */
+	private static final class MemoryCopyOutputStream extends ByteArrayOutputStream {
+
+		private final long maxSize;
+
+		private boolean truncated;
+
+		MemoryCopyOutputStream(long maxSize) {
+			this.maxSize = maxSize;
+		}
+
+		@Override
+		public synchronized void write(int b) {
+			write(new byte[] { (byte) b }, 0, 1);
+		}
+
+		@Override
+		public synchronized void write(byte[] b, int off, int len) {
+			if (this.truncated) {
+				return;
+			}
+			if (this.count + (long) len > this.maxSize) {
+				this.truncated = true;
+				this.buf = new byte[0];
+				this.count = 0;
+				return;
+			}
+			super.write(b, off, len);
+		}
+
+		boolean isTruncated() {
+			return this.truncated;
+		}
+
+	}
+
+	private record RenditionKey(Path path, String contentHash, Integer width, boolean label,
+			ResizeQuality resizeQuality, String mimeType) {
+	}
+
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright (c) 2025 Gunnar Hillert.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hillert.image.metadata.service.support;
+
+/**
+ * Determines how images are downscaled, trading quality for speed. Large reductions are
+ * split into successive halving steps, which average 2x2 pixel blocks, before the final
+ * resampling step.
+ *
+ * @author Gunnar Hillert
+ * @see ImageIoTools#resizeImage(java.awt.image.BufferedImage, Integer, ResizeQuality)
+ */
+public enum ResizeQuality {
+
+	/**
+	 * Halve the image until it is less than twice as wide as the target width and
+	 * resample the rest using a Lanczos filter.
+	 */
+	FAST,
+
+	/**
+	 * Halve the image until it is less than four times as wide as the target width and
+	 * resample the rest using a Lanczos filter.
+	 */
+	BALANCED,
+
+	/**
+	 * Resample the image in a single step using a Lanczos filter.
+	 */
+	BEST
+
+}
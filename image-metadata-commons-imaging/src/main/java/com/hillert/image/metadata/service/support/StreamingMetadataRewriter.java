@@ -0,0 +1,245 @@
+/*
+ * Copyright (c) 2025 Gunnar Hillert.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hillert.image.metadata.service.support;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+import java.util.Set;
+
+import com.hillert.image.metadata.model.DirectoryType;
+import com.hillert.image.metadata.model.MetadataPatch;
+import com.hillert.image.metadata.service.support.JpegSegmentScanner.JpegHeader;
+
+import org.springframework.util.Assert;
+
+/**
+ * Purges and updates image metadata while streaming the image from a source to a target
+ * channel, without ever holding the complete image in memory.
+ *
+ * For JPEG images, only the header (all segments up to and including the start-of-scan
+ * segment) is read into a small buffer, purged and patched. The entropy-coded image data
+ * is then copied channel-to-channel, which for file channels allows the operating system
+ * to transfer the data without copying it through the Java heap. PNG images are purged
+ * and patched on chunk level, see {@link PngMetadataRewriter}. TIFF images are patched
+ * in memory, see {@link TiffMetadataRewriter}, and GIF images can only be purged, see
+ * {@link MetadataPurger}.
+ *
+ * @author Gunnar Hillert
+ */
+public final class StreamingMetadataRewriter {
+
+	private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+	private StreamingMetadataRewriter() {
+		throw new AssertionError("This is a static utility class.");
+	}
+
+	/**
+	 * Copy the image from the source to the target channel, removing and updating
+	 * metadata on the way. Neither channel is closed.
+	 * @param source the image data, must not be null
+	 * @param target the channel to write the modified image to, must not be null
+	 * @param directoryTypesToPurge the metadata types to remove, must not be null
+	 * @param patch the metadata changes to apply after purging, must not be null
+	 * @throws IOException in case the image cannot be read or written
+	 */
+	public static void rewrite(ReadableByteChannel source, WritableByteChannel target,
+			Set<DirectoryType> directoryTypesToPurge, MetadataPatch patch) throws IOException {
+		Assert.notNull(source, "source must not be null.");
+		Assert.notNull(target, "target must not be null.");
+		Assert.notNull(directoryTypesToPurge, "directoryTypesToPurge must not be null.");
+		Assert.notNull(patch, "patch must not be null.");
+
+		// Read the first two bytes to detect JPEG images, whose header is read from the
+		// channel directly, and two more bytes for all other formats.
+		final ByteBuffer signature = ByteBuffer.allocate(TiffMetadataRewriter.HEADER_LENGTH).limit(2);
+		while (signature.hasRemaining() && source.read(signature) != -1) {
+			// Read the start-of-image marker of JPEG images
+		}
+		final boolean jpeg = JpegSegmentScanner.isJpeg(Arrays.copyOf(signature.array(), signature.position()));
+		if (!jpeg) {
+			signature.limit(signature.capacity());
+			while (signature.hasRemaining() && source.read(signature) != -1) {
+				// Read the remaining bytes of the TIFF header
+			}
+		}
+		final byte[] signatureBytes = Arrays.copyOf(signature.array(), signature.position());
+
+		if (jpeg) {
+			byte[] headerBytes = readJpegHeader(source);
+			if (!directoryTypesToPurge.isEmpty()) {
+				headerBytes = MetadataPurger.purge(headerBytes, directoryTypesToPurge);
+			}
+			if (!patch.isEmpty() || patch.getExifPadding() > 0) {
+				final JpegHeader header = JpegSegmentScanner.scan(headerBytes);
+				final ByteArrayOutputStream patchedHeader = new ByteArrayOutputStream(headerBytes.length + 1024);
+				JpegMetadataRewriter.writeHeader(header, patch, patchedHeader);
+				headerBytes = patchedHeader.toByteArray();
+			}
+			writeFully(target, ByteBuffer.wrap(headerBytes));
+			transfer(source, target);
+			return;
+		}
+
+		if (patch.isEmpty() && directoryTypesToPurge.isEmpty()) {
+			writeFully(target, ByteBuffer.wrap(signatureBytes));
+			transfer(source, target);
+			return;
+		}
+
+		final SequenceInputStream in = new SequenceInputStream(new ByteArrayInputStream(signatureBytes),
+				Channels.newInputStream(source));
+		final OutputStream out = new BufferedOutputStream(Channels.newOutputStream(target), COPY_BUFFER_SIZE);
+
+		if (!patch.isEmpty()) {
+			if (isPng(signatureBytes)) {
+				PngMetadataRewriter.rewrite(in, out, directoryTypesToPurge, patch);
+			}
+			else if (TiffMetadataRewriter.isTiff(signatureBytes)) {
+				if (!directoryTypesToPurge.isEmpty()) {
+					throw new ImageProcessingException(
+							"Metadata can only be updated, but not removed, for TIFF images.");
+				}
+				// The lossless TIFF writer needs random access to the original image
+				out.write(TiffMetadataRewriter.rewrite(in.readAllBytes(), patch));
+			}
+			else {
+				throw new ImageProcessingException("Metadata can only be updated for JPEG, PNG and TIFF images.");
+			}
+		}
+		else {
+			MetadataPurger.purge(in, out, directoryTypesToPurge);
+		}
+		out.flush();
+	}
+
+	private static boolean isPng(byte[] signature) {
+		return signature.length >= 2 && signature[0] == MetadataPurger.PNG_SIGNATURE[0]
+				&& signature[1] == MetadataPurger.PNG_SIGNATURE[1];
+	}
+
+	/**
+	 * Read the JPEG header from the source channel, expecting the start-of-image marker
+	 * to be consumed already. Reads segment by segment, so that the channel is
+	 * positioned exactly at the start of the entropy-coded image data afterwards.
+	 * @param source the channel to read from
+	 * @return the header, starting with the start-of-image marker and ending with the
+	 * start-of-scan segment
+	 * @throws IOException in case the header cannot be read
+	 */
+	private static byte[] readJpegHeader(ReadableByteChannel source) throws IOException {
+		final ByteArrayOutputStream header = new ByteArrayOutputStream(8 * 1024);
+		header.write(0xFF);
+		header.write(JpegSegmentScanner.MARKER_SOI);
+
+		final ByteBuffer buffer = ByteBuffer.allocate(2);
+		while (true) {
+			readFully(source, buffer.clear());
+			if ((buffer.get(0) & 0xFF) != 0xFF) {
+				throw new ImageProcessingException("Invalid JPEG marker.");
+			}
+			int marker = buffer.get(1) & 0xFF;
+			while (marker == 0xFF) {
+				// Skip fill bytes
+				readFully(source, buffer.clear().limit(1));
+				marker = buffer.get(0) & 0xFF;
+			}
+			if (marker == JpegSegmentScanner.MARKER_EOI) {
+				throw new ImageProcessingException("The JPEG image does not contain any image data.");
+			}
+
+			header.write(0xFF);
+			header.write(marker);
+			if (marker == 0x01 || (marker >= 0xD0 && marker <= 0xD7)) {
+				continue;
+			}
+
+			readFully(source, buffer.clear());
+			final int length = ((buffer.get(0) & 0xFF) << 8) | (buffer.get(1) & 0xFF);
+			if (length < 2) {
+				throw new ImageProcessingException("Invalid JPEG segment length.");
+			}
+			final ByteBuffer segment = ByteBuffer.allocate(length);
+			segment.put(buffer.flip());
+			readFully(source, segment);
+			header.write(segment.array(), 0, length);
+
+			if (marker == JpegSegmentScanner.MARKER_SOS) {
+				return header.toByteArray();
+			}
+		}
+	}
+
+	/**
+	 * Copy the remainder of the source channel to the target channel. Uses
+	 * {@link FileChannel#transferTo} or {@link FileChannel#transferFrom} if either side
+	 * is a file channel.
+	 * @param source the channel to read from
+	 * @param target the channel to write to
+	 * @throws IOException in case the data cannot be copied
+	 */
+	private static void transfer(ReadableByteChannel source, WritableByteChannel target) throws IOException {
+		if (source instanceof FileChannel fileChannel) {
+			long position = fileChannel.position();
+			final long size = fileChannel.size();
+			while (position < size) {
+				position += fileChannel.transferTo(position, size - position, target);
+			}
+			fileChannel.position(position);
+		}
+		else if (target instanceof FileChannel fileChannel) {
+			long position = fileChannel.position();
+			long transferred;
+			while ((transferred = fileChannel.transferFrom(source, position, COPY_BUFFER_SIZE)) > 0) {
+				position += transferred;
+			}
+			fileChannel.position(position);
+		}
+		else {
+			final ByteBuffer buffer = ByteBuffer.allocateDirect(COPY_BUFFER_SIZE);
+			while (source.read(buffer) != -1) {
+				writeFully(target, buffer.flip());
+				buffer.clear();
+			}
+		}
+	}
+
+	private static void readFully(ReadableByteChannel source, ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			if (source.read(buffer) == -1) {
+				throw new EOFException("Unexpected end of image data.");
+			}
+		}
+	}
+
+	private static void writeFully(WritableByteChannel target, ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			target.write(buffer);
+		}
+	}
+
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2025 Gunnar Hillert.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hillert.image.metadata.service.support;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import com.hillert.image.metadata.model.MetadataPatch;
+import org.apache.commons.imaging.formats.tiff.constants.TiffTagConstants;
+import org.apache.commons.imaging.formats.tiff.write.TiffOutputDirectory;
+import org.apache.commons.imaging.formats.tiff.write.TiffOutputField;
+import org.apache.commons.imaging.formats.tiff.write.TiffOutputSet;
+
+import org.springframework.util.Assert;
+
+/**
+ * Applies a {@link MetadataPatch} to a TIFF image on IFD level, without decoding the
+ * image. EXIF fields are set in their directories and XMP properties in the XMP field
+ * (tag 700) of the first directory. The image is written using the lossless TIFF writer
+ * of Commons Imaging, which keeps the image strips and tiles at their original offsets
+ * and only relocates the changed directories and field values.
+ *
+ * IPTC records are ignored, the same information is usually available via XMP.
+ *
+ * @author Gunnar Hillert
+ */
+public final class TiffMetadataRewriter {
+
+	/**
+	 * The number of bytes needed to detect a TIFF image, see {@link #isTiff(byte[])}.
+	 */
+	public static final int HEADER_LENGTH = 4;
+
+	private static final byte MAGIC_NUMBER = 42;
+
+	private TiffMetadataRewriter() {
+		throw new AssertionError("This is a static utility class.");
+	}
+
+	/**
+	 * Check whether the provided data starts with a TIFF header, i.e. the byte order
+	 * followed by the magic number 42.
+	 * @param data the (beginning of the) image data, at least {@link #HEADER_LENGTH}
+	 * bytes
+	 * @return true if the data looks like a TIFF image
+	 */
+	public static boolean isTiff(byte[] data) {
+		if (data == null || data.length < HEADER_LENGTH) {
+			return false;
+		}
+		if (data[0] == 'I' && data[1] == 'I') {
+			return data[2] == MAGIC_NUMBER && data[3] == 0;
+		}
+		return data[0] == 'M' && data[1] == 'M' && data[2] == 0 && data[3] == MAGIC_NUMBER;
+	}
+
+	/**
+	 * Apply the provided patch to the TIFF image data.
+	 * @param imageBytes the TIFF image data, must not be null
+	 * @param patch the metadata changes, must not be null
+	 * @return the modified image data or the provided image data if the patch is empty
+	 */
+	public static byte[] rewrite(byte[] imageBytes, MetadataPatch patch) {
+		Assert.notNull(imageBytes, "imageBytes must not be null.");
+		Assert.notNull(patch, "patch must not be null.");
+
+		if (!isTiff(imageBytes)) {
+			throw new ImageProcessingException("Metadata can only be updated for TIFF images.");
+		}
+		if (patch.isEmpty()) {
+			return imageBytes;
+		}
+
+		try {
+			final TiffOutputSet outputSet = MetadataPatchSupport.getOutputSet(imageBytes);
+			if (outputSet == null) {
+				throw new ImageProcessingException("Unable to parse the TIFF image.");
+			}
+			MetadataPatchSupport.applyExifFields(outputSet, patch);
+
+			if (!patch.getXmpProperties().isEmpty()) {
+				final TiffOutputDirectory rootDirectory = outputSet.getOrCreateRootDirectory();
+				final TiffOutputField xmpField = rootDirectory.findField(TiffTagConstants.TIFF_TAG_XMP);
+				final String xmpXml = (xmpField != null)
+						? new String(xmpField.getData(), StandardCharsets.UTF_8) : null;
+				rootDirectory.removeField(TiffTagConstants.TIFF_TAG_XMP);
+				rootDirectory.add(TiffTagConstants.TIFF_TAG_XMP, MetadataPatchSupport.writeXmp(xmpXml, patch));
+			}
+
+			return MetadataPatchSupport.writeExif(outputSet, imageBytes);
+		}
+		catch (IOException ex) {
+			throw new ImageProcessingException("Unable to update the image metadata.", ex);
+		}
+	}
+
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2025 Gunnar Hillert.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hillert.image.metadata.service.support;
+
+import java.nio.charset.StandardCharsets;
+
+import com.hillert.image.metadata.config.MetadataConfigProperties;
+
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+import org.springframework.util.StringUtils;
+
+/**
+ * Pretty-prints raw XMP packets for display. As formatting requires parsing the packet
+ * into a DOM, the formatted XMP is memoized by the content hash of the raw packet, so
+ * that repeated views of the same image do not format the packet again.
+ *
+ * @author Gunnar Hillert
+ * @see CommonUtils#formatXml(String, Boolean)
+ */
+@Component
+public class XmpFormatter {
+
+	private final BoundedCache<String, String> cache;
+
+	public XmpFormatter(MetadataConfigProperties metadataConfigProperties) {
+		final MetadataConfigProperties.Cache cacheProperties = metadataConfigProperties.getCache();
+		this.cache = cacheProperties.isEnabled()
+				? new BoundedCache<>(cacheProperties.getXmpMaxSize().toBytes(), (xml) -> 2L * xml.length()) : null;
+	}
+
+	/**
+	 * Format the provided raw XMP packet.
+	 * @param xmpXml the raw XMP packet
+	 * @return the formatted XMP packet or null if the provided packet is empty
+	 */
+	public String format(String xmpXml) {
+		if (!StringUtils.hasText(xmpXml)) {
+			return null;
+		}
+		if (this.cache == null) {
+			return CommonUtils.formatXml(xmpXml, false);
+		}
+
+		final String contentHash = DigestUtils.md5DigestAsHex(xmpXml.getBytes(StandardCharsets.UTF_8));
+		String formattedXml = this.cache.get(contentHash);
+		if (formattedXml == null) {
+			formattedXml = CommonUtils.formatXml(xmpXml, false);
+			this.cache.put(contentHash, formattedXml);
+		}
+		return formattedXml;
+	}
+
+	/**
+	 * Return the statistics of the formatted XMP cache.
+	 * @return the cache statistics or null if caching is disabled
+	 */
+	BoundedCache.Stats getStats() {
+		return (this.cache != null) ? this.cache.getStats() : null;
+	}
+
+}
@@ -0,0 +1,249 @@
+/*
+ * Copyright (c) 2025 Gunnar Hillert.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hillert.image.metadata.service.support;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.XMLConstants;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import com.hillert.image.metadata.model.Directory;
+import com.hillert.image.metadata.model.DirectoryType;
+
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+
+/**
+ * Streaming XMP reader based on StAX. Walks the RDF descriptions of an XMP packet in a
+ * single pass and emits a {@link Directory} of type {@link DirectoryType#XMP} for each
+ * property, without building a DOM or an XMP object model.
+ *
+ * <ul>
+ * <li>Simple properties (expressed as attributes or elements) are emitted as is.
+ * <li>For language alternatives ({@code rdf:Alt}), the {@code x-default} value (or the
+ * first value) is emitted.
+ * <li>The items of ordered and unordered arrays ({@code rdf:Seq}, {@code rdf:Bag}) are
+ * emitted as comma-separated value.
+ * <li>The fields of nested structures are emitted individually, using the dot-separated
+ * path of the field as name, e.g. {@code Flash.Fired}.
+ * </ul>
+ *
+ * @author Gunnar Hillert
+ */
+public final class XmpReader {
+
+	/**
+	 * The RDF namespace.
+	 */
+	public static final String RDF_NAMESPACE = "http://www.w3.org/1999/02/22-rdf-syntax-ns#";
+
+	private static final XMLInputFactory XML_INPUT_FACTORY = createXmlInputFactory();
+
+	private XmpReader() {
+		throw new AssertionError("This is a static utility class.");
+	}
+
+	/**
+	 * Read the properties of the provided XMP packet.
+	 * @param xmpXml the XMP packet, must not be empty
+	 * @return the XMP properties in document order
+	 */
+	public static List<Directory> read(String xmpXml) {
+		Assert.hasText(xmpXml, "xmpXml must not be null or empty.");
+		final List<Directory> directories = new ArrayList<>();
+
+		XMLStreamReader reader = null;
+		try {
+			reader = XML_INPUT_FACTORY.createXMLStreamReader(new StringReader(xmpXml.trim()));
+			while (reader.hasNext()) {
+				if (reader.next() == XMLStreamConstants.START_ELEMENT && isRdf(reader, "Description")) {
+					readDescription(reader, "", directories);
+				}
+			}
+		}
+		catch (XMLStreamException ex) {
+			throw new ImageProcessingException("Unable to parse XMP XML data.", ex);
+		}
+		finally {
+			close(reader);
+		}
+		return directories;
+	}
+
+	/**
+	 * Read an {@code rdf:Description} (or a property with {@code rdf:parseType="Resource"}).
+	 * Expects the reader to be positioned on the start element and returns once the
+	 * matching end element has been consumed.
+	 * @param reader the reader positioned on the start element
+	 * @param prefix the name prefix of the emitted properties
+	 * @param directories the list to add the properties to
+	 * @throws XMLStreamException in case the XML is malformed
+	 */
+	private static void readDescription(XMLStreamReader reader, String prefix, List<Directory> directories)
+			throws XMLStreamException {
+		readAttributeProperties(reader, prefix, directories);
+		while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+			readProperty(reader, prefix, directories);
+		}
+	}
+
+	private static void readProperty(XMLStreamReader reader, String prefix, List<Directory> directories)
+			throws XMLStreamException {
+		final String name = prefix + reader.getLocalName();
+
+		final String resource = reader.getAttributeValue(RDF_NAMESPACE, "resource");
+		if ("Resource".equals(reader.getAttributeValue(RDF_NAMESPACE, "parseType"))) {
+			readDescription(reader, name + ".", directories);
+			return;
+		}
+
+		// Non-RDF attributes on a property element are fields of a structure.
+		readAttributeProperties(reader, name + ".", directories);
+
+		final StringBuilder text = new StringBuilder();
+		String value = null;
+
+		while (true) {
+			final int event = reader.next();
+			if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA) {
+				text.append(reader.getText());
+			}
+			else if (event == XMLStreamConstants.START_ELEMENT) {
+				if (isRdf(reader, "Bag") || isRdf(reader, "Seq") || isRdf(reader, "Alt")) {
+					value = readArray(reader, name, directories);
+				}
+				else if (isRdf(reader, "Description")) {
+					readDescription(reader, name + ".", directories);
+				}
+				else {
+					readProperty(reader, name + ".", directories);
+				}
+			}
+			else if (event == XMLStreamConstants.END_ELEMENT) {
+				break;
+			}
+		}
+
+		if (value == null) {
+			value = StringUtils.hasText(text) ? text.toString().trim() : resource;
+		}
+		if (value != null) {
+			directories.add(new Directory(DirectoryType.XMP, name, value));
+		}
+	}
+
+	/**
+	 * Read an {@code rdf:Bag}, {@code rdf:Seq} or {@code rdf:Alt} array.
+	 * @param reader the reader positioned on the start element of the array
+	 * @param name the name of the array property
+	 * @param directories the list to add the properties of structured items to
+	 * @return the value of the array or null if the array does not contain simple values
+	 * @throws XMLStreamException in case the XML is malformed
+	 */
+	private static String readArray(XMLStreamReader reader, String name, List<Directory> directories)
+			throws XMLStreamException {
+		final boolean alternative = isRdf(reader, "Alt");
+		final List<String> values = new ArrayList<>();
+		String defaultValue = null;
+		int index = 0;
+
+		while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+			index++;
+			final String language = reader.getAttributeValue(XMLConstants.XML_NS_URI, "lang");
+			final String itemPrefix = name + "[" + index + "].";
+
+			if ("Resource".equals(reader.getAttributeValue(RDF_NAMESPACE, "parseType"))) {
+				readDescription(reader, itemPrefix, directories);
+				continue;
+			}
+
+			readAttributeProperties(reader, itemPrefix, directories);
+			final StringBuilder text = new StringBuilder();
+			int event;
+			while ((event = reader.next()) != XMLStreamConstants.END_ELEMENT) {
+				if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA) {
+					text.append(reader.getText());
+				}
+				else if (event == XMLStreamConstants.START_ELEMENT) {
+					if (isRdf(reader, "Description")) {
+						readDescription(reader, itemPrefix, directories);
+					}
+					else {
+						readProperty(reader, itemPrefix, directories);
+					}
+				}
+			}
+
+			if (StringUtils.hasText(text)) {
+				final String value = text.toString().trim();
+				values.add(value);
+				if ("x-default".equals(language)) {
+					defaultValue = value;
+				}
+			}
+		}
+
+		if (values.isEmpty()) {
+			return null;
+		}
+		if (alternative) {
+			return (defaultValue != null) ? defaultValue : values.get(0);
+		}
+		return String.join(", ", values);
+	}
+
+	private static void readAttributeProperties(XMLStreamReader reader, String prefix, List<Directory> directories) {
+		for (int i = 0; i < reader.getAttributeCount(); i++) {
+			final String namespace = reader.getAttributeNamespace(i);
+			if (!StringUtils.hasText(namespace) || RDF_NAMESPACE.equals(namespace)
+					|| XMLConstants.XML_NS_URI.equals(namespace)) {
+				continue;
+			}
+			directories.add(
+					new Directory(DirectoryType.XMP, prefix + reader.getAttributeLocalName(i), reader.getAttributeValue(i)));
+		}
+	}
+
+	private static boolean isRdf(XMLStreamReader reader, String localName) {
+		return RDF_NAMESPACE.equals(reader.getNamespaceURI()) && localName.equals(reader.getLocalName());
+	}
+
+	private static void close(XMLStreamReader reader) {
+		if (reader != null) {
+			try {
+				reader.close();
+			}
+			catch (XMLStreamException ex) {
+				// Ignore, the reader is backed by a String
+			}
+		}
+	}
+
+	private static XMLInputFactory createXmlInputFactory() {
+		final XMLInputFactory xmlInputFactory = XMLInputFactory.newFactory();
+		xmlInputFactory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+		xmlInputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		xmlInputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+		xmlInputFactory.setProperty(XMLInputFactory.IS_COALESCING, true);
+		return xmlInputFactory;
+	}
+
+}
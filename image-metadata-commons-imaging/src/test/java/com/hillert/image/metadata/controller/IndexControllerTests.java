@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) 2025 Gunnar Hillert.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hillert.image.metadata.controller;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import com.hillert.image.metadata.config.MetadataConfigProperties;
+import com.hillert.image.metadata.model.Rendition;
+import com.hillert.image.metadata.service.ImageService;
+import com.hillert.image.metadata.service.MetadataService;
+import com.hillert.image.metadata.service.RenditionService;
+import com.hillert.image.metadata.service.support.ImageLoaderType;
+import com.hillert.image.metadata.service.support.RenditionCache.SourceImage;
+import com.hillert.image.metadata.service.support.ResizeQuality;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import org.springframework.boot.servlet.autoconfigure.MultipartProperties;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * @author Gunnar Hillert
+ */
+class IndexControllerTests {
+
+	private static final String CONTENT = "0123456789";
+
+	private static final String ORIGINAL_URL = "/images/image.png?addLabel=false";
+
+	private static final String ORIGINAL_ETAG = "\"hash\"";
+
+	@TempDir
+	Path tempDir;
+
+	private final RenditionService renditionService = mock(RenditionService.class);
+
+	private final MetadataConfigProperties metadataConfigProperties = new MetadataConfigProperties();
+
+	private MockMvc mockMvc;
+
+	@BeforeEach
+	void setup() throws Exception {
+		final Path imagePath = Files.writeString(this.tempDir.resolve("image.png"), CONTENT);
+		given(this.renditionService.getSourceImage("image.png"))
+			.willReturn(new SourceImage(imagePath, "hash", "image/png", 800, 1_700_000_000_000L));
+		given(this.renditionService.getRenditionWidth(any(SourceImage.class), any()))
+			.willAnswer((invocation) -> invocation.getArgument(1));
+
+		final IndexController indexController = new IndexController(mock(ImageService.class),
+				mock(MetadataService.class), new MultipartProperties(), this.renditionService,
+				this.metadataConfigProperties);
+		this.mockMvc = MockMvcBuilders.standaloneSetup(indexController).build();
+	}
+
+	@Test
+	void testServeOriginal() throws Exception {
+		this.mockMvc.perform(get(ORIGINAL_URL))
+			.andExpect(status().isOk())
+			.andExpect(header().string(HttpHeaders.ETAG, ORIGINAL_ETAG))
+			.andExpect(header().string(HttpHeaders.ACCEPT_RANGES, "bytes"))
+			.andExpect(header().string(HttpHeaders.CACHE_CONTROL, "max-age=3600"))
+			.andExpect(header().longValue(HttpHeaders.CONTENT_LENGTH, CONTENT.length()))
+			.andExpect(content().contentType("image/png"))
+			.andExpect(content().string(CONTENT));
+	}
+
+	@Test
+	void testMatchingETagReturnsNotModified() throws Exception {
+		this.mockMvc.perform(get(ORIGINAL_URL).header(HttpHeaders.IF_NONE_MATCH, ORIGINAL_ETAG))
+			.andExpect(status().isNotModified())
+			.andExpect(header().string(HttpHeaders.ETAG, ORIGINAL_ETAG))
+			.andExpect(content().bytes(new byte[0]));
+	}
+
+	@Test
+	void testMatchingRenditionETagReturnsNotModifiedWithoutRendering() throws Exception {
+		this.mockMvc
+			.perform(get("/images/image.png?width=100").header(HttpHeaders.IF_NONE_MATCH,
+					"\"hash-100-labeled-balanced\""))
+			.andExpect(status().isNotModified());
+
+		verify(this.renditionService, never()).getRendition(anyString(), any(), anyBoolean(), any(), any());
+	}
+
+	@Test
+	void testSingleRangeReturnsPartialContent() throws Exception {
+		this.mockMvc.perform(get(ORIGINAL_URL).header(HttpHeaders.RANGE, "bytes=2-5"))
+			.andExpect(status().isPartialContent())
+			.andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 2-5/10"))
+			.andExpect(header().longValue(HttpHeaders.CONTENT_LENGTH, 4))
+			.andExpect(content().string("2345"));
+	}
+
+	@Test
+	void testUnsatisfiableRangeIsRejected() throws Exception {
+		this.mockMvc.perform(get(ORIGINAL_URL).header(HttpHeaders.RANGE, "bytes=20-"))
+			.andExpect(status().isRequestedRangeNotSatisfiable())
+			.andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes */10"));
+	}
+
+	@Test
+	void testRangeIsIgnoredIfIfRangeDoesNotMatch() throws Exception {
+		this.mockMvc
+			.perform(get(ORIGINAL_URL).header(HttpHeaders.RANGE, "bytes=2-5")
+				.header(HttpHeaders.IF_RANGE, "\"outdated\""))
+			.andExpect(status().isOk())
+			.andExpect(header().doesNotExist(HttpHeaders.CONTENT_RANGE))
+			.andExpect(content().string(CONTENT));
+
+		this.mockMvc
+			.perform(get(ORIGINAL_URL).header(HttpHeaders.RANGE, "bytes=2-5").header(HttpHeaders.IF_RANGE, ORIGINAL_ETAG))
+			.andExpect(status().isPartialContent())
+			.andExpect(content().string("2345"));
+	}
+
+	@Test
+	void testRenditionIsStreamed() throws Exception {
+		final byte[] renditionBytes = "rendition".getBytes(StandardCharsets.US_ASCII);
+		given(this.renditionService.getRendition("image.png", 100, true, ResizeQuality.BALANCED,
+				ImageLoaderType.IMAGE_IO))
+			.willReturn(new Rendition("image/png", null, (outputStream) -> outputStream.write(renditionBytes)));
+
+		final MvcResult result = this.mockMvc.perform(get("/images/image.png?width=100"))
+			.andExpect(request().asyncStarted())
+			.andExpect(header().string(HttpHeaders.ETAG, "\"hash-100-labeled-balanced\""))
+			.andExpect(header().string(HttpHeaders.CACHE_CONTROL, "max-age=86400"))
+			.andReturn();
+
+		this.mockMvc.perform(asyncDispatch(result))
+			.andExpect(status().isOk())
+			.andExpect(content().contentType("image/png"))
+			.andExpect(content().bytes(renditionBytes));
+	}
+
+	@Test
+	void testExplicitWidthOverridesDoNotResize() throws Exception {
+		this.metadataConfigProperties.setDoNotResize(true);
+		final Path renditionPath = Files.writeString(this.tempDir.resolve("rendition.png"), "rendition");
+		given(this.renditionService.getRendition("image.png", 100, true, ResizeQuality.BALANCED,
+				ImageLoaderType.IMAGE_IO))
+			.willReturn(new Rendition("image/png", renditionPath, null));
+
+		this.mockMvc.perform(get("/images/image.png?width=100"))
+			.andExpect(status().isOk())
+			.andExpect(content().string("rendition"));
+		this.mockMvc.perform(get("/images/image.png"))
+			.andExpect(status().isOk())
+			.andExpect(header().string(HttpHeaders.ETAG, ORIGINAL_ETAG))
+			.andExpect(content().string(CONTENT));
+		verify(this.renditionService).getRendition(anyString(), any(), anyBoolean(), any(), any());
+	}
+
+}
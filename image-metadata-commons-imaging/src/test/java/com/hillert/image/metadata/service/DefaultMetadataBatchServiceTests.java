@@ -0,0 +1,249 @@
+/*
+ * Copyright (c) 2025 Gunnar Hillert.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hillert.image.metadata.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.hillert.image.metadata.config.MetadataConfigProperties;
+import com.hillert.image.metadata.model.MetadataBatchProgress;
+import com.hillert.image.metadata.model.MetadataBatchProgress.Status;
+import com.hillert.image.metadata.model.MetadataPatch;
+import com.hillert.image.metadata.model.MetadataPatch.XmpProperty;
+import com.hillert.image.metadata.service.support.ImageProcessingException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalStateException;
+import static org.assertj.core.api.Assertions.entry;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willAnswer;
+import static org.mockito.BDDMockito.willThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * @author Gunnar Hillert
+ */
+class DefaultMetadataBatchServiceTests {
+
+	private final ImageService imageService = mock(ImageService.class);
+
+	private final MetadataService metadataService = mock(MetadataService.class);
+
+	private final MetadataPatch patch = new MetadataPatch().xmpProperty(XmpProperty.TITLE, "title");
+
+	private DefaultMetadataBatchService metadataBatchService;
+
+	@AfterEach
+	void destroy() {
+		if (this.metadataBatchService != null) {
+			this.metadataBatchService.destroy();
+		}
+	}
+
+	@Test
+	void testJobCompletes() throws Exception {
+		this.metadataBatchService = createMetadataBatchService(2, 32);
+		given(this.imageService.loadAsResource(anyString()))
+			.willAnswer((invocation) -> resource(invocation.getArgument(0)));
+
+		final MetadataBatchProgress progress = awaitFinished(
+				this.metadataBatchService.submit(List.of("a.jpg", "b.jpg", "c.jpg"), this.patch));
+
+		assertThat(progress.status()).isEqualTo(Status.COMPLETED);
+		assertThat(progress.total()).isEqualTo(3);
+		assertThat(progress.processed()).isEqualTo(3);
+		assertThat(progress.failed()).isZero();
+		assertThat(progress.failures()).isEmpty();
+		verify(this.metadataService, times(3)).updateMetadata(any(Resource.class), any(MetadataPatch.class));
+	}
+
+	@Test
+	void testDuplicateFilenamesAreUpdatedOnce() throws Exception {
+		this.metadataBatchService = createMetadataBatchService(2, 32);
+		given(this.imageService.loadAsResource(anyString()))
+			.willAnswer((invocation) -> resource(invocation.getArgument(0)));
+
+		final MetadataBatchProgress progress = awaitFinished(
+				this.metadataBatchService.submit(List.of("a.jpg", "b.jpg", "a.jpg"), this.patch));
+
+		assertThat(progress.status()).isEqualTo(Status.COMPLETED);
+		assertThat(progress.total()).isEqualTo(2);
+		assertThat(progress.processed()).isEqualTo(2);
+		verify(this.imageService, times(1)).loadAsResource("a.jpg");
+		verify(this.imageService, times(1)).loadAsResource("b.jpg");
+	}
+
+	@Test
+	void testSameImageIsNotUpdatedConcurrentlyByDifferentJobs() throws Exception {
+		this.metadataBatchService = createMetadataBatchService(2, 32);
+		given(this.imageService.loadAsResource(anyString()))
+			.willAnswer((invocation) -> resource(invocation.getArgument(0)));
+		final AtomicInteger running = new AtomicInteger();
+		final AtomicInteger maxRunning = new AtomicInteger();
+		willAnswer((invocation) -> {
+			maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+			Thread.sleep(100);
+			running.decrementAndGet();
+			return null;
+		}).given(this.metadataService).updateMetadata(any(Resource.class), any(MetadataPatch.class));
+
+		final MetadataBatchProgress first = this.metadataBatchService.submit(List.of("a.jpg"), this.patch);
+		final MetadataBatchProgress second = this.metadataBatchService.submit(List.of("a.jpg"), this.patch);
+
+		assertThat(awaitFinished(first).status()).isEqualTo(Status.COMPLETED);
+		assertThat(awaitFinished(second).status()).isEqualTo(Status.COMPLETED);
+		assertThat(maxRunning.get()).isEqualTo(1);
+		verify(this.metadataService, times(2)).updateMetadata(any(Resource.class), any(MetadataPatch.class));
+	}
+
+	@Test
+	void testFailuresAreReported() throws Exception {
+		this.metadataBatchService = createMetadataBatchService(2, 32);
+		given(this.imageService.loadAsResource(anyString()))
+			.willAnswer((invocation) -> resource(invocation.getArgument(0)));
+		willThrow(new ImageProcessingException("Broken image.")).given(this.metadataService)
+			.updateMetadata(eq(resource("b.jpg")), any(MetadataPatch.class));
+
+		final MetadataBatchProgress progress = awaitFinished(
+				this.metadataBatchService.submit(List.of("a.jpg", "b.jpg", "c.jpg"), this.patch));
+
+		assertThat(progress.status()).isEqualTo(Status.COMPLETED);
+		assertThat(progress.processed()).isEqualTo(3);
+		assertThat(progress.failed()).isEqualTo(1);
+		assertThat(progress.failures()).containsExactly(entry("b.jpg", "Broken image."));
+	}
+
+	@Test
+	void testInvalidFilenamesAreRejected() throws Exception {
+		this.metadataBatchService = createMetadataBatchService(1, 32);
+		given(this.imageService.loadAsResource(anyString()))
+			.willAnswer((invocation) -> resource(invocation.getArgument(0)));
+
+		final MetadataBatchProgress progress = awaitFinished(this.metadataBatchService
+			.submit(List.of("../secret.jpg", "/etc/passwd", "folder/image.jpg", "..", "image.jpg"), this.patch));
+
+		assertThat(progress.status()).isEqualTo(Status.COMPLETED);
+		assertThat(progress.processed()).isEqualTo(5);
+		assertThat(progress.failed()).isEqualTo(4);
+		assertThat(progress.failures()).containsOnlyKeys("../secret.jpg", "/etc/passwd", "folder/image.jpg", "..");
+		assertThat(progress.failures().values()).allMatch((message) -> message.startsWith("Invalid filename"));
+		verify(this.imageService).loadAsResource("image.jpg");
+		verify(this.imageService, never()).loadAsResource("../secret.jpg");
+		verify(this.imageService, never()).loadAsResource("/etc/passwd");
+		verify(this.imageService, never()).loadAsResource("folder/image.jpg");
+	}
+
+	@Test
+	void testCancelStopsRemainingImages() throws Exception {
+		this.metadataBatchService = createMetadataBatchService(1, 32);
+		given(this.imageService.loadAsResource(anyString()))
+			.willAnswer((invocation) -> resource(invocation.getArgument(0)));
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		willAnswer((invocation) -> {
+			started.countDown();
+			release.await(10, TimeUnit.SECONDS);
+			return null;
+		}).given(this.metadataService).updateMetadata(any(Resource.class), any(MetadataPatch.class));
+
+		final MetadataBatchProgress submitted = this.metadataBatchService
+			.submit(List.of("a.jpg", "b.jpg", "c.jpg", "d.jpg"), this.patch);
+		assertThat(started.await(10, TimeUnit.SECONDS)).isTrue();
+
+		final MetadataBatchProgress cancelling = this.metadataBatchService.cancel(submitted.id());
+		assertThat(cancelling.status()).isEqualTo(Status.CANCELLING);
+		release.countDown();
+
+		final MetadataBatchProgress progress = awaitFinished(submitted);
+		assertThat(progress.status()).isEqualTo(Status.CANCELLED);
+		assertThat(progress.total()).isEqualTo(4);
+		assertThat(progress.processed()).isEqualTo(1);
+		verify(this.metadataService, times(1)).updateMetadata(any(Resource.class), any(MetadataPatch.class));
+	}
+
+	@Test
+	void testSubmitIsRejectedWhenQueueIsFull() throws Exception {
+		this.metadataBatchService = createMetadataBatchService(1, 1);
+		given(this.imageService.loadAsResource(anyString()))
+			.willAnswer((invocation) -> resource(invocation.getArgument(0)));
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		willAnswer((invocation) -> {
+			started.countDown();
+			release.await(10, TimeUnit.SECONDS);
+			return null;
+		}).given(this.metadataService).updateMetadata(any(Resource.class), any(MetadataPatch.class));
+
+		// The first job occupies the only thread, the second one the only queue slot.
+		final MetadataBatchProgress first = this.metadataBatchService.submit(List.of("a.jpg"), this.patch);
+		assertThat(started.await(10, TimeUnit.SECONDS)).isTrue();
+		final MetadataBatchProgress second = this.metadataBatchService.submit(List.of("b.jpg"), this.patch);
+
+		assertThatIllegalStateException()
+			.isThrownBy(() -> this.metadataBatchService.submit(List.of("c.jpg"), this.patch))
+			.withMessageContaining("Too many metadata batch jobs");
+
+		release.countDown();
+		assertThat(awaitFinished(first).status()).isEqualTo(Status.COMPLETED);
+		assertThat(awaitFinished(second).status()).isEqualTo(Status.COMPLETED);
+		verify(this.imageService, never()).loadAsResource("c.jpg");
+	}
+
+	@Test
+	void testUnknownJob() {
+		this.metadataBatchService = createMetadataBatchService(1, 32);
+
+		assertThat(this.metadataBatchService.getProgress("unknown")).isNull();
+		assertThat(this.metadataBatchService.cancel("unknown")).isNull();
+	}
+
+	private DefaultMetadataBatchService createMetadataBatchService(int threads, int queueCapacity) {
+		final MetadataConfigProperties metadataConfigProperties = new MetadataConfigProperties();
+		metadataConfigProperties.getBatch().setThreads(threads);
+		metadataConfigProperties.getBatch().setQueueCapacity(queueCapacity);
+		return new DefaultMetadataBatchService(metadataConfigProperties, this.imageService, this.metadataService);
+	}
+
+	private MetadataBatchProgress awaitFinished(MetadataBatchProgress submitted) throws InterruptedException {
+		final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+		MetadataBatchProgress progress = submitted;
+		while (progress.status() == Status.RUNNING || progress.status() == Status.CANCELLING) {
+			assertThat(System.nanoTime()).as("batch job finished in time").isLessThan(deadline);
+			Thread.sleep(10);
+			progress = this.metadataBatchService.getProgress(submitted.id());
+		}
+		return progress;
+	}
+
+	private static Resource resource(String filename) {
+		return new ByteArrayResource(filename.getBytes(StandardCharsets.UTF_8), filename);
+	}
+
+}
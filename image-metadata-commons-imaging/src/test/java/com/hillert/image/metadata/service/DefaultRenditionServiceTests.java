@@ -0,0 +1,237 @@
+/*
+ * Copyright (c) 2025 Gunnar Hillert.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hillert.image.metadata.service;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.hillert.image.metadata.config.MetadataConfigProperties;
+import com.hillert.image.metadata.config.StorageConfigProperties;
+import com.hillert.image.metadata.model.Rendition;
+import com.hillert.image.metadata.model.RenditionLadderStats;
+import com.hillert.image.metadata.service.support.FormatProbe;
+import com.hillert.image.metadata.service.support.ImageLoaderType;
+import com.hillert.image.metadata.service.support.RenditionCache;
+import com.hillert.image.metadata.service.support.RenditionCache.SourceImage;
+import com.hillert.image.metadata.service.support.ResizeQuality;
+import com.hillert.image.metadata.service.support.TestImages;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * @author Gunnar Hillert
+ */
+class DefaultRenditionServiceTests {
+
+	@TempDir
+	Path tempDir;
+
+	private final MetadataConfigProperties metadataConfigProperties = new MetadataConfigProperties();
+
+	private final ImageService imageService = mock(ImageService.class);
+
+	private DefaultRenditionService renditionService;
+
+	@BeforeEach
+	void setup() throws Exception {
+		this.metadataConfigProperties.getRenditions().setDiskLocation(this.tempDir.resolve("renditions").toString());
+		final Path imagePath = Files.write(this.tempDir.resolve("image.jpg"),
+				TestImages.createJpegWithThumbnail(1600, 1200, 160, 120));
+		given(this.imageService.loadAsResource("image.jpg")).willReturn(new FileSystemResource(imagePath));
+		given(this.imageService.loadAsBufferedImage(any(Resource.class), any(ImageLoaderType.class), anyString(),
+				any()))
+			.willAnswer((invocation) -> new BufferedImage(1600, 1200, BufferedImage.TYPE_INT_RGB));
+		// Encodes the width of the image only, so that the renditions can be told apart.
+		willAnswer((invocation) -> {
+			invocation.<OutputStream>getArgument(3).write(width(invocation.getArgument(0)));
+			return null;
+		}).given(this.imageService).encodeImage(any(BufferedImage.class), any(), anyString(), any(OutputStream.class));
+		given(this.imageService.encodeImage(any(BufferedImage.class), any(), anyString()))
+			.willAnswer((invocation) -> width(invocation.getArgument(0)));
+	}
+
+	@AfterEach
+	void destroy() {
+		if (this.renditionService != null) {
+			this.renditionService.destroy();
+		}
+	}
+
+	@Test
+	void testExifThumbnailIsUsedForSmallRenditions() throws Exception {
+		this.renditionService = createRenditionService();
+
+		final Rendition rendition = this.renditionService.getRendition("image.jpg", 100, false, ResizeQuality.FAST,
+				ImageLoaderType.IMAGE_IO);
+
+		assertThat(content(rendition)).isEqualTo("160");
+		verify(this.imageService, never()).loadAsBufferedImage(any(Resource.class), any(ImageLoaderType.class),
+				anyString(), any());
+	}
+
+	@Test
+	void testExifThumbnailIsNotUsedForBestQuality() throws Exception {
+		this.renditionService = createRenditionService();
+
+		final Rendition rendition = this.renditionService.getRendition("image.jpg", 100, false, ResizeQuality.BEST,
+				ImageLoaderType.IMAGE_IO);
+
+		assertThat(content(rendition)).isEqualTo("160");
+		verify(this.imageService).loadAsBufferedImage(any(Resource.class), any(ImageLoaderType.class), anyString(),
+				any());
+	}
+
+	@Test
+	void testExifThumbnailIsNotUsedForLadderRenditions() throws Exception {
+		this.renditionService = createRenditionService();
+
+		final Rendition rendition = this.renditionService.getRendition("image.jpg", 100, false,
+				ResizeQuality.BALANCED, ImageLoaderType.IMAGE_IO);
+
+		assertThat(content(rendition)).isEqualTo("160");
+		verify(this.imageService).loadAsBufferedImage(any(Resource.class), any(ImageLoaderType.class), anyString(),
+				any());
+	}
+
+	@Test
+	void testRenditionWidthSnapsToNextLadderWidth() {
+		this.renditionService = createRenditionService();
+		final SourceImage sourceImage = this.renditionService.getSourceImage("image.jpg");
+		assertThat(sourceImage.width()).isEqualTo(1600);
+
+		assertThat(this.renditionService.getRenditionWidth(sourceImage, null)).isNull();
+		assertThat(this.renditionService.getRenditionWidth(sourceImage, 1)).isEqualTo(160);
+		assertThat(this.renditionService.getRenditionWidth(sourceImage, 160)).isEqualTo(160);
+		assertThat(this.renditionService.getRenditionWidth(sourceImage, 161)).isEqualTo(320);
+		assertThat(this.renditionService.getRenditionWidth(sourceImage, 700)).isEqualTo(1280);
+		// The 2048 ladder width is wider than the image, hence never generated.
+		assertThat(this.renditionService.getRenditionWidth(sourceImage, 1300)).isEqualTo(1300);
+		assertThat(this.renditionService.getRenditionWidth(sourceImage, 3000)).isEqualTo(3000);
+	}
+
+	@Test
+	void testRenditionWidthIsNotSnappedWithoutLadder() {
+		this.metadataConfigProperties.getRenditions().setLadderWidths(List.of());
+		this.renditionService = createRenditionService();
+		final SourceImage sourceImage = this.renditionService.getSourceImage("image.jpg");
+
+		assertThat(this.renditionService.getRenditionWidth(sourceImage, 100)).isEqualTo(100);
+	}
+
+	@Test
+	void testLadderIsGeneratedFromSingleDecode() throws Exception {
+		this.renditionService = createRenditionService();
+
+		this.renditionService.generateLadder("image.jpg");
+		awaitLadders(1);
+
+		assertThat(this.renditionService.getLadderStats().failed()).isZero();
+		// Only enough pixels for the largest ladder width that fits into the image are
+		// decoded, all smaller widths are resampled from the previous step.
+		verify(this.imageService).loadAsBufferedImage(any(Resource.class), eq(ImageLoaderType.IMAGE_IO),
+				eq("image/jpeg"), eq(1280));
+		for (int width : new int[] { 160, 320, 640, 1280 }) {
+			verify(this.imageService).encodeImage(argThat((image) -> image.getWidth() == width), isNull(),
+					eq("image/jpeg"));
+			verify(this.imageService).encodeImage(argThat((image) -> image.getWidth() == width), eq("image.jpg"),
+					eq("image/jpeg"));
+		}
+		verify(this.imageService, never()).encodeImage(argThat((image) -> image.getWidth() > 1280), any(),
+				anyString());
+	}
+
+	@Test
+	void testRequestIsServedFromLadder() throws Exception {
+		this.renditionService = createRenditionService();
+		this.renditionService.generateLadder("image.jpg");
+		awaitLadders(1);
+
+		final Rendition rendition = this.renditionService.getRendition("image.jpg", 300, true,
+				ResizeQuality.BALANCED, ImageLoaderType.IMAGE_IO);
+
+		assertThat(content(rendition)).isEqualTo("320");
+		verify(this.imageService, times(1)).loadAsBufferedImage(any(Resource.class), any(ImageLoaderType.class),
+				anyString(), any());
+		verify(this.imageService, never()).encodeImage(any(BufferedImage.class), any(), anyString(),
+				any(OutputStream.class));
+	}
+
+	@Test
+	void testLadderIsNotGeneratedWithoutCache() {
+		this.metadataConfigProperties.getRenditions().setEnabled(false);
+		this.renditionService = createRenditionService();
+
+		this.renditionService.generateLadder("image.jpg");
+
+		assertThat(this.renditionService.getLadderStats()).isEqualTo(new RenditionLadderStats(0, 0, 0, 0, 0));
+		assertThat(this.renditionService.getRenditionWidth(this.renditionService.getSourceImage("image.jpg"), 100))
+			.isEqualTo(100);
+		verify(this.imageService, never()).loadAsBufferedImage(any(Resource.class), any(ImageLoaderType.class),
+				anyString(), any());
+	}
+
+	private void awaitLadders(long completed) throws InterruptedException {
+		final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+		while (this.renditionService.getLadderStats().completed() + this.renditionService.getLadderStats()
+			.failed() < completed) {
+			assertThat(System.nanoTime()).as("rendition ladder generated in time").isLessThan(deadline);
+			Thread.sleep(10);
+		}
+	}
+
+	private DefaultRenditionService createRenditionService() {
+		final StorageConfigProperties storageConfigProperties = new StorageConfigProperties();
+		storageConfigProperties.setLocation(this.tempDir.toString());
+		final RenditionCache renditionCache = new RenditionCache(this.metadataConfigProperties,
+				storageConfigProperties, new FormatProbe());
+		return new DefaultRenditionService(this.metadataConfigProperties, this.imageService, renditionCache);
+	}
+
+	private static byte[] width(BufferedImage bufferedImage) {
+		return String.valueOf(bufferedImage.getWidth()).getBytes(StandardCharsets.US_ASCII);
+	}
+
+	private static String content(Rendition rendition) throws Exception {
+		final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		rendition.writeTo(outputStream);
+		return outputStream.toString(StandardCharsets.US_ASCII);
+	}
+
+}
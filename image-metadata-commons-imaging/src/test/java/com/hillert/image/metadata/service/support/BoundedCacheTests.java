@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2025 Gunnar Hillert.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hillert.image.metadata.service.support;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Gunnar Hillert
+ */
+class BoundedCacheTests {
+
+	@Test
+	void testLeastRecentlyUsedEntriesAreEvicted() {
+		final BoundedCache<String, String> cache = new BoundedCache<>(10, String::length);
+		cache.put("a", "aaaa");
+		cache.put("b", "bbbb");
+		assertThat(cache.get("a")).isEqualTo("aaaa");
+
+		cache.put("c", "cccc");
+
+		assertThat(cache.get("b")).isNull();
+		assertThat(cache.get("a")).isEqualTo("aaaa");
+		assertThat(cache.get("c")).isEqualTo("cccc");
+
+		final BoundedCache.Stats stats = cache.getStats();
+		assertThat(stats.size()).isEqualTo(2);
+		assertThat(stats.weight()).isEqualTo(8);
+		assertThat(stats.hitCount()).isEqualTo(3);
+		assertThat(stats.missCount()).isEqualTo(1);
+		assertThat(stats.evictionCount()).isEqualTo(1);
+	}
+
+	@Test
+	void testValuesHeavierThanTheMaximumWeightAreNotCached() {
+		final BoundedCache<String, String> cache = new BoundedCache<>(3, String::length);
+		cache.put("a", "aaaa");
+		assertThat(cache.get("a")).isNull();
+		assertThat(cache.getStats().weight()).isZero();
+	}
+
+	@Test
+	void testPutIfAbsentKeepsCachedValue() {
+		final BoundedCache<String, String> cache = new BoundedCache<>(10, String::length);
+		assertThat(cache.putIfAbsent("a", "aaaa")).isEqualTo("aaaa");
+		assertThat(cache.putIfAbsent("a", "bb")).isEqualTo("aaaa");
+
+		assertThat(cache.get("a")).isEqualTo("aaaa");
+		assertThat(cache.getStats().weight()).isEqualTo(4);
+	}
+
+	@Test
+	void testInvalidateIf() {
+		final BoundedCache<String, String> cache = new BoundedCache<>(100, String::length);
+		cache.put("image1-200", "aaaa");
+		cache.put("image1-400", "bbbb");
+		cache.put("image2-200", "cccc");
+
+		cache.invalidateIf((key) -> key.startsWith("image1"));
+
+		assertThat(cache.get("image1-200")).isNull();
+		assertThat(cache.get("image1-400")).isNull();
+		assertThat(cache.get("image2-200")).isEqualTo("cccc");
+		assertThat(cache.getStats().weight()).isEqualTo(4);
+	}
+
+}
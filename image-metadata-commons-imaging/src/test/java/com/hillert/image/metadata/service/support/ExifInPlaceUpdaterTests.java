@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2025 Gunnar Hillert.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hillert.image.metadata.service.support;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import com.hillert.image.metadata.model.MetadataPatch;
+import com.hillert.image.metadata.model.MetadataPatch.XmpProperty;
+import org.apache.commons.imaging.Imaging;
+import org.apache.commons.imaging.formats.jpeg.JpegImageMetadata;
+import org.apache.commons.imaging.formats.tiff.constants.MicrosoftTagConstants;
+import org.apache.commons.imaging.formats.tiff.constants.TiffTagConstants;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Gunnar Hillert
+ */
+class ExifInPlaceUpdaterTests {
+
+	@TempDir
+	Path tempDir;
+
+	@Test
+	void testUpdateWritesIntoReservedPadding() throws Exception {
+		final byte[] imageBytes = JpegMetadataRewriter.rewrite(TestImages.create("jpg", 64, 48),
+				new MetadataPatch().exifField(TiffTagConstants.TIFF_TAG_IMAGE_DESCRIPTION, "old").exifPadding(1024));
+		final Path imagePath = Files.write(this.tempDir.resolve("image.jpg"), imageBytes);
+
+		for (String title : new String[] { "A somewhat longer title", "short" }) {
+			assertThat(ExifInPlaceUpdater.update(imagePath,
+					new MetadataPatch().exifField(TiffTagConstants.TIFF_TAG_IMAGE_DESCRIPTION, title)
+						.exifField(MicrosoftTagConstants.EXIF_TAG_XPTITLE, title)))
+				.isTrue();
+
+			final byte[] updated = Files.readAllBytes(imagePath);
+			assertThat(updated).hasSize(imageBytes.length);
+			assertThat(Arrays.copyOfRange(updated, 1100, updated.length))
+				.isEqualTo(Arrays.copyOfRange(imageBytes, 1100, imageBytes.length));
+
+			final JpegImageMetadata metadata = (JpegImageMetadata) Imaging.getMetadata(updated);
+			assertThat(metadata.getExif().getFieldValue(TiffTagConstants.TIFF_TAG_IMAGE_DESCRIPTION))
+				.containsExactly(title);
+			assertThat(metadata.getExif().getFieldValue(MicrosoftTagConstants.EXIF_TAG_XPTITLE)).isEqualTo(title);
+		}
+	}
+
+	@Test
+	void testUpdateDoesNotModifyFileIfChangesDoNotFit() throws Exception {
+		final byte[] imageBytes = JpegMetadataRewriter.rewrite(TestImages.create("jpg", 64, 48),
+				new MetadataPatch().exifField(TiffTagConstants.TIFF_TAG_IMAGE_DESCRIPTION, "old").exifPadding(16));
+		final Path imagePath = Files.write(this.tempDir.resolve("image.jpg"), imageBytes);
+
+		assertThat(ExifInPlaceUpdater.update(imagePath,
+				new MetadataPatch().exifField(TiffTagConstants.TIFF_TAG_IMAGE_DESCRIPTION, "x".repeat(100))))
+			.isFalse();
+		assertThat(ExifInPlaceUpdater.update(imagePath,
+				new MetadataPatch().exifField(TiffTagConstants.TIFF_TAG_IMAGE_DESCRIPTION, "new")
+					.xmpProperty(XmpProperty.TITLE, "new")))
+			.isFalse();
+		assertThat(Files.readAllBytes(imagePath)).isEqualTo(imageBytes);
+	}
+
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2025 Gunnar Hillert.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hillert.image.metadata.service.support;
+
+import com.hillert.image.metadata.model.DirectoryType;
+import org.apache.commons.imaging.formats.tiff.constants.ExifTagConstants;
+import org.apache.commons.imaging.formats.tiff.constants.GpsTagConstants;
+import org.apache.commons.imaging.formats.tiff.constants.MicrosoftTagConstants;
+import org.apache.commons.imaging.formats.tiff.constants.TiffDirectoryConstants;
+import org.apache.commons.imaging.formats.tiff.constants.TiffTagConstants;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Gunnar Hillert
+ */
+class ExifTagRegistryTests {
+
+	@Test
+	void testDefaultRegistry() {
+		final ExifTagRegistry registry = ExifTagRegistry.DEFAULT;
+
+		assertThat(registry.classify(TiffDirectoryConstants.DIRECTORY_TYPE_ROOT,
+				MicrosoftTagConstants.EXIF_TAG_XPTITLE.tag))
+			.isEqualTo(DirectoryType.WINDOWS);
+		assertThat(registry.classify(TiffDirectoryConstants.DIRECTORY_TYPE_GPS,
+				GpsTagConstants.GPS_TAG_GPS_LATITUDE_REF.tag))
+			.isEqualTo(DirectoryType.GPS);
+		assertThat(registry.classify(TiffDirectoryConstants.DIRECTORY_TYPE_INTEROPERABILITY,
+				ExifTagConstants.EXIF_TAG_INTEROPERABILITY_INDEX.tag))
+			.isEqualTo(DirectoryType.INTEROP);
+		assertThat(registry.classify(TiffDirectoryConstants.DIRECTORY_TYPE_EXIF, ExifTagConstants.EXIF_TAG_MAKER_NOTE.tag))
+			.isEqualTo(DirectoryType.MAKER_NOTE);
+		assertThat(registry.classify(TiffDirectoryConstants.DIRECTORY_TYPE_ROOT, TiffTagConstants.TIFF_TAG_MAKE.tag))
+			.isNull();
+	}
+
+	@Test
+	void testCustomTagsAreRegistered() {
+		final ExifTagRegistry registry = ExifTagRegistry.builder()
+			.registerDefaults()
+			.register(TiffTagConstants.TIFF_TAG_MAKE, DirectoryType.GENERIC)
+			.build();
+
+		assertThat(registry.size()).isEqualTo(ExifTagRegistry.DEFAULT.size() + 1);
+		assertThat(registry.classify(TiffDirectoryConstants.DIRECTORY_TYPE_ROOT, TiffTagConstants.TIFF_TAG_MAKE.tag))
+			.isEqualTo(DirectoryType.GENERIC);
+		assertThat(registry.classify(TiffDirectoryConstants.DIRECTORY_TYPE_ROOT,
+				MicrosoftTagConstants.EXIF_TAG_RATING.tag))
+			.isEqualTo(DirectoryType.WINDOWS);
+	}
+
+}
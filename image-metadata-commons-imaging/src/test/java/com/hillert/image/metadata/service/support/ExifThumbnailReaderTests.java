@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2025 Gunnar Hillert.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hillert.image.metadata.service.support;
+
+import java.awt.image.BufferedImage;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import javax.imageio.ImageIO;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Gunnar Hillert
+ */
+class ExifThumbnailReaderTests {
+
+	@TempDir
+	Path tempDir;
+
+	@Test
+	void testReadThumbnail() throws Exception {
+		final Path imagePath = createJpegWithThumbnail(1600, 1200, 160, 120);
+
+		final BufferedImage thumbnail = ExifThumbnailReader.read(imagePath, 100);
+
+		assertThat(thumbnail).isNotNull();
+		assertThat(thumbnail.getWidth()).isEqualTo(160);
+		assertThat(thumbnail.getHeight()).isEqualTo(120);
+		assertThat(ExifThumbnailReader.read(imagePath, 161)).isNull();
+	}
+
+	@Test
+	void testThumbnailWithDifferentAspectRatioIsIgnored() throws Exception {
+		final Path imagePath = createJpegWithThumbnail(1600, 900, 160, 120);
+
+		assertThat(ExifThumbnailReader.read(imagePath, 100)).isNull();
+	}
+
+	@Test
+	void testImageWithoutThumbnail() throws Exception {
+		final Path imagePath = this.tempDir.resolve("image.jpg");
+		ImageIO.write(new BufferedImage(16, 16, BufferedImage.TYPE_INT_RGB), "jpg", imagePath.toFile());
+
+		assertThat(ExifThumbnailReader.read(imagePath, 8)).isNull();
+	}
+
+	private Path createJpegWithThumbnail(int width, int height, int thumbnailWidth, int thumbnailHeight)
+			throws Exception {
+		return Files.write(this.tempDir.resolve("image.jpg"),
+				TestImages.createJpegWithThumbnail(width, height, thumbnailWidth, thumbnailHeight));
+	}
+
+}
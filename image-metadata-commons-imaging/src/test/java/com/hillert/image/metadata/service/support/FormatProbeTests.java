@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2025 Gunnar Hillert.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hillert.image.metadata.service.support;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+
+import com.hillert.image.metadata.service.support.FormatProbe.ImageFormat;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Gunnar Hillert
+ */
+class FormatProbeTests {
+
+	@TempDir
+	Path tempDir;
+
+	private final FormatProbe formatProbe = new FormatProbe();
+
+	@Test
+	void testProbeJpeg() throws Exception {
+		final byte[] jpeg = TestImages.create("jpg", 40, 30);
+
+		assertThat(probe(jpeg)).isEqualTo(new ImageFormat("image/jpeg", 40, 30, 24, 1));
+	}
+
+	@Test
+	void testProbePng() throws Exception {
+		final byte[] png = TestImages.encode(new BufferedImage(40, 30, BufferedImage.TYPE_INT_ARGB), "png");
+		final byte[] grayPng = TestImages.encode(new BufferedImage(40, 30, BufferedImage.TYPE_BYTE_GRAY), "png");
+
+		assertThat(probe(png)).isEqualTo(new ImageFormat("image/png", 40, 30, 32, 1));
+		assertThat(probe(grayPng)).isEqualTo(new ImageFormat("image/png", 40, 30, 8, 1));
+	}
+
+	@Test
+	void testProbeAnimatedGif() throws Exception {
+		final ImageWriter imageWriter = ImageIO.getImageWritersByFormatName("gif").next();
+		final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		try (ImageOutputStream ios = ImageIO.createImageOutputStream(outputStream)) {
+			imageWriter.setOutput(ios);
+			imageWriter.prepareWriteSequence(null);
+			for (int i = 0; i < 3; i++) {
+				imageWriter.writeToSequence(
+						new IIOImage(new BufferedImage(40, 30, BufferedImage.TYPE_BYTE_INDEXED), null, null), null);
+			}
+			imageWriter.endWriteSequence();
+		}
+		finally {
+			imageWriter.dispose();
+		}
+
+		final ImageFormat imageFormat = probe(outputStream.toByteArray());
+		assertThat(imageFormat.mimeType()).isEqualTo("image/gif");
+		assertThat(imageFormat.width()).isEqualTo(40);
+		assertThat(imageFormat.height()).isEqualTo(30);
+		assertThat(imageFormat.frameCount()).isEqualTo(3);
+	}
+
+	@Test
+	void testUnknownOrTruncatedData() throws Exception {
+		final byte[] jpeg = TestImages.create("jpg", 40, 30);
+
+		assertThat(probe("not an image".getBytes())).isNull();
+		assertThat(probe(new byte[0])).isNull();
+		assertThat(probe(Arrays.copyOf(jpeg, 10))).isNull();
+	}
+
+	@Test
+	void testProbeStoredFileFallsBackToCommonsImaging() throws Exception {
+		final Path imagePath = Files.write(this.tempDir.resolve("image.bmp"),
+				TestImages.create("bmp", 40, 30));
+
+		final ImageFormat imageFormat = this.formatProbe.probe(imagePath);
+
+		assertThat(imageFormat.mimeType()).isEqualTo("image/x-ms-bmp");
+		assertThat(imageFormat.width()).isEqualTo(40);
+		assertThat(this.formatProbe.probe(imagePath)).isSameAs(imageFormat);
+	}
+
+	private ImageFormat probe(byte[] imageBytes) throws Exception {
+		return this.formatProbe.probe(new ByteArrayInputStream(imageBytes));
+	}
+
+}
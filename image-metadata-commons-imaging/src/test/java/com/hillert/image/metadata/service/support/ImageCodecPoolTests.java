@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2025 Gunnar Hillert.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hillert.image.metadata.service.support;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.plugins.jpeg.JPEGImageWriteParam;
+
+import com.hillert.image.metadata.config.MetadataConfigProperties;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+/**
+ * @author Gunnar Hillert
+ */
+class ImageCodecPoolTests {
+
+	private final MetadataConfigProperties properties = new MetadataConfigProperties();
+
+	@Test
+	void testReleasedWritersAreReused() {
+		this.properties.getCodecs().setMaxIdle(1);
+		final ImageCodecPool pool = new ImageCodecPool(this.properties);
+
+		final ImageWriter first = pool.borrowWriter("image/jpeg");
+		final ImageWriter second = pool.borrowWriter("image/jpeg");
+		pool.releaseWriter("image/jpeg", first);
+		pool.releaseWriter("image/jpeg", second);
+
+		assertThat(pool.borrowWriter("image/jpeg")).isSameAs(first);
+		assertThat(pool.getStats()).isEqualTo(new ImageCodecPool.Stats(2, 1, 1, 0));
+	}
+
+	@Test
+	void testReleasedReadersAreReused() {
+		final ImageCodecPool pool = new ImageCodecPool(this.properties);
+
+		final ImageReader imageReader = pool.borrowReader("image/png");
+		pool.releaseReader("image/png", imageReader);
+
+		assertThat(pool.borrowReader("image/png")).isSameAs(imageReader);
+		assertThat(pool.borrowReader("image/unknown")).isNull();
+		assertThatIllegalArgumentException().isThrownBy(() -> pool.borrowWriter("image/unknown"));
+	}
+
+	@Test
+	void testConfiguredWriteParamsAreApplied() {
+		this.properties.getCodecs().getJpeg().setQuality(0.5f);
+		this.properties.getCodecs().getJpeg().setProgressive(true);
+		this.properties.getCodecs().getJpeg().setOptimizeHuffmanTables(true);
+		final ImageCodecPool pool = new ImageCodecPool(this.properties);
+
+		final ImageWriter imageWriter = pool.borrowWriter("image/jpeg");
+		final ImageWriteParam imageWriteParam = pool.createWriteParam(imageWriter, "image/jpeg");
+
+		assertThat(imageWriteParam.getCompressionQuality()).isEqualTo(0.5f);
+		assertThat(imageWriteParam.getProgressiveMode()).isEqualTo(ImageWriteParam.MODE_DEFAULT);
+		assertThat(((JPEGImageWriteParam) imageWriteParam).getOptimizeHuffmanTables()).isTrue();
+	}
+
+	@Test
+	void testWriteImage() throws Exception {
+		this.properties.getCodecs().getPng().setQuality(0.0f);
+		final ImageCodecPool pool = new ImageCodecPool(this.properties);
+
+		for (String mimeType : new String[] { "image/jpeg", "image/png" }) {
+			final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+			pool.write(new BufferedImage(20, 10, BufferedImage.TYPE_INT_RGB), mimeType, outputStream);
+
+			final BufferedImage image = ImageIO.read(new ByteArrayInputStream(outputStream.toByteArray()));
+			assertThat(image.getWidth()).isEqualTo(20);
+			assertThat(image.getHeight()).isEqualTo(10);
+		}
+		pool.destroy();
+		assertThat(pool.getStats().idleCount()).isZero();
+		assertThat(pool.getStats().disposedCount()).isEqualTo(2);
+	}
+
+}
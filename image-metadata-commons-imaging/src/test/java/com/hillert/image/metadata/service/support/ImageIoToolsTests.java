@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2025 Gunnar Hillert.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hillert.image.metadata.service.support;
+
+import java.awt.image.BufferedImage;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * @author Gunnar Hillert
+ */
+class ImageIoToolsTests {
+
+	private final BufferedImage bufferedImage = new BufferedImage(1000, 600, BufferedImage.TYPE_3BYTE_BGR);
+
+	@Test
+	void testResizeImageReachesTargetDimensions() {
+		for (ResizeQuality resizeQuality : ResizeQuality.values()) {
+			final BufferedImage resizedBufferedImage = ImageIoTools.resizeImage(this.bufferedImage, 100,
+					resizeQuality);
+			assertThat(resizedBufferedImage.getWidth()).as(resizeQuality.name()).isEqualTo(100);
+			assertThat(resizedBufferedImage.getHeight()).as(resizeQuality.name()).isEqualTo(60);
+		}
+	}
+
+	@Test
+	void testFastHalvesUntilLessThanTwiceTheTargetWidth() {
+		// 1000 -> 500 -> 250 -> 125, another step would drop below the target width
+		final BufferedImage halvedImage = ImageIoTools.halveForQuality(this.bufferedImage, 100, ResizeQuality.FAST);
+
+		assertThat(halvedImage.getWidth()).isEqualTo(125);
+		assertThat(halvedImage.getHeight()).isEqualTo(75);
+	}
+
+	@Test
+	void testBalancedHalvesUntilLessThanFourTimesTheTargetWidth() {
+		// 1000 -> 500 -> 250, another step would drop below twice the target width
+		final BufferedImage halvedImage = ImageIoTools.halveForQuality(this.bufferedImage, 100,
+				ResizeQuality.BALANCED);
+
+		assertThat(halvedImage.getWidth()).isEqualTo(250);
+		assertThat(halvedImage.getHeight()).isEqualTo(150);
+	}
+
+	@Test
+	void testBestDoesNotHalve() {
+		assertThat(ImageIoTools.halveForQuality(this.bufferedImage, 100, ResizeQuality.BEST))
+			.isSameAs(this.bufferedImage);
+	}
+
+	@Test
+	void testSmallReductionsAndUpscalingDoNotHalve() {
+		for (ResizeQuality resizeQuality : ResizeQuality.values()) {
+			assertThat(ImageIoTools.halveForQuality(this.bufferedImage, 600, resizeQuality)).as(resizeQuality.name())
+				.isSameAs(this.bufferedImage);
+			assertThat(ImageIoTools.halveForQuality(this.bufferedImage, 2000, resizeQuality)).as(resizeQuality.name())
+				.isSameAs(this.bufferedImage);
+		}
+	}
+
+	@Test
+	void testHalveAveragesPixelBlocks() {
+		final BufferedImage checkerboard = new BufferedImage(4, 4, BufferedImage.TYPE_INT_RGB);
+		for (int y = 0; y < 4; y++) {
+			for (int x = 0; x < 4; x++) {
+				checkerboard.setRGB(x, y, ((x + y) % 2 == 0) ? 0xFFFFFF : 0x000000);
+			}
+		}
+
+		final BufferedImage halvedImage = ImageIoTools.halve(checkerboard);
+
+		assertThat(halvedImage.getWidth()).isEqualTo(2);
+		assertThat(halvedImage.getHeight()).isEqualTo(2);
+		for (int y = 0; y < 2; y++) {
+			for (int x = 0; x < 2; x++) {
+				assertThat(halvedImage.getRGB(x, y) & 0xFF).isCloseTo(128, within(2));
+			}
+		}
+	}
+
+	@Test
+	void testHalveKeepsAlpha() {
+		final BufferedImage translucent = new BufferedImage(4, 4, BufferedImage.TYPE_INT_ARGB);
+
+		assertThat(ImageIoTools.halve(translucent).getType()).isEqualTo(BufferedImage.TYPE_INT_ARGB);
+		assertThat(ImageIoTools.halve(this.bufferedImage).getType()).isEqualTo(BufferedImage.TYPE_INT_RGB);
+	}
+
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2025 Gunnar Hillert.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hillert.image.metadata.service.support;
+
+import java.awt.image.BufferedImage;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import com.hillert.image.metadata.config.MetadataConfigProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unlike {@link ImageLoaderTests}, these tests only use generated images.
+ *
+ * @author Gunnar Hillert
+ */
+class ImageLoaderSubsamplingTests {
+
+	private static final int[] TARGET_WIDTHS = { 50, 70, 100, 130, 199, 250 };
+
+	@TempDir
+	Path tempDir;
+
+	private Resource imageResource;
+
+	@BeforeEach
+	void setup() throws Exception {
+		this.imageResource = new FileSystemResource(
+				Files.write(this.tempDir.resolve("image.jpg"), TestImages.create("jpg", 1000, 600)));
+	}
+
+	@Test
+	void testGetSubsampling() {
+		assertThat(ImageLoader.getSubsampling(6000, 200)).isEqualTo(15);
+		assertThat(ImageLoader.getSubsampling(6000, 1500)).isEqualTo(2);
+		assertThat(ImageLoader.getSubsampling(6000, 1501)).isEqualTo(1);
+		assertThat(ImageLoader.getSubsampling(6000, 6000)).isEqualTo(1);
+		assertThat(ImageLoader.getSubsampling(6000, 8000)).isEqualTo(1);
+	}
+
+	@Test
+	void testSubsampledImageIsTwoToFourTimesTheTargetWidth() {
+		final ImageLoader imageLoader = new ImageLoader();
+		for (int targetWidth : TARGET_WIDTHS) {
+			final BufferedImage bufferedImage = imageLoader.loadImageUsingImageIO(this.imageResource, targetWidth);
+			assertThat(bufferedImage.getWidth()).as("target width %d", targetWidth)
+				.isBetween(2 * targetWidth, 4 * targetWidth - 1);
+		}
+	}
+
+	@Test
+	void testPooledReaderIsSubsampled() {
+		final ImageLoader imageLoader = new ImageLoader(new ImageCodecPool(new MetadataConfigProperties()));
+		for (int targetWidth : TARGET_WIDTHS) {
+			final BufferedImage bufferedImage = imageLoader.loadImageUsingImageIO(this.imageResource, "image/jpeg",
+					targetWidth);
+			assertThat(bufferedImage.getWidth()).as("target width %d", targetWidth)
+				.isBetween(2 * targetWidth, 4 * targetWidth - 1);
+		}
+	}
+
+	@Test
+	void testWithoutTargetWidthImageIsDecodedAtFullSize() {
+		final BufferedImage bufferedImage = new ImageLoader().loadImageUsingImageIO(this.imageResource, null);
+		assertThat(bufferedImage.getWidth()).isEqualTo(1000);
+		assertThat(bufferedImage.getHeight()).isEqualTo(600);
+
+		final BufferedImage pooledBufferedImage = new ImageLoader(new ImageCodecPool(new MetadataConfigProperties()))
+			.loadImageUsingImageIO(this.imageResource, "image/jpeg", null);
+		assertThat(pooledBufferedImage.getWidth()).isEqualTo(1000);
+		assertThat(pooledBufferedImage.getHeight()).isEqualTo(600);
+	}
+
+	@Test
+	void testLargeTargetWidthImageIsDecodedAtFullSize() {
+		final BufferedImage bufferedImage = new ImageLoader().loadImageUsingImageIO(this.imageResource, 400);
+		assertThat(bufferedImage.getWidth()).isEqualTo(1000);
+	}
+
+}
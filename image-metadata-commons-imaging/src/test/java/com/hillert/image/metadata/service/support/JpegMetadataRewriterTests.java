@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2025 Gunnar Hillert.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hillert.image.metadata.service.support;
+
+import java.util.Arrays;
+
+import com.hillert.image.metadata.model.MetadataPatch;
+import com.hillert.image.metadata.model.MetadataPatch.XmpProperty;
+import org.apache.commons.imaging.Imaging;
+import org.apache.commons.imaging.formats.jpeg.JpegImageMetadata;
+import org.apache.commons.imaging.formats.jpeg.iptc.IptcRecord;
+import org.apache.commons.imaging.formats.jpeg.iptc.IptcTypes;
+import org.apache.commons.imaging.formats.tiff.constants.MicrosoftTagConstants;
+import org.apache.commons.imaging.formats.tiff.constants.TiffTagConstants;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+/**
+ * @author Gunnar Hillert
+ */
+class JpegMetadataRewriterTests {
+
+	@Test
+	void testRewriteAllFamiliesInSinglePass() throws Exception {
+		final byte[] imageBytes = TestImages.create("jpg", 64, 48);
+		final MetadataPatch patch = new MetadataPatch()
+			.exifField(TiffTagConstants.TIFF_TAG_IMAGE_DESCRIPTION, "My Title")
+			.exifField(MicrosoftTagConstants.EXIF_TAG_RATING, (short) 4)
+			.iptcRecord(IptcTypes.OBJECT_NAME, "My Title")
+			.xmpProperty(XmpProperty.TITLE, "My Title");
+
+		final byte[] result = JpegMetadataRewriter.rewrite(imageBytes, patch);
+
+		final JpegImageMetadata metadata = (JpegImageMetadata) Imaging.getMetadata(result);
+		assertThat(metadata.getExif().getFieldValue(TiffTagConstants.TIFF_TAG_IMAGE_DESCRIPTION))
+			.containsExactly("My Title");
+		assertThat(metadata.getExif().getFieldValue(MicrosoftTagConstants.EXIF_TAG_RATING)).isEqualTo((short) 4);
+		assertThat(metadata.getPhotoshop().photoshopApp13Data.getRecords()).extracting(IptcRecord::getValue)
+			.containsExactly("My Title");
+		assertThat(Imaging.getXmpXml(result)).contains("My Title");
+
+		assertThat(entropyCodedData(result)).isEqualTo(entropyCodedData(imageBytes));
+	}
+
+	@Test
+	void testRewriteReplacesExistingValues() throws Exception {
+		final byte[] first = JpegMetadataRewriter.rewrite(TestImages.create("jpg", 64, 48),
+				new MetadataPatch().iptcRecord(IptcTypes.OBJECT_NAME, "first")
+					.iptcRecord(IptcTypes.ORIGINAL_TRANSMISSION_REFERENCE, "ref")
+					.xmpProperty(XmpProperty.TITLE, "first"));
+
+		final byte[] second = JpegMetadataRewriter.rewrite(first,
+				new MetadataPatch().iptcRecord(IptcTypes.OBJECT_NAME, "second").xmpProperty(XmpProperty.TITLE, "second"));
+
+		final JpegImageMetadata metadata = (JpegImageMetadata) Imaging.getMetadata(second);
+		assertThat(metadata.getPhotoshop().photoshopApp13Data.getRecords()).extracting(IptcRecord::getValue)
+			.containsExactlyInAnyOrder("ref", "second");
+
+		final JpegSegmentScanner.JpegHeader header = JpegSegmentScanner.scan(second);
+		assertThat(header.getSegments().stream().filter(header::isXmpSegment)).hasSize(1);
+		assertThat(header.getXmpXml()).contains("second").doesNotContain("first");
+	}
+
+	@Test
+	void testEmptyPatchReturnsImageUnchanged() throws Exception {
+		final byte[] imageBytes = TestImages.create("jpg", 64, 48);
+		assertThat(JpegMetadataRewriter.rewrite(imageBytes, new MetadataPatch())).isSameAs(imageBytes);
+	}
+
+	@Test
+	void testNonJpegDataIsRejected() throws Exception {
+		final byte[] png = TestImages.create("png", 10, 10);
+
+		assertThatExceptionOfType(ImageProcessingException.class).isThrownBy(() -> JpegMetadataRewriter
+			.rewrite(png, new MetadataPatch().xmpProperty(XmpProperty.TITLE, "title")));
+	}
+
+	private static byte[] entropyCodedData(byte[] imageBytes) {
+		final int headerLength = JpegSegmentScanner.scan(imageBytes).getHeaderBytes().length;
+		return Arrays.copyOfRange(imageBytes, headerLength, imageBytes.length);
+	}
+
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2025 Gunnar Hillert.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hillert.image.metadata.service.support;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.apache.commons.imaging.ImageInfo;
+import org.apache.commons.imaging.Imaging;
+import org.apache.commons.imaging.formats.jpeg.xmp.JpegXmpRewriter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Gunnar Hillert
+ */
+class JpegSegmentScannerTests {
+
+	private static final String XMP_XML = "<x:xmpmeta xmlns:x=\"adobe:ns:meta/\"></x:xmpmeta>";
+
+	@TempDir
+	Path tempDir;
+
+	@Test
+	void testScanStopsAtStartOfScan() throws Exception {
+		final byte[] imageBytes = createJpeg(640, 480);
+		final Path imagePath = Files.write(this.tempDir.resolve("image.jpg"), imageBytes);
+
+		final JpegSegmentScanner.JpegHeader header = JpegSegmentScanner.scan(imagePath);
+
+		assertThat(header).isNotNull();
+		assertThat(header.getWidth()).isEqualTo(640);
+		assertThat(header.getHeight()).isEqualTo(480);
+		assertThat(header.getHeaderBytes().length).isLessThan(imageBytes.length);
+		assertThat(header.getSegments().get(header.getSegments().size() - 1).marker())
+			.isEqualTo(JpegSegmentScanner.MARKER_SOS);
+		assertThat(header.getXmpXml()).isEqualTo(XMP_XML);
+		assertThat(header.getExifPayload()).isNull();
+
+		final ImageInfo imageInfo = Imaging.getImageInfo(header.getHeaderBytes());
+		assertThat(imageInfo.getWidth()).isEqualTo(640);
+		assertThat(imageInfo.getHeight()).isEqualTo(480);
+		assertThat(Imaging.getXmpXml(header.getHeaderBytes())).isEqualTo(XMP_XML);
+	}
+
+	@Test
+	void testScanOfByteArrayMatchesScanOfFile() throws Exception {
+		final byte[] imageBytes = createJpeg(20, 10);
+		final Path imagePath = Files.write(this.tempDir.resolve("image.jpg"), imageBytes);
+
+		assertThat(JpegSegmentScanner.scan(imageBytes).getHeaderBytes())
+			.isEqualTo(JpegSegmentScanner.scan(imagePath).getHeaderBytes());
+	}
+
+	@Test
+	void testNonJpegDataIsIgnored() throws Exception {
+		assertThat(JpegSegmentScanner.scan(TestImages.create("png", 10, 10))).isNull();
+		assertThat(JpegSegmentScanner.scan(new byte[0])).isNull();
+	}
+
+	private static byte[] createJpeg(int width, int height) throws Exception {
+		final ByteArrayOutputStream jpegWithXmp = new ByteArrayOutputStream();
+		new JpegXmpRewriter().updateXmpXml(TestImages.create("jpg", width, height), jpegWithXmp, XMP_XML);
+		return jpegWithXmp.toByteArray();
+	}
+
+}
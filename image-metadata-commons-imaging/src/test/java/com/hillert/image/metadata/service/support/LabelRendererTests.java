@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2025 Gunnar Hillert.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hillert.image.metadata.service.support;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Gunnar Hillert
+ */
+class LabelRendererTests {
+
+	private static final String LONG_LABEL = "AVeryLongFilenameWithoutAnySpacesAtAll.jpg";
+
+	private final LabelRenderer labelRenderer = new LabelRenderer();
+
+	@Test
+	void testLabelIsRenderedInTopLeftCorner() {
+		final BufferedImage image = new BufferedImage(400, 100, BufferedImage.TYPE_INT_RGB);
+
+		this.labelRenderer.render(image, "image.jpg");
+
+		final Rectangle bounds = getLabelBounds(image);
+		assertThat(bounds).isNotNull();
+		assertThat(bounds.x).isGreaterThanOrEqualTo(2);
+		assertThat(bounds.y).isGreaterThanOrEqualTo(2);
+		assertThat(bounds.height).isLessThan(30);
+	}
+
+	@Test
+	void testLongLabelWithoutSpacesIsWrapped() {
+		final BufferedImage wideImage = new BufferedImage(1000, 300, BufferedImage.TYPE_INT_RGB);
+		final BufferedImage narrowImage = new BufferedImage(100, 300, BufferedImage.TYPE_INT_RGB);
+
+		this.labelRenderer.render(wideImage, LONG_LABEL);
+		this.labelRenderer.render(narrowImage, LONG_LABEL);
+
+		final Rectangle singleLine = getLabelBounds(wideImage);
+		final Rectangle wrapped = getLabelBounds(narrowImage);
+		assertThat(singleLine.width).isGreaterThan(100);
+		assertThat(wrapped.x + wrapped.width).isLessThanOrEqualTo(100 - 2);
+		assertThat(wrapped.height).isGreaterThan(2 * singleLine.height);
+	}
+
+	@Test
+	void testTooSmallImagesAreLeftUntouched() {
+		final BufferedImage narrowImage = new BufferedImage(4, 100, BufferedImage.TYPE_INT_RGB);
+		final BufferedImage flatImage = new BufferedImage(400, 22, BufferedImage.TYPE_INT_RGB);
+
+		this.labelRenderer.render(narrowImage, "image.jpg");
+		this.labelRenderer.render(flatImage, "image.jpg");
+
+		assertThat(getLabelBounds(narrowImage)).isNull();
+		assertThat(getLabelBounds(flatImage)).isNull();
+		assertThat(this.labelRenderer.getStats().size()).isZero();
+	}
+
+	@Test
+	void testSpriteIsReusedForSameTextAndWidth() {
+		final BufferedImage image = new BufferedImage(400, 100, BufferedImage.TYPE_INT_RGB);
+
+		this.labelRenderer.render(image, "image.jpg");
+		this.labelRenderer.render(new BufferedImage(400, 100, BufferedImage.TYPE_INT_RGB), "image.jpg");
+		this.labelRenderer.render(new BufferedImage(400, 200, BufferedImage.TYPE_INT_RGB), "image.jpg");
+
+		BoundedCache.Stats stats = this.labelRenderer.getStats();
+		assertThat(stats.size()).isEqualTo(1);
+		assertThat(stats.hitCount()).isEqualTo(2);
+
+		this.labelRenderer.render(new BufferedImage(300, 100, BufferedImage.TYPE_INT_RGB), "image.jpg");
+		this.labelRenderer.render(new BufferedImage(400, 100, BufferedImage.TYPE_INT_RGB), "other.jpg");
+
+		stats = this.labelRenderer.getStats();
+		assertThat(stats.size()).isEqualTo(3);
+		assertThat(stats.missCount()).isEqualTo(3);
+	}
+
+	/**
+	 * Return the bounds of the red label pixels on the black image.
+	 * @param image the labeled image
+	 * @return the bounds or null if the image is completely black
+	 */
+	private static Rectangle getLabelBounds(BufferedImage image) {
+		Rectangle bounds = null;
+		for (int y = 0; y < image.getHeight(); y++) {
+			for (int x = 0; x < image.getWidth(); x++) {
+				if ((image.getRGB(x, y) & 0xFFFFFF) != 0) {
+					bounds = (bounds != null) ? bounds.union(new Rectangle(x, y, 1, 1)) : new Rectangle(x, y, 1, 1);
+				}
+			}
+		}
+		return bounds;
+	}
+
+}
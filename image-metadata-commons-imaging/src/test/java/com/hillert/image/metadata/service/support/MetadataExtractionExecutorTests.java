@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2025 Gunnar Hillert.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hillert.image.metadata.service.support;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import com.hillert.image.metadata.config.MetadataConfigProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+/**
+ * @author Gunnar Hillert
+ */
+class MetadataExtractionExecutorTests {
+
+	private MetadataExtractionExecutor executor;
+
+	@AfterEach
+	void destroy() {
+		this.executor.destroy();
+	}
+
+	@Test
+	void testTimeoutAppliesPerFamily() {
+		// With a single thread, the second family only starts once the first one is done.
+		this.executor = createExecutor(1, Duration.ofMillis(800));
+
+		final Map<String, Callable<String>> families = new LinkedHashMap<>();
+		families.put("first", () -> sleep(500, "first"));
+		families.put("second", () -> sleep(500, "second"));
+
+		assertThat(this.executor.execute(families)).containsExactly("first", "second");
+	}
+
+	@Test
+	void testTimeoutNamesFamily() {
+		this.executor = createExecutor(2, Duration.ofMillis(200));
+
+		final Map<String, Callable<String>> families = new LinkedHashMap<>();
+		families.put("fast", () -> "fast");
+		families.put("slow", () -> sleep(5000, "slow"));
+
+		assertThatExceptionOfType(ImageProcessingException.class).isThrownBy(() -> this.executor.execute(families))
+			.withMessage("Metadata extraction of 'slow' did not complete within PT0.2S.");
+	}
+
+	private static MetadataExtractionExecutor createExecutor(int threads, Duration timeout) {
+		final MetadataConfigProperties metadataConfigProperties = new MetadataConfigProperties();
+		metadataConfigProperties.getExtraction().setParallel(true);
+		metadataConfigProperties.getExtraction().setThreads(threads);
+		metadataConfigProperties.getExtraction().setTimeout(timeout);
+		return new MetadataExtractionExecutor(metadataConfigProperties);
+	}
+
+	private static String sleep(long millis, String result) throws InterruptedException {
+		Thread.sleep(millis);
+		return result;
+	}
+
+}
@@ -0,0 +1,225 @@
+/*
+ * Copyright (c) 2025 Gunnar Hillert.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hillert.image.metadata.service.support;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.zip.CRC32;
+
+import javax.imageio.ImageIO;
+
+import com.hillert.image.metadata.model.DirectoryType;
+import com.hillert.image.metadata.model.MetadataPatch;
+import com.hillert.image.metadata.model.MetadataPatch.XmpProperty;
+import org.apache.commons.imaging.Imaging;
+import org.apache.commons.imaging.formats.jpeg.JpegImageMetadata;
+import org.apache.commons.imaging.formats.jpeg.exif.ExifRewriter;
+import org.apache.commons.imaging.formats.jpeg.iptc.IptcTypes;
+import org.apache.commons.imaging.formats.tiff.JpegImageData;
+import org.apache.commons.imaging.formats.tiff.constants.ExifTagConstants;
+import org.apache.commons.imaging.formats.tiff.constants.TiffTagConstants;
+import org.apache.commons.imaging.formats.tiff.write.TiffOutputDirectory;
+import org.apache.commons.imaging.formats.tiff.write.TiffOutputSet;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+/**
+ * @author Gunnar Hillert
+ */
+class MetadataPurgerTests {
+
+	@Test
+	void testPurgeJpegMetadataInSinglePass() throws Exception {
+		final byte[] imageBytes = addJpegComment(JpegMetadataRewriter.rewrite(TestImages.create("jpg", 32, 16),
+				new MetadataPatch().exifField(TiffTagConstants.TIFF_TAG_IMAGE_DESCRIPTION, "title")
+					.iptcRecord(IptcTypes.OBJECT_NAME, "title")
+					.xmpProperty(XmpProperty.TITLE, "title")));
+
+		final byte[] purged = MetadataPurger.purge(imageBytes, EnumSet.of(DirectoryType.EXIF, DirectoryType.IPTC,
+				DirectoryType.XMP, DirectoryType.COMMENT, DirectoryType.THUMBNAIL));
+
+		final JpegSegmentScanner.JpegHeader header = JpegSegmentScanner.scan(purged);
+		assertThat(header.getExifPayload()).isNull();
+		assertThat(header.getXmpXml()).isNull();
+		assertThat(header.getPhotoshopPayload()).isNull();
+		assertThat(header.getSegments()).noneMatch((segment) -> segment.marker() == JpegSegmentScanner.MARKER_COM);
+		assertThat(Arrays.copyOfRange(purged, header.getHeaderBytes().length, purged.length))
+			.isEqualTo(Arrays.copyOfRange(imageBytes, JpegSegmentScanner.scan(imageBytes).getHeaderBytes().length,
+					imageBytes.length));
+		assertThat(ImageIO.read(new ByteArrayInputStream(purged)).getWidth()).isEqualTo(32);
+	}
+
+	@Test
+	void testPurgeKeepsOtherJpegMetadata() throws Exception {
+		final byte[] imageBytes = addJpegComment(JpegMetadataRewriter.rewrite(TestImages.create("jpg", 32, 16),
+				new MetadataPatch().xmpProperty(XmpProperty.TITLE, "title")));
+
+		final byte[] purged = MetadataPurger.purge(imageBytes, EnumSet.of(DirectoryType.XMP));
+
+		final JpegSegmentScanner.JpegHeader header = JpegSegmentScanner.scan(purged);
+		assertThat(header.getXmpXml()).isNull();
+		assertThat(header.getSegments()).anyMatch((segment) -> segment.marker() == JpegSegmentScanner.MARKER_COM);
+	}
+
+	@Test
+	void testPurgeExifThumbnailKeepsMakerNote() throws Exception {
+		final byte[] makerNote = "Vendor\0\1\2\3 maker note with internal offsets".getBytes(StandardCharsets.US_ASCII);
+		final byte[] thumbnail = TestImages.create("jpg", 32, 16);
+		final TiffOutputSet outputSet = new TiffOutputSet(ByteOrder.LITTLE_ENDIAN);
+		outputSet.getOrCreateRootDirectory().add(TiffTagConstants.TIFF_TAG_IMAGE_DESCRIPTION, "title");
+		outputSet.getOrCreateExifDirectory().add(ExifTagConstants.EXIF_TAG_MAKER_NOTE, makerNote);
+		final TiffOutputDirectory thumbnailDirectory = new TiffOutputDirectory(1, ByteOrder.LITTLE_ENDIAN);
+		thumbnailDirectory.setJpegImageData(new JpegImageData(0, thumbnail.length, thumbnail));
+		outputSet.addDirectory(thumbnailDirectory);
+		final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		new ExifRewriter().updateExifMetadataLossy(TestImages.create("jpg", 32, 16), outputStream, outputSet);
+		final byte[] imageBytes = outputStream.toByteArray();
+
+		final byte[] purged = MetadataPurger.purge(imageBytes, EnumSet.of(DirectoryType.THUMBNAIL));
+
+		final byte[] exifPayload = JpegSegmentScanner.scan(imageBytes).getExifPayload();
+		final byte[] purgedExifPayload = JpegSegmentScanner.scan(purged).getExifPayload();
+		assertThat(purgedExifPayload).hasSameSizeAs(exifPayload);
+		assertThat(indexOf(purgedExifPayload, makerNote)).isPositive().isEqualTo(indexOf(exifPayload, makerNote));
+		assertThat(indexOf(exifPayload, thumbnail)).isPositive();
+		assertThat(indexOf(purgedExifPayload, thumbnail)).isNegative();
+
+		final JpegImageMetadata metadata = (JpegImageMetadata) Imaging.getMetadata(purged);
+		assertThat(metadata.getExifThumbnailData()).isNull();
+		assertThat(metadata.findExifValue(ExifTagConstants.EXIF_TAG_MAKER_NOTE).getByteArrayValue())
+			.isEqualTo(makerNote);
+		assertThat(metadata.findExifValue(TiffTagConstants.TIFF_TAG_IMAGE_DESCRIPTION).getStringValue())
+			.isEqualTo("title");
+	}
+
+	@Test
+	void testPurgePngTextChunks() throws Exception {
+		final byte[] imageBytes = addPngTextChunks(TestImages.create("png", 32, 16));
+		assertThat(Imaging.getXmpXml(imageBytes)).isNotNull();
+
+		final byte[] purged = MetadataPurger.purge(imageBytes, EnumSet.of(DirectoryType.XMP));
+		assertThat(Imaging.getXmpXml(purged)).isNull();
+		assertThat(new String(purged, StandardCharsets.ISO_8859_1)).contains("Comment");
+
+		final byte[] purgedComments = MetadataPurger.purge(purged, EnumSet.of(DirectoryType.COMMENT));
+		assertThat(new String(purgedComments, StandardCharsets.ISO_8859_1)).doesNotContain("Comment");
+		assertThat(ImageIO.read(new ByteArrayInputStream(purgedComments)).getWidth()).isEqualTo(32);
+	}
+
+	@Test
+	void testPurgeGifComment() throws Exception {
+		final byte[] imageBytes = addGifComment(TestImages.create("gif", 32, 16));
+		assertThat(new String(imageBytes, StandardCharsets.US_ASCII)).contains("secret");
+
+		final byte[] purged = MetadataPurger.purge(imageBytes, EnumSet.of(DirectoryType.COMMENT));
+
+		assertThat(new String(purged, StandardCharsets.US_ASCII)).doesNotContain("secret");
+		assertThat(purged).hasSize(imageBytes.length - 10);
+		assertThat(ImageIO.read(new ByteArrayInputStream(purged)).getWidth()).isEqualTo(32);
+	}
+
+	@Test
+	void testUnsupportedDirectoryTypeIsRejected() throws Exception {
+		assertThatExceptionOfType(ImageProcessingException.class)
+			.isThrownBy(() -> MetadataPurger.purge(TestImages.create("jpg", 32, 16), EnumSet.of(DirectoryType.FILE)));
+	}
+
+	private static int indexOf(byte[] data, byte[] sequence) {
+		for (int i = 0; i <= data.length - sequence.length; i++) {
+			if (Arrays.equals(data, i, i + sequence.length, sequence, 0, sequence.length)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	@Test
+	void testPurgePngWithHugeTextChunkLength() throws Exception {
+		final byte[] imageBytes = TestImages.create("png", 32, 16);
+		final byte[] comment = ("Comment\0" + "secret".repeat(20)).getBytes(StandardCharsets.ISO_8859_1);
+		// Declares almost 2 GB of chunk data, but the image ends after 128 bytes.
+		final byte[] truncated = ByteBuffer.allocate(33 + 8 + comment.length)
+			.put(imageBytes, 0, 33)
+			.putInt(Integer.MAX_VALUE)
+			.put("tEXt".getBytes(StandardCharsets.US_ASCII))
+			.put(comment)
+			.array();
+
+		assertThatExceptionOfType(EOFException.class).isThrownBy(() -> MetadataPurger
+			.purge(new ByteArrayInputStream(truncated), new ByteArrayOutputStream(), EnumSet.of(DirectoryType.COMMENT)));
+		assertThatExceptionOfType(ImageProcessingException.class)
+			.isThrownBy(() -> MetadataPurger.purge(new ByteArrayInputStream(truncated), new ByteArrayOutputStream(),
+					EnumSet.of(DirectoryType.XMP)))
+			.withMessage("Unexpected end of image data.");
+	}
+
+	private static byte[] addJpegComment(byte[] imageBytes) {
+		final byte[] comment = "secret".getBytes(StandardCharsets.US_ASCII);
+		return ByteBuffer.allocate(imageBytes.length + comment.length + 4)
+			.put(imageBytes, 0, 2)
+			.put((byte) 0xFF)
+			.put((byte) JpegSegmentScanner.MARKER_COM)
+			.putShort((short) (comment.length + 2))
+			.put(comment)
+			.put(imageBytes, 2, imageBytes.length - 2)
+			.array();
+	}
+
+	private static byte[] addPngTextChunks(byte[] imageBytes) {
+		final byte[] xmp = pngChunk("iTXt", "XML:com.adobe.xmp\0\0\0\0\0<x:xmpmeta xmlns:x=\"adobe:ns:meta/\"/>");
+		final byte[] comment = pngChunk("tEXt", "Comment\0secret");
+		// Insert after the signature (8 bytes) and the IHDR chunk (25 bytes)
+		return ByteBuffer.allocate(imageBytes.length + xmp.length + comment.length)
+			.put(imageBytes, 0, 33)
+			.put(xmp)
+			.put(comment)
+			.put(imageBytes, 33, imageBytes.length - 33)
+			.array();
+	}
+
+	private static byte[] pngChunk(String type, String data) {
+		final byte[] typeAndData = (type + data).getBytes(StandardCharsets.ISO_8859_1);
+		final CRC32 crc = new CRC32();
+		crc.update(typeAndData);
+		return ByteBuffer.allocate(typeAndData.length + 8)
+			.putInt(typeAndData.length - 4)
+			.put(typeAndData)
+			.putInt((int) crc.getValue())
+			.array();
+	}
+
+	private static byte[] addGifComment(byte[] imageBytes) {
+		int position = 13;
+		if ((imageBytes[10] & 0x80) != 0) {
+			position += 3 << ((imageBytes[10] & 0x07) + 1);
+		}
+		final byte[] comment = { 0x21, (byte) 0xFE, 6, 's', 'e', 'c', 'r', 'e', 't', 0 };
+		return ByteBuffer.allocate(imageBytes.length + comment.length)
+			.put(imageBytes, 0, position)
+			.put(comment)
+			.put(imageBytes, position, imageBytes.length - position)
+			.array();
+	}
+
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2025 Gunnar Hillert.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hillert.image.metadata.service.support;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.List;
+
+import com.hillert.image.metadata.model.Directory;
+import com.hillert.image.metadata.model.DirectoryType;
+import com.hillert.image.metadata.model.GnssInfo;
+import com.hillert.image.metadata.model.Metadata;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Gunnar Hillert
+ */
+class MetadataSidecarTests {
+
+	@TempDir
+	Path tempDir;
+
+	@Test
+	void testWriteAndReadSidecar() throws Exception {
+		final Path imagePath = Files.write(this.tempDir.resolve("image.jpg"), new byte[] { 1, 2, 3 });
+
+		final Metadata metadata = new Metadata();
+		metadata.addDirectories(List.of(new Directory(DirectoryType.EXIF, "Make", "Canon"),
+				new Directory(DirectoryType.IPTC, "Caption", null)));
+		final GnssInfo gnssInfo = new GnssInfo(52.52, 13.405);
+		gnssInfo.setElevation(34.0);
+		gnssInfo.setGnssTime(ZonedDateTime.of(2025, 5, 1, 12, 30, 15, 0, ZoneId.of("UTC")));
+		metadata.setGnssInfo(gnssInfo);
+		metadata.setXmpData("<x:xmpmeta>ä</x:xmpmeta>");
+
+		MetadataSidecar.write(imagePath, metadata);
+
+		assertThat(MetadataSidecar.getSidecarPath(imagePath)).exists();
+
+		final Metadata sidecarMetadata = MetadataSidecar.read(imagePath);
+
+		assertThat(sidecarMetadata).isNotNull();
+		assertThat(sidecarMetadata.getDirectories()).containsExactlyElementsOf(metadata.getDirectories());
+		assertThat(sidecarMetadata.getGnssInfo().getLatitude()).isEqualTo(52.52);
+		assertThat(sidecarMetadata.getGnssInfo().getElevation()).isEqualTo(34.0);
+		assertThat(sidecarMetadata.getGnssInfo().getGnssTime()).isEqualTo(gnssInfo.getGnssTime());
+		assertThat(sidecarMetadata.getXmpData()).isEqualTo("<x:xmpmeta>ä</x:xmpmeta>");
+	}
+
+	@Test
+	void testStaleSidecarIsIgnored() throws Exception {
+		final Path imagePath = Files.write(this.tempDir.resolve("image.jpg"), new byte[] { 1, 2, 3 });
+		MetadataSidecar.write(imagePath, new Metadata());
+
+		Files.setLastModifiedTime(imagePath, FileTime.fromMillis(0));
+
+		assertThat(MetadataSidecar.read(imagePath)).isNull();
+	}
+
+	@Test
+	void testCorruptSidecarIsIgnored() throws Exception {
+		final Path imagePath = Files.write(this.tempDir.resolve("image.jpg"), new byte[] { 1, 2, 3 });
+		final Metadata metadata = new Metadata();
+		metadata.addDirectories(List.of(new Directory(DirectoryType.EXIF, "Make", "Canon")));
+		metadata.setXmpData("<x:xmpmeta/>");
+		MetadataSidecar.write(imagePath, metadata);
+		final Path sidecarPath = MetadataSidecar.getSidecarPath(imagePath);
+		final byte[] sidecar = Files.readAllBytes(sidecarPath);
+
+		// The directory count follows magic (4), version (2), size (8) and timestamp (8).
+		final byte[] hugeDirectoryCount = sidecar.clone();
+		ByteBuffer.wrap(hugeDirectoryCount).putInt(22, Integer.MAX_VALUE);
+		Files.write(sidecarPath, hugeDirectoryCount);
+		assertThat(MetadataSidecar.read(imagePath)).isNull();
+
+		final byte[] hugeStringLength = sidecar.clone();
+		ByteBuffer.wrap(hugeStringLength).putInt(26, Integer.MAX_VALUE);
+		Files.write(sidecarPath, hugeStringLength);
+		assertThat(MetadataSidecar.read(imagePath)).isNull();
+
+		Files.write(sidecarPath, Arrays.copyOf(sidecar, sidecar.length - 4));
+		assertThat(MetadataSidecar.read(imagePath)).isNull();
+
+		Files.write(sidecarPath, sidecar);
+		assertThat(MetadataSidecar.read(imagePath)).isNotNull();
+	}
+
+	@Test
+	void testMissingSidecarIsIgnored() throws Exception {
+		final Path imagePath = Files.write(this.tempDir.resolve("image.jpg"), new byte[] { 1, 2, 3 });
+		assertThat(MetadataSidecar.read(imagePath)).isNull();
+	}
+
+}
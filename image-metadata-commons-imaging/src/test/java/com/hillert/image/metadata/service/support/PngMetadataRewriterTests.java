@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2025 Gunnar Hillert.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hillert.image.metadata.service.support;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+
+import com.hillert.image.metadata.model.DirectoryType;
+import com.hillert.image.metadata.model.MetadataPatch;
+import com.hillert.image.metadata.model.MetadataPatch.XmpProperty;
+import org.apache.commons.imaging.Imaging;
+import org.apache.commons.imaging.formats.tiff.constants.MicrosoftTagConstants;
+import org.apache.commons.imaging.formats.tiff.constants.TiffTagConstants;
+import org.apache.commons.imaging.formats.tiff.write.TiffOutputSet;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Gunnar Hillert
+ */
+class PngMetadataRewriterTests {
+
+	@Test
+	void testRewriteExifAndXmpChunks() throws Exception {
+		final byte[] imageBytes = TestImages.create("png", 32, 16);
+
+		final byte[] first = PngMetadataRewriter.rewrite(imageBytes,
+				new MetadataPatch().exifField(TiffTagConstants.TIFF_TAG_IMAGE_DESCRIPTION, "first")
+					.xmpProperty(XmpProperty.IDENTIFIER, "ref")
+					.xmpProperty(XmpProperty.TITLE, "first"));
+		final byte[] second = PngMetadataRewriter.rewrite(first,
+				new MetadataPatch().exifField(MicrosoftTagConstants.EXIF_TAG_XPTITLE, "second")
+					.xmpProperty(XmpProperty.TITLE, "second"));
+
+		assertThat(getChunks(second, "eXIf")).hasSize(1);
+		final TiffOutputSet exif = MetadataPatchSupport.getOutputSet(getChunks(second, "eXIf").get(0));
+		assertThat(exif.getRootDirectory().findField(TiffTagConstants.TIFF_TAG_IMAGE_DESCRIPTION)).isNotNull();
+		assertThat(exif.getRootDirectory().findField(MicrosoftTagConstants.EXIF_TAG_XPTITLE)).isNotNull();
+
+		assertThat(getChunks(second, "iTXt")).hasSize(1);
+		assertThat(Imaging.getXmpXml(second)).contains("second", "ref").doesNotContain("first");
+
+		assertThat(getChunks(second, "IDAT")).usingElementComparator(Arrays::compare)
+			.containsExactlyElementsOf(getChunks(imageBytes, "IDAT"));
+		assertThat(ImageIO.read(new ByteArrayInputStream(second)).getWidth()).isEqualTo(32);
+	}
+
+	@Test
+	void testPurgeAndPatchInSinglePass() throws Exception {
+		final byte[] imageBytes = PngMetadataRewriter.rewrite(TestImages.create("png", 32, 16),
+				new MetadataPatch().exifField(TiffTagConstants.TIFF_TAG_IMAGE_DESCRIPTION, "secret")
+					.xmpProperty(XmpProperty.TITLE, "secret"));
+
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		PngMetadataRewriter.rewrite(new ByteArrayInputStream(imageBytes), out,
+				EnumSet.of(DirectoryType.EXIF, DirectoryType.XMP),
+				new MetadataPatch().xmpProperty(XmpProperty.TITLE, "public"));
+
+		assertThat(getChunks(out.toByteArray(), "eXIf")).isEmpty();
+		assertThat(Imaging.getXmpXml(out.toByteArray())).contains("public").doesNotContain("secret");
+	}
+
+	private static List<byte[]> getChunks(byte[] imageBytes, String type) {
+		final List<byte[]> chunks = new ArrayList<>();
+		final ByteBuffer buffer = ByteBuffer.wrap(imageBytes, 8, imageBytes.length - 8);
+		while (buffer.remaining() >= 12) {
+			final int length = buffer.getInt();
+			final byte[] chunkType = new byte[4];
+			buffer.get(chunkType);
+			final byte[] data = new byte[length];
+			buffer.get(data);
+			buffer.getInt();
+			if (type.equals(new String(chunkType, StandardCharsets.US_ASCII))) {
+				chunks.add(data);
+			}
+		}
+		return chunks;
+	}
+
+}
@@ -0,0 +1,240 @@
+/*
+ * Copyright (c) 2025 Gunnar Hillert.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hillert.image.metadata.service.support;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import javax.imageio.ImageIO;
+
+import com.hillert.image.metadata.config.MetadataConfigProperties;
+import com.hillert.image.metadata.config.StorageConfigProperties;
+import com.hillert.image.metadata.model.Rendition;
+import com.hillert.image.metadata.service.support.RenditionCache.SourceImage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import org.springframework.util.unit.DataSize;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Gunnar Hillert
+ */
+class RenditionCacheTests {
+
+	@TempDir
+	Path tempDir;
+
+	private final MetadataConfigProperties properties = new MetadataConfigProperties();
+
+	private Path imagePath;
+
+	@BeforeEach
+	void setup() throws Exception {
+		this.properties.getRenditions().setDiskLocation(this.tempDir.resolve("renditions").toString());
+		this.imagePath = this.tempDir.resolve("image.png");
+		ImageIO.write(new BufferedImage(8, 8, BufferedImage.TYPE_INT_RGB), "png", this.imagePath.toFile());
+	}
+
+	@Test
+	void testWrittenRenditionIsCachedInMemoryAndOnDisk() throws Exception {
+		final RenditionCache cache = createCache(new StorageConfigProperties());
+		final SourceImage sourceImage = cache.describe(this.imagePath);
+		assertThat(sourceImage.mimeType()).isEqualTo("image/png");
+		assertThat(sourceImage.contentHash()).hasSize(64);
+		assertThat(cache.find(sourceImage, 100, true, ResizeQuality.BALANCED)).isNull();
+
+		final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		cache.write(sourceImage, 100, true, ResizeQuality.BALANCED, (target) -> target.write(new byte[] { 1, 2, 3 }),
+				outputStream);
+		assertThat(outputStream.toByteArray()).containsExactly(1, 2, 3);
+
+		final Rendition rendition = cache.find(cache.describe(this.imagePath), 100, true, ResizeQuality.BALANCED);
+		assertThat(rendition.mimeType()).isEqualTo("image/png");
+		assertThat(rendition.file()).isNull();
+		assertThat(content(rendition)).containsExactly(1, 2, 3);
+		assertThat(cache.getStats().size()).isEqualTo(1);
+		assertThat(cache.getDiskSize()).isEqualTo(3);
+
+		assertThat(cache.find(sourceImage, 100, true, ResizeQuality.BEST)).isNull();
+		assertThat(cache.find(sourceImage, 100, false, ResizeQuality.BALANCED)).isNull();
+		assertThat(cache.find(sourceImage, 200, true, ResizeQuality.BALANCED)).isNull();
+	}
+
+	@Test
+	void testRenditionIsReadFromDiskIntoMemory() throws Exception {
+		final RenditionCache cache = createCache(new StorageConfigProperties());
+		write(cache, cache.describe(this.imagePath), 100, 1);
+
+		final RenditionCache restartedCache = createCache(new StorageConfigProperties());
+		final SourceImage sourceImage = restartedCache.describe(this.imagePath);
+		assertThat(restartedCache.getDiskSize()).isEqualTo(1);
+		assertThat(restartedCache.getStats().size()).isZero();
+
+		assertThat(content(restartedCache.find(sourceImage, 100, true, ResizeQuality.BALANCED))).containsExactly(1);
+		assertThat(restartedCache.getStats().size()).isEqualTo(1);
+		assertThat(content(restartedCache.find(sourceImage, 100, true, ResizeQuality.BALANCED))).containsExactly(1);
+		assertThat(restartedCache.getStats().hitCount()).isEqualTo(1);
+	}
+
+	@Test
+	void testRenditionsLargerThanTheMemoryTierAreServedFromDisk() throws Exception {
+		this.properties.getRenditions().setMemoryMaxSize(DataSize.ofBytes(2));
+		final RenditionCache cache = createCache(new StorageConfigProperties());
+		final SourceImage sourceImage = cache.describe(this.imagePath);
+		cache.write(sourceImage, 100, true, ResizeQuality.BALANCED, (target) -> target.write(new byte[] { 1, 2, 3 }),
+				new ByteArrayOutputStream());
+
+		final Rendition rendition = cache.find(sourceImage, 100, true, ResizeQuality.BALANCED);
+
+		assertThat(rendition.file()).hasBinaryContent(new byte[] { 1, 2, 3 });
+		assertThat(cache.getStats().size()).isZero();
+		assertThat(cache.getDiskSize()).isEqualTo(3);
+	}
+
+	@Test
+	void testPutRenditionIsOnlyCachedOnDisk() throws Exception {
+		final RenditionCache cache = createCache(new StorageConfigProperties());
+		final SourceImage sourceImage = cache.describe(this.imagePath);
+
+		cache.put(sourceImage, 100, false, ResizeQuality.BALANCED, new byte[] { 1 });
+
+		assertThat(cache.getStats().size()).isZero();
+		assertThat(cache.getDiskSize()).isEqualTo(1);
+		assertThat(content(cache.find(sourceImage, 100, false, ResizeQuality.BALANCED))).containsExactly(1);
+		assertThat(cache.getStats().size()).isEqualTo(1);
+	}
+
+	@Test
+	void testMemoryTierWithoutDiskTier() throws Exception {
+		this.properties.getRenditions().setDiskEnabled(false);
+		final RenditionCache cache = createCache(new StorageConfigProperties());
+		final SourceImage sourceImage = cache.describe(this.imagePath);
+
+		write(cache, sourceImage, 100, 1);
+		write(cache, sourceImage, 100, 2);
+		cache.put(sourceImage, 200, false, ResizeQuality.BALANCED, new byte[] { 3 });
+		cache.put(sourceImage, 200, false, ResizeQuality.BALANCED, new byte[] { 4 });
+
+		assertThat(content(cache.find(sourceImage, 100, true, ResizeQuality.BALANCED))).containsExactly(1);
+		assertThat(content(cache.find(sourceImage, 200, false, ResizeQuality.BALANCED))).containsExactly(3);
+		assertThat(cache.getDiskSize()).isZero();
+		assertThat(this.tempDir.resolve("renditions")).doesNotExist();
+	}
+
+	@Test
+	void testInvalidateRemovesRenditionsFromMemoryAndDisk() throws Exception {
+		final RenditionCache cache = createCache(new StorageConfigProperties());
+		write(cache, cache.describe(this.imagePath), 100, 1);
+
+		cache.invalidate(this.imagePath);
+
+		assertThat(cache.getDiskSize()).isZero();
+		assertThat(cache.getStats().size()).isZero();
+		assertThat(cache.find(cache.describe(this.imagePath), 100, true, ResizeQuality.BALANCED)).isNull();
+	}
+
+	@Test
+	void testLeastRecentlyUsedRenditionsAreEvictedFromDisk() throws Exception {
+		this.properties.getRenditions().setDiskMaxSize(DataSize.ofBytes(2));
+		final RenditionCache cache = createCache(new StorageConfigProperties());
+		final SourceImage sourceImage = cache.describe(this.imagePath);
+
+		cache.put(sourceImage, 100, true, ResizeQuality.BALANCED, new byte[] { 1 });
+		cache.put(sourceImage, 200, true, ResizeQuality.BALANCED, new byte[] { 2 });
+		assertThat(cache.find(sourceImage, 100, true, ResizeQuality.BALANCED)).isNotNull();
+		cache.put(sourceImage, 300, true, ResizeQuality.BALANCED, new byte[] { 4 });
+
+		assertThat(cache.getDiskSize()).isEqualTo(2);
+		try (var files = Files.walk(this.tempDir.resolve("renditions"))) {
+			assertThat(files.filter(Files::isRegularFile)).hasSize(2);
+		}
+		assertThat(cache.find(sourceImage, 200, true, ResizeQuality.BALANCED)).isNull();
+		assertThat(content(cache.find(sourceImage, 300, true, ResizeQuality.BALANCED))).containsExactly(4);
+	}
+
+	@Test
+	void testCachedRenditionIsNotReplaced() throws Exception {
+		final RenditionCache cache = createCache(new StorageConfigProperties());
+		final SourceImage sourceImage = cache.describe(this.imagePath);
+		cache.write(sourceImage, 100, true, ResizeQuality.BALANCED, (target) -> target.write(new byte[] { 1, 2, 3 }),
+				new ByteArrayOutputStream());
+
+		final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		cache.write(sourceImage, 100, true, ResizeQuality.BALANCED, (target) -> target.write(new byte[] { 4, 5 }),
+				outputStream);
+		cache.put(sourceImage, 100, true, ResizeQuality.BALANCED, new byte[] { 6 });
+
+		assertThat(outputStream.toByteArray()).containsExactly(4, 5);
+		assertThat(content(cache.find(sourceImage, 100, true, ResizeQuality.BALANCED))).containsExactly(1, 2, 3);
+		assertThat(cache.getDiskSize()).isEqualTo(3);
+
+		final RenditionCache restartedCache = createCache(new StorageConfigProperties());
+		assertThat(content(restartedCache.find(restartedCache.describe(this.imagePath), 100, true,
+				ResizeQuality.BALANCED)))
+			.containsExactly(1, 2, 3);
+	}
+
+	@Test
+	void testDisabledCache() throws Exception {
+		this.properties.getRenditions().setEnabled(false);
+		final RenditionCache cache = createCache(new StorageConfigProperties());
+		final SourceImage sourceImage = cache.describe(this.imagePath);
+
+		final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		cache.write(sourceImage, 100, true, ResizeQuality.BALANCED, (target) -> target.write(1), outputStream);
+		cache.put(sourceImage, 200, true, ResizeQuality.BALANCED, new byte[] { 2 });
+
+		assertThat(outputStream.toByteArray()).containsExactly(1);
+		assertThat(cache.isEnabled()).isFalse();
+		assertThat(cache.find(sourceImage, 100, true, ResizeQuality.BALANCED)).isNull();
+		assertThat(cache.find(sourceImage, 200, true, ResizeQuality.BALANCED)).isNull();
+	}
+
+	@Test
+	void testDefaultDiskLocationIsInsideStorageLocation() throws Exception {
+		this.properties.getRenditions().setDiskLocation(null);
+		final StorageConfigProperties storageConfigProperties = new StorageConfigProperties();
+		storageConfigProperties.setLocation(this.tempDir.resolve("storage").toString());
+
+		final RenditionCache cache = createCache(storageConfigProperties);
+		write(cache, cache.describe(this.imagePath), 100, 1);
+
+		assertThat(this.tempDir.resolve("storage").resolve(RenditionCache.DEFAULT_DISK_LOCATION)).isDirectory();
+		assertThat(cache.getDiskSize()).isEqualTo(1);
+	}
+
+	private RenditionCache createCache(StorageConfigProperties storageConfigProperties) {
+		return new RenditionCache(this.properties, storageConfigProperties, new FormatProbe());
+	}
+
+	private static void write(RenditionCache cache, SourceImage sourceImage, int width, int value)
+			throws Exception {
+		cache.write(sourceImage, width, true, ResizeQuality.BALANCED, (target) -> target.write(value),
+				new ByteArrayOutputStream());
+	}
+
+	private static byte[] content(Rendition rendition) throws Exception {
+		final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		rendition.writeTo(outputStream);
+		return outputStream.toByteArray();
+	}
+
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2025 Gunnar Hillert.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hillert.image.metadata.service.support;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.EnumSet;
+import java.util.Set;
+
+import javax.imageio.ImageIO;
+
+import com.hillert.image.metadata.model.DirectoryType;
+import com.hillert.image.metadata.model.MetadataPatch;
+import com.hillert.image.metadata.model.MetadataPatch.XmpProperty;
+import org.apache.commons.imaging.Imaging;
+import org.apache.commons.imaging.formats.jpeg.iptc.IptcTypes;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+/**
+ * @author Gunnar Hillert
+ */
+class StreamingMetadataRewriterTests {
+
+	private static final Set<DirectoryType> PURGED = EnumSet.of(DirectoryType.EXIF, DirectoryType.IPTC,
+			DirectoryType.XMP);
+
+	@TempDir
+	Path tempDir;
+
+	@Test
+	void testFileToFileRewriteMatchesInMemoryRewrite() throws Exception {
+		final byte[] imageBytes = JpegMetadataRewriter.rewrite(TestImages.create("jpg", 32, 16),
+				new MetadataPatch().iptcRecord(IptcTypes.OBJECT_NAME, "old").xmpProperty(XmpProperty.TITLE, "old"));
+		final MetadataPatch patch = new MetadataPatch().xmpProperty(XmpProperty.TITLE, "new");
+
+		final Path source = Files.write(this.tempDir.resolve("source.jpg"), imageBytes);
+		final Path target = this.tempDir.resolve("target.jpg");
+		try (FileChannel in = FileChannel.open(source);
+				FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+			StreamingMetadataRewriter.rewrite(in, out, PURGED, patch);
+		}
+
+		assertThat(Files.readAllBytes(target))
+			.isEqualTo(JpegMetadataRewriter.rewrite(MetadataPurger.purge(imageBytes, PURGED), patch));
+	}
+
+	@Test
+	void testStreamToStreamPurgesPng() throws Exception {
+		final byte[] imageBytes = TestImages.create("png", 32, 16);
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+		StreamingMetadataRewriter.rewrite(Channels.newChannel(new ByteArrayInputStream(imageBytes)),
+				Channels.newChannel(out), PURGED, new MetadataPatch());
+
+		assertThat(out.toByteArray()).isEqualTo(imageBytes);
+	}
+
+	@Test
+	void testStreamToStreamPatchesTiff() throws Exception {
+		final byte[] imageBytes = TestImages.create("tiff", 32, 16);
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+		StreamingMetadataRewriter.rewrite(Channels.newChannel(new ByteArrayInputStream(imageBytes)),
+				Channels.newChannel(out), Set.of(), new MetadataPatch().xmpProperty(XmpProperty.TITLE, "title"));
+
+		assertThat(Imaging.getXmpXml(out.toByteArray())).contains("title");
+		assertThat(ImageIO.read(new ByteArrayInputStream(out.toByteArray())).getWidth()).isEqualTo(32);
+	}
+
+	@Test
+	void testPurgingTiffIsRejected() throws Exception {
+		final byte[] imageBytes = TestImages.create("tiff", 32, 16);
+
+		assertThatExceptionOfType(ImageProcessingException.class)
+			.isThrownBy(() -> StreamingMetadataRewriter.rewrite(Channels.newChannel(new ByteArrayInputStream(imageBytes)),
+					Channels.newChannel(new ByteArrayOutputStream()), PURGED,
+					new MetadataPatch().xmpProperty(XmpProperty.TITLE, "title")))
+			.withMessage("Metadata can only be updated, but not removed, for TIFF images.");
+	}
+
+	@Test
+	void testTiffIsDetectedByMagicNumber() throws Exception {
+		assertThat(TiffMetadataRewriter.isTiff(TestImages.create("tiff", 32, 16))).isTrue();
+		assertThat(TiffMetadataRewriter.isTiff("II is not an image".getBytes(StandardCharsets.US_ASCII))).isFalse();
+		assertThat(TiffMetadataRewriter.isTiff("MM".getBytes(StandardCharsets.US_ASCII))).isFalse();
+
+		assertThatExceptionOfType(ImageProcessingException.class)
+			.isThrownBy(() -> StreamingMetadataRewriter.rewrite(
+					Channels.newChannel(new ByteArrayInputStream("II is not an image".getBytes(StandardCharsets.US_ASCII))),
+					Channels.newChannel(new ByteArrayOutputStream()), Set.of(),
+					new MetadataPatch().xmpProperty(XmpProperty.TITLE, "title")))
+			.withMessage("Metadata can only be updated for JPEG, PNG and TIFF images.");
+	}
+
+	@Test
+	void testPatchingGifIsRejected() throws Exception {
+		final byte[] imageBytes = TestImages.create("gif", 32, 16);
+
+		assertThatExceptionOfType(ImageProcessingException.class)
+			.isThrownBy(() -> StreamingMetadataRewriter.rewrite(Channels.newChannel(new ByteArrayInputStream(imageBytes)),
+					Channels.newChannel(new ByteArrayOutputStream()), PURGED,
+					new MetadataPatch().xmpProperty(XmpProperty.TITLE, "title")));
+	}
+
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2025 Gunnar Hillert.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hillert.image.metadata.service.support;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteOrder;
+
+import javax.imageio.ImageIO;
+
+import org.apache.commons.imaging.formats.jpeg.exif.ExifRewriter;
+import org.apache.commons.imaging.formats.tiff.JpegImageData;
+import org.apache.commons.imaging.formats.tiff.constants.TiffTagConstants;
+import org.apache.commons.imaging.formats.tiff.write.TiffOutputDirectory;
+import org.apache.commons.imaging.formats.tiff.write.TiffOutputSet;
+
+/**
+ * Creates small encoded images without any metadata for tests.
+ *
+ * @author Gunnar Hillert
+ */
+public final class TestImages {
+
+	private TestImages() {
+		throw new AssertionError("This is a static utility class.");
+	}
+
+	/**
+	 * Create a black RGB image.
+	 * @param formatName the ImageIO format name, e.g. {@code jpg}, {@code png}
+	 * @param width the width of the image
+	 * @param height the height of the image
+	 * @return the encoded image
+	 * @throws IOException in case the image cannot be encoded
+	 */
+	public static byte[] create(String formatName, int width, int height) throws IOException {
+		return encode(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), formatName);
+	}
+
+	/**
+	 * Encode the provided image.
+	 * @param image the image to encode
+	 * @param formatName the ImageIO format name, e.g. {@code jpg}, {@code png}
+	 * @return the encoded image
+	 * @throws IOException in case the image cannot be encoded
+	 */
+	public static byte[] encode(BufferedImage image, String formatName) throws IOException {
+		final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		if (!ImageIO.write(image, formatName, outputStream)) {
+			throw new IllegalArgumentException("No ImageIO writer for " + formatName);
+		}
+		return outputStream.toByteArray();
+	}
+
+	/**
+	 * Create a black JPEG image with a black thumbnail embedded in its EXIF data (IFD1).
+	 * @param width the width of the image
+	 * @param height the height of the image
+	 * @param thumbnailWidth the width of the thumbnail
+	 * @param thumbnailHeight the height of the thumbnail
+	 * @return the encoded image
+	 * @throws IOException in case the image cannot be encoded
+	 */
+	public static byte[] createJpegWithThumbnail(int width, int height, int thumbnailWidth, int thumbnailHeight)
+			throws IOException {
+		final byte[] thumbnailBytes = create("jpg", thumbnailWidth, thumbnailHeight);
+
+		final TiffOutputSet outputSet = new TiffOutputSet(ByteOrder.BIG_ENDIAN);
+		outputSet.getOrCreateRootDirectory().add(TiffTagConstants.TIFF_TAG_IMAGE_DESCRIPTION, "image");
+		final TiffOutputDirectory thumbnailDirectory = new TiffOutputDirectory(1, ByteOrder.BIG_ENDIAN);
+		thumbnailDirectory.setJpegImageData(new JpegImageData(0, thumbnailBytes.length, thumbnailBytes));
+		outputSet.addDirectory(thumbnailDirectory);
+
+		final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		new ExifRewriter().updateExifMetadataLossy(create("jpg", width, height), outputStream, outputSet);
+		return outputStream.toByteArray();
+	}
+
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2025 Gunnar Hillert.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hillert.image.metadata.service.support;
+
+import com.hillert.image.metadata.config.MetadataConfigProperties;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Gunnar Hillert
+ */
+class XmpFormatterTests {
+
+	private static final String XMP = "<x:xmpmeta xmlns:x=\"adobe:ns:meta/\"><rdf:RDF "
+			+ "xmlns:rdf=\"http://www.w3.org/1999/02/22-rdf-syntax-ns#\"><rdf:Description rdf:about=\"\" "
+			+ "xmlns:dc=\"http://purl.org/dc/elements/1.1/\"><dc:format>image/jpeg</dc:format>"
+			+ "</rdf:Description></rdf:RDF></x:xmpmeta>";
+
+	@Test
+	void testBlankXmpIsNotFormatted() {
+		for (XmpFormatter xmpFormatter : new XmpFormatter[] { createXmpFormatter(true), createXmpFormatter(false) }) {
+			assertThat(xmpFormatter.format(null)).isNull();
+			assertThat(xmpFormatter.format("")).isNull();
+			assertThat(xmpFormatter.format(" \n\t")).isNull();
+		}
+		assertThat(createXmpFormatter(true).getStats().size()).isZero();
+	}
+
+	@Test
+	void testCachedAndUncachedOutputIsIdentical() {
+		final XmpFormatter cachingXmpFormatter = createXmpFormatter(true);
+		final String formattedXmp = createXmpFormatter(false).format(XMP);
+
+		assertThat(formattedXmp).isEqualTo(CommonUtils.formatXml(XMP, false)).contains("\n").isNotEqualTo(XMP);
+		assertThat(cachingXmpFormatter.format(XMP)).isEqualTo(formattedXmp);
+		assertThat(cachingXmpFormatter.format(XMP)).isEqualTo(formattedXmp);
+	}
+
+	@Test
+	void testFormattingIsSkippedOnCacheHit() {
+		final XmpFormatter xmpFormatter = createXmpFormatter(true);
+
+		final String formattedXmp = xmpFormatter.format(XMP);
+
+		// Formatting again would create a new String.
+		assertThat(xmpFormatter.format(XMP)).isSameAs(formattedXmp);
+		assertThat(xmpFormatter.format(XMP.replace("image/jpeg", "image/png"))).isNotEqualTo(formattedXmp);
+		final BoundedCache.Stats stats = xmpFormatter.getStats();
+		assertThat(stats.hitCount()).isEqualTo(1);
+		assertThat(stats.missCount()).isEqualTo(2);
+		assertThat(stats.size()).isEqualTo(2);
+	}
+
+	@Test
+	void testUncachedFormatterHasNoStats() {
+		final XmpFormatter xmpFormatter = createXmpFormatter(false);
+
+		assertThat(xmpFormatter.format(XMP)).isNotSameAs(xmpFormatter.format(XMP));
+		assertThat(xmpFormatter.getStats()).isNull();
+	}
+
+	private static XmpFormatter createXmpFormatter(boolean cacheEnabled) {
+		final MetadataConfigProperties metadataConfigProperties = new MetadataConfigProperties();
+		metadataConfigProperties.getCache().setEnabled(cacheEnabled);
+		return new XmpFormatter(metadataConfigProperties);
+	}
+
+}
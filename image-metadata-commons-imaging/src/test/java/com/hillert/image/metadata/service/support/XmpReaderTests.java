@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2025 Gunnar Hillert.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hillert.image.metadata.service.support;
+
+import java.util.List;
+
+import com.hillert.image.metadata.model.Directory;
+import com.hillert.image.metadata.model.DirectoryType;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Gunnar Hillert
+ */
+class XmpReaderTests {
+
+	private static final String XMP_XML = """
+			<?xpacket begin="﻿" id="W5M0MpCehiHzreSzNTczkc9d"?>
+			<x:xmpmeta xmlns:x="adobe:ns:meta/">
+			  <rdf:RDF xmlns:rdf="http://www.w3.org/1999/02/22-rdf-syntax-ns#">
+			    <rdf:Description rdf:about=""
+			        xmlns:xmp="http://ns.adobe.com/xap/1.0/"
+			        xmlns:dc="http://purl.org/dc/elements/1.1/"
+			        xmlns:exif="http://ns.adobe.com/exif/1.0/"
+			        xmp:CreatorTool="Adobe Lightroom">
+			      <dc:title>
+			        <rdf:Alt>
+			          <rdf:li xml:lang="de">Titel</rdf:li>
+			          <rdf:li xml:lang="x-default">Title</rdf:li>
+			        </rdf:Alt>
+			      </dc:title>
+			      <dc:subject>
+			        <rdf:Bag>
+			          <rdf:li>mountain</rdf:li>
+			          <rdf:li>lake</rdf:li>
+			        </rdf:Bag>
+			      </dc:subject>
+			      <dc:identifier>1234</dc:identifier>
+			      <exif:Flash rdf:parseType="Resource">
+			        <exif:Fired>False</exif:Fired>
+			        <exif:Mode>2</exif:Mode>
+			      </exif:Flash>
+			    </rdf:Description>
+			  </rdf:RDF>
+			</x:xmpmeta>
+			<?xpacket end="w"?>
+			""";
+
+	@Test
+	void testReadXmpProperties() {
+		final List<Directory> directories = XmpReader.read(XMP_XML);
+
+		assertThat(directories).containsExactly(new Directory(DirectoryType.XMP, "CreatorTool", "Adobe Lightroom"),
+				new Directory(DirectoryType.XMP, "title", "Title"),
+				new Directory(DirectoryType.XMP, "subject", "mountain, lake"),
+				new Directory(DirectoryType.XMP, "identifier", "1234"),
+				new Directory(DirectoryType.XMP, "Flash.Fired", "False"),
+				new Directory(DirectoryType.XMP, "Flash.Mode", "2"));
+	}
+
+	@Test
+	void testReadXmpWithoutProperties() {
+		assertThat(XmpReader.read("<x:xmpmeta xmlns:x=\"adobe:ns:meta/\"></x:xmpmeta>")).isEmpty();
+	}
+
+}